@@ -27,6 +27,42 @@ public class IUConfig extends Config {
 		return iuDataPath;
 	}
 
+	public static String getLinguisticDataSnapshotPath() throws ConfigException {
+		String path = getConfigProperty("ca.nrc.iutools.lingdata.snapshot", false);
+		return path;
+	}
+
+	public static String getDecompositionsCacheDir() throws ConfigException {
+		String path = getConfigProperty("ca.nrc.iutools.morph.decompscache.dir", false);
+		return path;
+	}
+
+	public static Long getDecompositionsCacheMaxEntries() throws ConfigException {
+		return getLongProperty("ca.nrc.iutools.morph.decompscache.maxentries");
+	}
+
+	public static Long getDecompositionsCacheMaxBytes() throws ConfigException {
+		return getLongProperty("ca.nrc.iutools.morph.decompscache.maxbytes");
+	}
+
+	private static Long getLongProperty(String name) throws ConfigException {
+		Long value = null;
+		String str = getConfigProperty(name, false);
+		if (str != null) {
+			try {
+				value = Long.parseLong(str.trim());
+			} catch (NumberFormatException e) {
+				throw new ConfigException("Property "+name+" should be an integer, but was: "+str);
+			}
+		}
+		return value;
+	}
+
+	public static boolean isAnalyzerInstrumentationOn() throws ConfigException {
+		String on = getConfigProperty("ca.nrc.iutools.morph.instrumentation", false);
+		return (on != null && on.trim().equalsIgnoreCase("true"));
+	}
+
 
 	public String nodesToTraceRegex() throws ConfigException {
 		String regex = 
@@ -0,0 +1,33 @@
+package ca.inuktitutcomputing.core.console;
+
+import java.io.File;
+
+import ca.inuktitutcomputing.data.LinguisticData;
+import ca.inuktitutcomputing.data.LinguisticDataSnapshot;
+
+public class CmdCompileLinguisticData extends ConsoleCommand {
+
+	public CmdCompileLinguisticData(String name) {
+		super(name);
+	}
+
+	@Override
+	public String getUsageOverview() {
+		return "Compile the linguistic data CSV tables into a binary snapshot.";
+	}
+
+	@Override
+	public void execute() throws Exception {
+		File snapshotFile = getDataFile(true);
+
+		echo("Loading linguistic data from the CSV tables...");
+		long start = System.currentTimeMillis();
+		LinguisticData.init();
+		LinguisticData data = LinguisticData.getInstance(false);
+		echo("   loaded in "+(System.currentTimeMillis() - start)+" msecs");
+
+		LinguisticDataSnapshot.write(data, snapshotFile);
+		echo("Snapshot saved in "+snapshotFile.getAbsolutePath()+
+			" ("+snapshotFile.length()+" bytes)");
+	}
+}
@@ -4,11 +4,8 @@ import java.io.BufferedReader;
 import java.io.File;
 import java.io.FileReader;
 import java.util.ArrayList;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
-
-import ca.inuktitutcomputing.applications.Decompose;
 import ca.inuktitutcomputing.morph.Decomposition;
+import ca.inuktitutcomputing.morph.Decomposition.DecompositionExpression;
 import ca.inuktitutcomputing.morph.MorphologicalAnalyzer;
 import ca.inuktitutcomputing.script.Syllabics;
 import ca.nrc.ui.commandline.UserIO.Verbosity;
@@ -66,8 +63,6 @@ public class CmdGist extends ConsoleCommand {
 		}
 //		System.out.println("Nb. lines = "+lines.length);
 		
-		Pattern pattern = Pattern.compile("^(.+?)---(.+)$");
-		
 		while (true) {
 			if (interactive) {
 				content = prompt("Enter Inuktut words");
@@ -95,12 +90,11 @@ public class CmdGist extends ConsoleCommand {
 					decs = morphAnalyzer.decomposeWord(latin);
 					if (decs != null && decs.length > 0) {
 						Decomposition dec = decs[0];
-						String[] meaningsOfParts = Decompose.getMeaningsInArrayOfStrings(dec.toStr2(),"en",true,false);
+						DecompositionExpression expr = dec.toExpression();
+						String[] meaningsOfParts = expr.getMeanings("en");
 						ArrayList<String> wordGistParts = new ArrayList<String>();
 						for (int i=0; i<meaningsOfParts.length; i++) {
-							Matcher matcher = pattern.matcher(meaningsOfParts[i]);
-							matcher.matches();
-							wordGistParts.add(matcher.group(1)+": "+matcher.group(2));
+							wordGistParts.add(expr.parts[i].surface+": "+meaningsOfParts[i]);
 						}
 						String[] wordParts = wordGistParts.toArray(new String[] {});
 						String wordToDisplay = syllabic? word+" ("+latin.toUpperCase()+")" : latin.toUpperCase();
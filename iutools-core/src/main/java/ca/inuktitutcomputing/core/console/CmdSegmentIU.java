@@ -1,5 +1,6 @@
 package ca.inuktitutcomputing.core.console;
 
+import java.util.Iterator;
 import java.util.Scanner;
 import java.util.concurrent.TimeoutException;
 
@@ -9,9 +10,13 @@ import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
 
 import ca.inuktitutcomputing.data.LinguisticDataException;
+import ca.inuktitutcomputing.morph.DecomposeWordsOptions;
 import ca.inuktitutcomputing.morph.Decomposition;
+import ca.inuktitutcomputing.morph.DecompositionResults;
+import ca.inuktitutcomputing.morph.DecompositionResultsHandler;
 import ca.inuktitutcomputing.morph.MorphologicalAnalyzer;
 import ca.inuktitutcomputing.morph.MorphologicalAnalyzerAbstract;
+import ca.inuktitutcomputing.morph.MorphologicalAnalyzerException;
 import ca.nrc.debug.Debug;
 
 public class CmdSegmentIU extends ConsoleCommand {
@@ -40,8 +45,12 @@ public class CmdSegmentIU extends ConsoleCommand {
 		
 		mLogger.trace("invoked with mode="+mode+", lenient="+lenient+
 			", timeoutMsecs="+timeoutMSecs);
+		
+		if (mode == Mode.PIPELINE) {
+			decomposePipelineWords(morphAnalyzer);
+		}
 				
-		while (true) {
+		while (mode != Mode.PIPELINE) {
 			String word = null;
 			try {
 				word = nextInputWord();
@@ -87,6 +96,58 @@ public class CmdSegmentIU extends ConsoleCommand {
 		mLogger.trace("Done!");	
 	}
 
+	/*
+	 * In pipeline mode, the words read from STDIN are decomposed in 
+	 * parallel, but their results are still printed in the order of 
+	 * the input lines.
+	 */
+	private void decomposePipelineWords(MorphologicalAnalyzer morphAnalyzer) 
+			throws MorphologicalAnalyzerException {
+		Iterable<String> inputWords = new Iterable<String>() {
+			@Override
+			public Iterator<String> iterator() {
+				return new Iterator<String>() {
+					@Override
+					public boolean hasNext() {
+						return stdinScanner.hasNext();
+					}
+
+					@Override
+					public String next() {
+						return stdinScanner.nextLine();
+					}
+				};
+			}
+		};
+		
+		DecomposeWordsOptions options = 
+			new DecomposeWordsOptions()
+				.setLenient(lenient)
+				// Every line of input must have its own line of output
+				.setDedupe(false);
+		Integer numThreads = getNumThreads();
+		if (numThreads != null) {
+			options.setNumThreads(numThreads);
+		}
+		
+		morphAnalyzer.decomposeWords(inputWords, options, 
+			new DecompositionResultsHandler() {
+				@Override
+				public void onResults(DecompositionResults results) 
+						throws ConsoleException {
+					if (results.timedOut) {
+						printExceptionResult(results.word, 
+							new TimeoutException());
+					} else if (results.exception != null) {
+						printExceptionResult(results.word, results.exception);
+					} else {
+						printDecompositions(results.word, 
+							results.decompositions, results.totalMSecs);
+					}
+				}
+			});
+	}
+
 	private void printExceptionResult(String word, Exception e) 
 			throws ConsoleException {
 		
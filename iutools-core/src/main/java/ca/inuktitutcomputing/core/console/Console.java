@@ -102,6 +102,14 @@ public class Console {
 			    .required(false)
 			    .build();
 
+		Option optThreads = Option.builder(null)
+				.longOpt(ConsoleCommand.OPT_THREADS)
+			    .desc("Number of words to process at the same time in pipeline mode (defaults to the number of processors).")
+			    .hasArg()			    
+			    .argName("THREADS")
+			    .required(false)
+			    .build();
+
 		Option optPipelineMode = Option.builder(null)
 				.longOpt(ConsoleCommand.OPT_PIPELINE)
 			    .desc(
@@ -248,6 +256,9 @@ public class Console {
 				new CmdSegmentIU("segment_iu")
 				.addOption(optWord)
 				.addOption(optExtendedAnalysis)
+				.addOption(optPipelineMode)
+				.addOption(optTimeoutSecs)
+				.addOption(optThreads)
 				;
 		mainCmd.addSubCommand(segmentIU);
 		
@@ -324,6 +335,13 @@ public class Console {
 				.addOption(optMinNgramLen)
 				;
 		mainCmd.addSubCommand(morphFailureAnalysis);
+
+		// Compile the linguistic data into a binary snapshot
+		SubCommand compileLingData = 
+				new CmdCompileLinguisticData("compile_ling_data")
+				.addOption(optDataFile)
+				;
+		mainCmd.addSubCommand(compileLingData);
 				
 				
 		return mainCmd;
@@ -39,6 +39,7 @@ public abstract class ConsoleCommand extends SubCommand {
 	public static final String OPT_EXCLUDE = "exclude";
 	public static final String OPT_PIPELINE = "pipeline";
 	public static final String OPT_TIMEOUT_SECS = "timeout-secs";
+	public static final String OPT_THREADS = "threads";
 
 	public ConsoleCommand(String name) {
 		super(name);
@@ -229,6 +230,20 @@ public abstract class ConsoleCommand extends SubCommand {
 		return timeoutMSecs;
 	}
 	
+	protected Integer getNumThreads() {
+		String threadsStr = getOptionValue(ConsoleCommand.OPT_THREADS, false);
+		Integer numThreads = null;
+		try {
+			if (threadsStr != null) {
+				numThreads = Integer.parseInt(threadsStr);
+			}
+		} catch (Exception e) {
+			usageBadOption(ConsoleCommand.OPT_THREADS, 
+				"Value must be an integer");
+		}
+		return numThreads;
+	}
+	
 	protected String getMorpheme() {
 		return getMorpheme(true);
 	}
@@ -24,13 +24,19 @@
 
 package ca.inuktitutcomputing.data;
 
+import java.io.Serializable;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
+import ca.inuktitutcomputing.data.constraints.Condition;
+import ca.inuktitutcomputing.data.constraints.ConditionCache;
+import ca.inuktitutcomputing.data.constraints.ParseException;
+import ca.inuktitutcomputing.data.constraints.TokenMgrError;
 import ca.inuktitutcomputing.script.Orthography;
 import ca.inuktitutcomputing.script.Roman;
 
-public abstract class Action {
+public abstract class Action implements Serializable {
+	private static final long serialVersionUID = 1L;
 	static public int NULLACTION = 0;
 	static public int INSERTION = 1;
 	static public int SPECIFICDELETION = 2;
@@ -55,6 +61,7 @@ public abstract class Action {
 	public int type;
 	String strng;
 	public int rank = 0;
+	protected Condition parsedCondition = null;
 
 	static public Action makeAction() {
 	    return null;
@@ -123,10 +130,37 @@ public abstract class Action {
 		if (action != null) {
 		    action.strng = strng;
 	        action.type = action.getType();
+	        action.preParseCondition();
         }
 		return action;
 	}
 	
+	/*
+	 * Analyse de la condition de l'action au moment du chargement des
+	 * données linguistiques. Certaines conditions (suppression conditionnelle)
+	 * sont des expressions régulières plutôt que des conditions Imacond; 
+	 * elles ne sont pas analysées.
+	 */
+	private void preParseCondition() {
+		if (getCondition() != null) {
+			try {
+				getParsedCondition();
+			} catch (ParseException | TokenMgrError e) {
+			}
+		}
+	}
+	
+	/*
+	 * Condition de l'action sous forme d'objet Condition. L'objet est partagé
+	 * (voir ConditionCache) et ne doit pas être modifié.
+	 */
+	public Condition getParsedCondition() throws ParseException {
+		if (parsedCondition == null && getCondition() != null) {
+			parsedCondition = ConditionCache.parse(getCondition());
+		}
+		return parsedCondition;
+	}
+	
 //	abstract String[] finalRadInitAff(String c, String f);
 	
 	abstract public String surfaceForm(String form);
@@ -204,6 +238,7 @@ public abstract class Action {
 	 * NEUTRAL
 	 */
 	static class Neutral extends Action implements Cloneable {
+		private static final long serialVersionUID = 1L;
 
         static public final int type = NEUTRAL;
         static public final String expressionAng = "the neutral action";
@@ -328,6 +363,7 @@ public abstract class Action {
      * DELETION
      */
     static class Suppression extends Action implements Cloneable {
+        private static final long serialVersionUID = 1L;
 
         static public final int type = DELETION;
         static public final String expressionAng = "the deletion";
@@ -461,6 +497,7 @@ public abstract class Action {
 	 * NULLACTION
 	 */
 	static class NullAction extends Action implements Cloneable {
+		private static final long serialVersionUID = 1L;
 
         static public final int type = NULLACTION;
 
@@ -515,6 +552,7 @@ public abstract class Action {
 	 * UNKNOWN
 	 */
 	static class Unknow extends Action implements Cloneable {
+		private static final long serialVersionUID = 1L;
 
         static public final int type = UNKNOWN;
         
@@ -577,6 +615,7 @@ public abstract class Action {
      * certains dialectes seulement: _tpagiq > _ppagiq
      */
 	static class Assimilation extends Action implements Cloneable {
+		private static final long serialVersionUID = 1L;
 
         static public final int type = ASSIMILATION;
         static public final String expressionAng = "the assimilation";
@@ -650,6 +689,7 @@ public abstract class Action {
      * corriger cela dans la base de donn�es.
      */
 	static class SpecificAssimilation extends Action implements Cloneable {
+		private static final long serialVersionUID = 1L;
 
         static public final int type = SPECIFICASSIMILATION;
         static public final String expressionAng = "the assimilation";
@@ -722,6 +762,7 @@ public abstract class Action {
 	 * FUSION
 	 */
 	static class Fusion extends Action implements Cloneable {
+		private static final long serialVersionUID = 1L;
 
         static final public int type = FUSION;
         static public final String expressionAng = "the fusion";
@@ -782,6 +823,7 @@ public abstract class Action {
 	 * VOICING
 	 */
 	static public class Voicing extends Action implements Cloneable {
+		private static final long serialVersionUID = 1L;
 
         static public final int type = VOICING;
         static public final String expressionAng = "the voicing";
@@ -869,6 +911,7 @@ public abstract class Action {
 	 * NASALIZATION
 	 */
 	static public class Nasalization extends Action implements Cloneable {
+		private static final long serialVersionUID = 1L;
 
         static public final int type = NASALIZATION;
         static public final String expressionAng = "the nasalization";
@@ -955,6 +998,7 @@ public abstract class Action {
 	 * generate action objects for actYes and actNo)
 	 */
 	static class ConditionalNasalization extends Action implements Cloneable {
+		private static final long serialVersionUID = 1L;
 
         static public final int type = CONDITIONALNASALIZATION;
         static public final String expressionAng = "the nasalization";
@@ -1032,6 +1076,7 @@ public abstract class Action {
 	 * vowels is deleted if it is the specified vowel.
 	 */
 	static class SpecificSuppression extends Action implements Cloneable {
+		private static final long serialVersionUID = 1L;
 
         static final public int type = SPECIFICDELETION;
         static public final String expressionAng = "the deletion";
@@ -1123,6 +1168,7 @@ public abstract class Action {
      * chez quelques terminaisons nominales.
      */
 	static class ConditionalSuppression extends Action implements Cloneable {
+		private static final long serialVersionUID = 1L;
 
         static final public int type = CONDITIONALDELETION;
         static public final String expressionAng = "the deletion";
@@ -1195,6 +1241,7 @@ public abstract class Action {
 	 * INSERTION
 	 */
 	static class Insertion extends Action implements Cloneable {
+		private static final long serialVersionUID = 1L;
 
         static final public int type = INSERTION;
         static public final String expressionAng = "the insertion";
@@ -1282,6 +1329,7 @@ public abstract class Action {
      * Tr�s peu fr�quente.  Seulement en action1.
      */
 	static class SuppressionAndInsertion extends Action implements Cloneable {
+		private static final long serialVersionUID = 1L;
 
         static final public int type = DELETIONINSERTION;
         static public final String expressionAng = "the deletion";
@@ -1364,6 +1412,7 @@ public abstract class Action {
 	 * can happen only as a first action in V context
 	 */
 	static class VowelLengthening extends Action implements Cloneable {
+		private static final long serialVersionUID = 1L;
 
         static public final int type = VOWELLENGTHENING;
         static public final String expressionAng = "the lengthening";
@@ -1426,6 +1475,7 @@ public abstract class Action {
 	 * CANCELLATION
 	 */
 	static class Cancellation extends Action implements Cloneable {
+		private static final long serialVersionUID = 1L;
 
         static public final int type = CANCELLATION;
         
@@ -1482,6 +1532,7 @@ public abstract class Action {
 	 * resultant stem ends in 2 vowels
 	 */
 	static class Selfdecapitation extends Action implements Cloneable {
+		private static final long serialVersionUID = 1L;
 
         static public final int type = SELFDECAPITATION;
         static public final String expressionAng = "the self-decapitation ";
@@ -1539,6 +1590,7 @@ public abstract class Action {
 	 * happens only in T context as first action
 	 */
 	static class InsertionAndVowelLengthening extends Action implements Cloneable {
+		private static final long serialVersionUID = 1L;
 
         static final public int type = INSERTIONVOWELLENGTHENING;
         static public final String expressionAng = "the insertion and lengthening";
@@ -1617,6 +1669,7 @@ public abstract class Action {
 	 * DELETION AND VOWEL LENGTHNENING
 	 */
 	static class SuppressionAndVowelLengthening extends Action implements Cloneable {
+		private static final long serialVersionUID = 1L;
 
         static public final int type = DELETIONVOWELLENGTHENING;
         static public final String expressionAng = "the deletion and the lengthening";
@@ -35,6 +35,7 @@ import ca.inuktitutcomputing.data.constraints.Condition;
 import ca.inuktitutcomputing.data.constraints.Conditions;
 
 public abstract class Affix extends Morpheme {
+	private static final long serialVersionUID = 1L;
 	//
 	String function = null;
 	String position = null;
@@ -0,0 +1,166 @@
+package ca.inuktitutcomputing.data;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Vector;
+
+/**
+ * Trie of the surface forms of all affixes, keyed on the REVERSED
+ * (simplified orthography) form.
+ *
+ * The morphological analyzer looks for affixes at the end of a term,
+ * moving one character to the left at a time. Instead of building the
+ * substring for every cut point and looking it up in the
+ * surfaceFormsOfAffixes hashtable, a single right-to-left walk through this
+ * trie yields the affix forms for every cut point of the term at once.
+ *
+ * The forms that are a term followed by one of several endings (ex: a
+ * missing final consonant) branch at the first character of the reversed
+ * form, so they are looked up in a second trie keyed on the forms read from
+ * left to right (a LexiconTrie): it walks down the term once, then probes
+ * the children of its last node for each ending.
+ */
+public class AffixSurfaceFormsTrie {
+
+	private static class Node {
+		Map<Character,Node> children = null;
+		Vector<SurfaceFormOfAffix> forms = null;
+
+		Node child(char ch) {
+			if (children == null) {
+				return null;
+			}
+			return children.get(ch);
+		}
+
+		Node ensureChild(char ch) {
+			if (children == null) {
+				children = new HashMap<Character,Node>();
+			}
+			Node child = children.get(ch);
+			if (child == null) {
+				child = new Node();
+				children.put(ch, child);
+			}
+			return child;
+		}
+	}
+
+	private Node root = new Node();
+
+	private LexiconTrie<SurfaceFormOfAffix> formsFromLeft = null;
+
+	/**
+	 * Build the trie from a table of surface forms (in simplified orthography)
+	 * to the SurfaceFormOfAffix objects that have that form.
+	 */
+	public AffixSurfaceFormsTrie(Map<String,Vector<SurfaceFormOfAffix>> formsTable) {
+		for (Map.Entry<String,Vector<SurfaceFormOfAffix>> entry: formsTable.entrySet()) {
+			add(entry.getKey(), entry.getValue());
+		}
+		formsFromLeft = new LexiconTrie<SurfaceFormOfAffix>(formsTable);
+	}
+
+	private void add(String simplifiedForm, Vector<SurfaceFormOfAffix> forms) {
+		Node node = root;
+		for (int ii=simplifiedForm.length()-1; ii >= 0; ii--) {
+			node = node.ensureChild(simplifiedForm.charAt(ii));
+		}
+		node.forms = forms;
+	}
+
+	/**
+	 * Find the affix forms that match the end of a term, for every possible
+	 * cut point.
+	 *
+	 * @param term Term in simplified orthography
+	 * @return Array of the same length as the term. Element [pos] contains
+	 *    the forms whose surface form is term.substring(pos), or null if
+	 *    there are none.
+	 */
+	public Vector<SurfaceFormOfAffix>[] formsEndingTerm(String term) {
+		Vector<SurfaceFormOfAffix>[] formsAtPos = newFormsArray(term.length());
+		collectFromNode(root, term, term.length()-1, formsAtPos);
+		return formsAtPos;
+	}
+
+	/**
+	 * Same as formsEndingTerm(String), except that the last character of
+	 * the term is a wildcard that can stand for any of the given
+	 * characters (ex: a missing final consonant marked with '*').
+	 *
+	 * For every cut point, the forms are returned in the order of
+	 * the wildcard replacements.
+	 */
+	public Vector<SurfaceFormOfAffix>[] formsEndingTerm(String term,
+			String[] wildcardReplacements) {
+		Vector<SurfaceFormOfAffix>[] formsAtPos = newFormsArray(term.length());
+		int lastPos = term.length() - 1;
+		if (lastPos < 0) {
+			return formsAtPos;
+		}
+		for (String replacement: wildcardReplacements) {
+			// Walk the replacement backwards, then continue with the term
+			// that precedes the wildcard.
+			Node node = root;
+			for (int ii=replacement.length()-1; ii >= 0 && node != null; ii--) {
+				node = node.child(replacement.charAt(ii));
+			}
+			if (node == null) {
+				continue;
+			}
+			addForms(formsAtPos, lastPos, node.forms, true);
+			collectFromNode(node, term, lastPos-1, formsAtPos, true);
+		}
+		return formsAtPos;
+	}
+
+	/**
+	 * Find the affix forms that are a term followed by any of the given
+	 * endings (ex: the consonants that may have been dropped at the end
+	 * of a word).
+	 *
+	 * @param term Term in simplified orthography, without the ending
+	 * @return The forms, in the order of the endings, or null if there
+	 *    are none.
+	 */
+	public Vector<SurfaceFormOfAffix> formsWithAnyEnding(String term,
+			String[] endings) {
+		return formsFromLeft.getWithAnyEnding(term, endings);
+	}
+
+	private void collectFromNode(Node node, String term, int fromPos,
+			Vector<SurfaceFormOfAffix>[] formsAtPos) {
+		collectFromNode(node, term, fromPos, formsAtPos, false);
+	}
+
+	private void collectFromNode(Node node, String term, int fromPos,
+			Vector<SurfaceFormOfAffix>[] formsAtPos, boolean merge) {
+		for (int pos=fromPos; pos >= 0 && node != null; pos--) {
+			node = node.child(term.charAt(pos));
+			if (node != null) {
+				addForms(formsAtPos, pos, node.forms, merge);
+			}
+		}
+	}
+
+	private void addForms(Vector<SurfaceFormOfAffix>[] formsAtPos, int pos,
+			Vector<SurfaceFormOfAffix> forms, boolean merge) {
+		if (forms == null) {
+			return;
+		}
+		if (!merge) {
+			formsAtPos[pos] = forms;
+		} else {
+			if (formsAtPos[pos] == null) {
+				formsAtPos[pos] = new Vector<SurfaceFormOfAffix>();
+			}
+			formsAtPos[pos].addAll(forms);
+		}
+	}
+
+	@SuppressWarnings("unchecked")
+	private static Vector<SurfaceFormOfAffix>[] newFormsArray(int length) {
+		return (Vector<SurfaceFormOfAffix>[]) new Vector[length];
+	}
+}
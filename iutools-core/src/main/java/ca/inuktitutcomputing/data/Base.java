@@ -21,7 +21,6 @@
 
 package ca.inuktitutcomputing.data;
 
-import java.io.ByteArrayInputStream;
 import java.util.HashMap;
 import java.util.Hashtable;
 import java.util.Map;
@@ -32,11 +31,12 @@ import java.util.regex.Pattern;
 
 import ca.inuktitutcomputing.utilities1.Util;
 import ca.inuktitutcomputing.data.constraints.Conditions;
-import ca.inuktitutcomputing.data.constraints.Imacond;
+import ca.inuktitutcomputing.data.constraints.ConditionCache;
 import ca.inuktitutcomputing.data.constraints.ParseException;
 import ca.inuktitutcomputing.data.VerbWord;
 
 public class Base extends Morpheme {
+	private static final long serialVersionUID = 1L;
 	//
     String variant = null;
     // originalMorpheme:
@@ -102,8 +102,7 @@ public class Base extends Morpheme {
 		String cs = v.get("condOnNext");
         if (cs != null && !cs.equals(""))
             try {
-                nextCondition = (Conditions) new Imacond(
-                        new ByteArrayInputStream(cs.getBytes())).ParseCondition();
+                nextCondition = (Conditions) ConditionCache.parse(cs);
             } catch (ParseException e) {
             }
 
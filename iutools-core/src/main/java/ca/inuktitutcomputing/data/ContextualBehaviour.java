@@ -1,8 +1,10 @@
 package ca.inuktitutcomputing.data;
 
+import java.io.Serializable;
 import java.util.Set;
 
-public class ContextualBehaviour {
+public class ContextualBehaviour implements Serializable {
+	private static final long serialVersionUID = 1L;
 	
 	/*
 	 * context: last character of stem: V (any vowel), t, k, q
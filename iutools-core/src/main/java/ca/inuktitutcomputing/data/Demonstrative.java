@@ -11,6 +11,7 @@ import java.util.HashMap;
 import java.util.Hashtable;
 
 public class Demonstrative extends Base {
+	private static final long serialVersionUID = 1L;
 	//
 	String root;
 	String objectType;
@@ -13,6 +13,7 @@ import java.util.Hashtable;
 import ca.inuktitutcomputing.utilities.Debugging;
 
 public class DemonstrativeEnding extends Affix {
+	private static final long serialVersionUID = 1L;
 	//
 	String grammCase;
 	String number;
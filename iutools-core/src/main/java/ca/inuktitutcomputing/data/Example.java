@@ -49,10 +49,12 @@
 
 package ca.inuktitutcomputing.data;
 
+import java.io.Serializable;
 import java.util.*;
 
 
-public class Example {
+public class Example implements Serializable {
+	private static final long serialVersionUID = 1L;
     public String term;
     public String nb;
     public String termExSyl;
@@ -1,6 +1,7 @@
 package ca.inuktitutcomputing.data;
 
 public class Inchoative extends Suffix {
+	private static final long serialVersionUID = 1L;
 	//
     private static String morph = "#incho#";
     //
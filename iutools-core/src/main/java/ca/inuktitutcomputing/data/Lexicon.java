@@ -26,6 +26,7 @@ package ca.inuktitutcomputing.data;
 
 import java.util.*;
 
+import ca.inuktitutcomputing.script.Orthography;
 import ca.inuktitutcomputing.script.Syllabics;
 
 public class Lexicon {
@@ -44,6 +45,45 @@ public class Lexicon {
         return formsFound;
     }
 
+    /**
+     * Looks for the affix forms that end a term, at every possible cut point
+     * of the term, in a single right-to-left scan. Element [pos] of the
+     * returned array contains the forms for term.substring(pos), or null.
+     * If the term ends with '*', that character stands for any of the
+     * consonants that may have been dropped at the end of the word.
+     * @param term String string in simplified orthography
+     * @throws LinguisticDataException 
+     */
+    static public Vector<SurfaceFormOfAffix>[] lookForFormsAtEveryPosition(String term) throws LinguisticDataException {
+        AffixSurfaceFormsTrie trie = LinguisticData.getInstance().getAffixSurfaceFormsTrie();
+        Vector<SurfaceFormOfAffix>[] formsFound;
+        if (term.endsWith("*")) {
+            formsFound = trie.formsEndingTerm(term, consonants);
+        } else {
+            formsFound = trie.formsEndingTerm(term);
+        }
+        return formsFound;
+    }
+
+    /**
+     * Looks for the affix forms that are the term followed by any of the
+     * consonants that may have been dropped at the end of the word, in a
+     * single walk down the term.
+     * @param termWithoutStar String the term, without the '*' that marks
+     *    the missing consonant
+     * @return Vector<SurfaceFormOfAffix> the forms, in the order of the
+     *    consonants, or null
+     */
+    static public Vector<SurfaceFormOfAffix> lookForFormsWithAnyFinalConsonant(
+    		String termWithoutStar, boolean syllabic) throws LinguisticDataException {
+    	String[] cons = syllabic ? consonantsSyl : consonants;
+    	// None of the consonants is affected by the simplification of the
+    	// spelling, so the term can be simplified on its own.
+    	String simplifiedTerm = Orthography.simplifiedOrthographyLat(termWithoutStar);
+        return LinguisticData.getInstance().getAffixSurfaceFormsTrie()
+        		.formsWithAnyEnding(simplifiedTerm, cons);
+    }
+
     /**
      * Returns a Vector of Morpheme (Base and Demonstrative) objects, or null.
      * @param term String string in the ICI (Inuit Cultural Institute) standard
@@ -58,4 +98,36 @@ public class Lexicon {
         return basesFound;
     }
 
+    /**
+     * Looks for the bases whose form is the term followed by any of the
+     * consonants that may have been dropped at the end of the word, in a
+     * single walk down the term.
+     * @param termWithoutStar String the term, without the '*' that marks
+     *    the missing consonant
+     * @return Vector<Morpheme> the bases, in the order of the consonants, 
+     *    or null
+     */
+    static public Vector<Morpheme> lookForBaseWithAnyFinalConsonant(
+    		String termWithoutStar, boolean syllabic) throws LinguisticDataException {
+    	Vector<Morpheme> basesFound = null;
+    	if (syllabic) {
+    		// The transcoding of a syllabic consonant depends on what 
+    		// precedes it, so each form has to be transcoded as a whole.
+    		for (String cons: consonantsSyl) {
+    			Vector<Morpheme> basesForCons = lookForBase(termWithoutStar+cons, syllabic);
+    			if (basesForCons != null) {
+    				if (basesFound == null)
+    					basesFound = new Vector<Morpheme>();
+    				basesFound.addAll(basesForCons);
+    			}
+    		}
+    		if (basesFound != null && basesFound.size() == 0)
+    			basesFound = null;
+    	} else {
+    		basesFound = LinguisticData.getInstance().getBasesTrie()
+    				.getWithAnyEnding(termWithoutStar, consonants);
+    	}
+        return basesFound;
+    }
+
 }
\ No newline at end of file
@@ -0,0 +1,143 @@
+package ca.inuktitutcomputing.data;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Vector;
+
+/**
+ * Compact character trie of the entries of a lexicon table (ex: canonical
+ * forms of roots, or surface forms of affixes), keyed on the form read
+ * from left to right.
+ *
+ * When the end of a word may have lost its final consonant (the analyzer
+ * marks such terms with a trailing '*'), the analyzer needs all the entries
+ * whose form is the term followed by any one of the consonants that may
+ * have been dropped. Instead of building a string and probing the table
+ * once per consonant, the trie walks down the term once and then probes
+ * the children of the last node for each consonant.
+ *
+ * The children of a node are kept in a sorted array of characters (with a
+ * parallel array of nodes) rather than in a map, to keep the trie small.
+ */
+public class LexiconTrie<T> {
+
+	private static final char[] NO_CHARS = new char[0];
+
+	private static class Node<T> {
+		char[] chars = NO_CHARS;
+		Node<T>[] children = null;
+		Vector<T> entries = null;
+
+		Node<T> child(char ch) {
+			int pos = Arrays.binarySearch(chars, ch);
+			return (pos < 0 ? null : children[pos]);
+		}
+
+		@SuppressWarnings("unchecked")
+		Node<T> ensureChild(char ch) {
+			int pos = Arrays.binarySearch(chars, ch);
+			if (pos >= 0) {
+				return children[pos];
+			}
+			int insertAt = -(pos + 1);
+			char[] newChars = new char[chars.length+1];
+			Node<T>[] newChildren = new Node[chars.length+1];
+			System.arraycopy(chars, 0, newChars, 0, insertAt);
+			System.arraycopy(chars, insertAt, newChars, insertAt+1, chars.length-insertAt);
+			if (children != null) {
+				System.arraycopy(children, 0, newChildren, 0, insertAt);
+				System.arraycopy(children, insertAt, newChildren, insertAt+1, chars.length-insertAt);
+			}
+			Node<T> child = new Node<T>();
+			newChars[insertAt] = ch;
+			newChildren[insertAt] = child;
+			chars = newChars;
+			children = newChildren;
+			return child;
+		}
+	}
+
+	private Node<T> root = new Node<T>();
+
+	/**
+	 * Build the trie from a table of forms to the entries that have that
+	 * form. The Vectors of the table are shared with the trie, not copied.
+	 */
+	public LexiconTrie(Map<String,? extends Vector<T>> table) {
+		for (Map.Entry<String,? extends Vector<T>> entry: table.entrySet()) {
+			add(entry.getKey(), entry.getValue());
+		}
+	}
+
+	private void add(String form, Vector<T> entries) {
+		Node<T> node = root;
+		for (int ii=0; ii < form.length(); ii++) {
+			node = node.ensureChild(form.charAt(ii));
+		}
+		node.entries = entries;
+	}
+
+	/**
+	 * @return The entries with the given form, or null if there are none.
+	 */
+	public Vector<T> get(String form) {
+		Node<T> node = nodeFor(form, root);
+		return (node == null ? null : node.entries);
+	}
+
+	/**
+	 * Find the entries whose form is the prefix followed by any one of the
+	 * given endings.
+	 *
+	 * @return The entries, in the order of the endings, or null if there
+	 *    are none.
+	 */
+	public Vector<T> getWithAnyEnding(String prefix, String[] endings) {
+		Vector<T> found = null;
+		Node<T> prefixNode = nodeFor(prefix, root);
+		if (prefixNode != null) {
+			for (String ending: endings) {
+				Node<T> node = nodeFor(ending, prefixNode);
+				if (node != null && node.entries != null && !node.entries.isEmpty()) {
+					if (found == null) {
+						found = new Vector<T>();
+					}
+					found.addAll(node.entries);
+				}
+			}
+		}
+		return found;
+	}
+
+	/**
+	 * Find the entries whose form starts at the given position of the term,
+	 * for every length of form, in a single walk down the term.
+	 *
+	 * @return For each length of form (from 0 to the number of characters
+	 *    left in the term), the entries with that form, or null if there
+	 *    are none.
+	 */
+	@SuppressWarnings("unchecked")
+	public Vector<T>[] getForEveryPrefix(String term, int start) {
+		Vector<T>[] found = new Vector[term.length() - start + 1];
+		Node<T> node = root;
+		for (int len=0; node != null; len++) {
+			if (node.entries != null && !node.entries.isEmpty()) {
+				found[len] = node.entries;
+			}
+			if (start + len == term.length()) {
+				break;
+			}
+			node = node.child(term.charAt(start + len));
+		}
+		return found;
+	}
+
+	private Node<T> nodeFor(String chars, Node<T> from) {
+		Node<T> node = from;
+		for (int ii=0; ii < chars.length() && node != null; ii++) {
+			node = node.child(chars.charAt(ii));
+		}
+		return node;
+	}
+}
@@ -4,10 +4,12 @@ import java.io.BufferedReader;
 import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.UnsupportedEncodingException;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Enumeration;
 import java.util.HashMap;
 import java.util.Hashtable;
+import java.util.List;
 import java.util.Map;
 import java.util.Vector;
 
@@ -30,22 +32,42 @@ public class LinguisticData {
     protected Hashtable<String,Vector<Morpheme>> morphemesForCanonicalForm = new Hashtable<String,Vector<Morpheme>>();
     protected Hashtable<String,Base> idToBaseTable = new Hashtable<String,Base>();
     protected Hashtable<String,Affix> idToAffixTable = new Hashtable<String,Affix>();
+    // Dense int id of each morpheme (see Morpheme.intId): the morpheme with 
+    // int id i is morphemesByIntId.get(i).
+    protected Vector<Morpheme> morphemesByIntId = new Vector<Morpheme>();
+    protected Map<String,Integer> intIdOfMorphemeId = new HashMap<String,Integer>();
     protected Hashtable<String,VerbWord> words = new Hashtable<String,VerbWord>();
     protected Hashtable<String,Source> sources = new Hashtable<String,Source>();
     protected Hashtable<String,Vector<Example>> examples = new Hashtable<String,Vector<Example>>();
     protected Hashtable<String,String[]> textualRenderings = new Hashtable<String,String[]>();
     protected Hashtable<String,Vector<SurfaceFormOfAffix>> surfaceFormsOfAffixes = new Hashtable<String,Vector<SurfaceFormOfAffix>>();
     protected Hashtable<Character,Vector<String>> groupsOfConsonants = new Hashtable<Character,Vector<String>>();
+    protected AffixSurfaceFormsTrie affixSurfaceFormsTrie = null;
+    protected LexiconTrie<Morpheme> basesTrie = null;
 
     static public void init() {
     	singleton = null;
     }
     public static synchronized LinguisticData getInstance() {
+    	return getInstance(true);
+    }
+
+    /**
+     * @param useSnapshot If true, the data is read from the compiled snapshot
+     *    (see LinguisticDataSnapshot) when there is an up to date one.
+     *    Otherwise, or if the snapshot is missing or stale, it is loaded
+     *    from the CSV tables.
+     */
+    public static synchronized LinguisticData getInstance(boolean useSnapshot) {
     	if (singleton == null) {
     		singleton = new LinguisticData();
     		try {
-				LinguisticDataCSV.createLinguisticDataCSV(null);
-		        singleton.makeGroupsOfConsonants();
+    			if (!useSnapshot || !LinguisticDataSnapshot.load(singleton)) {
+    				LinguisticDataCSV.createLinguisticDataCSV(null);
+    				singleton.makeGroupsOfConsonants();
+    			}
+    			// The tries of the forms of morphemes are built the first
+    			// time they are needed (see getAffixSurfaceFormsTrie() etc.)
 			} catch (LinguisticDataException e) {
 				e.printStackTrace();
 				System.exit(1);
@@ -70,6 +92,12 @@ public class LinguisticData {
     	
     	basesForCanonicalForm.get(canonicalForm).add(base);
     	morphemesForCanonicalForm.get(canonicalForm).add((Morpheme)base);
+    	basesTrie = null;
+    	// Les variantes d'une racine ont le même identificateur que la racine
+    	// et donc le même identificateur entier.
+    	base.intId = intIdFor(base.id);
+    	if (morphemesByIntId.get(base.intId) == null)
+    		morphemesByIntId.set(base.intId, base);
     }
     
     public Vector<Morpheme> getBasesForCanonicalForm(String canonicalForm) {
@@ -103,6 +131,7 @@ public class LinguisticData {
     //--------------------------------------------------------------------------
 	public void addEntryToIdToBaseTable(String baseId, Base baseObject) {
 		idToBaseTable.put(baseId, baseObject);
+		assignIntId(baseObject);
 	}
 	
     public Base getBaseWithId(String morphId) {
@@ -145,6 +174,7 @@ public class LinguisticData {
     //--------------------------------------------------------------------------
 	public void addEntryToIdToAffixTable(String affixId, Affix affixObject) {
 		idToAffixTable.put(affixId, affixObject);
+		assignIntId(affixObject);
 	}
 	
     public Affix getAffixWithId(String uniqueId) {
@@ -160,6 +190,74 @@ public class LinguisticData {
     public Hashtable<String, Affix>getIdToAffixTable() {
     	return idToAffixTable;
     }
+
+    //--------------------------------------------------------------------------
+    /*
+     * Chaque identificateur de morphème reçoit un identificateur entier 
+     * dense (0, 1, 2...), ce qui permet de représenter une décomposition par
+     * un tableau d'entiers (voir CompactDecomposition). Les objets qui ont 
+     * le même identificateur (une racine et ses variantes, ou un affixe qui
+     * en remplace un autre dans les tables) ont le même entier; l'entier 
+     * désigne l'objet qui est dans la table des identificateurs.
+     */
+    private void assignIntId(Morpheme morph) {
+    	morph.intId = intIdFor(morph.id);
+    	morphemesByIntId.set(morph.intId, morph);
+    }
+
+    private int intIdFor(String morphId) {
+    	Integer intId = intIdOfMorphemeId.get(morphId);
+    	if (intId == null) {
+    		intId = morphemesByIntId.size();
+    		intIdOfMorphemeId.put(morphId, intId);
+    		morphemesByIntId.add(null);
+    	}
+    	return intId;
+    }
+
+    /*
+     * Reconstruit l'index des identificateurs entiers à partir des morphèmes
+     * des tables (qui ont déjà leur identificateur entier), par exemple après
+     * la lecture de l'instantané des données (LinguisticDataSnapshot).
+     */
+    void indexMorphemesByIntId() {
+    	morphemesByIntId = new Vector<Morpheme>();
+    	intIdOfMorphemeId = new HashMap<String,Integer>();
+    	List<Morpheme> morphs = new ArrayList<Morpheme>(idToBaseTable.values());
+    	morphs.addAll(idToAffixTable.values());
+    	for (Vector<Base> bases: basesForCanonicalForm.values()) {
+    		morphs.addAll(bases);
+    	}
+    	for (Morpheme morph: morphs) {
+    		if (morph.intId >= morphemesByIntId.size()) {
+    			morphemesByIntId.setSize(morph.intId+1);
+    		}
+    		if (morphemesByIntId.get(morph.intId) == null) {
+    			morphemesByIntId.set(morph.intId, morph);
+    		}
+    		intIdOfMorphemeId.put(morph.id, morph.intId);
+    	}
+    }
+
+    public Morpheme getMorphemeWithIntId(int intId) {
+    	Morpheme morph = null;
+    	if (intId >= 0 && intId < morphemesByIntId.size())
+    		morph = morphemesByIntId.get(intId);
+    	return morph;
+    }
+
+    /**
+     * @return The int id of the morpheme with the given id, or -1 if there
+     *    is no such morpheme.
+     */
+    public int intIdOf(String morphId) {
+    	Integer intId = intIdOfMorphemeId.get(morphId);
+    	return (intId == null ? -1 : intId);
+    }
+
+    public int getNbMorphemeIntIds() {
+    	return morphemesByIntId.size();
+    }
     
     public String[] getAllAffixesIds() {
     	return (String[])idToAffixTable.keySet().toArray(new String[0]);
@@ -177,6 +275,7 @@ public class LinguisticData {
 //		if (surfaceFormsOfAffixes.containsKey(simplifiedForm)) 
 //			throw new RuntimeException("Key already exists in linguistic data hash");
 		surfaceFormsOfAffixes.put(simplifiedForm, v);
+		affixSurfaceFormsTrie = null;
     }
 
     public Hashtable<String,Vector<SurfaceFormOfAffix>> getFormToSurfaceFormsOfAffixesTable() {
@@ -189,6 +288,30 @@ public class LinguisticData {
         return surfaceFormsOfAffixes.get(simplifiedForm);
     }
     
+    /**
+     * Reversed trie of the surface forms of affixes. It is built from
+     * the 'surfaceFormsOfAffixes' table the first time it is requested, and
+     * rebuilt whenever a new surface form is added to that table.
+     */
+    public synchronized AffixSurfaceFormsTrie getAffixSurfaceFormsTrie() {
+    	if (affixSurfaceFormsTrie == null) {
+    		affixSurfaceFormsTrie = new AffixSurfaceFormsTrie(surfaceFormsOfAffixes);
+    	}
+    	return affixSurfaceFormsTrie;
+    }
+
+    /**
+     * Trie of the canonical forms of bases (see getBasesForCanonicalForm).
+     * Like the trie of affix surface forms, it is built the first time it
+     * is requested and rebuilt whenever a base is added.
+     */
+    public synchronized LexiconTrie<Morpheme> getBasesTrie() {
+    	if (basesTrie == null) {
+    		basesTrie = new LexiconTrie<Morpheme>(morphemesForCanonicalForm);
+    	}
+    	return basesTrie;
+    }
+
     public SurfaceFormOfAffix getForm(String morph) {
     	return (SurfaceFormOfAffix)getSurfaceForms(morph).elementAt(0);
     }
@@ -377,10 +500,14 @@ public class LinguisticData {
 	    examples = new Hashtable<String,Vector<Example>>();
 	    textualRenderings = new Hashtable<String,String[]>();
 	    surfaceFormsOfAffixes = new Hashtable<String,Vector<SurfaceFormOfAffix>>();
+	    affixSurfaceFormsTrie = null;
+	    basesTrie = null;
 		basesForCanonicalForm = new Hashtable<String,Vector<Base>>();
 	    morphemesForCanonicalForm = new Hashtable<String,Vector<Morpheme>>();
 	    idToBaseTable = new Hashtable<String,Base>();
 	    idToAffixTable = new Hashtable<String,Affix>();
+	    morphemesByIntId = new Vector<Morpheme>();
+	    intIdOfMorphemeId = new HashMap<String,Integer>();
 	    words = new Hashtable<String,VerbWord>();
 	    sources = new Hashtable<String,Source>();
 	    groupsOfConsonants = new Hashtable<Character,Vector<String>>();
@@ -6,4 +6,8 @@ public class LinguisticDataException extends Exception {
 		super(mess);
 	}
 
+	public LinguisticDataException(Exception e) {
+		super(e);
+	}
+
 }
@@ -0,0 +1,436 @@
+package ca.inuktitutcomputing.data;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InvalidClassException;
+import java.io.InvalidObjectException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamClass;
+import java.io.OutputStream;
+import java.net.JarURLConnection;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.net.URLConnection;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Hashtable;
+import java.util.Map;
+import java.util.Set;
+import java.util.Vector;
+import java.util.jar.JarEntry;
+import java.util.zip.CRC32;
+
+import org.apache.log4j.Logger;
+
+import ca.inuktitutcomputing.config.IUConfig;
+import ca.inuktitutcomputing.dataCSV.LinguisticDataCSV;
+import ca.nrc.config.ConfigException;
+import ca.nrc.file.ResourceGetter;
+
+/**
+ * Compiled (binary) snapshot of the LinguisticData.
+ *
+ * Loading the linguistic data from the CSV tables (see LinguisticDataCSV)
+ * means parsing every table, creating the Base and Affix objects, computing
+ * the surface forms of the affixes and parsing their conditions. A snapshot
+ * holds the result of all this work, so that it can be read back in one
+ * pass when the JVM starts.
+ *
+ * The snapshot starts with a header that contains the format version and a
+ * key of the CSV tables it was compiled from (their sizes and modification
+ * times, see keyOfCSVTables). If either one does not match the current code
+ * and data, the snapshot is stale and the linguistic data must be loaded
+ * from the CSV tables instead. The data classes have explicit
+ * serialVersionUIDs: a change to one of them that makes older snapshots
+ * unreadable must come with a new FORMAT_VERSION.
+ *
+ * Only the data classes, and the few JDK classes that hold them, can be
+ * read from a snapshot (see ALLOWED_CLASSES): since the snapshot file can
+ * come from the configuration, it is not trusted to contain anything else.
+ *
+ * A snapshot is compiled into the classes of iutools-core by the build
+ * (see main()), and with the 'compile_ling_data' console command. It is
+ * looked for at the path given by the 'ca.nrc.iutools.lingdata.snapshot'
+ * config property or, if that property is not set, as the resource
+ * DEFAULT_RESOURCE on the classpath.
+ */
+public class LinguisticDataSnapshot {
+
+	public static final String MAGIC = "IULDSNAP";
+	public static final int FORMAT_VERSION = 3;
+	public static final String DEFAULT_RESOURCE =
+		"ca/inuktitutcomputing/dataCSV/LinguisticData.snapshot";
+
+	/*
+	 * Classes that can be read from a snapshot, besides the data classes
+	 * themselves (those of the ca.inuktitutcomputing.data packages) and
+	 * arrays of any of them. Arrays of Object are also allowed, since the
+	 * collections hold their elements in one (ex: Vector.elementData), but
+	 * not instances of Object itself.
+	 */
+	private static final String DATA_PACKAGE = "ca.inuktitutcomputing.data.";
+	private static final Set<String> ALLOWED_CLASSES = new HashSet<String>(
+		Arrays.asList(new String[] {
+			"java.lang.String", "java.lang.Number", "java.lang.Integer",
+			"java.lang.Long", "java.lang.Boolean", "java.lang.Character",
+			"java.util.Vector", "java.util.Hashtable", "java.util.HashMap",
+			"java.util.LinkedHashMap", "java.util.ArrayList",
+			"java.util.HashSet"
+		}));
+
+	/**
+	 * Compile a snapshot of the linguistic data into the given file. Run by
+	 * the build of iutools-core, to put a snapshot on its classpath.
+	 */
+	public static void main(String[] args) throws Exception {
+		if (args.length != 1) {
+			System.err.println("Usage: LinguisticDataSnapshot snapshotFile");
+			System.exit(1);
+		}
+		File file = new File(args[0]);
+		file.getParentFile().mkdirs();
+		LinguisticData.init();
+		write(LinguisticData.getInstance(false), file);
+		LinguisticData.init();
+		System.out.println("Linguistic data snapshot written to "+file+
+			" ("+file.length()+" bytes)");
+	}
+
+	/**
+	 * Write a snapshot of the given linguistic data to file.
+	 */
+	public static void write(LinguisticData data, File file)
+			throws LinguisticDataException {
+		try (OutputStream out =
+				new BufferedOutputStream(new FileOutputStream(file))) {
+			write(data, out);
+		} catch (IOException e) {
+			throw new LinguisticDataException(e);
+		}
+	}
+
+	public static void write(LinguisticData data, OutputStream out)
+			throws LinguisticDataException {
+		try {
+			DataOutputStream header = new DataOutputStream(out);
+			header.writeUTF(MAGIC);
+			header.writeInt(FORMAT_VERSION);
+			header.writeLong(keyOfCSVTables());
+			header.flush();
+
+			// All tables are written through the same stream, so that an
+			// object referenced from several tables (ex: a Base that is both
+			// in idToBaseTable and in basesForCanonicalForm) is read back as
+			// a single object.
+			ObjectOutputStream objects = new SharedObjectsOutputStream(out);
+			objects.writeObject(data.basesForCanonicalForm);
+			objects.writeObject(data.morphemesForCanonicalForm);
+			objects.writeObject(data.idToBaseTable);
+			objects.writeObject(data.idToAffixTable);
+			objects.writeObject(data.words);
+			objects.writeObject(data.sources);
+			objects.writeObject(data.surfaceFormsOfAffixes);
+			objects.writeObject(data.groupsOfConsonants);
+			objects.flush();
+		} catch (IOException e) {
+			throw new LinguisticDataException(e);
+		}
+	}
+
+	/**
+	 * Read a snapshot into the given linguistic data.
+	 *
+	 * @return false if the snapshot is stale (compiled from different CSV
+	 *    tables or with a different version of the code), in which case the
+	 *    linguistic data is left untouched.
+	 */
+	public static boolean read(LinguisticData data, InputStream in)
+			throws LinguisticDataException {
+		Logger logger = Logger.getLogger("ca.inuktitutcomputing.data.LinguisticDataSnapshot.read");
+		try {
+			DataInputStream header = new DataInputStream(in);
+			if (!MAGIC.equals(header.readUTF())) {
+				throw new LinguisticDataException(
+					"Not a linguistic data snapshot");
+			}
+			int version = header.readInt();
+			if (version != FORMAT_VERSION) {
+				logger.warn("Snapshot has format version "+version+
+					" instead of "+FORMAT_VERSION);
+				return false;
+			}
+			long key = header.readLong();
+			if (key != keyOfCSVTables()) {
+				logger.warn("Snapshot was compiled from different CSV tables");
+				return false;
+			}
+
+			ObjectInputStream objects = new DataObjectInputStream(in);
+			Map<String,Vector<Base>> basesForCanonicalForm =
+				readObject(objects);
+			Hashtable<String,Vector<Morpheme>> morphemesForCanonicalForm =
+				readObject(objects);
+			Hashtable<String,Base> idToBaseTable = readObject(objects);
+			Hashtable<String,Affix> idToAffixTable = readObject(objects);
+			Hashtable<String,VerbWord> words = readObject(objects);
+			Hashtable<String,Source> sources = readObject(objects);
+			Hashtable<String,Vector<SurfaceFormOfAffix>> surfaceFormsOfAffixes =
+				readObject(objects);
+			Hashtable<Character,Vector<String>> groupsOfConsonants =
+				readObject(objects);
+
+			data.basesForCanonicalForm = basesForCanonicalForm;
+			data.morphemesForCanonicalForm = morphemesForCanonicalForm;
+			data.idToBaseTable = idToBaseTable;
+			data.idToAffixTable = idToAffixTable;
+			data.words = words;
+			data.sources = sources;
+			data.surfaceFormsOfAffixes = surfaceFormsOfAffixes;
+			data.groupsOfConsonants = groupsOfConsonants;
+			data.affixSurfaceFormsTrie = null;
+			data.basesTrie = null;
+			data.indexMorphemesByIntId();
+		} catch (InvalidClassException e) {
+			// One of the classes changed since the snapshot was compiled
+			logger.warn("Snapshot is out of date: "+e.getMessage());
+			return false;
+		} catch (IOException | ClassNotFoundException e) {
+			throw new LinguisticDataException(e);
+		}
+		return true;
+	}
+
+	/**
+	 * Load the snapshot (if there is one) into the given linguistic data.
+	 *
+	 * @return false if there is no snapshot, or if it is stale or cannot be
+	 *    read. The caller should then load the linguistic data from the CSV
+	 *    tables.
+	 */
+	public static boolean load(LinguisticData data) {
+		Logger logger = Logger.getLogger("ca.inuktitutcomputing.data.LinguisticDataSnapshot.load");
+		boolean loaded = false;
+		InputStream in = null;
+		try {
+			in = openSnapshot();
+			if (in != null) {
+				loaded = read(data, new BufferedInputStream(in));
+			}
+		} catch (LinguisticDataException | ConfigException e) {
+			logger.warn("Could not load the linguistic data snapshot: "+e.getMessage());
+		} finally {
+			if (in != null) {
+				try {
+					in.close();
+				} catch (IOException e) {
+				}
+			}
+		}
+		if (in != null && !loaded) {
+			logger.warn("Linguistic data snapshot not used; loading the CSV tables instead");
+		}
+		return loaded;
+	}
+
+	private static InputStream openSnapshot() throws ConfigException, LinguisticDataException {
+		InputStream in = null;
+		String path = IUConfig.getLinguisticDataSnapshotPath();
+		if (path != null) {
+			File file = new File(path);
+			if (file.exists()) {
+				try {
+					in = new FileInputStream(file);
+				} catch (IOException e) {
+					throw new LinguisticDataException(e);
+				}
+			}
+		} else {
+			in = LinguisticDataSnapshot.class.getClassLoader()
+					.getResourceAsStream(DEFAULT_RESOURCE);
+		}
+		return in;
+	}
+
+	/**
+	 * Key of the CSV tables that the linguistic data is loaded from, made
+	 * from the name, size and modification time of each table. It changes
+	 * whenever a table is edited or replaced, and unlike a checksum of their
+	 * contents, it is computed without reading the tables.
+	 */
+	public static long keyOfCSVTables() throws LinguisticDataException {
+		CRC32 key = new CRC32();
+		ClassLoader loader = LinguisticDataSnapshot.class.getClassLoader();
+		for (String[] table: LinguisticDataCSV.dataTables) {
+			String resource =
+				"ca/inuktitutcomputing/dataCSV/"+table[2]+".csv";
+			key.update(resource.getBytes());
+			URL url = loader.getResource(resource);
+			if (url == null) {
+				continue;
+			}
+			long[] sizeAndTime = sizeAndTimeOf(url);
+			key.update((":"+sizeAndTime[0]+":"+sizeAndTime[1]+";").getBytes());
+		}
+		return key.getValue();
+	}
+
+	/**
+	 * Checksum of the contents of the CSV tables that the linguistic data
+	 * is loaded from. Unlike keyOfCSVTables(), it does not change when the
+	 * tables are copied without being modified (ex: by a new build), but it
+	 * reads all the tables. It is meant for data that outlives a build,
+	 * like the on-disk cache of decompositions.
+	 */
+	public static long checksumOfCSVTables() throws LinguisticDataException {
+		CRC32 checksum = new CRC32();
+		byte[] buffer = new byte[64*1024];
+		for (String[] table: LinguisticDataCSV.dataTables) {
+			String resource =
+				"ca/inuktitutcomputing/dataCSV/"+table[2]+".csv";
+			checksum.update(resource.getBytes());
+			try (InputStream is = ResourceGetter.getResourceAsStream(resource)) {
+				if (is == null) {
+					continue;
+				}
+				int nRead;
+				while ((nRead = is.read(buffer)) > 0) {
+					checksum.update(buffer, 0, nRead);
+				}
+			} catch (IOException e) {
+				throw new LinguisticDataException(e);
+			}
+		}
+		return checksum.getValue();
+	}
+
+	private static long[] sizeAndTimeOf(URL url) throws LinguisticDataException {
+		long[] sizeAndTime;
+		try {
+			if (url.getProtocol().equals("file")) {
+				File file = new File(url.toURI());
+				sizeAndTime = new long[] {file.length(), file.lastModified()};
+			} else {
+				URLConnection conn = url.openConnection();
+				if (conn instanceof JarURLConnection) {
+					// Only reads the directory of the jar, not the entry
+					JarEntry entry = ((JarURLConnection)conn).getJarEntry();
+					sizeAndTime = new long[] {entry.getSize(), entry.getTime()};
+				} else {
+					sizeAndTime = new long[] {
+						conn.getContentLengthLong(), conn.getLastModified()};
+				}
+			}
+		} catch (IOException | URISyntaxException e) {
+			throw new LinguisticDataException(e);
+		}
+		return sizeAndTime;
+	}
+
+	/*
+	 * Reads the objects of a snapshot, and refuses any class that is not a
+	 * data class or one of the ALLOWED_CLASSES.
+	 */
+	private static class DataObjectInputStream extends ObjectInputStream {
+
+		public DataObjectInputStream(InputStream in) throws IOException {
+			super(in);
+		}
+
+		@Override
+		protected Class<?> resolveClass(ObjectStreamClass desc)
+				throws IOException, ClassNotFoundException {
+			if (!isAllowed(desc.getName())) {
+				throw new InvalidObjectException(
+					"Class not allowed in a linguistic data snapshot: "+
+					desc.getName());
+			}
+			return super.resolveClass(desc);
+		}
+
+		@Override
+		protected Class<?> resolveProxyClass(String[] interfaces)
+				throws IOException, ClassNotFoundException {
+			throw new InvalidObjectException(
+				"Proxy classes are not allowed in a linguistic data snapshot");
+		}
+
+		private static boolean isAllowed(String className) {
+			// Arrays: "[I", "[[Ljava.lang.String;"... 
+			String elementClass = className;
+			boolean isArray = false;
+			while (elementClass.startsWith("[")) {
+				elementClass = elementClass.substring(1);
+				isArray = true;
+			}
+			if (elementClass.length() == 1) {
+				// Array of a primitive type
+				return true;
+			}
+			if (elementClass.startsWith("L") && elementClass.endsWith(";")) {
+				elementClass =
+					elementClass.substring(1, elementClass.length() - 1);
+			}
+			return elementClass.startsWith(DATA_PACKAGE) ||
+				ALLOWED_CLASSES.contains(elementClass) ||
+				(isArray && elementClass.equals("java.lang.Object"));
+		}
+	}
+
+	/*
+	 * The same strings (forms, ids, attribute values...) and the same
+	 * actions (ex: the null action, the neutral action) appear in thousands
+	 * of morphemes, each one as a different object. This stream writes
+	 * every distinct string and action only once, and the other occurrences
+	 * as references to it, which makes the snapshot smaller and faster to
+	 * read.
+	 *
+	 * An action is entirely defined by its class and the string it was
+	 * made from (see Action.makeAction), and is never modified afterwards.
+	 */
+	private static class SharedObjectsOutputStream extends ObjectOutputStream {
+		private Map<String,String> strings = new HashMap<String,String>();
+		private Map<String,Action> actions = new HashMap<String,Action>();
+
+		public SharedObjectsOutputStream(OutputStream out) throws IOException {
+			super(out);
+			enableReplaceObject(true);
+		}
+
+		@Override
+		protected Object replaceObject(Object obj) {
+			if (obj instanceof String) {
+				String shared = strings.get(obj);
+				if (shared == null) {
+					shared = (String)obj;
+					strings.put(shared, shared);
+				}
+				obj = shared;
+			} else if (obj instanceof Action) {
+				Action action = (Action)obj;
+				String key = action.getClass().getName()+" "+action.strng;
+				Action shared = actions.get(key);
+				if (shared == null) {
+					shared = action;
+					actions.put(key, shared);
+				}
+				obj = shared;
+			}
+			return obj;
+		}
+	}
+
+	@SuppressWarnings("unchecked")
+	private static <T> T readObject(ObjectInputStream objects)
+			throws ClassNotFoundException, IOException {
+		return (T) objects.readObject();
+	}
+}
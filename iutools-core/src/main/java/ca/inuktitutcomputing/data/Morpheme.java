@@ -26,6 +26,7 @@
 
 package ca.inuktitutcomputing.data;
 
+import java.io.Serializable;
 import java.util.HashMap;
 import java.util.StringTokenizer;
 import java.util.Vector;
@@ -38,9 +39,13 @@ import ca.inuktitutcomputing.data.constraints.Conditions;
 import ca.inuktitutcomputing.data.LinguisticDataAbstract;
 import ca.inuktitutcomputing.data.Affix;
 
-public abstract class Morpheme implements Cloneable {
+public abstract class Morpheme implements Cloneable, Serializable {
+	private static final long serialVersionUID = 1L;
 	//
 	public String id = null;
+	// Identificateur entier dense, attribué par LinguisticData (voir
+	// LinguisticData.getMorphemeWithIntId).
+	public int intId = -1;
 	public String type = null;
 	public String morpheme;
 	public String englishMeaning = null;
@@ -60,7 +65,10 @@ public abstract class Morpheme implements Cloneable {
     Conditions preCondition = null;
     Conditions nextCondition = null;
 
-    private HashMap<String,Object> attributes = null;
+    // Les attributs sont calculés à partir des champs (voir setAttrs()): on
+    // ne les écrit pas dans l'instantané des données linguistiques
+    // (LinguisticDataSnapshot), on les recalcule à la lecture.
+    private transient HashMap<String,Object> attributes = null;
     //
     
     //------------------------------------------------------------------------------------------------------------
@@ -72,6 +80,12 @@ public abstract class Morpheme implements Cloneable {
 	public abstract String getSignature(); //
 	public abstract String getOriginalMorpheme(); //
 	
+    //------------------------------------------------------------------------------------------------------------
+    protected Object readResolve() {
+    	setAttrs();
+    	return this;
+    }
+
     //------------------------------------------------------------------------------------------------------------
 	public String getTableName() {
 	    return tableName;
@@ -85,6 +99,15 @@ public abstract class Morpheme implements Cloneable {
         return (Morpheme)this.clone();
     }
     
+    /**
+     * @return true if the other morpheme shares the attributes of this one
+     *    (ex: it is a copy of it, see copyOf()), and so meets exactly the
+     *    same conditions.
+     */
+    public boolean sharesAttributesWith(Morpheme other) {
+        return other.attributes == this.attributes;
+    }
+    
     public Conditions getPrecCond() {
         return preCondition;
     }
@@ -284,7 +307,8 @@ public abstract class Morpheme implements Cloneable {
     
     //------------------------------------------------------------------------------------------
     // STATIC CLASS "ID"
-    static public class Id {
+    static public class Id implements Serializable {
+        private static final long serialVersionUID = 1L;
     	//
 	    static public String delimiter = "/";
 	    public String morphemeName;
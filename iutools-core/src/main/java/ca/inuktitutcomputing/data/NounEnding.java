@@ -21,15 +21,15 @@
 
 package ca.inuktitutcomputing.data;
 
-import java.io.ByteArrayInputStream;
 import java.util.*;
 
 import ca.inuktitutcomputing.data.constraints.Conditions;
-import ca.inuktitutcomputing.data.constraints.Imacond;
+import ca.inuktitutcomputing.data.constraints.ConditionCache;
 import ca.inuktitutcomputing.data.constraints.ParseException;
 import ca.inuktitutcomputing.utilities.Debugging;
 
 public class NounEnding extends Affix {
+	private static final long serialVersionUID = 1L;
 	//
 	String grammCase;
 	String cas;
@@ -97,8 +97,7 @@ public class NounEnding extends Affix {
 		String cs = v.get("condPrec");
 		if (cs != null) {
             try {
-                preCondition = (Conditions) new Imacond(
-                        new ByteArrayInputStream(cs.getBytes())).ParseCondition();
+                preCondition = (Conditions) ConditionCache.parse(cs);
             } catch (ParseException e) {
             }
 		}
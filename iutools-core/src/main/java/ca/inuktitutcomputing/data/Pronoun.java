@@ -8,15 +8,15 @@
  */
 package ca.inuktitutcomputing.data;
 
-import java.io.ByteArrayInputStream;
 import java.util.HashMap;
 import java.util.Hashtable;
 
 import ca.inuktitutcomputing.data.constraints.Conditions;
-import ca.inuktitutcomputing.data.constraints.Imacond;
+import ca.inuktitutcomputing.data.constraints.ConditionCache;
 import ca.inuktitutcomputing.data.constraints.ParseException;
 
 public class Pronoun extends Base {
+	private static final long serialVersionUID = 1L;
 	//
 	String person;
 	static public Hashtable<String,Pronoun> hash = new Hashtable<String,Pronoun>();
@@ -43,8 +43,7 @@ public class Pronoun extends Base {
 		String cs = v.get("condOnNext");
         if (cs != null && !cs.equals(""))
             try {
-                nextCondition = (Conditions) new Imacond(
-                        new ByteArrayInputStream(cs.getBytes())).ParseCondition();
+                nextCondition = (Conditions) ConditionCache.parse(cs);
             } catch (ParseException e) {
             }
 		setAttrs();
@@ -8,10 +8,12 @@
  */
 package ca.inuktitutcomputing.data;
 
+import java.io.Serializable;
 import java.util.HashMap;
 import java.util.Hashtable;
 
-public class Source {
+public class Source implements Serializable {
+	private static final long serialVersionUID = 1L;
 
    public String id;
    public String authorSurName;
@@ -23,14 +23,14 @@
 
 package ca.inuktitutcomputing.data;
 
-import java.io.ByteArrayInputStream;
 import java.util.*;
 
 import ca.inuktitutcomputing.data.constraints.Conditions;
-import ca.inuktitutcomputing.data.constraints.Imacond;
+import ca.inuktitutcomputing.data.constraints.ConditionCache;
 import ca.inuktitutcomputing.data.constraints.ParseException;
 
 public class Suffix extends Affix {
+	private static final long serialVersionUID = 1L;
 	//
 	String nb;
 	String transitivity;
@@ -113,15 +113,13 @@ public class Suffix extends Affix {
             if (type.equals("sn") && function.equals("nv")) {
                 String condStr = "!type:tn,!(type:n,number:d),!(type:n,number:p)";
                 try {
-                    preCondition = (Conditions) new Imacond(
-                            new ByteArrayInputStream(condStr.getBytes())).ParseCondition();
+                    preCondition = (Conditions) ConditionCache.parse(condStr);
                 } catch (ParseException e) {
                 }
 			}
 		} else {
             try {
-                preCondition = (Conditions) new Imacond(
-                        new ByteArrayInputStream(cs.getBytes())).ParseCondition();
+                preCondition = (Conditions) ConditionCache.parse(cs);
             } catch (ParseException e) {
             }
             
@@ -129,8 +127,7 @@ public class Suffix extends Affix {
 		cs = v.get("condOnNext");
         if (cs != null && !cs.equals(""))
             try {
-                nextCondition = (Conditions) new Imacond(
-                        new ByteArrayInputStream(cs.getBytes())).ParseCondition();
+                nextCondition = (Conditions) ConditionCache.parse(cs);
             } catch (ParseException e) {
             }
             
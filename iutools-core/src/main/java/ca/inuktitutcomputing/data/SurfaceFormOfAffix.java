@@ -70,7 +70,10 @@
 
 package ca.inuktitutcomputing.data;
 
-public class SurfaceFormOfAffix {
+import java.io.Serializable;
+
+public class SurfaceFormOfAffix implements Serializable {
+	private static final long serialVersionUID = 1L;
 	public String form;
 	public String key;
 //    public Integer index;
@@ -21,15 +21,15 @@
 
 package ca.inuktitutcomputing.data;
 
-import java.io.ByteArrayInputStream;
 import java.util.*;
 
 import ca.inuktitutcomputing.data.constraints.Conditions;
-import ca.inuktitutcomputing.data.constraints.Imacond;
+import ca.inuktitutcomputing.data.constraints.ConditionCache;
 import ca.inuktitutcomputing.data.constraints.ParseException;
 import ca.inuktitutcomputing.utilities.Debugging;
 
 public class VerbEnding extends Affix {
+	private static final long serialVersionUID = 1L;
 	//
 	String mode;
 	String spec = null;
@@ -108,8 +108,7 @@ public class VerbEnding extends Affix {
 		String cs = v.get("condPrecSpecific");
 		if (cs != null) {
             try {
-                preCondition = (Conditions) new Imacond(
-                        new ByteArrayInputStream(cs.getBytes())).ParseCondition();
+                preCondition = (Conditions) ConditionCache.parse(cs);
             } catch (ParseException e) {
             }
         }
@@ -8,10 +8,12 @@
  */
 package ca.inuktitutcomputing.data;
 
+import java.io.Serializable;
 import java.util.HashMap;
 import java.util.Hashtable;
 
-public class VerbWord {
+public class VerbWord implements Serializable {
+	private static final long serialVersionUID = 1L;
 
     public String verb;
     public String passive;
@@ -7,6 +7,7 @@
  */
 package ca.inuktitutcomputing.data.constraints;
 
+import java.io.Serializable;
 import java.lang.reflect.Field;
 import java.util.HashSet;
 import java.util.Hashtable;
@@ -26,6 +27,7 @@ import ca.inuktitutcomputing.data.Morpheme;
  *  
  */
 public class AttrValCond extends Condition implements Conditions,Cloneable {
+	private static final long serialVersionUID = 1L;
 
     Aspect aspect;
     
@@ -152,7 +154,8 @@ public class AttrValCond extends Condition implements Conditions,Cloneable {
     }
     
     //---------------------------------------------------------------------
-    class Aspect {
+    class Aspect implements Serializable {
+        private static final long serialVersionUID = 1L;
         String attribute = null;
         String value = null;
         boolean eq = true;
@@ -8,12 +8,14 @@
  */
 package ca.inuktitutcomputing.data.constraints;
 
+import java.io.Serializable;
 import java.util.Vector;
 
 import ca.inuktitutcomputing.data.LinguisticDataException;
 import ca.inuktitutcomputing.data.Morpheme;
 
-public class Condition {
+public class Condition implements Serializable {
+	private static final long serialVersionUID = 1L;
 
     /*
      * Syntaxe:
@@ -43,6 +45,7 @@ public class Condition {
      * Condition de non-mobilité associée à un infixe.
      */
     static public class NonMobilityOfInfix extends Condition implements Conditions {
+        private static final long serialVersionUID = 1L;
 
         String infixId;
         
@@ -94,6 +97,7 @@ public class Condition {
      * Condition sur plus d'un morph�me.
      */
     static public class OverSeveralMorphemes extends Condition implements Conditions, Cloneable {
+        private static final long serialVersionUID = 1L;
         
         protected Vector conds;
         
@@ -149,6 +153,7 @@ public class Condition {
      * !type:tn,!(type:n,number:d),!(type:n,number:p)
      */
     static public class And extends Condition implements Conditions,Cloneable {
+        private static final long serialVersionUID = 1L;
         
         protected Vector conds;
         
@@ -248,6 +253,7 @@ public class Condition {
      * comprend 3 sous-conditions:   type:n function:vn function:nn
      */
     static public class Or extends Condition implements Conditions {
+        private static final long serialVersionUID = 1L;
         
         protected Vector conds;
         
@@ -344,6 +350,7 @@ public class Condition {
      * morph�me attendu par it/3nv.
      */
     static public class Cid extends Condition implements Conditions {
+        private static final long serialVersionUID = 1L;
         
         protected String pn;
         protected String morphid;
@@ -424,4 +431,54 @@ public class Condition {
         }
     }
     
+    /*
+     * Signature d'une condition: chaîne qui décrit sans ambiguïté la
+     * structure de la condition et de ses sous-conditions. Deux conditions qui
+     * ont la même signature sont satisfaites par les mêmes morphèmes.
+     * Retourne null si la condition contient un type de condition inconnu.
+     */
+    public static String signature(Conditions conds) {
+        if (conds == null)
+            return "null";
+        StringBuffer sb = new StringBuffer();
+        if (!appendSignature((Condition)conds, sb))
+            return null;
+        return sb.toString();
+    }
+
+    private static boolean appendSignature(Condition cond, StringBuffer sb) {
+        if (!cond.truth)
+            sb.append('!');
+        Vector subConds = null;
+        if (cond instanceof AttrValCond) {
+            sb.append("av(").append(cond.parameters).append(")");
+        } else if (cond instanceof Cid) {
+            sb.append(((Cid)cond).pn).append("(").append(((Cid)cond).morphid).append(")");
+        } else if (cond instanceof NonMobilityOfInfix) {
+            sb.append("nm(").append(((NonMobilityOfInfix)cond).infixId).append(")");
+        } else if (cond instanceof And) {
+            sb.append("and");
+            subConds = ((And)cond).conds;
+        } else if (cond instanceof Or) {
+            sb.append("or");
+            subConds = ((Or)cond).conds;
+        } else if (cond instanceof OverSeveralMorphemes) {
+            sb.append("over");
+            subConds = ((OverSeveralMorphemes)cond).conds;
+        } else {
+            return false;
+        }
+        if (subConds != null) {
+            sb.append('[');
+            for (int i=0; i<subConds.size(); i++) {
+                if (i > 0)
+                    sb.append(';');
+                if (!appendSignature((Condition)subConds.elementAt(i), sb))
+                    return false;
+            }
+            sb.append(']');
+        }
+        return true;
+    }
+    
 }
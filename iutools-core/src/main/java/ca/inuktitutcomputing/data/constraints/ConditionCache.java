@@ -0,0 +1,47 @@
+/*
+ * Conseil national de recherche Canada 2020/
+ * National Research Council Canada 2020
+ */
+package ca.inuktitutcomputing.data.constraints;
+
+import java.io.ByteArrayInputStream;
+import java.util.concurrent.ConcurrentHashMap;
+
+/*
+ * Cache partagé des conditions analysées par Imacond.
+ *
+ * Une même chaîne de condition (par exemple "id:ji/1vv" dans une action
+ * ou "type:n" dans une condition sur le morphème précédent) revient dans
+ * plusieurs morphèmes. Chaque chaîne n'est analysée qu'une seule fois, et
+ * tous les morphèmes, actions et arcs partagent le même objet Condition.
+ *
+ * Les objets Condition partagés ne doivent pas être modifiés: pour ajouter
+ * une contrainte, on les combine dans un nouveau Condition.And (voir
+ * Affix.addPrecConstraint).
+ */
+public class ConditionCache {
+
+	private static ConcurrentHashMap<String,Condition> conditions =
+			new ConcurrentHashMap<String,Condition>();
+
+	public static Condition parse(String condStr) throws ParseException {
+		Condition cond = conditions.get(condStr);
+		if (cond == null) {
+			cond = new Imacond(
+				new ByteArrayInputStream(condStr.getBytes())).ParseCondition();
+			Condition previous = conditions.putIfAbsent(condStr, cond);
+			if (previous != null) {
+				cond = previous;
+			}
+		}
+		return cond;
+	}
+
+	public static int size() {
+		return conditions.size();
+	}
+
+	public static void clear() {
+		conditions.clear();
+	}
+}
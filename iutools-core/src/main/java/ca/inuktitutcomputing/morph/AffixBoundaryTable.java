@@ -0,0 +1,305 @@
+package ca.inuktitutcomputing.morph;
+
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Hashtable;
+import java.util.Map;
+import java.util.Vector;
+
+import ca.inuktitutcomputing.data.Action;
+import ca.inuktitutcomputing.data.Affix;
+import ca.inuktitutcomputing.data.AffixSurfaceFormsTrie;
+import ca.inuktitutcomputing.data.LinguisticData;
+import ca.inuktitutcomputing.data.LinguisticDataException;
+import ca.inuktitutcomputing.data.SurfaceFormOfAffix;
+import ca.inuktitutcomputing.phonology.Dialect;
+import ca.inuktitutcomputing.script.Orthography;
+import ca.inuktitutcomputing.script.Roman;
+
+/**
+ * Table of the boundaries between a stem and an affix form that are
+ * possible at all, given the last character of the stem, the first
+ * character of the (simplified) affix form and the states of the graph
+ * that the analysis is in.
+ *
+ * The table is a dense bitset indexed by (last char of stem, first char of
+ * affix form, graph state). It is derived from the surface forms of affixes
+ * of LinguisticData and from the arcs of the Graph:
+ * <ul>
+ * <li>a form can only be reached from the states that have an arc for its
+ *     affix (see MorphologicalAnalyzer.arcsSuivis);</li>
+ * <li>the context and actions of a form restrict the characters that can
+ *     end the stem in the word (ex: a form with a neutral action in the
+ *     'V' context can only follow a vowel, and a form that deletes the
+ *     final consonant of the stem can only follow a vowel). Those
+ *     restrictions mirror the validate_* methods of MorphologicalAnalyzer,
+ *     including the dialectal changes and Schneider's law that they allow.
+ *     Forms with other actions are assumed to be able to follow any
+ *     character.</li>
+ * </ul>
+ * A boundary is possible if it is possible for at least one form that
+ * starts with that character. When it is not, none of the forms can be
+ * accepted by MorphologicalAnalyzer.analyzeWithCandidateAffixes, so the
+ * analyzer does not need to look at them.
+ *
+ * The table errs on the side of caution: characters outside of the table
+ * and the '*' that stands for a missing final consonant are always
+ * possible.
+ */
+class AffixBoundaryTable {
+
+	static final int NB_CHARS = 128;
+
+	private static AffixBoundaryTable table = null;
+
+	/*
+	 * Trie of the affix forms of LinguisticData at the time the table was
+	 * built. LinguisticData rebuilds that trie whenever the affix forms
+	 * change, and so does this table.
+	 */
+	private final AffixSurfaceFormsTrie builtFor;
+
+	private final int nbStates;
+	private final BitSet possible;
+
+	private Map<Character,BitSet> equivalentsOfConsonant = new HashMap<Character,BitSet>();
+
+	/**
+	 * @return The table for the current linguistic data.
+	 */
+	public static synchronized AffixBoundaryTable forCurrentData()
+			throws LinguisticDataException {
+		LinguisticData data = LinguisticData.getInstance();
+		AffixSurfaceFormsTrie formsTrie = data.getAffixSurfaceFormsTrie();
+		if (table == null || table.builtFor != formsTrie) {
+			table = new AffixBoundaryTable(
+				data.getFormToSurfaceFormsOfAffixesTable(), formsTrie);
+		}
+		return table;
+	}
+
+	AffixBoundaryTable(Hashtable<String,Vector<SurfaceFormOfAffix>> formsTable,
+			AffixSurfaceFormsTrie builtFor) throws LinguisticDataException {
+		this.builtFor = builtFor;
+		this.nbStates = Graph.nbStates();
+		this.possible = new BitSet(NB_CHARS * NB_CHARS * nbStates);
+
+		Graph.State[] states = Graph.allStates();
+		Map<String,BitSet> statesOfAffix = new HashMap<String,BitSet>();
+		for (Map.Entry<String,Vector<SurfaceFormOfAffix>> entry: formsTable.entrySet()) {
+			char formStart = entry.getKey().charAt(0);
+			if (formStart >= NB_CHARS) {
+				continue;
+			}
+			for (SurfaceFormOfAffix form: entry.getValue()) {
+				BitSet fromStates = statesOfAffix.get(form.uniqueId);
+				if (fromStates == null) {
+					fromStates = statesWithArcFor(form.getAffix(), states);
+					statesOfAffix.put(form.uniqueId, fromStates);
+				}
+				BitSet stemEnds = possibleStemEnds(form);
+				for (char stemEnd = 0; stemEnd < NB_CHARS; stemEnd++) {
+					if (stemEnds != null && !stemEnds.get(stemEnd)) {
+						continue;
+					}
+					int base = (stemEnd * NB_CHARS + formStart) * nbStates;
+					for (int is = fromStates.nextSetBit(0); is >= 0; is = fromStates.nextSetBit(is+1)) {
+						possible.set(base + is);
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * @param stem Stem that precedes the affix, in simplified orthography
+	 * @param affixForm Form of the affix as it is looked up in the lexicon
+	 *    (possibly ending with '*')
+	 * @param states States of the graph that the analysis is in
+	 * @return false if none of the affix forms that start like affixForm
+	 *    can follow the stem from any of the states.
+	 */
+	public boolean isPossible(String stem, String affixForm, Graph.State[] states) {
+		char stemEnd = stem.charAt(stem.length() - 1);
+		char formStart = simplifiedFirstChar(affixForm);
+		if (stemEnd >= NB_CHARS || formStart >= NB_CHARS || formStart == '*') {
+			return true;
+		}
+		int base = (stemEnd * NB_CHARS + formStart) * nbStates;
+		for (Graph.State state: states) {
+			if (state.index >= nbStates || possible.get(base + state.index)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/** Number of (last char, first char, state) boundaries that are possible */
+	public int nbPossibleBoundaries() {
+		return possible.cardinality();
+	}
+
+	/*
+	 * First character of the form once it is simplified (see
+	 * Orthography.simplifiedOrthographyLat): only 'ng' and 'nng' change it.
+	 */
+	private static char simplifiedFirstChar(String form) {
+		char first = form.charAt(0);
+		if (first == 'n' && (form.startsWith("ng") || form.startsWith("nng"))) {
+			first = 'N';
+		}
+		return first;
+	}
+
+	private static BitSet statesWithArcFor(Affix affix, Graph.State[] states)
+			throws LinguisticDataException {
+		BitSet fromStates = new BitSet(states.length);
+		for (Graph.State state: states) {
+			if (affix == null) {
+				fromStates.set(state.index);
+			} else if (state.arcs != null && !state.verify(affix).isEmpty()) {
+				fromStates.set(state.index);
+			}
+		}
+		return fromStates;
+	}
+
+	/*
+	 * Characters that can end the stem (as it appears in the word) that
+	 * precedes the form, according to the context and actions of the form
+	 * (see the validate_* methods of MorphologicalAnalyzer), or null if the
+	 * form may follow any character.
+	 */
+	private BitSet possibleStemEnds(SurfaceFormOfAffix form) {
+		int action1Type = form.action1.getType();
+		int action2Type = form.action2.getType();
+		String context = form.context;
+		if (context == null) {
+			return null;
+		}
+		BitSet stemEnds = null;
+		if (action1Type == Action.NEUTRAL && action2Type == Action.NULLACTION) {
+			if (context.equals("V")) {
+				stemEnds = vowels();
+			} else {
+				// Contextual consonant, possibly changed by a dialectal
+				// equivalence or dropped because of Schneider's law
+				stemEnds = consonantOrEquivalents(context.charAt(0));
+				stemEnds.or(vowels());
+			}
+		} else if (action1Type == Action.NEUTRAL && action2Type == Action.INSERTION) {
+			// Only in the 'V' context: a vowel, or the inserted characters
+			stemEnds = new BitSet(NB_CHARS);
+			if (context.equals("V")) {
+				stemEnds = endOfInsertion(form.action2);
+				if (stemEnds != null) {
+					stemEnds.or(vowels());
+				}
+			}
+		} else if (action1Type == Action.DELETION && action2Type == Action.INSERTION) {
+			stemEnds = endOfInsertion(form.action2);
+			if (stemEnds != null) {
+				stemEnds.or(vowels());
+			}
+		} else if (action1Type == Action.DELETIONINSERTION && action2Type == Action.NULLACTION) {
+			stemEnds = endOfInsertion(form.action1);
+		} else if (action1Type == Action.NEUTRAL && action2Type == Action.DELETION
+				|| action1Type == Action.DELETION && action2Type == Action.NULLACTION
+				|| action1Type == Action.DELETION && action2Type == Action.SPECIFICDELETION
+				|| action1Type == Action.FUSION && action2Type == Action.NULLACTION
+				|| action1Type == Action.VOWELLENGTHENING && action2Type == Action.CANCELLATION
+				|| action1Type == Action.DELETIONVOWELLENGTHENING && action2Type == Action.CANCELLATION) {
+			stemEnds = vowels();
+		} else if (action1Type == Action.INSERTION && action2Type == Action.NULLACTION) {
+			if (context.equals("V")) {
+				stemEnds = vowels();
+			} else {
+				stemEnds = new BitSet(NB_CHARS);
+				set(stemEnds, context.charAt(context.length() - 1));
+			}
+		} else if (action1Type == Action.ASSIMILATION && action2Type == Action.NULLACTION) {
+			stemEnds = vowels();
+			set(stemEnds, form.form.charAt(0));
+		} else if (action1Type == Action.VOICING && action2Type == Action.NULLACTION
+				|| action1Type == Action.NASALIZATION) {
+			stemEnds = new BitSet(NB_CHARS);
+			if (!context.equals("V")) {
+				char changedCons = (action1Type == Action.VOICING ?
+					Roman.voicedOfOcclusiveUnvoicedLat(context.charAt(0)) :
+					Roman.nasalOfOcclusiveUnvoicedLat(context.charAt(0)));
+				stemEnds.or(consonantOrEquivalents(changedCons));
+				stemEnds.or(vowels());
+			}
+		}
+		return stemEnds;
+	}
+
+	/*
+	 * Last character of the characters inserted by the action, or null if
+	 * it inserts nothing.
+	 */
+	private static BitSet endOfInsertion(Action action) {
+		String insert = action.getInsert();
+		if (insert != null) {
+			insert = Orthography.simplifiedOrthography(insert, false);
+		}
+		if (insert == null || insert.isEmpty()) {
+			return null;
+		}
+		BitSet stemEnds = new BitSet(NB_CHARS);
+		set(stemEnds, insert.charAt(insert.length() - 1));
+		return stemEnds;
+	}
+
+	private static BitSet vowels() {
+		BitSet vowels = new BitSet(NB_CHARS);
+		for (char ch = 0; ch < NB_CHARS; ch++) {
+			if (Roman.typeOfLetterLat(ch) == Roman.V) {
+				vowels.set(ch);
+			}
+		}
+		return vowels;
+	}
+
+	private static void set(BitSet chars, char ch) {
+		if (ch < NB_CHARS) {
+			chars.set(ch);
+		}
+	}
+
+	/*
+	 * The consonant itself, and the consonants that may replace it at the
+	 * end of a stem: those that form, with the initial consonant of the
+	 * affix, a cluster equivalent in another dialect to the one the
+	 * consonant would form (see Dialect.equivalentGroups).
+	 */
+	private BitSet consonantOrEquivalents(char cons) {
+		BitSet stemEnds = equivalentsOfConsonant.get(cons);
+		if (stemEnds == null) {
+			stemEnds = new BitSet(NB_CHARS);
+			set(stemEnds, cons);
+			for (char stemEnd = 0; stemEnd < NB_CHARS; stemEnd++) {
+				if (Roman.typeOfLetterLat(stemEnd) != Roman.C) {
+					continue;
+				}
+				for (char formStart = 0; formStart < NB_CHARS; formStart++) {
+					if (Roman.typeOfLetterLat(formStart) != Roman.C) {
+						continue;
+					}
+					Vector<String> groups = Dialect.equivalentGroups(stemEnd, formStart);
+					if (groups == null) {
+						continue;
+					}
+					for (String group: groups) {
+						if (group.length() > 1 && group.charAt(0) == cons &&
+								group.charAt(1) == formStart) {
+							stemEnds.set(stemEnd);
+						}
+					}
+				}
+			}
+			equivalentsOfConsonant.put(cons, stemEnds);
+		}
+		return (BitSet) stemEnds.clone();
+	}
+}
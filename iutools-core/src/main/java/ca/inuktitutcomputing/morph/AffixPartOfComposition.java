@@ -102,13 +102,21 @@ public class AffixPartOfComposition extends PartOfComposition {
 	
 	
 	public String toStr() throws LinguisticDataException {
-		String trm;
 		Affix aff = (Affix) form.getAffix();
+		return new Decomposition.DecompositionExpression.DecPart(surfaceForm(),aff.id).str;
+	}
+
+	/*
+	 * Le terme, sans l'astérisque final qui marque parfois les formes de
+	 * surface modifiées.
+	 */
+	public String surfaceForm() {
+		String trm;
 		if (term != null && term.length() != 0 && term.charAt(term.length()-1)=='*')
 			trm = term.substring(0,term.length()-1);
 		else
 			trm = term;
-		return new Decomposition.DecompositionExpression.DecPart(trm,aff.id).str;
+		return trm;
 	}
     
     /*
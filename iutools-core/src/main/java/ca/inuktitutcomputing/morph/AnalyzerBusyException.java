@@ -0,0 +1,14 @@
+package ca.inuktitutcomputing.morph;
+
+/**
+ * Raised when a word cannot be decomposed because the queue of words
+ * waiting for a thread of the analyzers' pool is full (see
+ * MorphologicalAnalyzerAbstract.setExecutorQueueCapacity()). Unlike a
+ * timeout, the analysis of the word was never started, and the word can
+ * be submitted again later.
+ */
+public class AnalyzerBusyException extends MorphologicalAnalyzerException {
+
+	public AnalyzerBusyException(String mess, Exception e) { super(mess, e); }
+
+}
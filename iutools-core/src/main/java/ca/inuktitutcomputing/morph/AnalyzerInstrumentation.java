@@ -0,0 +1,238 @@
+package ca.inuktitutcomputing.morph;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.apache.log4j.Logger;
+
+import ca.inuktitutcomputing.config.IUConfig;
+import ca.nrc.config.ConfigException;
+
+/**
+ * Counters and timings of the morphological analyzer, to find out which
+ * words, and which parts of the analysis, take the most time.
+ *
+ * The instrumentation is off by default, in which case it costs the
+ * analyzer one null check per counted event. It can be turned on with
+ * setEnabled(true), or with the property ca.nrc.iutools.morph.instrumentation
+ * set to true.
+ *
+ * The counts of each word are kept in its own AnalyzerStats (see
+ * MorphAnalysisContext.stats) while it is decomposed, and added to the
+ * totals once the word is done. The totals can be read with snapshot(),
+ * or through JMX once registerMBean() has been called. The JMX attributes
+ * also include the statistics of the in-memory cache of decompositions,
+ * which are always kept, whether the instrumentation is on or not.
+ */
+public class AnalyzerInstrumentation implements AnalyzerInstrumentationMBean {
+
+	public static final String MBEAN_NAME =
+		"ca.inuktitutcomputing.morph:type=AnalyzerInstrumentation";
+
+	private static volatile boolean enabled = false;
+	private static AnalyzerStats totals = new AnalyzerStats();
+	private static LongAdder cacheHits = new LongAdder();
+	private static LongAdder cacheMisses = new LongAdder();
+
+	static {
+		try {
+			enabled = IUConfig.isAnalyzerInstrumentationOn();
+		} catch (ConfigException e) {
+			Logger.getLogger("ca.inuktitutcomputing.morph.AnalyzerInstrumentation")
+				.warn("Analyzer instrumentation is off: "+e.getMessage());
+		}
+	}
+
+	public static void setInstrumentation(boolean on) {
+		enabled = on;
+	}
+
+	public static boolean instrumentationIsOn() {
+		return enabled;
+	}
+
+	/**
+	 * @return A copy of the counts and timings since the instrumentation
+	 *    was turned on, or since the last resetCounters().
+	 */
+	public static synchronized AnalyzerStats snapshot() {
+		AnalyzerStats stats = new AnalyzerStats(totals);
+		stats.cacheHits = cacheHits.sum();
+		stats.cacheMisses = cacheMisses.sum();
+		return stats;
+	}
+
+	public static synchronized void resetCounters() {
+		totals = new AnalyzerStats();
+		cacheHits.reset();
+		cacheMisses.reset();
+	}
+
+	/**
+	 * Make the counters available through the platform MBean server. Does
+	 * nothing if they already are.
+	 */
+	public static synchronized void registerMBean() throws MorphologicalAnalyzerException {
+		MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+		try {
+			ObjectName name = new ObjectName(MBEAN_NAME);
+			if (!server.isRegistered(name)) {
+				server.registerMBean(new AnalyzerInstrumentation(), name);
+			}
+		} catch (JMException e) {
+			throw new MorphologicalAnalyzerException(e);
+		}
+	}
+
+	/*
+	 * Stats of a word that is about to be decomposed, or null if the
+	 * instrumentation is off.
+	 */
+	static AnalyzerStats statsForNewWord() {
+		AnalyzerStats stats = null;
+		if (enabled) {
+			stats = new AnalyzerStats();
+		}
+		return stats;
+	}
+
+	/*
+	 * Add the stats of a word, which took 'nanos' to decompose, to the
+	 * totals.
+	 */
+	static void wordDone(String word, AnalyzerStats stats, long nanos) {
+		if (stats == null) {
+			return;
+		}
+		stats.words = 1;
+		stats.decompositionNanos = nanos;
+		stats.slowestWord = word;
+		stats.slowestWordNanos = nanos;
+		synchronized (AnalyzerInstrumentation.class) {
+			totals.add(stats);
+		}
+	}
+
+	static void countCacheLookup(boolean hit) {
+		if (enabled) {
+			if (hit) {
+				cacheHits.increment();
+			} else {
+				cacheMisses.increment();
+			}
+		}
+	}
+
+	//------------------------------------------------------------------
+	// AnalyzerInstrumentationMBean
+	//------------------------------------------------------------------
+
+	@Override
+	public boolean isEnabled() {
+		return instrumentationIsOn();
+	}
+
+	@Override
+	public void setEnabled(boolean on) {
+		setInstrumentation(on);
+	}
+
+	@Override
+	public void reset() {
+		resetCounters();
+	}
+
+	@Override
+	public long getWords() {
+		return snapshot().words;
+	}
+
+	@Override
+	public long getCacheHits() {
+		return cacheHits.sum();
+	}
+
+	@Override
+	public long getCacheMisses() {
+		return cacheMisses.sum();
+	}
+
+	@Override
+	public long getPositionsScanned() {
+		return snapshot().positionsScanned;
+	}
+
+	@Override
+	public long getAffixCandidatesTried() {
+		return snapshot().affixCandidatesTried;
+	}
+
+	@Override
+	public long getArcsRejected() {
+		return snapshot().arcsRejected;
+	}
+
+	@Override
+	public long getDialectVariants() {
+		return snapshot().dialectVariants;
+	}
+
+	@Override
+	public long getStemAnalysesReused() {
+		return snapshot().stemAnalysesReused;
+	}
+
+	@Override
+	public long getDecompositionMSecs() {
+		return snapshot().decompositionNanos / 1000000;
+	}
+
+	@Override
+	public long getRootLookupMSecs() {
+		return snapshot().rootLookupNanos / 1000000;
+	}
+
+	@Override
+	public long getAffixValidationMSecs() {
+		return snapshot().affixValidationNanos / 1000000;
+	}
+
+	@Override
+	public long getDialectVariantsMSecs() {
+		return snapshot().dialectVariantsNanos / 1000000;
+	}
+
+	@Override
+	public String getSlowestWord() {
+		return snapshot().slowestWord;
+	}
+
+	@Override
+	public long getSlowestWordMSecs() {
+		return snapshot().slowestWordNanos / 1000000;
+	}
+
+	@Override
+	public double getDecompositionsCacheHitRate() {
+		return MorphologicalAnalyzer.decompositionsCacheStats().hitRate();
+	}
+
+	@Override
+	public long getDecompositionsCacheEvictions() {
+		return MorphologicalAnalyzer.decompositionsCacheStats().evictionCount();
+	}
+
+	@Override
+	public double getDecompositionsCacheAverageLoadMSecs() {
+		return MorphologicalAnalyzer.decompositionsCacheStats().averageLoadPenalty() / 1000000.0;
+	}
+
+	@Override
+	public long getDecompositionsCacheSize() {
+		return MorphologicalAnalyzer.decompositionsCacheSize();
+	}
+}
@@ -0,0 +1,34 @@
+package ca.inuktitutcomputing.morph;
+
+/**
+ * Management interface of AnalyzerInstrumentation, through which its
+ * counters can be watched from a JMX console (ex: jconsole) while the
+ * analyzer runs in a server.
+ */
+public interface AnalyzerInstrumentationMBean {
+
+	public boolean isEnabled();
+	public void setEnabled(boolean enabled);
+	public void reset();
+
+	public long getWords();
+	public long getCacheHits();
+	public long getCacheMisses();
+	public long getPositionsScanned();
+	public long getAffixCandidatesTried();
+	public long getArcsRejected();
+	public long getDialectVariants();
+	public long getStemAnalysesReused();
+	public long getDecompositionMSecs();
+	public long getRootLookupMSecs();
+	public long getAffixValidationMSecs();
+	public long getDialectVariantsMSecs();
+	public String getSlowestWord();
+	public long getSlowestWordMSecs();
+
+	/* In-memory cache of decompositions (see DecompositionsCache) */
+	public double getDecompositionsCacheHitRate();
+	public long getDecompositionsCacheEvictions();
+	public double getDecompositionsCacheAverageLoadMSecs();
+	public long getDecompositionsCacheSize();
+}
@@ -0,0 +1,106 @@
+package ca.inuktitutcomputing.morph;
+
+/**
+ * Counts and timings of the work done by the morphological analyzer, for a
+ * single word or summed over all the words decomposed since the
+ * instrumentation was turned on (see AnalyzerInstrumentation).
+ *
+ * Times are in nanoseconds. The time spent on dialectal variants is also
+ * part of the other phases: some of the variants are generated while
+ * looking up roots, and the others while looking up affixes.
+ */
+public class AnalyzerStats {
+
+	/** Number of words decomposed (not found in the cache) */
+	public long words = 0;
+
+	/** Number of words found in, and not found in, the decompositions cache */
+	public long cacheHits = 0;
+	public long cacheMisses = 0;
+
+	/** Number of positions of a stem where affixes were looked for */
+	public long positionsScanned = 0;
+
+	/** Number of surface forms of affixes that were validated */
+	public long affixCandidatesTried = 0;
+
+	/** Number of roots and affixes that no arc of the graph could accept */
+	public long arcsRejected = 0;
+
+	/** Number of dialectal variants of stems and affixes that were looked up */
+	public long dialectVariants = 0;
+
+	/** 
+	 * Number of stems whose analyses were reused instead of computed again
+	 * (see MorphAnalysisContext.analysesOfStem)
+	 */
+	public long stemAnalysesReused = 0;
+
+	/** Time spent decomposing words, from start to end */
+	public long decompositionNanos = 0;
+
+	/** Time spent looking up and validating roots */
+	public long rootLookupNanos = 0;
+
+	/** Time spent checking the contexts and actions of affix candidates */
+	public long affixValidationNanos = 0;
+
+	/** Time spent generating dialectal variants */
+	public long dialectVariantsNanos = 0;
+
+	/** Word that took the longest to decompose, and how long it took */
+	public String slowestWord = null;
+	public long slowestWordNanos = 0;
+
+	public AnalyzerStats() {
+	}
+
+	public AnalyzerStats(AnalyzerStats other) {
+		add(other);
+		this.cacheHits = other.cacheHits;
+		this.cacheMisses = other.cacheMisses;
+	}
+
+	/*
+	 * Add the counts of a word (or of other words) to these ones. The cache
+	 * hits and misses are not counted per word, and are not added.
+	 */
+	void add(AnalyzerStats other) {
+		words += other.words;
+		positionsScanned += other.positionsScanned;
+		affixCandidatesTried += other.affixCandidatesTried;
+		arcsRejected += other.arcsRejected;
+		dialectVariants += other.dialectVariants;
+		stemAnalysesReused += other.stemAnalysesReused;
+		decompositionNanos += other.decompositionNanos;
+		rootLookupNanos += other.rootLookupNanos;
+		affixValidationNanos += other.affixValidationNanos;
+		dialectVariantsNanos += other.dialectVariantsNanos;
+		if (other.slowestWord != null && other.slowestWordNanos > slowestWordNanos) {
+			slowestWord = other.slowestWord;
+			slowestWordNanos = other.slowestWordNanos;
+		}
+	}
+
+	@Override
+	public String toString() {
+		return
+			"Morphological analyzer counters\n"+
+			"  #Words decomposed     : "+words+"\n"+
+			"  #Cache hits/misses    : "+cacheHits+"/"+cacheMisses+"\n"+
+			"  #Positions scanned    : "+positionsScanned+"\n"+
+			"  #Affix candidates     : "+affixCandidatesTried+"\n"+
+			"  #Arcs rejected        : "+arcsRejected+"\n"+
+			"  #Dialectal variants   : "+dialectVariants+"\n"+
+			"  #Stem analyses reused : "+stemAnalysesReused+"\n"+
+			"  Decomposition (msecs) : "+nanosToMSecs(decompositionNanos)+"\n"+
+			"  Roots (msecs)         : "+nanosToMSecs(rootLookupNanos)+"\n"+
+			"  Affixes (msecs)       : "+nanosToMSecs(affixValidationNanos)+"\n"+
+			"  Dialect (msecs)       : "+nanosToMSecs(dialectVariantsNanos)+"\n"+
+			"  Slowest word          : "+slowestWord+" ("+nanosToMSecs(slowestWordNanos)+" msecs)";
+	}
+
+	private static String nanosToMSecs(long nanos) {
+		return String.format("%.1f", nanos / 1000000.0);
+	}
+}
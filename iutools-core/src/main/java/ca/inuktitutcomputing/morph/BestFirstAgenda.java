@@ -0,0 +1,520 @@
+package ca.inuktitutcomputing.morph;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.Vector;
+
+import ca.inuktitutcomputing.data.Base;
+import ca.inuktitutcomputing.data.LinguisticDataException;
+import ca.inuktitutcomputing.data.SurfaceFormOfAffix;
+import ca.inuktitutcomputing.data.constraints.Conditions;
+import ca.inuktitutcomputing.phonology.Dialect;
+import ca.inuktitutcomputing.script.Orthography;
+
+/**
+ * Agenda of the best-first search of the MorphologicalAnalyzer (see
+ * MorphologicalAnalyzerAbstract.decomposeWordBestFirst()).
+ *
+ * In the depth-first search, the analyzer checks whether a stem is a root,
+ * then looks for affixes at the end of the stem, starting at every
+ * position, and decomposes the shorter stem that precedes each affix right
+ * away. In a best-first search, each of these steps is added to this
+ * agenda instead, and the steps are carried out in the order of the
+ * decompositions they can lead to, according to Decomposition.compareTo():
+ *
+ * - longest root first: the roots of a stem are no longer than the stem,
+ *   and an affix that starts at a given position leaves a stem that is no
+ *   longer than that position;
+ * - then fewest morphemes, since decomposing a stem can only add morphemes
+ *   to those that were already found after it;
+ * - then in the order that the depth-first search would have carried out
+ *   the step, so that ties are broken the same way as in decomposeWord().
+ *
+ * The search stops as soon as maxDecomps decompositions have been found
+ * and no step left in the agenda can lead to a decomposition that is as
+ * good as the last of them (see maxRootLength() for why the bound on the
+ * length of the root holds). Every decomposition that ranks before or
+ * with that last one is then found, and so the first maxDecomps
+ * decompositions, once organized like in decomposeWord(), are the same as
+ * the first maxDecomps decompositions of decomposeWord().
+ *
+ * The same stem can be reached through different chains of suffixes. The
+ * agenda keeps what each step produced for a stem, so that it can be
+ * replayed for the other chains instead of being recomputed.
+ */
+class BestFirstAgenda {
+
+	/**
+	 * The longest consonant that can be restored at the end of the stem
+	 * that precedes an affix, when the affix deleted the final consonant
+	 * of the stem (in the simplified orthography: "ng" in the ICI one).
+	 */
+	private static final String RESTORED_CONSONANT = "N";
+
+	/**
+	 * For every group of two letters l1l2 (at index l1*NB_CHARS+l2), how
+	 * much longer its longest dialectal equivalent (see Dialect) is in the
+	 * ICI orthography. MAX_GROWTH_OF_GROUP is the largest of them.
+	 */
+	private static final int NB_CHARS = 128;
+	private static final int[] GROWTH_OF_GROUP = growthOfGroups();
+	private static final int MAX_GROWTH_OF_GROUP = maxGrowthOfGroup();
+
+	/** A stem that remains to be decomposed */
+	static class Stem {
+		String term;
+		String termOrig;
+		String word;
+		Vector<AffixPartOfComposition> morphParts;
+		Graph.State[] states;
+		Conditions preConds;
+		String transitivity;
+
+		/**
+		 * If not null, the stem comes from the word with its final 'n'
+		 * replaced by a 't', and the decompositions must be restored to
+		 * that word (see MorphologicalAnalyzer._decomposeForFinalN).
+		 */
+		String wordEndingWithN = null;
+
+		/**
+		 * What the steps produced for this stem, shared by all the stems
+		 * that are decomposed the same way (null if they cannot be shared).
+		 */
+		Expansion expansion = null;
+
+		/** Surface forms of affixes that end the stem, by start position */
+		Vector<SurfaceFormOfAffix>[] formsOfAffixAtPosition = null;
+
+		int[] path;
+	}
+
+	/**
+	 * A step of the search: finding the roots of a stem (position 0), or
+	 * the affixes that start at a given position of the stem.
+	 */
+	static class Step {
+		Stem stem;
+		int position;
+
+		/** Longest root that this step can lead to */
+		int maxRootLength;
+
+		/** Fewest morphemes (after the root) that this step can lead to */
+		int minParts;
+
+		/** Position of the step in the depth-first search */
+		int[] path;
+		int numStemsFound = 0;
+
+		public boolean findsRoots() {
+			return position == 0;
+		}
+	}
+
+	/**
+	 * What the steps produced for a stem, independently of the affixes that
+	 * were found after the stem.
+	 */
+	static class Expansion {
+		/**
+		 * Roots found in the stem (see MorphologicalAnalyzer.analysesOfStem),
+		 * or null if they were not looked for yet.
+		 */
+		Vector<Object[]> rootAnalyses = null;
+
+		/**
+		 * For every position that was analyzed, the shorter stems found: the
+		 * arguments of addStem(), with the affix found after the shorter stem
+		 * instead of the whole list of morphParts.
+		 */
+		Map<Integer,List<Object[]>> stemsAtPosition =
+			new HashMap<Integer,List<Object[]>>();
+	}
+
+	private static class Found {
+		Decomposition decomp;
+		int[] path;
+
+		public Found(Decomposition _decomp, int[] _path) {
+			this.decomp = _decomp;
+			this.path = _path;
+		}
+	}
+
+	private static final Comparator<Step> STEPS_ORDER = new Comparator<Step>() {
+		@Override
+		public int compare(Step s1, Step s2) {
+			int comp = Integer.compare(s2.maxRootLength, s1.maxRootLength);
+			if (comp == 0) {
+				comp = Integer.compare(s1.minParts, s2.minParts);
+			}
+			if (comp == 0) {
+				comp = comparePaths(s1.path, s2.path);
+			}
+			return comp;
+		}
+	};
+
+	private int maxDecomps;
+	private PriorityQueue<Step> steps = new PriorityQueue<Step>(11, STEPS_ORDER);
+	private Step currentStep = null;
+	private int numInitialStems = 0;
+
+	private Map<String,Expansion> expansions = new HashMap<String,Expansion>();
+	private List<Object[]> stemsBeingRecorded = null;
+
+	private List<Found> found = new ArrayList<Found>();
+	private Set<CompactDecomposition> distinctDecomps = new HashSet<CompactDecomposition>();
+	private List<Decomposition> bestDecomps = new ArrayList<Decomposition>();
+	private Decomposition worstKept = null;
+	private boolean bestDecompsChanged = false;
+	private boolean exhausted = false;
+
+	public BestFirstAgenda(int _maxDecomps) {
+		if (_maxDecomps < 1) {
+			_maxDecomps = 1;
+		}
+		this.maxDecomps = _maxDecomps;
+	}
+
+	/**
+	 * Add a stem from which the whole search starts (the word itself, or a
+	 * variant of it such as the word with a missing final consonant).
+	 */
+	public void addInitialStem(String term, Graph.State[] states,
+			String wordEndingWithN) {
+		Stem stem = new Stem();
+		stem.term = term;
+		stem.termOrig = term;
+		stem.word = term;
+		stem.morphParts = new Vector<AffixPartOfComposition>();
+		stem.states = states;
+		stem.wordEndingWithN = wordEndingWithN;
+		stem.path = new int[] {numInitialStems++};
+		addRootsStep(stem);
+	}
+
+	/**
+	 * Add a stem found by the current step, in front of an affix.
+	 */
+	public void addStem(String term, String termOrig, String word,
+			Vector<AffixPartOfComposition> morphParts, Graph.State[] states,
+			Conditions preConds, String transitivity) {
+		Stem stem = new Stem();
+		stem.term = term;
+		stem.termOrig = termOrig;
+		stem.word = word;
+		stem.morphParts = morphParts;
+		stem.states = states;
+		stem.preConds = preConds;
+		stem.transitivity = transitivity;
+		stem.wordEndingWithN = currentStep.stem.wordEndingWithN;
+		stem.path = extendPath(currentStep.path, currentStep.numStemsFound++);
+		addRootsStep(stem);
+
+		if (stemsBeingRecorded != null) {
+			stemsBeingRecorded.add(new Object[] {term, termOrig,
+				morphParts.firstElement(), states, preConds, transitivity});
+		}
+	}
+
+	private void addRootsStep(Stem stem) {
+		Step step = new Step();
+		step.stem = stem;
+		step.position = 0;
+		step.maxRootLength = maxRootLength(stem.term);
+		step.minParts = stem.morphParts.size();
+		// In the depth-first search, the roots of a stem are found before
+		// the affixes at the end of the stem.
+		step.path = extendPath(stem.path, 0);
+		steps.add(step);
+	}
+
+	/*
+	 * In the depth-first search, the affixes are looked for from the last
+	 * position of the stem to the first.
+	 */
+	private void addAffixesStep(Stem stem, int position) {
+		Step step = new Step();
+		step.stem = stem;
+		step.position = position;
+		// The stems that precede the affix (and the stems found further 
+		// back in them) are what precedes the position, with the consonant 
+		// the affix may have deleted. That consonant, or the one that the 
+		// affix changed at the end of the stem, may also form a group with
+		// a longer dialectal equivalent.
+		step.maxRootLength =
+			maxRootLength(stem.term.substring(0, position) + RESTORED_CONSONANT) + 
+			MAX_GROWTH_OF_GROUP;
+		step.minParts = stem.morphParts.size() + 1;
+		step.path = extendPath(stem.path, stem.term.length() - position);
+		steps.add(step);
+	}
+
+	/*
+	 * Upper bound of the length of the roots that MorphologicalAnalyzer.
+	 * analyzeAsRoot() can find in a term. The roots are looked for under
+	 * the term itself (in the ICI orthography), and under its dialectal
+	 * variants (see Dialect.newRootCandidates):
+	 * 
+	 * - a final '*' is replaced by one consonant;
+	 * - a group of two consonants can be replaced by an equivalent group,
+	 *   which may be longer in the ICI orthography (ex: "nn" by "ngn");
+	 * - Schneider's law can restore a consonant in front of a consonant
+	 *   that is followed by a vowel: at most one for every group of
+	 *   consonants of the term, since the equivalent groups are groups of
+	 *   consonants too.
+	 */
+	private static int maxRootLength(String term) {
+		String termICI = Orthography.orthographyICI(term, false);
+		int maxLength = termICI.length();
+		boolean inGroup = false;
+		for (int ii=0; ii < termICI.length(); ii++) {
+			char ch = termICI.charAt(ii);
+			boolean isConsonant = "aiu".indexOf(ch) < 0;
+			if (isConsonant && !inGroup) {
+				maxLength++;
+			}
+			if (ii > 0) {
+				maxLength += growthOfGroup(termICI.charAt(ii-1), ch);
+			}
+			inGroup = isConsonant;
+		}
+		return maxLength;
+	}
+
+	private static int growthOfGroup(char l1, char l2) {
+		int growth = 0;
+		if (l1 < NB_CHARS && l2 < NB_CHARS) {
+			growth = GROWTH_OF_GROUP[l1*NB_CHARS+l2];
+		}
+		return growth;
+	}
+
+	private static int[] growthOfGroups() {
+		int[] growths = new int[NB_CHARS*NB_CHARS];
+		for (char l1=0; l1 < NB_CHARS; l1++) {
+			for (char l2=0; l2 < NB_CHARS; l2++) {
+				Vector<String> equivalents = Dialect.equivalentGroups(l1, l2);
+				if (equivalents == null) {
+					continue;
+				}
+				for (String equivalent: equivalents) {
+					int growth = 
+						Orthography.orthographyICILat(equivalent).length() - 2;
+					growths[l1*NB_CHARS+l2] = 
+						Math.max(growths[l1*NB_CHARS+l2], growth);
+				}
+			}
+		}
+		return growths;
+	}
+
+	private static int maxGrowthOfGroup() {
+		int max = 0;
+		for (int growth: GROWTH_OF_GROUP) {
+			max = Math.max(max, growth);
+		}
+		return max;
+	}
+
+	/**
+	 * @return The next step of the search, or null if the search is over.
+	 */
+	public Step nextStep() throws LinguisticDataException {
+		stemsBeingRecorded = null;
+		if (currentStep != null) {
+			// The affixes of the stem are looked for one position at a
+			// time, and only when they can lead to better decompositions.
+			int nextPosition = currentStep.position - 1;
+			if (currentStep.findsRoots()) {
+				nextPosition = currentStep.stem.term.length() - 1;
+			}
+			if (nextPosition > 1) {
+				addAffixesStep(currentStep.stem, nextPosition);
+			}
+		}
+
+		currentStep = null;
+		Step next = steps.peek();
+		if (next == null) {
+			exhausted = true;
+		} else if (canLeadToBetterDecomps(next)) {
+			currentStep = steps.poll();
+		}
+		return currentStep;
+	}
+
+	/**
+	 * True if all the decompositions of the word were found (as opposed to
+	 * only the best ones, or to a search that timed out).
+	 */
+	public boolean isExhausted() {
+		return exhausted;
+	}
+
+	/**
+	 * @return What the steps produced for stems with the given key,
+	 *    or null if the key is null.
+	 */
+	public Expansion expansionFor(String key) {
+		Expansion expansion = null;
+		if (key != null) {
+			expansion = expansions.get(key);
+			if (expansion == null) {
+				expansion = new Expansion();
+				expansions.put(key, expansion);
+			}
+		}
+		return expansion;
+	}
+
+	/**
+	 * Record the stems that the current step finds, under the given list.
+	 */
+	public void recordStems(List<Object[]> stems) {
+		stemsBeingRecorded = stems;
+	}
+
+	/**
+	 * Add stems that were recorded for another stem, as if they had been
+	 * found by the current step.
+	 */
+	@SuppressWarnings("unchecked")
+	public void replayStems(List<Object[]> stems) {
+		stemsBeingRecorded = null;
+		Stem stem = currentStep.stem;
+		for (Object[] args: stems) {
+			Vector<AffixPartOfComposition> newMorphParts =
+				(Vector<AffixPartOfComposition>) stem.morphParts.clone();
+			newMorphParts.add(0, (AffixPartOfComposition) args[2]);
+			addStem((String) args[0], (String) args[1], stem.word,
+				newMorphParts, (Graph.State[]) args[3], (Conditions) args[4],
+				(String) args[5]);
+		}
+	}
+
+	/**
+	 * Record the decompositions found by the current step (that is, the
+	 * decompositions where the stem is the root).
+	 */
+	public void addDecompositions(Vector<Decomposition> decomps)
+			throws LinguisticDataException {
+		for (int id=0; id < decomps.size(); id++) {
+			Decomposition decomp = decomps.get(id);
+			found.add(new Found(decomp, extendPath(currentStep.path, id)));
+			if (distinctDecomps.add(decomp.compact())) {
+				addToBestDecomps(decomp);
+			}
+		}
+	}
+
+	/**
+	 * All the decompositions found so far, in the order the depth-first
+	 * search would have found them.
+	 */
+	public Decomposition[] decompositionsInSearchOrder() {
+		List<Found> sorted = new ArrayList<Found>(found);
+		Collections.sort(sorted, new Comparator<Found>() {
+			@Override
+			public int compare(Found f1, Found f2) {
+				return comparePaths(f1.path, f2.path);
+			}
+		});
+		Decomposition[] decomps = new Decomposition[sorted.size()];
+		for (int id=0; id < decomps.length; id++) {
+			decomps[id] = sorted.get(id).decomp;
+		}
+		return decomps;
+	}
+
+	/*
+	 * Keep the distinct decompositions found so far, sorted. They are all
+	 * kept, because a decomposition with a combined suffix found later can
+	 * remove some of the best ones (see worstKept()).
+	 */
+	private void addToBestDecomps(Decomposition decomp) {
+		int pos = bestDecomps.size();
+		while (pos > 0 && decomp.compareTo(bestDecomps.get(pos-1)) < 0) {
+			pos--;
+		}
+		bestDecomps.add(pos, decomp);
+		bestDecompsChanged = true;
+	}
+
+	/*
+	 * The last of the maxDecomps best decompositions found so far, or null
+	 * if fewer were found. Like in MorphologicalAnalyzer.
+	 * organizeDecompositions(), the decompositions that have a sequence of
+	 * suffixes for which there is a combined suffix do not count. The
+	 * decomposition with the combined suffix has fewer morphemes, so it 
+	 * comes before them: only the first decompositions need to be looked
+	 * at.
+	 */
+	private Decomposition worstKept() throws LinguisticDataException {
+		if (bestDecompsChanged) {
+			bestDecompsChanged = false;
+			worstKept = null;
+			int numLookedAt = 0;
+			while (worstKept == null && numLookedAt < bestDecomps.size()) {
+				numLookedAt = 
+					Math.min(numLookedAt + maxDecomps, bestDecomps.size());
+				Decomposition[] kept = Decomposition.removeCombinedSuffixes(
+					bestDecomps.subList(0, numLookedAt).toArray(
+						new Decomposition[numLookedAt]));
+				if (kept.length >= maxDecomps) {
+					worstKept = kept[maxDecomps-1];
+				}
+			}
+		}
+		return worstKept;
+	}
+
+	/*
+	 * True unless every decomposition the step can lead to ranks after the
+	 * last of the best decompositions. A step that can lead to a 
+	 * decomposition that ties with it is carried out, since the ties are
+	 * broken by the order of the depth-first search.
+	 */
+	private boolean canLeadToBetterDecomps(Step step)
+			throws LinguisticDataException {
+		boolean canLead = true;
+		Decomposition worst = worstKept();
+		if (worst != null) {
+			int worstRootLength =
+				((Base) worst.stem.getRoot()).morpheme.length();
+			int worstNumParts = worst.morphParts.length;
+			canLead =
+				step.maxRootLength > worstRootLength ||
+				(step.maxRootLength == worstRootLength &&
+					step.minParts <= worstNumParts);
+		}
+		return canLead;
+	}
+
+	private static int[] extendPath(int[] path, int index) {
+		int[] extended = new int[path.length + 1];
+		System.arraycopy(path, 0, extended, 0, path.length);
+		extended[path.length] = index;
+		return extended;
+	}
+
+	private static int comparePaths(int[] path1, int[] path2) {
+		int comp = 0;
+		for (int ii=0; comp == 0 && ii < Math.min(path1.length, path2.length); ii++) {
+			comp = Integer.compare(path1[ii], path2[ii]);
+		}
+		if (comp == 0) {
+			comp = Integer.compare(path1.length, path2.length);
+		}
+		return comp;
+	}
+}
@@ -0,0 +1,36 @@
+package ca.inuktitutcomputing.morph;
+
+/**
+ * Counts of the stem-affix boundaries that the morphological analyzer
+ * checked against its table of possible boundaries, and of those that it
+ * rejected before looking at the affix forms (see
+ * MorphologicalAnalyzer.boundaryPruningStats()).
+ */
+public class BoundaryPruningStats {
+
+	/** Number of boundaries checked against the table */
+	public long checkedBoundaries = 0;
+
+	/** Number of boundaries found to be impossible */
+	public long prunedBoundaries = 0;
+
+	/**
+	 * Fraction of the boundaries checked that were rejected.
+	 */
+	public double pruningRate() {
+		double rate = 0.0;
+		if (checkedBoundaries > 0) {
+			rate = 1.0 * prunedBoundaries / checkedBoundaries;
+		}
+		return rate;
+	}
+
+	@Override
+	public String toString() {
+		return
+			"Pruning of stem-affix boundaries\n"+
+			"  #Checked : "+checkedBoundaries+"\n"+
+			"  #Pruned  : "+prunedBoundaries+"\n"+
+			"  Rate     : "+String.format("%.3f", pruningRate());
+	}
+}
@@ -0,0 +1,82 @@
+package ca.inuktitutcomputing.morph;
+
+import java.util.Arrays;
+
+import ca.inuktitutcomputing.data.LinguisticData;
+import ca.inuktitutcomputing.data.LinguisticDataException;
+import ca.inuktitutcomputing.data.Morpheme;
+
+/**
+ * Compact form of a Decomposition: the int ids of its morphemes (see
+ * Morpheme.intId), root first, and their surface forms.
+ *
+ * This carries the same information as the decomposition's string
+ * expression (see Decomposition.toStr2()), so that clients can compare
+ * decompositions and extract their morphemes without building and parsing
+ * strings.
+ *
+ * Two compact decompositions are equal if they have the same morphemes with
+ * the same surface forms. Since the morphemes are compared first, and as
+ * ints, most comparisons never look at the surface forms.
+ */
+public class CompactDecomposition {
+
+	public final int[] morphemeIds;
+	public final String[] surfaceForms;
+	private final int hashCode;
+
+	public CompactDecomposition(Decomposition dec) throws LinguisticDataException {
+		int nbParts = dec.morphParts.length + 1;
+		morphemeIds = new int[nbParts];
+		surfaceForms = new String[nbParts];
+		morphemeIds[0] = dec.stem.getRoot().intId;
+		surfaceForms[0] = dec.stem.getTerm();
+		for (int ip=0; ip < dec.morphParts.length; ip++) {
+			AffixPartOfComposition part = dec.morphParts[ip];
+			morphemeIds[ip+1] = part.getMorpheme().intId;
+			surfaceForms[ip+1] = part.surfaceForm();
+		}
+		hashCode = 31 * Arrays.hashCode(morphemeIds) + Arrays.hashCode(surfaceForms);
+	}
+
+	/** Number of morphemes, including the root */
+	public int length() {
+		return morphemeIds.length;
+	}
+
+	public int morphemeIntId(int pos) {
+		return morphemeIds[pos];
+	}
+
+	public String surfaceForm(int pos) {
+		return surfaceForms[pos];
+	}
+
+	public Morpheme morpheme(int pos) throws LinguisticDataException {
+		return LinguisticData.getInstance().getMorphemeWithIntId(morphemeIds[pos]);
+	}
+
+	/** String id of the morpheme at the given position (ex: 'juq/1vn') */
+	public String morphemeId(int pos) throws LinguisticDataException {
+		return morpheme(pos).id;
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (this == obj) {
+			return true;
+		}
+		if (!(obj instanceof CompactDecomposition)) {
+			return false;
+		}
+		CompactDecomposition other = (CompactDecomposition) obj;
+		return hashCode == other.hashCode &&
+			Arrays.equals(morphemeIds, other.morphemeIds) &&
+			Arrays.equals(surfaceForms, other.surfaceForms);
+	}
+
+	@Override
+	public int hashCode() {
+		return hashCode;
+	}
+}
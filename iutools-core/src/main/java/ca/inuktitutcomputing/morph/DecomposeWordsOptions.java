@@ -0,0 +1,77 @@
+package ca.inuktitutcomputing.morph;
+
+/**
+ * Options for decomposing a batch of words with
+ * MorphologicalAnalyzerAbstract.decomposeWords().
+ *
+ * - numThreads: Number of words decomposed at the same time
+ *     (defaults to the number of available processors).
+ * - lenient: Same as the 'lenient' argument of decomposeWord().
+ * - dedupe: If true, a word that appears more than once in the batch is
+ *     decomposed and reported only once (the first time it appears).
+ *     Defaults to false: the handler gets the results of every word of 
+ *     the batch, and the repeats of a word are usually answered from the
+ *     cache of decompositions.
+ * - progressEvery: Report progress every time that many words have been
+ *     decomposed (0 means no progress reports).
+ *
+ * Each word is subject to the timeout of the analyzer (see
+ * MorphologicalAnalyzerAbstract.setTimeout()).
+ */
+public class DecomposeWordsOptions {
+
+	private int numThreads = Runtime.getRuntime().availableProcessors();
+	private Boolean lenient = null;
+	private boolean dedupe = false;
+	private long progressEvery = 0;
+
+	public DecomposeWordsOptions() {
+	}
+
+	public DecomposeWordsOptions setNumThreads(int _numThreads) {
+		if (_numThreads < 1) {
+			_numThreads = 1;
+		}
+		this.numThreads = _numThreads;
+		return this;
+	}
+
+	public int getNumThreads() {
+		return numThreads;
+	}
+
+	public DecomposeWordsOptions setLenient(Boolean _lenient) {
+		this.lenient = _lenient;
+		return this;
+	}
+
+	public Boolean getLenient() {
+		return lenient;
+	}
+
+	public DecomposeWordsOptions setDedupe(boolean _dedupe) {
+		this.dedupe = _dedupe;
+		return this;
+	}
+
+	public boolean getDedupe() {
+		return dedupe;
+	}
+
+	public DecomposeWordsOptions setProgressEvery(long _numWords) {
+		this.progressEvery = _numWords;
+		return this;
+	}
+
+	public long getProgressEvery() {
+		return progressEvery;
+	}
+
+	/**
+	 * Max number of words that can be waiting to be reported at any given
+	 * time. This bounds the memory used for batches of any size.
+	 */
+	int maxPendingWords() {
+		return 4 * numThreads;
+	}
+}
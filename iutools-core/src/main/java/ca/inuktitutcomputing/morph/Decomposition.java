@@ -30,7 +30,9 @@ import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 import java.util.Vector;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
@@ -41,6 +43,7 @@ import ca.inuktitutcomputing.data.Base;
 import ca.inuktitutcomputing.data.LinguisticDataException;
 import ca.inuktitutcomputing.data.Morpheme;
 import ca.inuktitutcomputing.script.Orthography;
+import ca.inuktitutcomputing.morph.Decomposition.DecompositionExpression.DecPart;
 
 // Decomposition:
 //    String word
@@ -93,6 +96,22 @@ public class Decomposition extends Object implements Comparable<Decomposition> {
 		//stem.terme = word.substring(0,nextPos);
 	}
 
+	private Decomposition() {
+	}
+
+	/*
+	 * Reconstitue une décomposition déjà calculée (par exemple, lue dans la
+	 * cache de décompositions sur disque). Les termes des morceaux sont déjà
+	 * établis et ne sont donc pas recalculés à partir des positions.
+	 */
+	static Decomposition restore(String word, RootPartOfComposition r, AffixPartOfComposition[] parts) {
+		Decomposition dec = new Decomposition();
+		dec.word = word;
+		dec.stem = r;
+		dec.morphParts = parts;
+		return dec;
+	}
+
 	public RootPartOfComposition getRootMorphpart() {
 		return stem;
 	}
@@ -178,25 +197,30 @@ public class Decomposition extends Object implements Comparable<Decomposition> {
 	}
 
 	public boolean isEqualDecomposition(Decomposition dec) throws LinguisticDataException {
-		if (this.toStr2().equals(dec.toStr2()))
+		if (this.compact().equals(dec.compact()))
 			return true;
 		else
 			return false;
 	}
 
-	// Note: � faire avec des HashSet: plus rapide probablement.
+	/*
+	 * Forme compacte de la décomposition (identificateurs entiers des
+	 * morphèmes et formes de surface). Elle est recalculée à chaque appel,
+	 * parce que les termes des morceaux peuvent être modifiés après la
+	 * création de la décomposition (voir MorphologicalAnalyzer.restoreFinalN).
+	 */
+	public CompactDecomposition compact() throws LinguisticDataException {
+		return new CompactDecomposition(this);
+	}
+
 	static public Decomposition[] removeMultiples(Decomposition[] decs) throws LinguisticDataException {
 		if (decs == null || decs.length == 0)
 			return decs;
 		Vector<Decomposition> v = new Vector<Decomposition>();
-		Vector<String> vc = new Vector<String>();
-		v.add(decs[0]);
-		vc.add(decs[0].toStr2());
-		for (int i = 1; i < decs.length; i++) {
-			String c = decs[i].toStr2();
-			if (!vc.contains(c)) {
+		Set<CompactDecomposition> vc = new HashSet<CompactDecomposition>();
+		for (int i = 0; i < decs.length; i++) {
+			if (vc.add(decs[i].compact())) {
 				v.add(decs[i]);
-				vc.add(c);
 			}
 		}
 		return (Decomposition[]) v.toArray(new Decomposition[] {
@@ -473,6 +497,45 @@ public class Decomposition extends Object implements Comparable<Decomposition> {
 		return sb.toString();
 	}
 	
+	/*
+	 * Sens d'un morphème dans la langue 'lang' ("en" ou "fr").
+	 */
+	static public String meaningOf(Morpheme morph, String lang) {
+		String meaning = lang.equals("en") ? morph.englishMeaning : morph.frenchMeaning;
+		meaning = meaning.replaceAll(" /", " ");
+		meaning = meaning.replace("^/", "");
+		return meaning;
+	}
+
+	/*
+	 * Les morceaux de la décomposition, racine d'abord: forme de surface et
+	 * identificateur du morphème de chacun. C'est ce que contient
+	 * l'expression de la décomposition (toStr2()), sans avoir à la 
+	 * construire puis à l'analyser.
+	 */
+	public DecPart[] parts() throws LinguisticDataException {
+		DecPart[] parts = new DecPart[morphParts.length + 1];
+		parts[0] = new DecPart(stem.getTerm(), stem.getRoot().id);
+		for (int ip=0; ip<morphParts.length; ip++) {
+			AffixPartOfComposition part = morphParts[ip];
+			parts[ip+1] = new DecPart(part.surfaceForm(), part.getMorpheme().id);
+		}
+		return parts;
+	}
+
+	/*
+	 * L'expression de la décomposition, formée directement à partir de ses
+	 * morceaux (voir parts()).
+	 */
+	public DecompositionExpression toExpression() throws LinguisticDataException {
+		DecPart[] parts = parts();
+		StringBuilder decstr = new StringBuilder();
+		for (DecPart part: parts) {
+			decstr.append(part.str);
+		}
+		return new DecompositionExpression(decstr.toString(), parts);
+	}
+
 	public List<String> getSurfaceForms() {
 		List<String> surfaceForms = new ArrayList<String>();
 		surfaceForms.add(stem.term);
@@ -520,18 +583,16 @@ public class Decomposition extends Object implements Comparable<Decomposition> {
 			if (meanings == null) {
 				meanings = new String[parts.length];
 				for (int i = 0; i < parts.length; i++) {
-					meanings[i] = lang.equals("en") ? Morpheme.getMorpheme(parts[i].morphid).englishMeaning
-							: Morpheme.getMorpheme(parts[i].morphid).frenchMeaning;
-					meanings[i] = meanings[i].replaceAll(" /", " ");
-					meanings[i] = meanings[i].replace("^/", "");
+					meanings[i] = meaningOf(Morpheme.getMorpheme(parts[i].morphid), lang);
 				}
 			}
 			return meanings;
 		}
 		
+		private static final Pattern partPattern = Pattern.compile("\\{[^}]+?\\}");
+		
 		protected String[] expr2parts() {
-			Pattern p = Pattern.compile("\\{[^}]+?\\}");
-			Matcher mp = p.matcher(decstr);
+			Matcher mp = partPattern.matcher(decstr);
 			ArrayList<String> v = new ArrayList<String>();
 			int pos=0;
 			while (mp.find(pos)) {
@@ -564,12 +625,16 @@ public class Decomposition extends Object implements Comparable<Decomposition> {
 			public DecPart() {
 			}
 			
+			private static final Pattern delimitedPattern = 
+				Pattern.compile("\\"+startDelimitor+"(.+?)"+"\\"+endDelimitor);
+			private static final Pattern interDelimitorPattern = 
+				Pattern.compile(interDelimitor);
+			
 			public DecPart (String str) {
 				this.str = str;
-				Pattern p = Pattern.compile("\\"+startDelimitor+"(.+?)"+"\\"+endDelimitor);
-				Matcher m = p.matcher(str);
+				Matcher m = delimitedPattern.matcher(str);
 				m.matches();
-				String[] partParts = Pattern.compile(":").split(m.group(1));
+				String[] partParts = interDelimitorPattern.split(m.group(1));
 				// We assume that if there is only 1 part, it is because the
 				// parts contain only the morpheme's id, with no surface form
 				if (partParts.length==1) {
@@ -1,7 +1,8 @@
 package ca.inuktitutcomputing.morph;
 
 /**
- * Outcome of calling decomposeWord() on a test word.
+ * Outcome of calling decomposeWord() on a test word, or of decomposing
+ * one word of a batch with decomposeWords().
  * 
  * @author desilets
  *
@@ -10,6 +11,7 @@ public class DecompositionResults {
 	public String word = null;
 	
 	public boolean timedOut = false;
+	public Exception exception = null;
 	public Decomposition[] decompositions = new Decomposition[0];
 	public long totalMSecs = 0;
 	
@@ -0,0 +1,25 @@
+package ca.inuktitutcomputing.morph;
+
+/**
+ * Receives the results of MorphologicalAnalyzerAbstract.decomposeWords(),
+ * one word at a time.
+ *
+ * Both methods are invoked from the thread that called decomposeWords(),
+ * so implementations do not need to be thread-safe.
+ */
+public interface DecompositionResultsHandler {
+
+	/**
+	 * Invoked once for every word of the batch, including repeated words
+	 * (or once for every distinct word, if the batch is deduped, see 
+	 * DecomposeWordsOptions.setDedupe()), in the order the words appear in
+	 * the batch.
+	 */
+	public void onResults(DecompositionResults results) throws Exception;
+
+	/**
+	 * Invoked every DecomposeWordsOptions.getProgressEvery() words.
+	 */
+	public default void onProgress(long numWordsDone) throws Exception {
+	}
+}
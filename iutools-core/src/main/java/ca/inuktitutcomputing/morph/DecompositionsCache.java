@@ -0,0 +1,146 @@
+package ca.inuktitutcomputing.morph;
+
+import org.apache.log4j.Logger;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import com.github.benmanes.caffeine.cache.stats.ConcurrentStatsCounter;
+import com.github.benmanes.caffeine.cache.stats.StatsCounter;
+
+import ca.inuktitutcomputing.config.IUConfig;
+import ca.nrc.config.ConfigException;
+
+/**
+ * In-memory cache of the decompositions of words, shared by all the
+ * analyzers (see MorphologicalAnalyzer.cache()).
+ *
+ * The cache is bounded either by a number of words or, if a maximum number
+ * of bytes is configured, by the approximate memory taken by the
+ * decompositions of each word (see approximateBytes()). It is safe to use
+ * from several threads without any locking.
+ *
+ * The cache keeps statistics: hit rate, evictions, and load time, which is
+ * the time it took to decompose the words that were put in the cache (or
+ * to read them from the disk cache).
+ *
+ * Configuration properties:
+ * - ca.nrc.iutools.morph.decompscache.maxentries: maximum number of words
+ *   (10000 by default)
+ * - ca.nrc.iutools.morph.decompscache.maxbytes: maximum approximate size
+ *   of the cache in bytes; if set, the maximum number of words is ignored
+ */
+public class DecompositionsCache {
+
+	public static final long DEFAULT_MAX_ENTRIES = 10000;
+
+	/*
+	 * Approximate sizes, in bytes, of the objects held by the cache for a
+	 * word. The morphemes and affix forms themselves belong to the
+	 * linguistic data and are not counted.
+	 */
+	private static final int BYTES_PER_ENTRY = 96;
+	private static final int BYTES_PER_DECOMPOSITION = 160;
+	private static final int BYTES_PER_AFFIX = 112;
+	private static final int BYTES_PER_CHAR = 2;
+
+	private final Cache<String, Decomposition[]> cache;
+	private final StatsCounter statsCounter = new ConcurrentStatsCounter();
+
+	/**
+	 * @param maxEntries Maximum number of words in the cache.
+	 * @param maxBytes Maximum approximate size of the cache, in bytes, or
+	 *    null to only limit the number of words.
+	 */
+	public DecompositionsCache(long maxEntries, Long maxBytes) {
+		Caffeine<Object,Object> builder =
+			Caffeine.newBuilder().recordStats(() -> statsCounter);
+		Cache<String, Decomposition[]> theCache = null;
+		if (maxBytes != null) {
+			theCache = builder
+				.maximumWeight(maxBytes)
+				.weigher((String key, Decomposition[] decs) -> approximateBytes(key, decs))
+				.build();
+		} else {
+			theCache = builder.maximumSize(maxEntries).build();
+		}
+		this.cache = theCache;
+	}
+
+	/**
+	 * @return A cache sized according to the configuration properties
+	 *    (or with the default size, if they cannot be read).
+	 */
+	public static DecompositionsCache fromConfig() {
+		long maxEntries = DEFAULT_MAX_ENTRIES;
+		Long maxBytes = null;
+		try {
+			Long configured = IUConfig.getDecompositionsCacheMaxEntries();
+			if (configured != null) {
+				maxEntries = configured;
+			}
+			maxBytes = IUConfig.getDecompositionsCacheMaxBytes();
+		} catch (ConfigException e) {
+			Logger.getLogger("ca.inuktitutcomputing.morph.DecompositionsCache.fromConfig")
+				.warn("Using the default size for the decompositions cache: "+e.getMessage());
+		}
+		return new DecompositionsCache(maxEntries, maxBytes);
+	}
+
+	public Decomposition[] get(String key) {
+		return cache.getIfPresent(key);
+	}
+
+	/**
+	 * Put the decompositions of a word in the cache.
+	 *
+	 * @param loadNanos Time it took to obtain the decompositions.
+	 */
+	public void put(String key, Decomposition[] decs, long loadNanos) {
+		cache.put(key, decs);
+		statsCounter.recordLoadSuccess(loadNanos);
+	}
+
+	public void remove(String key) {
+		cache.invalidate(key);
+	}
+
+	public long estimatedSize() {
+		return cache.estimatedSize();
+	}
+
+	/*
+	 * Evict right away the words that exceed the size of the cache (this is
+	 * otherwise done asynchronously).
+	 */
+	void cleanUp() {
+		cache.cleanUp();
+	}
+
+	/**
+	 * @return Hits, misses, evictions and load times since the cache was
+	 *    created.
+	 */
+	public CacheStats stats() {
+		return statsCounter.snapshot();
+	}
+
+	/**
+	 * Approximate number of bytes taken by the decompositions of a word in
+	 * the cache, including its key.
+	 */
+	static int approximateBytes(String key, Decomposition[] decs) {
+		int bytes = BYTES_PER_ENTRY + BYTES_PER_CHAR * key.length();
+		for (Decomposition dec: decs) {
+			bytes += BYTES_PER_DECOMPOSITION + charBytes(dec.stem.getTerm());
+			for (AffixPartOfComposition part: dec.morphParts) {
+				bytes += BYTES_PER_AFFIX + charBytes(part.getTerm());
+			}
+		}
+		return bytes;
+	}
+
+	private static int charBytes(String str) {
+		return (str == null ? 0 : BYTES_PER_CHAR * str.length());
+	}
+}
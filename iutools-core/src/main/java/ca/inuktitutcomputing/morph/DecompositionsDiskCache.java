@@ -0,0 +1,390 @@
+package ca.inuktitutcomputing.morph;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Vector;
+
+import org.apache.log4j.Logger;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import ca.inuktitutcomputing.data.Base;
+import ca.inuktitutcomputing.data.LinguisticData;
+import ca.inuktitutcomputing.data.LinguisticDataException;
+import ca.inuktitutcomputing.data.LinguisticDataSnapshot;
+import ca.inuktitutcomputing.data.Morpheme;
+import ca.inuktitutcomputing.data.SurfaceFormOfAffix;
+
+/**
+ * Cache of the decompositions of words, stored in the file system so that
+ * it survives restarts and can be shared by several processes.
+ *
+ * This is the second tier of the cache of the MorphologicalAnalyzer: it is
+ * only consulted for words that are not in the in-memory cache.
+ *
+ * Each word is stored in its own file, under a directory that is specific
+ * to the version of the linguistic data (the checksum of the CSV tables)
+ * and to the version of the analyzer (MorphologicalAnalyzer.VERSION).
+ * Decompositions computed with a different version of the data or of the
+ * analyzer are therefore never returned.
+ *
+ * A decomposition read from the cache is made of the same objects as the
+ * one that was computed: the same Base (the dialectal variant of a root
+ * if that is what was found in the word), the same surface forms of
+ * affixes, and the same arcs of the Graph.
+ *
+ * Files are written to a temporary file and then moved into place, so
+ * readers (in this process or in another one) never see a partially
+ * written entry. When two processes decompose the same word at the same
+ * time, the last one to finish wins, which is harmless since both computed
+ * the same decompositions.
+ */
+public class DecompositionsDiskCache {
+
+	/** Change this whenever the format of the entries changes */
+	public static final int FORMAT_VERSION = 2;
+
+	private static ObjectMapper mapper = new ObjectMapper();
+
+	private File versionDir = null;
+
+	/**
+	 * Cache for the current version of the linguistic data.
+	 */
+	public DecompositionsDiskCache(File rootDir) throws MorphologicalAnalyzerException {
+		this(rootDir, dataVersion());
+	}
+
+	/**
+	 * Cache for a given version of the linguistic data.
+	 */
+	public DecompositionsDiskCache(File rootDir, String dataVersion) {
+		this(rootDir, dataVersion, MorphologicalAnalyzer.VERSION);
+	}
+
+	/**
+	 * Cache for given versions of the linguistic data and of the analyzer.
+	 */
+	public DecompositionsDiskCache(File rootDir, String dataVersion,
+			int analyzerVersion) {
+		this.versionDir = new File(rootDir,
+			"v"+FORMAT_VERSION+"-a"+analyzerVersion+"-"+dataVersion);
+	}
+
+	public File getDir() {
+		return versionDir;
+	}
+
+	private static String dataVersion() throws MorphologicalAnalyzerException {
+		try {
+			return Long.toHexString(LinguisticDataSnapshot.checksumOfCSVTables());
+		} catch (LinguisticDataException e) {
+			throw new MorphologicalAnalyzerException(e);
+		}
+	}
+
+	/**
+	 * @return The decompositions of the word, or null if the word is not in
+	 *    the cache (or if its entry cannot be read).
+	 */
+	public Decomposition[] get(String word, boolean extendedAnalysis) {
+		Logger logger = Logger.getLogger("ca.inuktitutcomputing.morph.DecompositionsDiskCache.get");
+		Decomposition[] decomps = null;
+		String key = keyFor(word, extendedAnalysis);
+		File file = fileFor(key);
+		if (file.exists()) {
+			try {
+				Entry entry = mapper.readValue(file, Entry.class);
+				if (key.equals(entry.key)) {
+					decomps = restore(entry);
+				}
+			} catch (IOException | LinguisticDataException e) {
+				logger.warn("Could not read cached decompositions from file "+file+": "+e.getMessage());
+			}
+		}
+		return decomps;
+	}
+
+	public void put(String word, boolean extendedAnalysis, Decomposition[] decomps)
+			throws MorphologicalAnalyzerException {
+		String key = keyFor(word, extendedAnalysis);
+		File file = fileFor(key);
+		File tempFile = null;
+		try {
+			Entry entry = toEntry(key, word, decomps);
+			file.getParentFile().mkdirs();
+			tempFile = File.createTempFile("decomps", ".tmp", file.getParentFile());
+			mapper.writeValue(tempFile, entry);
+			try {
+				Files.move(tempFile.toPath(), file.toPath(),
+					StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+			} catch (AtomicMoveNotSupportedException e) {
+				Files.move(tempFile.toPath(), file.toPath(),
+					StandardCopyOption.REPLACE_EXISTING);
+			}
+		} catch (IOException | LinguisticDataException e) {
+			if (tempFile != null) {
+				tempFile.delete();
+			}
+			throw new MorphologicalAnalyzerException(
+				"Could not cache decompositions of word "+word+" in file "+file, e);
+		}
+	}
+
+	public void remove(String word, boolean extendedAnalysis) {
+		fileFor(keyFor(word, extendedAnalysis)).delete();
+	}
+
+	private static String keyFor(String word, boolean extendedAnalysis) {
+		String key = word;
+		if (extendedAnalysis) {
+			key += "/extended";
+		}
+		return key;
+	}
+
+	/*
+	 * The name of the file is a hash of the key, because words can be too
+	 * long (especially in syllabics) to be used as file names. The first
+	 * two characters of the hash are used as a sub-directory, to avoid
+	 * having hundreds of thousands of files in the same directory.
+	 */
+	private File fileFor(String key) {
+		String hash = sha1(key);
+		return new File(new File(versionDir, hash.substring(0, 2)), hash+".json");
+	}
+
+	private static String sha1(String text) {
+		MessageDigest digest;
+		try {
+			digest = MessageDigest.getInstance("SHA-1");
+		} catch (NoSuchAlgorithmException e) {
+			// SHA-1 is available in every JVM
+			throw new RuntimeException(e);
+		}
+		byte[] bytes = digest.digest(text.getBytes(StandardCharsets.UTF_8));
+		StringBuilder hex = new StringBuilder();
+		for (byte b: bytes) {
+			hex.append(String.format("%02x", b));
+		}
+		return hex.toString();
+	}
+
+	private Entry toEntry(String key, String word, Decomposition[] decomps)
+			throws LinguisticDataException, MorphologicalAnalyzerException {
+		Entry entry = new Entry();
+		entry.key = key;
+		entry.decomps = new DecompRecord[decomps.length];
+		for (int id=0; id < decomps.length; id++) {
+			Decomposition dec = decomps[id];
+			DecompRecord rec = new DecompRecord();
+			rec.word = dec.word;
+			rec.rootTerm = dec.stem.term;
+			rec.rootId = dec.stem.root.id;
+			rec.rootMorpheme = dec.stem.root.morpheme;
+			rec.transitivity = dec.stem.transitivity;
+			rec.rootArc = toArcRecord(dec.stem.arc);
+			rec.affixes = new AffixRecord[dec.morphParts.length];
+			for (int ip=0; ip < dec.morphParts.length; ip++) {
+				AffixPartOfComposition part = dec.morphParts[ip];
+				AffixRecord affRec = new AffixRecord();
+				affRec.term = part.term;
+				affRec.position = part.position;
+				affRec.form = part.form.form;
+				affRec.formId = part.form.uniqueId;
+				Vector<SurfaceFormOfAffix> forms =
+					LinguisticData.getInstance().getSurfaceForms(part.form.form);
+				affRec.formIndex = (forms == null ? -1 : forms.indexOf(part.form));
+				affRec.arcs = toArcRecords(part.arcs);
+				affRec.arcIndex = indexOfArc(part.arcs, part.arc);
+				rec.affixes[ip] = affRec;
+			}
+			entry.decomps[id] = rec;
+		}
+		return entry;
+	}
+
+	/*
+	 * Returns null if one of the morphemes of the entry cannot be found in
+	 * the linguistic data (the entry is then treated as a miss).
+	 */
+	private Decomposition[] restore(Entry entry) throws LinguisticDataException {
+		LinguisticData data = LinguisticData.getInstance();
+		Decomposition[] decomps = new Decomposition[entry.decomps.length];
+		for (int id=0; id < decomps.length; id++) {
+			DecompRecord rec = entry.decomps[id];
+			Base root = baseWithIdAndForm(data, rec.rootId, rec.rootMorpheme);
+			if (root == null) {
+				return null;
+			}
+			Graph.Arc rootArc = null;
+			if (rec.rootArc != null) {
+				rootArc = arcOf(rec.rootArc);
+				if (rootArc == null) {
+					return null;
+				}
+				// Each root part has its own copy of the arc (see 
+				// MorphologicalAnalyzer.checkRoots)
+				rootArc = rootArc.copy();
+			} else if (root.type == null || !root.type.startsWith("?")) {
+				// Only the unknown roots have no arc
+				return null;
+			}
+			RootPartOfComposition rootPart =
+				new RootPartOfComposition(rec.rootTerm, root, rec.transitivity, rootArc);
+			AffixPartOfComposition[] parts = new AffixPartOfComposition[rec.affixes.length];
+			for (int ip=0; ip < parts.length; ip++) {
+				AffixRecord affRec = rec.affixes[ip];
+				Vector<SurfaceFormOfAffix> forms = data.getSurfaceForms(affRec.form);
+				if (forms == null || affRec.formIndex < 0 || affRec.formIndex >= forms.size()) {
+					return null;
+				}
+				SurfaceFormOfAffix form = forms.get(affRec.formIndex);
+				if (!form.uniqueId.equals(affRec.formId)) {
+					return null;
+				}
+				parts[ip] = new AffixPartOfComposition(affRec.position, form);
+				parts[ip].setTerme(affRec.term);
+				if (affRec.arcs != null) {
+					Graph.Arc[] arcs = new Graph.Arc[affRec.arcs.length];
+					for (int ia=0; ia < arcs.length; ia++) {
+						arcs[ia] = arcOf(affRec.arcs[ia]);
+						if (arcs[ia] == null) {
+							return null;
+						}
+					}
+					parts[ip].setArcs(arcs);
+					if (affRec.arcIndex >= 0 && affRec.arcIndex < arcs.length) {
+						parts[ip].arc = arcs[affRec.arcIndex];
+					}
+				}
+			}
+			decomps[id] = Decomposition.restore(rec.word, rootPart, parts);
+		}
+		return decomps;
+	}
+
+	/*
+	 * The base with the given id and form: the root itself, or one of its
+	 * dialectal variants (which have the same id as the root).
+	 */
+	private static Base baseWithIdAndForm(LinguisticData data, String id, 
+			String form) {
+		Base base = null;
+		if (form == null) {
+			return null;
+		}
+		Vector<Morpheme> bases = data.getBasesForCanonicalForm(form);
+		if (bases != null) {
+			for (Morpheme morph: bases) {
+				if (morph instanceof Base && morph.id.equals(id)) {
+					base = (Base)morph;
+					break;
+				}
+			}
+		}
+		return base;
+	}
+
+	/*
+	 * An arc of the Graph is identified by its start state and its index in
+	 * the arcs of that state. The arcs of decompositions can be copies of
+	 * the arcs of the graph (see Graph.Arc.copy()), so they are matched by
+	 * their condition and destination, not by identity. An arc that matches
+	 * none of the arcs of its start state could not be restored, so the
+	 * decompositions are not cached at all.
+	 */
+	private static ArcRecord toArcRecord(Graph.Arc arc) 
+			throws MorphologicalAnalyzerException {
+		if (arc == null || arc.startState == null) {
+			return null;
+		}
+		Graph.Arc[] stateArcs = arc.startState.getArcs();
+		for (int ia=0; ia < stateArcs.length; ia++) {
+			if (stateArcs[ia].cond == arc.cond && 
+					stateArcs[ia].destState == arc.destState) {
+				ArcRecord rec = new ArcRecord();
+				rec.state = arc.startState.getId();
+				rec.index = ia;
+				return rec;
+			}
+		}
+		throw new MorphologicalAnalyzerException("Arc to state "+
+			arc.getDestinationStateStr()+" is not one of the arcs of state "+
+			arc.startState.getId());
+	}
+
+	private static ArcRecord[] toArcRecords(Graph.Arc[] arcs) 
+			throws MorphologicalAnalyzerException {
+		if (arcs == null) {
+			return null;
+		}
+		ArcRecord[] recs = new ArcRecord[arcs.length];
+		for (int ia=0; ia < arcs.length; ia++) {
+			recs[ia] = toArcRecord(arcs[ia]);
+		}
+		return recs;
+	}
+
+	private static int indexOfArc(Graph.Arc[] arcs, Graph.Arc arc) {
+		if (arcs != null) {
+			for (int ia=0; ia < arcs.length; ia++) {
+				if (arcs[ia] == arc) {
+					return ia;
+				}
+			}
+		}
+		return -1;
+	}
+
+	private static Graph.Arc arcOf(ArcRecord rec) {
+		if (rec == null) {
+			return null;
+		}
+		for (Graph.State state: Graph.allStates()) {
+			if (state.getId().equals(rec.state)) {
+				Graph.Arc[] stateArcs = state.getArcs();
+				if (stateArcs != null && rec.index >= 0 && rec.index < stateArcs.length) {
+					return stateArcs[rec.index];
+				}
+			}
+		}
+		return null;
+	}
+
+	public static class Entry {
+		public String key;
+		public DecompRecord[] decomps;
+	}
+
+	public static class DecompRecord {
+		public String word;
+		public String rootTerm;
+		public String rootId;
+		public String rootMorpheme;
+		public String transitivity;
+		public ArcRecord rootArc;
+		public AffixRecord[] affixes;
+	}
+
+	public static class AffixRecord {
+		public String term;
+		public int position;
+		public String form;
+		public String formId;
+		public int formIndex;
+		public ArcRecord[] arcs;
+		public int arcIndex;
+	}
+
+	public static class ArcRecord {
+		public String state;
+		public int index;
+	}
+}
@@ -0,0 +1,64 @@
+package ca.inuktitutcomputing.morph;
+
+/**
+ * Snapshot of the state of the pool of threads that the morphological
+ * analyzers use to decompose words with a timeout (see
+ * MorphologicalAnalyzerAbstract.executorPoolStats()).
+ *
+ * When activeThreads is equal to poolSize and queuedTasks keeps growing,
+ * the pool is saturated: words wait in the queue, and once queueCapacity
+ * words are waiting, new ones are rejected. The time allowed for a word
+ * only starts when a thread starts to decompose it, so rejections and
+ * timeouts are counted separately.
+ */
+public class ExecutorPoolStats {
+
+	/** Max number of words that can be decomposed at the same time */
+	public int poolSize = 0;
+
+	/** Number of threads that are currently decomposing a word */
+	public int activeThreads = 0;
+
+	/** Number of words waiting for a thread */
+	public int queuedTasks = 0;
+
+	/** Max number of words that can wait for a thread */
+	public int queueCapacity = 0;
+
+	/** Largest number of threads that were ever in the pool */
+	public int largestPoolSize = 0;
+
+	public long submittedTasks = 0;
+	public long completedTasks = 0;
+
+	/** Number of words that timed out and were cancelled */
+	public long cancelledTasks = 0;
+
+	/** Number of words that were rejected because the queue was full */
+	public long rejectedTasks = 0;
+
+	/**
+	 * Fraction of the threads of the pool that are busy (1.0 means that any
+	 * new word will have to wait in the queue).
+	 */
+	public double saturation() {
+		double saturation = 0.0;
+		if (poolSize > 0) {
+			saturation = 1.0 * activeThreads / poolSize;
+		}
+		return saturation;
+	}
+
+	@Override
+	public String toString() {
+		return
+			"State of the decomposition tasks\n"+
+			"  Pool size  : "+poolSize+" (largest: "+largestPoolSize+")\n"+
+			"  #Active    : "+activeThreads+"\n"+
+			"  #Queued    : "+queuedTasks+" (capacity: "+queueCapacity+")\n"+
+			"  #Submitted : "+submittedTasks+"\n"+
+			"  #Completed : "+completedTasks+"\n"+
+			"  #Cancelled : "+cancelledTasks+"\n"+
+			"  #Rejected  : "+rejectedTasks;
+	}
+}
@@ -1,9 +1,5 @@
 package ca.inuktitutcomputing.morph;
 
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
-
-import ca.inuktitutcomputing.applications.Decompose;
 import ca.inuktitutcomputing.data.LinguisticDataException;
 import ca.inuktitutcomputing.data.LinguisticDataSingleton;
 import ca.inuktitutcomputing.script.Syllabics;
@@ -23,8 +19,6 @@ public class Gist {
 		Decomposition[] decs;
 		
 		MorphologicalAnalyzer morphAnalyzer = new MorphologicalAnalyzer();
-		
-		Pattern pattern = Pattern.compile("^(.+?)---(.+)$");
 
 		try {
 			if (Syllabics.allInuktitut(word)) {
@@ -33,15 +27,13 @@ public class Gist {
 			}
 			else
 				latin = word;
-			decs = morphAnalyzer.decomposeWord(latin);
+			decs = morphAnalyzer.decomposeWordBestFirst(latin, 1).decompositions;
 			if (decs != null && decs.length > 0) {
-				Decomposition dec = decs[0];
-				String[] meaningsOfParts = Decompose.getMeaningsInArrayOfStrings(dec.toStr2(),"en",true,false);
-				wordComponents = new Pair[meaningsOfParts.length];
-				for (int i=0; i<meaningsOfParts.length; i++) {
-					Matcher matcher = pattern.matcher(meaningsOfParts[i]);
-					matcher.matches();
-					wordComponents[i] = new Pair<String,String>(matcher.group(1),matcher.group(2));
+				CompactDecomposition dec = decs[0].compact();
+				wordComponents = new Pair[dec.length()];
+				for (int i=0; i<dec.length(); i++) {
+					wordComponents[i] = new Pair<String,String>(dec.surfaceForm(i),
+						Decomposition.meaningOf(dec.morpheme(i), "en"));
 				}
 			}
 		} catch (Exception e) {
@@ -13,12 +13,17 @@ import java.util.Vector;
 import ca.inuktitutcomputing.data.LinguisticDataException;
 import ca.inuktitutcomputing.data.Morpheme;
 import ca.inuktitutcomputing.data.constraints.Conditions;
-import ca.inuktitutcomputing.data.constraints.Imacond;
+import ca.inuktitutcomputing.data.constraints.ConditionCache;
 import ca.inuktitutcomputing.data.constraints.ParseException;
 
 
 public class Graph {
 	static State[] states;
+	/*
+	 * Tous les états créés, dans l'ordre de leur création: l'index d'un
+	 * état est sa position dans ce vecteur.
+	 */
+	private static Vector<State> allStates = new Vector<State>();
 	static public State initialState;
 	static public State finalState;
 	static public State verbState;
@@ -26,10 +31,16 @@ public class Graph {
     
 	public static class State implements Cloneable {
 		public String id;
+		/** Index de l'état, de 0 à Graph.nbStates()-1 */
+		int index;
 		Arc[] arcs;
 
 		public State(String id) {
 			this.id = id;
+			synchronized (allStates) {
+				this.index = allStates.size();
+				allStates.add(this);
+			}
 		}
         
         private State() {
@@ -74,6 +85,7 @@ public class Graph {
         public Object clone() {
             State cl = new State();
             cl.id = new String(this.id);
+            cl.index = this.index;
             cl.arcs = (Graph.Arc [])arcs.clone();
             return cl;
         }
@@ -415,6 +427,15 @@ public class Graph {
 
 	}
 
+	/** Nombre d'états du graphe (voir State.index) */
+	public static int nbStates() {
+		return allStates.size();
+	}
+
+	public static State[] allStates() {
+		return allStates.toArray(new State[allStates.size()]);
+	}
+
 	public static State getEtat(String str) {
 		for (int i = 0; i < states.length; i++)
 			if (states[i].getId().equals(str))
@@ -424,7 +445,7 @@ public class Graph {
     
     static private Conditions makeCond(String str) {
         try {
-            return (Conditions)new Imacond(str).ParseCondition();
+            return (Conditions)ConditionCache.parse(str);
         } catch (ParseException e) {
             e.printStackTrace();
             return null;
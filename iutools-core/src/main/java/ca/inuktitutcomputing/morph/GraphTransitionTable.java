@@ -0,0 +1,184 @@
+package ca.inuktitutcomputing.morph;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Vector;
+
+import ca.inuktitutcomputing.data.LinguisticData;
+import ca.inuktitutcomputing.data.LinguisticDataException;
+import ca.inuktitutcomputing.data.Morpheme;
+
+/**
+ * Arcs of the Graph that can be followed from each state with each morpheme
+ * of the linguistic data, computed once for all the morphemes.
+ *
+ * The table is indexed by (int id of the morpheme, index of the state) (see
+ * Morpheme.intId and Graph.State.index), so that looking up the arcs for a
+ * morpheme does not evaluate the conditions of the arcs, nor build a key
+ * for a map. It is never modified once built, and so can be shared by all
+ * the analyses that run at the same time.
+ *
+ * The arcs only depend on the attributes of the morpheme (see
+ * Conditions.isMetByFullMorphem), so the table also applies to the copies
+ * of the morphemes that the analyzer makes (see Morpheme.copyOf). The
+ * variants of a root share the int id of the root but have attributes of
+ * their own, so the table has a row of arcs for each of them too. Other
+ * morphemes (ex: a morpheme that was added to the linguistic data after
+ * the table was built) are verified against the graph, as before.
+ */
+class GraphTransitionTable {
+
+	private static final Graph.Arc[] NO_ARCS = new Graph.Arc[0];
+
+	private static GraphTransitionTable table = null;
+
+	private final LinguisticData builtFor;
+	private final int nbStates;
+
+	/* Morpheme of each int id, as it was when the table was built */
+	private final Morpheme[] morphemes;
+
+	/* Arcs for a morpheme and a state are at intId*nbStates+state.index */
+	private final Graph.Arc[][] arcs;
+
+	/* Variants of the root of each int id (null if it has none). The arcs
+	 * for the variant iv of an int id are at [intId][iv*nbStates+state.index] */
+	private final Morpheme[][] variants;
+	private final Graph.Arc[][][] variantArcs;
+
+	/**
+	 * @return The table for the current linguistic data.
+	 */
+	public static synchronized GraphTransitionTable forCurrentData()
+			throws LinguisticDataException {
+		LinguisticData data = LinguisticData.getInstance();
+		if (table == null || table.builtFor != data ||
+				table.morphemes.length != data.getNbMorphemeIntIds()) {
+			table = new GraphTransitionTable(data);
+		}
+		return table;
+	}
+
+	GraphTransitionTable(LinguisticData data) throws LinguisticDataException {
+		this.builtFor = data;
+		this.nbStates = Graph.nbStates();
+		this.morphemes = new Morpheme[data.getNbMorphemeIntIds()];
+		this.arcs = new Graph.Arc[morphemes.length * nbStates][];
+
+		Graph.State[] states = Graph.allStates();
+		for (int intId = 0; intId < morphemes.length; intId++) {
+			Morpheme morph = data.getMorphemeWithIntId(intId);
+			morphemes[intId] = morph;
+			if (morph == null) {
+				continue;
+			}
+			for (Graph.State state: states) {
+				arcs[intId * nbStates + state.index] = verifiedArcs(state, morph);
+			}
+		}
+
+		this.variants = new Morpheme[morphemes.length][];
+		this.variantArcs = new Graph.Arc[morphemes.length][][];
+		Map<Integer,List<Morpheme>> variantsOfIntId = new HashMap<Integer,List<Morpheme>>();
+		for (String canonicalForm: data.getCanonicalFormsForAllBases()) {
+			for (Morpheme base: data.getBasesForCanonicalForm(canonicalForm)) {
+				if (isNewVariant(base, variantsOfIntId.get(base.intId))) {
+					if (!variantsOfIntId.containsKey(base.intId)) {
+						variantsOfIntId.put(base.intId, new ArrayList<Morpheme>());
+					}
+					variantsOfIntId.get(base.intId).add(base);
+				}
+			}
+		}
+		for (Map.Entry<Integer,List<Morpheme>> entry: variantsOfIntId.entrySet()) {
+			int intId = entry.getKey();
+			variants[intId] = entry.getValue().toArray(new Morpheme[0]);
+			variantArcs[intId] = new Graph.Arc[variants[intId].length * nbStates][];
+			for (int iv = 0; iv < variants[intId].length; iv++) {
+				for (Graph.State state: states) {
+					variantArcs[intId][iv * nbStates + state.index] = verifiedArcs(state, variants[intId][iv]);
+				}
+			}
+		}
+	}
+
+	/*
+	 * A variant has the int id of a root of the table, but does not share
+	 * its attributes, nor those of the variants already found.
+	 */
+	private boolean isNewVariant(Morpheme base, List<Morpheme> variantsFound) {
+		int intId = base.intId;
+		if (intId < 0 || intId >= morphemes.length || morphemes[intId] == null
+				|| morphemes[intId].sharesAttributesWith(base)) {
+			return false;
+		}
+		if (variantsFound != null) {
+			for (Morpheme variant: variantsFound) {
+				if (variant.sharesAttributesWith(base)) {
+					return false;
+				}
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * @return The arcs that can be followed with the morpheme from the
+	 *    states, in the order of the states, or null if there are none. The
+	 *    array must not be modified.
+	 */
+	public Graph.Arc[] arcsFollowed(Morpheme morph, Graph.State[] states)
+			throws LinguisticDataException {
+		if (states.length == 1) {
+			Graph.Arc[] arcsOfState = arcsFrom(states[0], morph);
+			return (arcsOfState.length == 0 ? null : arcsOfState);
+		}
+
+		int nbArcs = 0;
+		Graph.Arc[][] arcsOfStates = new Graph.Arc[states.length][];
+		for (int is = 0; is < states.length; is++) {
+			arcsOfStates[is] = arcsFrom(states[is], morph);
+			nbArcs += arcsOfStates[is].length;
+		}
+		if (nbArcs == 0) {
+			return null;
+		}
+		Graph.Arc[] allArcs = new Graph.Arc[nbArcs];
+		int pos = 0;
+		for (Graph.Arc[] arcsOfState: arcsOfStates) {
+			System.arraycopy(arcsOfState, 0, allArcs, pos, arcsOfState.length);
+			pos += arcsOfState.length;
+		}
+		return allArcs;
+	}
+
+	private Graph.Arc[] arcsFrom(Graph.State state, Morpheme morph)
+			throws LinguisticDataException {
+		int intId = morph.intId;
+		if (intId >= 0 && intId < morphemes.length && morphemes[intId] != null
+				&& state.index < nbStates) {
+			if (morphemes[intId].sharesAttributesWith(morph)) {
+				return arcs[intId * nbStates + state.index];
+			}
+			if (variants[intId] != null) {
+				for (int iv = 0; iv < variants[intId].length; iv++) {
+					if (variants[intId][iv].sharesAttributesWith(morph)) {
+						return variantArcs[intId][iv * nbStates + state.index];
+					}
+				}
+			}
+		}
+		return verifiedArcs(state, morph);
+	}
+
+	private static Graph.Arc[] verifiedArcs(Graph.State state, Morpheme morph)
+			throws LinguisticDataException {
+		if (state.arcs == null) {
+			return NO_ARCS;
+		}
+		Vector<Graph.Arc> arcsV = state.verify(morph);
+		return (arcsV.isEmpty() ? NO_ARCS : arcsV.toArray(new Graph.Arc[arcsV.size()]));
+	}
+}
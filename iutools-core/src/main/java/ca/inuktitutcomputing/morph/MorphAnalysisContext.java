@@ -0,0 +1,124 @@
+package ca.inuktitutcomputing.morph;
+
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Vector;
+
+import ca.inuktitutcomputing.data.Affix;
+import ca.inuktitutcomputing.data.constraints.Condition;
+import ca.inuktitutcomputing.data.constraints.Conditions;
+import ca.inuktitutcomputing.utilities.CancellationToken;
+import ca.inuktitutcomputing.utilities.StopWatch;
+
+/**
+ * State of the analysis of a single word by the MorphologicalAnalyzer.
+ *
+ * Everything that the analyzer computes or remembers while it decomposes a
+ * word lives in this object, which is passed down through the recursion.
+ * The analyzer itself only holds its configuration (timeout etc.) and the
+ * read-only linguistic data, so that the same analyzer can decompose
+ * several words at once, in different threads.
+ */
+class MorphAnalysisContext {
+
+	private Long millisTimeout;
+	private boolean timeoutActive;
+	private CancellationToken cancellationToken;
+
+	/** 
+	 * Times out the decomposition of the current term, or stops it when the
+	 * cancellation token is cancelled. 
+	 */
+	StopWatch stpw = null;
+
+	/**
+	 * Arcs of the graph that can be followed from each state with each
+	 * morpheme. See MorphologicalAnalyzer.arcsSuivis.
+	 */
+	GraphTransitionTable transitions = null;
+
+	/**
+	 * Analyses already computed for a given stem, from given states of the
+	 * graph, with given conditions. See
+	 * MorphologicalAnalyzer.__decompose_simplified_term__.
+	 */
+	Map<String,Vector<Object[]>> analysesOfStem =
+		new HashMap<String,Vector<Object[]>>();
+
+	/**
+	 * Constraints on the preceding morpheme that were found while
+	 * validating the context and actions of the current affix candidate
+	 * (ex: non-mobile suffixes, actions with an 'id:' condition).
+	 */
+	private Vector<Condition> precConstraints = new Vector<Condition>();
+
+	/**
+	 * Stems that remain to be decomposed, when the analyzer does a 
+	 * best-first search (null for a complete, depth-first search).
+	 */
+	BestFirstAgenda agenda = null;
+
+	/**
+	 * Boundaries between stems and affixes that are possible at all (null
+	 * if the analyzer does not prune impossible boundaries).
+	 */
+	AffixBoundaryTable boundaries = null;
+
+	/**
+	 * Int ids of the only morphemes that may appear in the decompositions
+	 * of the word (null if any morpheme may). See
+	 * MorphologicalAnalyzer.candidateMorphemes.
+	 */
+	BitSet candidateMorphemes = null;
+
+	/**
+	 * Counts and timings of the decomposition of the word (null if the
+	 * instrumentation is off). See AnalyzerInstrumentation.
+	 */
+	AnalyzerStats stats = null;
+
+	public MorphAnalysisContext(Long millisTimeout, boolean timeoutActive, 
+			CancellationToken cancellationToken) {
+		this.millisTimeout = millisTimeout;
+		this.timeoutActive = timeoutActive;
+		this.cancellationToken = cancellationToken;
+	}
+
+	/**
+	 * Start the decomposition of a new term (the word itself, or a variant
+	 * of it such as the word with a missing final consonant).
+	 */
+	public void startTerm(String term) {
+		stpw = new StopWatch(millisTimeout, "Decomposing word="+term);
+		if (!timeoutActive) stpw.disactivate(); // for debugging
+		stpw.setCancellationToken(cancellationToken);
+		stpw.reset();
+
+		analysesOfStem.clear();
+		precConstraints.clear();
+	}
+
+	public void startAffixCandidate() {
+		precConstraints.clear();
+	}
+
+	public void addPrecConstraint(Condition cond) {
+		precConstraints.add(cond);
+	}
+
+	/**
+	 * Conditions on the morpheme that precedes the affix candidate: those
+	 * of the affix itself, plus the constraints found while validating it.
+	 */
+	public Conditions precConditionsOf(Affix affix) {
+		Conditions conds = affix.getPrecCond();
+		for (Condition cond: precConstraints) {
+			if (conds == null)
+				conds = (Conditions)cond;
+			else
+				conds = new Condition.And((Condition)conds, cond);
+		}
+		return conds;
+	}
+}
@@ -5,23 +5,26 @@ import java.util.concurrent.TimeoutException;
 
 import org.apache.log4j.Logger;
 
-import ca.inuktitutcomputing.utilities.MorphTimeoutException;
-import ca.inuktitutcomputing.utilities.StopWatch;
+import ca.inuktitutcomputing.utilities.CancellationToken;
 
 /**
  * Class for calling the morphological analyzer in a way that supports 
- * timeouts.
+ * timeouts. The task can be stopped through its cancellationToken.
  * 
  * @author desilets
  *
  */
 public class MorphAnalyzerTask implements Callable<Decomposition[]> {
 
-	StopWatch stopWatch = null;
+	CancellationToken cancellationToken = new CancellationToken();
 	String word = null;
 	boolean lenient = true;
 	MorphologicalAnalyzerAbstract analyzer = null;
 	
+	// When a thread started to decompose the word (-1 until then), which 
+	// may be long after the task was submitted
+	volatile long startTime = -1;
+	
 	public MorphAnalyzerTask(String _word, Boolean _lenient, 
 			MorphologicalAnalyzerAbstract morphologicalAnalyzerAbstract) {
 		this.word = _word;
@@ -36,9 +39,10 @@ public class MorphAnalyzerTask implements Callable<Decomposition[]> {
 		Logger mLogger = Logger.getLogger("ca.inuktitutcomputing.morph.MorphAnalyzerTask.call");
 		mLogger.trace("Calling on word="+word);
 		long start = System.currentTimeMillis();
+		startTime = start;
 		Decomposition[] decomps = new Decomposition[0];
 		try {
-			decomps = analyzer.doDecompose(word, lenient);
+			decomps = analyzer.doDecompose(word, lenient, cancellationToken);
 		} catch (TimeoutException e) {
 			mLogger.trace("For word="+word+", caught TimeoutException e="+e.getMessage());
 			throw e;
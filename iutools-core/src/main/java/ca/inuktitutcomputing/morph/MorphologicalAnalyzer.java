@@ -28,16 +28,16 @@ import java.io.*;
 import java.util.*;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.regex.*;
 
 import org.apache.log4j.Logger;
 
-import com.github.benmanes.caffeine.cache.Cache;
-import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
 
+import ca.inuktitutcomputing.config.IUConfig;
 import ca.inuktitutcomputing.data.constraints.Condition;
 import ca.inuktitutcomputing.data.constraints.Conditions;
-import ca.inuktitutcomputing.data.constraints.Imacond;
 import ca.inuktitutcomputing.data.constraints.ParseException;
 import ca.inuktitutcomputing.script.Orthography;
 import ca.inuktitutcomputing.script.Roman;
@@ -45,8 +45,9 @@ import ca.inuktitutcomputing.script.Syllabics;
 import ca.inuktitutcomputing.data.*;
 import ca.inuktitutcomputing.morph.Graph.State;
 import ca.inuktitutcomputing.phonology.Dialect;
-import ca.inuktitutcomputing.utilities.StopWatch;
+import ca.inuktitutcomputing.utilities.CancellationToken;
 import ca.inuktitutcomputing.utilities1.Util;
+import ca.nrc.config.ConfigException;
 
 //-------------------------------------------------
 // Cette version fonctionne avec le graphe d'états.
@@ -55,21 +56,139 @@ import ca.inuktitutcomputing.utilities1.Util;
 
 public class MorphologicalAnalyzer extends MorphologicalAnalyzerAbstract {
 	
-    private Hashtable<String,Graph.Arc[]> arcsByMorpheme = new Hashtable<String,Graph.Arc[]>();
+    /*
+     * Note: l'état de la décomposition d'un mot (chronomètre, analyses déjà
+     * calculées, etc.) est conservé dans un MorphAnalysisContext qui est
+     * passé d'une méthode à l'autre, et non dans l'analyseur. Un même
+     * analyseur peut donc décomposer plusieurs mots à la fois, dans des
+     * fils d'exécution différents.
+     */
+    
+    /*
+     * Cache en mémoire des décompositions, partagé par tous les analyseurs
+     * et par tous les fils d'exécution, sans verrou (voir 
+     * DecompositionsCache pour sa taille et ses statistiques).
+     */
+    private static volatile DecompositionsCache decompsCache = 
+    		DecompositionsCache.fromConfig();
+    
+    /**
+     * Version de l'analyse, à incrémenter chaque fois qu'une modification
+     * de l'analyseur change les décompositions qu'il retourne: les
+     * décompositions mises en cache sur disque par une version précédente
+     * (voir DecompositionsDiskCache) ne sont alors plus retournées.
+     */
+    public static final int VERSION = 1;
+    
+    /*
+     * Deuxième niveau de cache, sur disque, consulté seulement pour les mots
+     * qui ne sont pas dans 'decompsCache'. Il n'est utilisé que si la
+     * propriété ca.nrc.iutools.morph.decompscache.dir est définie (ou si on
+     * en fournit un avec setDiskCache()). Il n'est configuré qu'une fois:
+     * ensuite, getDiskCache() ne prend plus de verrou.
+     */
+    private static volatile DecompositionsDiskCache diskCache = null;
+    private static volatile boolean diskCacheConfigured = false;
     
-    private static Cache<String, Decomposition[]> 
-    	decompsCache = 
-    		Caffeine.newBuilder().maximumSize(10000)
-    		  .build();
+    /*
+     * Espaces de noms des clés du cache (voir cacheNamespace()): celui de
+     * cet analyseur et ceux des analyseurs créés jusqu'ici, pour que
+     * removeFromCache() retire un mot de tous les espaces.
+     */
+    private static final Set<String> cacheNamespaces = 
+    		Collections.synchronizedSet(new HashSet<String>(Arrays.asList("")));
+    
+    /*
+     * Élimination des frontières radical-affixe impossibles (voir
+     * AffixBoundaryTable), et nombre de frontières vérifiées et éliminées
+     * depuis le début (ou depuis resetBoundaryPruningStats()).
+     */
+    private boolean boundaryPruning = true;
+    private static LongAdder numBoundariesChecked = new LongAdder();
+    private static LongAdder numBoundariesPruned = new LongAdder();
+    
+    /*
+     * Réutilisation des analyses d'un radical atteint par plusieurs chaînes
+     * de suffixes (voir __decompose_simplified_term__).
+     */
+    private boolean stemMemoization = true;
+    
+    private static final Logger sequenceLogger = 
+    	Logger.getLogger("MorphologicalAnalyzer.analyzeAsSequenceOfMorphemes");
+    private static final Logger candidateAffixesLogger = 
+    	Logger.getLogger("MorphologicalAnalyzer.analyzeWithCandidateAffixes");
     
     public MorphologicalAnalyzer() throws LinguisticDataException {
     	super();
 		LinguisticData.getInstance();
+		AffixBoundaryTable.forCurrentData();
+		GraphTransitionTable.forCurrentData();
+		cacheNamespaces.add(cacheNamespace());
+    }
+    
+    /**
+     * Turn on or off the early rejection of the stem-affix boundaries that
+     * are impossible (see AffixBoundaryTable). It is on by default, and does
+     * not change the decompositions, only the time it takes to find them.
+     */
+    public void setBoundaryPruning(boolean pruning) {
+    	this.boundaryPruning = pruning;
+    }
+    
+    /**
+     * Turn on or off the reuse of the analyses of a stem that is reached
+     * through several chains of suffixes (see MorphAnalysisContext.analysesOfStem).
+     * It is on by default, and does not change the decompositions, only the
+     * time it takes to find them.
+     */
+    public void setStemMemoization(boolean memoization) {
+    	this.stemMemoization = memoization;
+    }
+    
+    public static BoundaryPruningStats boundaryPruningStats() {
+    	BoundaryPruningStats stats = new BoundaryPruningStats();
+    	stats.checkedBoundaries = numBoundariesChecked.sum();
+    	stats.prunedBoundaries = numBoundariesPruned.sum();
+    	return stats;
+    }
+    
+    public static void resetBoundaryPruningStats() {
+    	numBoundariesChecked.reset();
+    	numBoundariesPruned.reset();
+    }
+    
+    /*
+     * Morphèmes (par leur Morpheme.intId) qui peuvent faire partie des
+     * décompositions du terme, en orthographe simplifiée. Les autres racines
+     * et affixes ne sont pas examinés. Retourne null pour examiner tous les
+     * morphèmes (voir MorphologicalAnalyzer_L2R).
+     */
+    protected BitSet candidateMorphemes(String term) throws LinguisticDataException {
+    	return null;
+    }
+    
+    /*
+     * Préfixe des clés sous lesquelles les décompositions sont conservées
+     * dans le cache (en mémoire et sur disque) partagé par tous les
+     * analyseurs. Un analyseur qui ne calcule pas les décompositions de la
+     * même façon que celui-ci les conserve dans son propre espace, pour que
+     * chacun ne retourne jamais que ses propres décompositions (voir
+     * MorphologicalAnalyzer_L2R).
+     */
+    protected String cacheNamespace() {
+    	return "";
     }
     
 	@Override
 	protected Decomposition[] doDecompose(String word, Boolean extendedAnalysis) 
 			throws MorphologicalAnalyzerException, TimeoutException {
+		return doDecompose(word, extendedAnalysis, null);
+	}
+	
+	@Override
+	protected Decomposition[] doDecompose(String word, Boolean extendedAnalysis, 
+			CancellationToken cancellationToken) 
+			throws MorphologicalAnalyzerException, TimeoutException {
 		
 		if (extendedAnalysis == null) {
 			extendedAnalysis = true;
@@ -81,6 +200,7 @@ public class MorphologicalAnalyzer extends MorphologicalAnalyzerAbstract {
 		if (cachedDecomps != null) {
 			return cachedDecomps;
 		}
+		long loadStart = System.nanoTime();
 		
 		boolean decomposeCompositeRoot = false; // do not decompose composite root
 
@@ -90,25 +210,11 @@ public class MorphologicalAnalyzer extends MorphologicalAnalyzerAbstract {
 		try {
 			Vector<Decomposition> decomps = 
 				decomposeUntilTimeoutOrCompletion(word, extendedAnalysis, 
-						decomposeCompositeRoot, decompsSoFar);
+						decomposeCompositeRoot, decompsSoFar, cancellationToken);
 						
-			// A.
-			// Éliminer les décompositions qui contiennent une suite de suffixes
-			// pour laquelle il existe un suffixe composé, pour ne garder que
-			// la décomposition dans laquelle se trouve le suffixe composé.
-			Decomposition decsC[] = Decomposition.removeCombinedSuffixes(decomps.toArray(new Decomposition[] {}));
+			decs = organizeDecompositions(decomps.toArray(new Decomposition[] {}));
 			
-			// B. Éliminer les doublons 
-			decs = Decomposition.removeMultiples(decsC);
-			
-			// C.
-			// Ordonner les décompositions selon les règles suivantes:
-			// 1. racines les plus longues
-			// 2. nombre minimum de suffixes/terminaisons
-			// (Ces règles sont incluses dans la classe Decomposition)
-			Arrays.sort(decs);
-			
-			cache(decs, word, extendedAnalysis);
+			cache(decs, word, extendedAnalysis, System.nanoTime() - loadStart);
 			
 		} catch (LinguisticDataException | MorphInukException e) {
 			throw new MorphologicalAnalyzerException(e);
@@ -116,59 +222,379 @@ public class MorphologicalAnalyzer extends MorphologicalAnalyzerAbstract {
 
 		return decs;
 	}
+	
+	private Decomposition[] organizeDecompositions(Decomposition[] decomps) 
+			throws LinguisticDataException {
+		// A.
+		// Éliminer les décompositions qui contiennent une suite de suffixes
+		// pour laquelle il existe un suffixe composé, pour ne garder que
+		// la décomposition dans laquelle se trouve le suffixe composé.
+		Decomposition decsC[] = Decomposition.removeCombinedSuffixes(decomps);
+		
+		// B. Éliminer les doublons 
+		Decomposition[] decs = Decomposition.removeMultiples(decsC);
+		
+		// C.
+		// Ordonner les décompositions selon les règles suivantes:
+		// 1. racines les plus longues
+		// 2. nombre minimum de suffixes/terminaisons
+		// (Ces règles sont incluses dans la classe Decomposition)
+		Arrays.sort(decs);
+		
+		return decs;
+	}
+	
+	/*
+	 * Recherche « meilleur d'abord » des maxDecomps meilleures
+	 * décompositions (voir BestFirstAgenda). Les radicaux sont décomposés
+	 * dans l'ordre des décompositions auxquelles ils peuvent mener, et la
+	 * recherche s'arrête dès qu'aucun radical de l'agenda ne peut mener à
+	 * une meilleure décomposition que celles déjà trouvées. Si le temps
+	 * est écoulé, on retourne les meilleures décompositions trouvées
+	 * jusque là.
+	 */
+	@Override
+	protected DecompositionResults doDecomposeBestFirst(String word, int maxDecomps, 
+			Boolean extendedAnalysis) throws MorphologicalAnalyzerException {
+		return doDecomposeBestFirst(word, maxDecomps, extendedAnalysis, null);
+	}
+	
+	/*
+	 * Même chose, mais la recherche s'arrête aussi (comme si le temps était
+	 * écoulé) dès que cancellationToken est annulé.
+	 */
+	DecompositionResults doDecomposeBestFirst(String word, int maxDecomps, 
+			Boolean extendedAnalysis, CancellationToken cancellationToken) 
+			throws MorphologicalAnalyzerException {
+		
+		if (extendedAnalysis == null) {
+			extendedAnalysis = true;
+		}
+		
+		DecompositionResults results = new DecompositionResults(word);
+		long start = System.currentTimeMillis();
+		
+		Decomposition[] decs = uncache(word, extendedAnalysis);
+		if (decs == null) {
+			long loadStart = System.nanoTime();
+			MorphAnalysisContext ctx = new MorphAnalysisContext(millisTimeout, 
+				timeoutActive, cancellationToken);
+			ctx.agenda = new BestFirstAgenda(maxDecomps);
+			ctx.stats = AnalyzerInstrumentation.statsForNewWord();
+			long wordStart = (ctx.stats == null ? 0 : System.nanoTime());
+			try {
+				decomposeBestFirst(ctx, word, extendedAnalysis);
+			} catch (TimeoutException e) {
+				results.timedOut = true;
+			} catch (LinguisticDataException | MorphInukException e) {
+				throw new MorphologicalAnalyzerException(e);
+			} finally {
+				if (ctx.stats != null) {
+					AnalyzerInstrumentation.wordDone(word, ctx.stats, 
+						System.nanoTime() - wordStart);
+				}
+			}
+			
+			try {
+				decs = organizeDecompositions(
+					ctx.agenda.decompositionsInSearchOrder());
+			} catch (LinguisticDataException e) {
+				throw new MorphologicalAnalyzerException(e);
+			}
+			
+			// Si l'agenda a été épuisé, on a trouvé toutes les 
+			// décompositions du mot.
+			if (!results.timedOut && ctx.agenda.isExhausted()) {
+				cache(decs, word, extendedAnalysis, System.nanoTime() - loadStart);
+			}
+		}
+		
+		if (decs.length > maxDecomps) {
+			decs = Arrays.copyOf(decs, maxDecomps);
+		}
+		results.decompositions = decs;
+		results.totalMSecs = System.currentTimeMillis() - start;
+		
+		return results;
+	}
+	
+	private void decomposeBestFirst(MorphAnalysisContext ctx, String word, 
+			boolean extendedAnalysis)
+			throws TimeoutException, MorphInukException, LinguisticDataException {
+		
+		String formOfWordToBeAnalyzed = formToBeAnalyzed(word);
+		ctx.startTerm(formOfWordToBeAnalyzed);
+		ctx.boundaries = boundaryTable();
+		ctx.transitions = GraphTransitionTable.forCurrentData();
+		ctx.candidateMorphemes = candidateMorphemes(
+			Orthography.simplifiedOrthography(formOfWordToBeAnalyzed, false));
+		
+		// Les mêmes variantes du mot que decomposeUntilTimeoutOrCompletion
+		Graph.State[] initialStates = new Graph.State[] { Graph.initialState };
+		boolean isSyllabic = false;
+		int lastPos = formOfWordToBeAnalyzed.length() - 1;
+		if (formOfWordToBeAnalyzed.charAt(lastPos) != 'n') {
+			ctx.agenda.addInitialStem(
+				Orthography.simplifiedOrthography(formOfWordToBeAnalyzed, isSyllabic), 
+				initialStates, null);
+			if ( extendedAnalysis && Roman.typeOfLetterLat(formOfWordToBeAnalyzed.charAt(lastPos)) == Roman.V) {
+				ctx.agenda.addInitialStem(
+					Orthography.simplifiedOrthography(formOfWordToBeAnalyzed + "*", isSyllabic), 
+					initialStates, null);
+			}
+		} else {
+			String wordWithNReplaced = formOfWordToBeAnalyzed.substring(0, lastPos) + "t";
+			ctx.agenda.addInitialStem(
+				Orthography.simplifiedOrthography(wordWithNReplaced, isSyllabic), 
+				initialStates, formOfWordToBeAnalyzed);
+		}
+		
+		BestFirstAgenda.Step step;
+		while ((step = ctx.agenda.nextStep()) != null) {
+			if (step.findsRoots()) {
+				Vector<Decomposition> decomps = analyzeStemAsRoot(ctx, step.stem);
+				if (step.stem.wordEndingWithN != null) {
+					restoreFinalN(decomps, step.stem.wordEndingWithN);
+				}
+				ctx.agenda.addDecompositions(decomps);
+			} else {
+				analyzeStemAtPosition(ctx, step.stem, step.position);
+			}
+		}
+	}
+	
+	/*
+	 * Équivalent de analyzeAsRoot pour la recherche « meilleur d'abord ».
+	 * 
+	 * Comme dans __decompose_simplified_term__, un même radical peut être 
+	 * atteint par plusieurs chaînes de suffixes différentes. Ce qui a été
+	 * trouvé dans le radical (racines, et radicaux plus courts à chaque 
+	 * position) est alors réutilisé.
+	 */
+	private Vector<Decomposition> analyzeStemAsRoot(MorphAnalysisContext ctx, 
+			BestFirstAgenda.Stem stem) 
+			throws TimeoutException, LinguisticDataException {
+		
+    	ctx.stpw.check("analyzeStemAsRoot -- Upon entry");
+    	
+		String key = keyForAnalysesOfStem(stem.term, stem.termOrig, 
+			stem.morphParts, stem.states, stem.preConds, stem.transitivity);
+		if (key != null) {
+			key = stem.word+"|"+key;
+		}
+		stem.expansion = ctx.agenda.expansionFor(key);
+		
+		Vector<Decomposition> analysesAsRoot = null;
+		if (stem.expansion != null && stem.expansion.rootAnalyses != null) {
+			analysesAsRoot = decompositionsFromAnalysesOfStem(
+				stem.expansion.rootAnalyses, stem.word, stem.morphParts);
+		} else {
+	        analysesAsRoot = analyzeAsRoot(ctx, stem.term, stem.termOrig, 
+	        	stem.word, stem.morphParts, stem.states, stem.preConds, 
+	        	stem.transitivity);
+	        if (stem.expansion != null) {
+	        	stem.expansion.rootAnalyses = 
+	        		analysesOfStem(analysesAsRoot, stem.morphParts.size());
+	        }
+		}
+        return analysesAsRoot;
+	}
+	
+	/*
+	 * Équivalent d'une itération de la boucle de analyzeAsSequenceOfMorphemes
+	 * pour la recherche « meilleur d'abord »: les radicaux qui précèdent les 
+	 * affixes trouvés à la position donnée sont mis dans l'agenda.
+	 */
+	private void analyzeStemAtPosition(MorphAnalysisContext ctx, 
+			BestFirstAgenda.Stem stem, int positionAffix) 
+			throws TimeoutException, MorphInukException, LinguisticDataException {
+		
+		List<Object[]> stemsFound = null;
+		if (stem.expansion != null) {
+			stemsFound = stem.expansion.stemsAtPosition.get(positionAffix);
+			if (stemsFound != null) {
+				ctx.agenda.replayStems(stemsFound);
+				return;
+			}
+			stemsFound = new ArrayList<Object[]>();
+			stem.expansion.stemsAtPosition.put(positionAffix, stemsFound);
+		}
+		
+		if (stem.formsOfAffixAtPosition == null) {
+			stem.formsOfAffixAtPosition = 
+				Lexicon.lookForFormsAtEveryPosition(stem.term);
+		}
+		ctx.agenda.recordStems(stemsFound);
+		analyzeAtPosition(ctx, stem.term, stem.word, stem.morphParts, 
+			stem.states, stem.preConds, stem.transitivity, positionAffix, 
+			stem.formsOfAffixAtPosition[positionAffix]);
+	}
 
 
 	private Vector<Decomposition> decomposeUntilTimeoutOrCompletion(
 		String formOfWordToBeAnalyzed, Boolean extendedAnalysis,
-		boolean decomposeCompositeRoot, Vector<Decomposition> decompsSoFar) 
+		boolean decomposeCompositeRoot, Vector<Decomposition> decompsSoFar,
+		CancellationToken cancellationToken) 
 		throws TimeoutException, MorphInukException, LinguisticDataException {
 		
 		Vector<Decomposition> decomps = null;
 		decompsSoFar = new Vector<Decomposition>();
-		if (Syllabics.containsInuktitut(formOfWordToBeAnalyzed))
-			formOfWordToBeAnalyzed = Syllabics.transcodeToRoman(formOfWordToBeAnalyzed);
-		formOfWordToBeAnalyzed = Util.enMinuscule(formOfWordToBeAnalyzed);
-		formOfWordToBeAnalyzed = formOfWordToBeAnalyzed.replaceAll("([iua])qk([iua])", "$1qq$2"); // to cope with error of transliteration
-
-		if (formOfWordToBeAnalyzed.charAt(formOfWordToBeAnalyzed.length() - 1) != 'n') {
-			decomps = _decompose(formOfWordToBeAnalyzed, decomposeCompositeRoot, decompsSoFar);
-			decompsSoFar.addAll(decomps);
-			if ( extendedAnalysis && Roman.typeOfLetterLat(formOfWordToBeAnalyzed.charAt(formOfWordToBeAnalyzed.length() - 1)) == Roman.V) {
-				Vector<Decomposition> otherDecomps = _decomposeForFinalConsonantPossiblyMissing(formOfWordToBeAnalyzed, decomposeCompositeRoot);
-				decomps.addAll(otherDecomps);
-				decompsSoFar.addAll(otherDecomps);
+		MorphAnalysisContext ctx = new MorphAnalysisContext(millisTimeout, 
+			timeoutActive, cancellationToken);
+		ctx.boundaries = boundaryTable();
+		ctx.transitions = GraphTransitionTable.forCurrentData();
+		ctx.stats = AnalyzerInstrumentation.statsForNewWord();
+		long wordStart = (ctx.stats == null ? 0 : System.nanoTime());
+		formOfWordToBeAnalyzed = formToBeAnalyzed(formOfWordToBeAnalyzed);
+		ctx.candidateMorphemes = candidateMorphemes(
+			Orthography.simplifiedOrthography(formOfWordToBeAnalyzed, false));
+
+		try {
+			if (formOfWordToBeAnalyzed.charAt(formOfWordToBeAnalyzed.length() - 1) != 'n') {
+				decomps = _decompose(ctx, formOfWordToBeAnalyzed, decomposeCompositeRoot, decompsSoFar);
+				decompsSoFar.addAll(decomps);
+				if ( extendedAnalysis && Roman.typeOfLetterLat(formOfWordToBeAnalyzed.charAt(formOfWordToBeAnalyzed.length() - 1)) == Roman.V) {
+					Vector<Decomposition> otherDecomps = _decomposeForFinalConsonantPossiblyMissing(ctx, formOfWordToBeAnalyzed, decomposeCompositeRoot);
+					decomps.addAll(otherDecomps);
+					decompsSoFar.addAll(otherDecomps);
+				}
+			}
+			else {
+				decomps = _decomposeForFinalN(ctx, formOfWordToBeAnalyzed, decomposeCompositeRoot);
+				decompsSoFar.addAll(decomps);
+			}
+		} finally {
+			if (ctx.stats != null) {
+				AnalyzerInstrumentation.wordDone(formOfWordToBeAnalyzed, ctx.stats, 
+					System.nanoTime() - wordStart);
 			}
-		}
-		else {
-			decomps = _decomposeForFinalN(formOfWordToBeAnalyzed, decomposeCompositeRoot);
-			decompsSoFar.addAll(decomps);
 		}
 				
 		return decompsSoFar;
 	}
+	
+	private AffixBoundaryTable boundaryTable() throws LinguisticDataException {
+		AffixBoundaryTable table = null;
+		if (boundaryPruning) {
+			table = AffixBoundaryTable.forCurrentData();
+		}
+		return table;
+	}
+	
+	private String formToBeAnalyzed(String word) {
+		String form = word;
+		if (Syllabics.containsInuktitut(form))
+			form = Syllabics.transcodeToRoman(form);
+		form = Util.enMinuscule(form);
+		form = form.replaceAll("([iua])qk([iua])", "$1qq$2"); // to cope with error of transliteration
+		return form;
+	}
 
-	private synchronized void cache(Decomposition[] decs, String word, boolean extendedAnalysis) {
-		String key = cacheKeyFor(word, extendedAnalysis);
-		decompsCache.put(key, decs);
+	private void cache(Decomposition[] decs, String word, boolean extendedAnalysis,
+			long loadNanos) {
+		String key = cacheKeyFor(cacheNamespace(), word, extendedAnalysis);
+		decompsCache.put(key, decs, loadNanos);
+		
+		DecompositionsDiskCache disk = getDiskCache();
+		if (disk != null) {
+			try {
+				disk.put(cacheNamespace()+word, extendedAnalysis, decs);
+			} catch (MorphologicalAnalyzerException e) {
+				// Not being able to cache a word is not a reason to fail its
+				// analysis.
+				Logger.getLogger("ca.inuktitutcomputing.morph.MorphologicalAnalyzer.cache")
+					.warn(e.getMessage());
+			}
+		}
 	}
 
 
-	private synchronized Decomposition[]  uncache(String word, boolean extendedAnalysis) {
-		String key = cacheKeyFor(word, extendedAnalysis);
-		Decomposition[] decomps = decompsCache.getIfPresent(key);
+	private Decomposition[]  uncache(String word, boolean extendedAnalysis) {
+		String key = cacheKeyFor(cacheNamespace(), word, extendedAnalysis);
+		DecompositionsCache memory = decompsCache;
+		Decomposition[] decomps = memory.get(key);
+		if (decomps == null) {
+			DecompositionsDiskCache disk = getDiskCache();
+			if (disk != null) {
+				long loadStart = System.nanoTime();
+				decomps = disk.get(cacheNamespace()+word, extendedAnalysis);
+				if (decomps != null) {
+					memory.put(key, decomps, System.nanoTime() - loadStart);
+				}
+			}
+		}
+		AnalyzerInstrumentation.countCacheLookup(decomps != null);
 		return decomps;
 	}
+	
+	public static synchronized void setDiskCache(DecompositionsDiskCache _diskCache) {
+		diskCache = _diskCache;
+		diskCacheConfigured = true;
+	}
+	
+	public static DecompositionsDiskCache getDiskCache() {
+		if (!diskCacheConfigured) {
+			configureDiskCache();
+		}
+		return diskCache;
+	}
+	
+	private static synchronized void configureDiskCache() {
+		if (diskCacheConfigured) {
+			return;
+		}
+		try {
+			String dir = IUConfig.getDecompositionsCacheDir();
+			if (dir != null) {
+				diskCache = new DecompositionsDiskCache(new File(dir));
+			}
+		} catch (ConfigException | MorphologicalAnalyzerException e) {
+			Logger.getLogger("ca.inuktitutcomputing.morph.MorphologicalAnalyzer.getDiskCache")
+				.warn("Decompositions will not be cached on disk: "+e.getMessage());
+		}
+		diskCacheConfigured = true;
+	}
+	
+	/**
+	 * Replace the in-memory cache of decompositions (ex: to give it another
+	 * size than the configured one). The decompositions that were in the
+	 * previous cache are lost.
+	 */
+	public static void setDecompositionsCache(DecompositionsCache cache) {
+		decompsCache = cache;
+	}
+	
+	/**
+	 * @return Hits, misses, evictions and load times of the in-memory cache 
+	 *    of decompositions.
+	 */
+	public static CacheStats decompositionsCacheStats() {
+		return decompsCache.stats();
+	}
+	
+	public static long decompositionsCacheSize() {
+		return decompsCache.estimatedSize();
+	}
 
 
 	/*
 	 *  Si le mot se termine par la consonne 'n', il est possible qu'il s'agisse 
 	 *  d'un 't' nasalisé, phénomène couramment rencontré.
 	 */
-	private Vector<Decomposition> _decomposeForFinalN(String aWord, boolean decomposeCompositeRoot)
+	private Vector<Decomposition> _decomposeForFinalN(MorphAnalysisContext ctx, String aWord, boolean decomposeCompositeRoot)
 			throws TimeoutException, MorphInukException, LinguisticDataException {
 		
 		String wordWithNReplaced = aWord.substring(0, aWord.length() - 1) + "t";
-		Vector<Decomposition> newDecomps = _decompose(wordWithNReplaced, decomposeCompositeRoot);
+		Vector<Decomposition> newDecomps = _decompose(ctx, wordWithNReplaced, decomposeCompositeRoot);
+		restoreFinalN(newDecomps, aWord);
+		return newDecomps;
+	}
+	
+	/*
+	 * Remettre le 'n' final dans les décompositions du mot où il avait été
+	 * remplacé par 't'.
+	 */
+	private void restoreFinalN(Vector<Decomposition> newDecomps, String aWord) {
 		if (newDecomps != null)
 			for (int j = 0; j < newDecomps.size(); j++) {
 				Decomposition dec = (Decomposition) newDecomps.elementAt(j);
@@ -180,19 +606,17 @@ public class MorphologicalAnalyzer extends MorphologicalAnalyzerAbstract {
 					affixPart.setTerme(affixPart.getTerm().substring(0, affixPart.getTerm().length() - 1) + "n");
 				}
 			}
-		return newDecomps;
 	}
 
     /* Si le mot se termine par une voyelle, il est possible
      * qu'il manque la consonne finale. On ajoute '*' à la fin
      * du mot, qui tient lieu de n'importe quelle consonne.
      */
-    private Vector<Decomposition> _decomposeForFinalConsonantPossiblyMissing(
+    private Vector<Decomposition> _decomposeForFinalConsonantPossiblyMissing(MorphAnalysisContext ctx,
     		String aWord, boolean decomposeCompositeRoot) throws TimeoutException, MorphInukException, LinguisticDataException {
-    	stpw.check(
-    		"_decomposeForFinalConsonantPossiblyMissing -- upon entry, word="+
-    		aWord+", decomposeCompositeRoot="+decomposeCompositeRoot);
-    	Vector<Decomposition> newDecomps = _decompose(aWord + "*", false);
+    	ctx.stpw.check(
+    		"_decomposeForFinalConsonantPossiblyMissing -- upon entry, word=", aWord);
+    	Vector<Decomposition> newDecomps = _decompose(ctx, aWord + "*", false);
         return newDecomps;
 	}
 
@@ -217,7 +641,7 @@ public class MorphologicalAnalyzer extends MorphologicalAnalyzerAbstract {
     // méthodes devraient plutôt appeler decomposeWord, et alors decompose sera
     // faite privée.
 
-	private Vector<Decomposition> _decompose(String term, 
+	private Vector<Decomposition> _decompose(MorphAnalysisContext ctx, String term, 
 			boolean decomposeCompositeRoot, Vector<Decomposition> decompsSoFar)
 			throws TimeoutException, MorphInukException, LinguisticDataException {
 		
@@ -227,12 +651,7 @@ public class MorphologicalAnalyzer extends MorphologicalAnalyzerAbstract {
 		String simplifiedTerm = null;
 		Conditions preCond = null;
 
-		stpw = new StopWatch(millisTimeout, "Decomposing word="+term);
-		Dialect.setStopWatch(stpw);
-        if (!timeoutActive) stpw.disactivate(); // for debugging
-		stpw.reset();
-
-		arcsByMorpheme.clear();
+		ctx.startTerm(term);
 
 		// Etat de départ dans le graphe d'états.
 		if (decomposeCompositeRoot)
@@ -248,7 +667,7 @@ public class MorphologicalAnalyzer extends MorphologicalAnalyzerAbstract {
 			simplifiedTerm = Orthography.simplifiedOrthography(term, isSyllabic);
 			String transitivity = null;
 			// DÉCOMPOSITION du terme simplifié.
-			decomposition = __decompose_simplified_term__(simplifiedTerm, simplifiedTerm, simplifiedTerm,
+			decomposition = __decompose_simplified_term__(ctx, simplifiedTerm, simplifiedTerm, simplifiedTerm,
 					morphPartsInit, new Graph.State[] { state }, preCond, transitivity);
 		}
 		
@@ -259,10 +678,10 @@ public class MorphologicalAnalyzer extends MorphologicalAnalyzerAbstract {
 		return decomposition;
 	}
 	
-	private Vector<Decomposition> _decompose(String term, 
+	private Vector<Decomposition> _decompose(MorphAnalysisContext ctx, String term, 
 			boolean decomposeCompositeRoot)
 			throws TimeoutException, MorphInukException, LinguisticDataException {
-		return _decompose(term, decomposeCompositeRoot, null);
+		return _decompose(ctx, term, decomposeCompositeRoot, null);
 	}
 
     //==========================DECOMPOSER====================================
@@ -288,7 +707,7 @@ public class MorphologicalAnalyzer extends MorphologicalAnalyzerAbstract {
     // Note: le traitement des conditions spécifiques est très embryonnaire, et
     // à toutes fins pratiques, il faut le repenser totalement.
 
-    private Vector<Decomposition> __decompose_simplified_term__(
+    private Vector<Decomposition> __decompose_simplified_term__(MorphAnalysisContext ctx,
     		String term, String termOrig, String word, 
             Vector<AffixPartOfComposition> morphParts, 
             Graph.State states[],
@@ -296,8 +715,30 @@ public class MorphologicalAnalyzer extends MorphologicalAnalyzerAbstract {
             String transitivity
             ) throws TimeoutException, MorphInukException, LinguisticDataException {
 
-    	stpw.check("__decompose_simplified_term__ -- Upon entry");
+    	ctx.stpw.check("__decompose_simplified_term__ -- Upon entry");
 
+        /*
+         * Un même radical peut être atteint par plusieurs chaînes de suffixes
+         * différentes. Si ce radical a déjà été analysé à partir des mêmes
+         * états du graphe, avec les mêmes conditions et le même morphème
+         * suivant, on réutilise les analyses déjà trouvées en y ajoutant
+         * les morceaux de la chaîne courante.
+         */
+        String keyAnalyses = null;
+        if (stemMemoization) {
+        	keyAnalyses = keyForAnalysesOfStem(term, termOrig, morphParts, 
+        		states, preConds, transitivity);
+        }
+        if (keyAnalyses != null) {
+        	Vector<Object[]> stemAnalyses = ctx.analysesOfStem.get(keyAnalyses);
+        	if (stemAnalyses != null) {
+        		if (ctx.stats != null) {
+        			ctx.stats.stemAnalysesReused++;
+        		}
+        		return decompositionsFromAnalysesOfStem(stemAnalyses, word, morphParts);
+        	}
+        }
+        
         Vector<Decomposition> completeAnalysis = new Vector<Decomposition>();
         
         /*
@@ -307,7 +748,7 @@ public class MorphologicalAnalyzer extends MorphologicalAnalyzerAbstract {
 		 * vérifie cette possibilité, et le cas échéant, on ajoute les
 		 * décompositions résultantes à l'analyse complète.
 		 */
-        Vector<Decomposition> analysesAsRoot = analyzeAsRoot(term,termOrig,
+        Vector<Decomposition> analysesAsRoot = analyzeAsRoot(ctx, term,termOrig,
                 word,morphParts,states, preConds, transitivity
                 );
         completeAnalysis.addAll(analysesAsRoot);
@@ -316,26 +757,90 @@ public class MorphologicalAnalyzer extends MorphologicalAnalyzerAbstract {
          * -------------- MORPHÈMES -----------------
          *  Le terme à analyser peut aussi se décomposer en morphèmes.
          */
-        Vector<Decomposition> analysesAsSequenceOfMorphemes = analyzeAsSequenceOfMorphemes(term,
+        Vector<Decomposition> analysesAsSequenceOfMorphemes = analyzeAsSequenceOfMorphemes(ctx, term,
                 word,morphParts,states, preConds, transitivity
                 );
         completeAnalysis.addAll(analysesAsSequenceOfMorphemes);
+        
+        if (keyAnalyses != null) {
+        	ctx.analysesOfStem.put(keyAnalyses, 
+        		analysesOfStem(completeAnalysis, morphParts.size()));
+        }
 
         return completeAnalysis;
     }
     
-    private Vector<Decomposition> analyzeAsSequenceOfMorphemes(
+    /*
+     * Clé identifiant le sous-problème de décomposition d'un radical: le 
+     * radical (normalisé et tel quel), les états du graphe, la signature
+     * des conditions sur le morphème précédent, la transitivité, et 
+     * l'identité et la position du morphème qui suit le radical (seul ce
+     * morphème est consulté lors de la validation des candidats). 
+     * Retourne null si les conditions n'ont pas de signature, auquel cas
+     * les analyses du radical ne sont pas réutilisées.
+     */
+    private String keyForAnalysesOfStem(String term, String termOrig, 
+    		Vector<AffixPartOfComposition> morphParts, Graph.State states[],
+    		Conditions preConds, String transitivity) throws LinguisticDataException {
+    	String condSignature = Condition.signature(preConds);
+    	if (condSignature == null) {
+    		return null;
+    	}
+    	String nextMorpheme = "";
+    	if (morphParts.size() != 0) {
+    		AffixPartOfComposition nextPart = morphParts.firstElement();
+    		nextMorpheme = nextPart.getAffix().id+"@"+nextPart.getPosition();
+    	}
+    	return term+"|"+termOrig+"|"+computeStateIDs(states)+"|"+
+    		condSignature+"|"+transitivity+"|"+nextMorpheme;
+    }
+    
+    /*
+     * Les analyses d'un radical sont conservées sans les morceaux déjà 
+     * trouvés à droite du radical: pour chacune, la racine et les 
+     * morceaux trouvés dans le radical.
+     */
+    private Vector<Object[]> analysesOfStem(Vector<Decomposition> decomps, 
+    		int nbPartsAfterStem) {
+    	Vector<Object[]> stemAnalyses = new Vector<Object[]>();
+    	for (int id=0; id<decomps.size(); id++) {
+    		Decomposition dec = decomps.elementAt(id);
+    		AffixPartOfComposition[] partsOfStem = Arrays.copyOf(dec.morphParts,
+    			dec.morphParts.length - nbPartsAfterStem);
+    		stemAnalyses.add(new Object[] {dec.stem, partsOfStem});
+    	}
+    	return stemAnalyses;
+    }
+    
+    private Vector<Decomposition> decompositionsFromAnalysesOfStem(
+    		Vector<Object[]> stemAnalyses, String word, 
+    		Vector<AffixPartOfComposition> morphParts) {
+    	Vector<Decomposition> decomps = new Vector<Decomposition>();
+    	for (int ia=0; ia<stemAnalyses.size(); ia++) {
+    		RootPartOfComposition root = (RootPartOfComposition) stemAnalyses.elementAt(ia)[0];
+    		AffixPartOfComposition[] partsOfStem = (AffixPartOfComposition[]) stemAnalyses.elementAt(ia)[1];
+    		AffixPartOfComposition[] parts = 
+    			new AffixPartOfComposition[partsOfStem.length + morphParts.size()];
+    		System.arraycopy(partsOfStem, 0, parts, 0, partsOfStem.length);
+    		for (int ip=0; ip<morphParts.size(); ip++) {
+    			parts[partsOfStem.length+ip] = morphParts.elementAt(ip);
+    		}
+    		decomps.add(new Decomposition(word, root, parts));
+    	}
+    	return decomps;
+    }
+    
+    private Vector<Decomposition> analyzeAsSequenceOfMorphemes(MorphAnalysisContext ctx,
 			String simplifiedTerm,
 			String word,
 			Vector<AffixPartOfComposition> morphParts, State[] states,
 			Conditions preCond, String transitivity) throws TimeoutException, MorphInukException, LinguisticDataException {
 
-    	stpw.check("analyzeAsSequenceOfMorphemes -- Upon entry");
-    	Logger logger = Logger.getLogger("MorphologicalAnalyzer.analyzeAsSequenceOfMorphemes");
-    	logger.debug("++++++simplifiedTerm= "+simplifiedTerm);
+    	ctx.stpw.check("analyzeAsSequenceOfMorphemes -- Upon entry");
+    	if (sequenceLogger.isDebugEnabled()) {
+    		sequenceLogger.debug("++++++simplifiedTerm= "+simplifiedTerm);
+    	}
         Vector<Decomposition> completeAnalysis = new Vector<Decomposition>();
-        Vector<SurfaceFormOfAffix> formsOfAffixFound;
-        Vector<SurfaceFormOfAffix> otherFormsOfAffixFound;
         /*
          * =================================================================
          * À partir du dernier caractère du terme, reculer 1 caractère à la
@@ -362,122 +867,21 @@ public class MorphologicalAnalyzer extends MorphologicalAnalyzerAbstract {
 
         int positionAffix = 0; // position dans le mot
         int positionAffixStart = simplifiedTerm.length() - 1;
+        
+        /*
+         * Les formes d'affixes correspondant à la fin du terme, pour toutes
+         * les positions, sont trouvées en un seul balayage de droite à 
+         * gauche dans l'arbre inversé des formes de surface d'affixes.
+         */
+        Vector<SurfaceFormOfAffix>[] formsOfAffixFoundAtPosition = 
+        		Lexicon.lookForFormsAtEveryPosition(simplifiedTerm);
         //            if (term.charAt(term.length() - 1) == '*')
         //                positionAffixStart--;
 
         for (positionAffix = positionAffixStart; positionAffix > 1; positionAffix--) {
-            /*
-             * À la position d'analyse courante dans le terme, on vérifie si
-             * la séquence de caractères de cette position à la fin du terme
-             * est un affixe.
-             */
-            String seqOfCharsPossibleAffix = simplifiedTerm.substring(positionAffix);
-            /*
-             * 'affixCandidate' est donc un candidat correspondant à la
-             * seconde partie de 'term', de la position d'analyse courante
-             * 'positionAffix' à la fin; le radical est la première partie
-             * de 'term', de 0 à positionAffix-1 incl.
-             */
-            String remainingStem = simplifiedTerm.substring(0, positionAffix);
-            stpw.check("analyzeAsSequenceOfMorphemes -- position: "+positionAffix+
-        			"; possibleAffix: "+seqOfCharsPossibleAffix+"; remainingStem: "+remainingStem);
-            
-            /*
-             * RECHERCHE D'AFFIXES---------------------------------------
-             * Chercher toutes les formes d'affixes correspondant au(x) caractère(s)
-             * final(aux) du terme à partir de la position d'analyse
-             * courante. Cette recherche est effectuée dans la table de hachage
-             * 'surfaceFormsOfAffixes'. Le résultat est un ensemble d'objets
-             * qui décrivent des formes de surface d'affixes dans des contextes
-             * donnés avec leurs actions. (L'orthographe du mot à décomposer a été
-             * simplifié; il faut donc la renormaliser pour faire la
-             * recherche lexicale, puisque les données linguistiques sont
-             * stockées avec l'orthographe standard.)
-             */
-            formsOfAffixFound = null;
-            otherFormsOfAffixFound = null;                
-            /*
-             * Certaines combinaisons de caractères à la frontière de deux
-             * morphèmes ne sont pas possibles (par exemple, un suffixe
-             * commençant par une voyelle ne peut suivre un radical se
-             * terminant par un 'm'). Dans ces cas-là, il n'est même pas
-             * nécessaire de chercher des suffixes. On évitera ainsi du
-             * temps de traitement inutile, puisque dans ces cas-là, ces
-             * candidats suffixes seront éventuellement rejetés.
-             */
-            /*
-             * Après avoir été essayé, il s'est avéré que cela ne change pas
-             * grand-chose. On enlève donc ce test.
-             */
-            // String finalRadInitAff = new String(new char[]{
-            //                        stem.charAt(stem.length()-1),
-            //                        affixCandidate.charAt(0)});
-            // boolean test =
-            // 		Donnees.finalRadInitAffHashSet.contains(finalRadInitAff);
-            // if (test) {
-            	boolean isSyllabic = false;
-                formsOfAffixFound = lookForForms(seqOfCharsPossibleAffix, isSyllabic);
-                /*
-                 * Il est possible qu'une différence de prononciation
-                 * dialectale se produise dans un groupe de consonnes à la
-                 * frontière de deux suffixes. Cela peut se produire à la
-                 * fin du candidat et aussi du début du candidat. Pour la
-                 * fin du candidat, sa consonne finale peut être le résultat
-                 * d'une action de 'validateContextActions' pour retourner
-                 * la consonne contextuelle lors de l'analyse du morphème
-                 * précédent, action qui tient compte des dialectes; on ne
-                 * fait donc pas cette vérification. Pour le début du
-                 * candidat, on fait la même chose avec la fin du radical
-                 * qui précéde le candidat et le début du candidat. Il est
-                 * aussi possible qu'une différence dialectale se soit
-                 * produite à l'intérieur du candidat. On y cherche aussi
-                 * des équivalences. Toutes les possibilités sont retenues.
-                 * La loi de Schneider est aussi prise en considération.
-                 */
-                Vector<String> newCandidates = Dialect.newCandidates(remainingStem, seqOfCharsPossibleAffix, null);
-                if (newCandidates != null)
-                    for (int k = 0; k < newCandidates.size(); k++) {
-                        Vector<SurfaceFormOfAffix> tr = lookForForms(newCandidates.elementAt(k), isSyllabic);
-                        if (otherFormsOfAffixFound == null)
-                            otherFormsOfAffixFound = new Vector<SurfaceFormOfAffix>();
-                        if (tr != null) {
-                            otherFormsOfAffixFound.addAll(tr);
-                        }
-                    }
-            // }
-            
-            /*
-             * POINT DE BRANCHEMENT
-             * 
-             * On est au point de branchement. On commence une branche en
-             * poursuivant la décomposition de 'radical' avec les
-             * candidats-suffixes possibles.
-             */
-            
-            /*
-             * 1. Les candidats-suffixes à partir de la chaîne originale.
-             */
-            // Enlever les formes qui ne sont pas acceptables à ce moment-ci
-            // (cf. arcsSuivis)
-            Vector<Decomposition> anas = null;
-            anas = analyzeWithCandidateAffixes(
-                		formsOfAffixFound, 
-                		remainingStem,
-                        seqOfCharsPossibleAffix, states, preCond, transitivity,
-                        positionAffix, morphParts, word, true);
-            completeAnalysis.addAll(anas);
-                
-            /*
-             * 2. Les candidats-suffixes à partir des chaînes transformées
-             * contenant des groupes de consonnes équivalents dans d'autres
-             * dialectes.
-             */
-            anas = analyzeWithCandidateAffixes(
-                		otherFormsOfAffixFound,
-                        remainingStem, seqOfCharsPossibleAffix, states, preCond,
-                        transitivity, positionAffix, morphParts, word, false);
-            completeAnalysis.addAll(anas);
-            
+            completeAnalysis.addAll(analyzeAtPosition(ctx, simplifiedTerm, word, 
+            		morphParts, states, preCond, transitivity, positionAffix, 
+            		formsOfAffixFoundAtPosition[positionAffix]));
             /*
              * Retour de la boucle. On poursuit la décomposition de 'simplifiedTerm',
              * qu'on ait trouvé ou pas un affixe à la position actuelle.
@@ -488,24 +892,166 @@ public class MorphologicalAnalyzer extends MorphologicalAnalyzerAbstract {
         return completeAnalysis;
 	}
     
+    /*
+     * Analyse du terme avec les affixes qui commencent à la position
+     * 'positionAffix' du terme et se terminent à la fin du terme.
+     */
+    private Vector<Decomposition> analyzeAtPosition(MorphAnalysisContext ctx,
+    		String simplifiedTerm, String word,
+    		Vector<AffixPartOfComposition> morphParts, State[] states,
+    		Conditions preCond, String transitivity, int positionAffix,
+    		Vector<SurfaceFormOfAffix> formsOfAffixFound) 
+    		throws TimeoutException, MorphInukException, LinguisticDataException {
+    	
+        Vector<Decomposition> completeAnalysis = new Vector<Decomposition>();
+        Vector<SurfaceFormOfAffix> otherFormsOfAffixFound;
+        
+        /*
+         * À la position d'analyse courante dans le terme, on vérifie si
+         * la séquence de caractères de cette position à la fin du terme
+         * est un affixe.
+         */
+        String seqOfCharsPossibleAffix = simplifiedTerm.substring(positionAffix);
+        /*
+         * 'affixCandidate' est donc un candidat correspondant à la
+         * seconde partie de 'term', de la position d'analyse courante
+         * 'positionAffix' à la fin; le radical est la première partie
+         * de 'term', de 0 à positionAffix-1 incl.
+         */
+        String remainingStem = simplifiedTerm.substring(0, positionAffix);
+        ctx.stpw.check("analyzeAsSequenceOfMorphemes -- remainingStem: ", remainingStem);
+        if (ctx.stats != null) {
+        	ctx.stats.positionsScanned++;
+        }
+        
+        /*
+         * RECHERCHE D'AFFIXES---------------------------------------
+         * Chercher toutes les formes d'affixes correspondant au(x) caractère(s)
+         * final(aux) du terme à partir de la position d'analyse
+         * courante. Cette recherche a été effectuée avant la boucle dans
+         * l'arbre inversé des formes de surface d'affixes. Le résultat est un ensemble d'objets
+         * qui décrivent des formes de surface d'affixes dans des contextes
+         * donnés avec leurs actions. (L'orthographe du mot à décomposer a été
+         * simplifié; il faut donc la renormaliser pour faire la
+         * recherche lexicale, puisque les données linguistiques sont
+         * stockées avec l'orthographe standard.)
+         */
+        otherFormsOfAffixFound = null;                
+        /*
+         * Certaines combinaisons de caractères à la frontière de deux
+         * morphèmes ne sont pas possibles (par exemple, un suffixe
+         * commençant par une voyelle ne peut suivre un radical se
+         * terminant par un 'm'). Dans ces cas-là, il n'est même pas
+         * nécessaire de chercher des suffixes. On évitera ainsi du
+         * temps de traitement inutile, puisque dans ces cas-là, ces
+         * candidats suffixes seront éventuellement rejetés.
+         * 
+         * (Une première version de ce test, avec un HashSet de chaînes
+         * de 2 caractères, ne changeait pas grand-chose. La table des
+         * frontières possibles tient aussi compte des états du graphe,
+         * et la vérification ne crée aucun objet.)
+         */
+        if (formsOfAffixFound != null && 
+        		!boundaryIsPossible(ctx, remainingStem, seqOfCharsPossibleAffix, states)) {
+        	formsOfAffixFound = null;
+        }
+        	boolean isSyllabic = false;
+            /*
+             * Il est possible qu'une différence de prononciation
+             * dialectale se produise dans un groupe de consonnes à la
+             * frontière de deux suffixes. Cela peut se produire à la
+             * fin du candidat et aussi du début du candidat. Pour la
+             * fin du candidat, sa consonne finale peut être le résultat
+             * d'une action de 'validateContextActions' pour retourner
+             * la consonne contextuelle lors de l'analyse du morphème
+             * précédent, action qui tient compte des dialectes; on ne
+             * fait donc pas cette vérification. Pour le début du
+             * candidat, on fait la même chose avec la fin du radical
+             * qui précéde le candidat et le début du candidat. Il est
+             * aussi possible qu'une différence dialectale se soit
+             * produite à l'intérieur du candidat. On y cherche aussi
+             * des équivalences. Toutes les possibilités sont retenues.
+             * La loi de Schneider est aussi prise en considération.
+             */
+            long dialectStart = (ctx.stats == null ? 0 : System.nanoTime());
+            Vector<String> newCandidates = Dialect.newCandidates(ctx.stpw, remainingStem, seqOfCharsPossibleAffix, null);
+            if (ctx.stats != null) {
+            	ctx.stats.dialectVariantsNanos += System.nanoTime() - dialectStart;
+            	ctx.stats.dialectVariants += (newCandidates == null ? 0 : newCandidates.size());
+            }
+            if (newCandidates != null)
+                for (int k = 0; k < newCandidates.size(); k++) {
+                    if (otherFormsOfAffixFound == null)
+                        otherFormsOfAffixFound = new Vector<SurfaceFormOfAffix>();
+                    if (!boundaryIsPossible(ctx, remainingStem, newCandidates.elementAt(k), states))
+                        continue;
+                    Vector<SurfaceFormOfAffix> tr = lookForForms(newCandidates.elementAt(k), isSyllabic);
+                    if (tr != null) {
+                        otherFormsOfAffixFound.addAll(tr);
+                    }
+                }
+        
+        /*
+         * POINT DE BRANCHEMENT
+         * 
+         * On est au point de branchement. On commence une branche en
+         * poursuivant la décomposition de 'radical' avec les
+         * candidats-suffixes possibles.
+         */
+        
+        /*
+         * 1. Les candidats-suffixes à partir de la chaîne originale.
+         */
+        // Enlever les formes qui ne sont pas acceptables à ce moment-ci
+        // (cf. arcsSuivis)
+        Vector<Decomposition> anas = null;
+        anas = analyzeWithCandidateAffixes(ctx,
+            		formsOfAffixFound, 
+            		remainingStem,
+                    seqOfCharsPossibleAffix, states, preCond, transitivity,
+                    positionAffix, morphParts, word, true);
+        completeAnalysis.addAll(anas);
+            
+        /*
+         * 2. Les candidats-suffixes à partir des chaînes transformées
+         * contenant des groupes de consonnes équivalents dans d'autres
+         * dialectes.
+         */
+        anas = analyzeWithCandidateAffixes(ctx,
+            		otherFormsOfAffixFound,
+                    remainingStem, seqOfCharsPossibleAffix, states, preCond,
+                    transitivity, positionAffix, morphParts, word, false);
+        completeAnalysis.addAll(anas);
+        
+        return completeAnalysis;
+    }
+    
+    
+    /*
+     * Vérifie dans la table des frontières possibles qu'au moins une des
+     * formes d'affixes qui commencent comme 'affixForm' peut suivre le
+     * radical 'stem' à partir d'un des états 'states'.
+     */
+    private boolean boundaryIsPossible(MorphAnalysisContext ctx, String stem,
+    		String affixForm, State[] states) {
+    	if (ctx.boundaries == null) {
+    		return true;
+    	}
+    	boolean possible = ctx.boundaries.isPossible(stem, affixForm, states);
+    	numBoundariesChecked.increment();
+    	if (!possible) {
+    		numBoundariesPruned.increment();
+    	}
+    	return possible;
+    }
     
     public Vector<SurfaceFormOfAffix> lookForForms(String term, boolean syllabic) throws LinguisticDataException {
-    	String[] cons = syllabic ? Lexicon.consonantsSyl : Lexicon.consonants;
     	Vector<SurfaceFormOfAffix> formsFound;
         if (term.endsWith("*")) {
-            Vector<SurfaceFormOfAffix> formsFoundForTermWithAddedConsonant;
-            String termWithoutStar, termWithConsonant;
-            formsFound = new Vector<SurfaceFormOfAffix>();
-            termWithoutStar = term.substring(0, term.length() - 1);
-            for (int i = 0; i < cons.length; i++) {
-                termWithConsonant = termWithoutStar + cons[i];
-                formsFoundForTermWithAddedConsonant = Lexicon.lookForForms(termWithConsonant, syllabic);
-                if (formsFoundForTermWithAddedConsonant != null) {
-                	formsFound.addAll(formsFoundForTermWithAddedConsonant);
-                }
-            }
-            if (formsFound.size() == 0)
-            	formsFound = null;
+            // Formes qui consistent en le terme suivi de n'importe quelle
+            // consonne finale.
+            String termWithoutStar = term.substring(0, term.length() - 1);
+            formsFound = Lexicon.lookForFormsWithAnyFinalConsonant(termWithoutStar, syllabic);
         } else {
             // On cherche un affixe, de n'importe quel type:
             // terminaison verbale ou nominale, ou suffixe.
@@ -528,7 +1074,7 @@ public class MorphologicalAnalyzer extends MorphologicalAnalyzerAbstract {
      * est créée, par un appel récursif à décomposer/8.
      */
     @SuppressWarnings("unchecked")
-	private Vector<Decomposition> analyzeWithCandidateAffixes(
+	private Vector<Decomposition> analyzeWithCandidateAffixes(MorphAnalysisContext ctx,
 			Vector<SurfaceFormOfAffix> formsOfAffixFound,
             String stem, 
             String affixCandidateOrig, 
@@ -541,12 +1087,11 @@ public class MorphologicalAnalyzer extends MorphologicalAnalyzerAbstract {
             boolean notResultingFromDialectalPhonologicalTransformation
             ) throws TimeoutException, MorphInukException, LinguisticDataException {
 
-    	Logger logger = Logger.getLogger("MorphologicalAnalyzer.analyzeWithCandidateAffixes");
-    	logger.debug("***stem= "+stem);
+    	if (candidateAffixesLogger.isDebugEnabled()) {
+    		candidateAffixesLogger.debug("***stem= "+stem);
+    	}
         Vector<Decomposition> completeAnalysis = new Vector<Decomposition>();
         
-        String keyStateIDs = computeStateIDs(states);
-        
         Enumeration<SurfaceFormOfAffix> enumForms = null;
         if (formsOfAffixFound != null)
         	enumForms = formsOfAffixFound.elements();
@@ -560,14 +1105,16 @@ public class MorphologicalAnalyzer extends MorphologicalAnalyzerAbstract {
         	
             SurfaceFormOfAffix form = (SurfaceFormOfAffix) enumForms.nextElement();
 
-            stpw.check("decomposeByAffixes -- form: "+form.form);
-
-            Affix affix = null;
-            try {
-                affix = (Affix) form.getAffix().copyOf();
-            } catch (CloneNotSupportedException e1) {
-            	throw new MorphInukException(e1);
+            ctx.stpw.check("decomposeByAffixes -- form: ", form.form);
+            
+            if (!isCandidateMorpheme(ctx, form.getAffix())) {
+            	continue;
+            }
+            if (ctx.stats != null) {
+            	ctx.stats.affixCandidatesTried++;
             }
+
+            Affix affix = form.getAffix();
             boolean accepted = true;
 
 
@@ -589,12 +1136,12 @@ public class MorphologicalAnalyzer extends MorphologicalAnalyzerAbstract {
             Object stemAffs[][] = null;
             boolean conditionsMet, transitivityMet, sameAffixAsNext, samePosition;
             if (
-                    (arcsFollowed=arcsSuivis(affix, states, keyStateIDs)) != null &&
+                    (arcsFollowed=arcsSuivis(ctx, affix, states)) != null &&
                     (conditionsMet = affix.meetsConditions(preConds, morphParts)) &&
                     (transitivityMet = affix.meetsTransitivityCondition(transitivity)) &&
                     (sameAffixAsNext = !sameAsNext(affix, morphParts)) &&
                     (samePosition = !samePosition(positionAffix, morphParts)) &&
-                    (stemAffs=agreeWithContextAndActions(affixCandidateOrig, affix, stem, 
+                    (stemAffs=agreeWithContextAndActions(ctx, affixCandidateOrig, affix, stem, 
                             positionAffix, form,
                             notResultingFromDialectalPhonologicalTransformation)) != null
                     ) {
@@ -620,7 +1167,7 @@ public class MorphologicalAnalyzer extends MorphologicalAnalyzerAbstract {
                  * Elles deviennent donc les nouvelles conditions spécifiques
                  * pour la suite de la décomposition.
                  */
-                Conditions newCond = affix.getPrecCond();
+                Conditions newCond = ctx.precConditionsOf(affix);
                 /* Contrainte sur la transitivité du morphème précédent. */
                 String newTransitivity = affix.getTransitivityConstraint();
                 if (newTransitivity==null)
@@ -632,12 +1179,20 @@ public class MorphologicalAnalyzer extends MorphologicalAnalyzerAbstract {
                 // MorceauAffixe au vecteur des morphParts déjà trouvés.
                 //---------------------
                 for (int iro = 0; iro < stemAffs.length; iro++) {
-                    stpw.check("decomposeByAffixes -- affixes respecting context and actions: "+stemAffs[iro][0]);
+                    ctx.stpw.check("decomposeByAffixes -- affixes respecting context and actions: ", stemAffs[iro][0]);
 					Vector<AffixPartOfComposition> newMorphparts = (Vector<AffixPartOfComposition>) morphParts.clone();
                     AffixPartOfComposition partIro = (AffixPartOfComposition) stemAffs[iro][2];
                     partIro.arcs = arcsFollowed;
                     newMorphparts.add(0, partIro); // morceau ajouté
-                    Vector<Decomposition> analyses = __decompose_simplified_term__((String) stemAffs[iro][0],
+                    if (ctx.agenda != null) {
+                    	// Recherche « meilleur d'abord »: le radical sera
+                    	// décomposé plus tard, selon sa priorité.
+                    	ctx.agenda.addStem((String) stemAffs[iro][0], 
+                    		(String) stemAffs[iro][1], word, newMorphparts, 
+                    		nextStates, newCond, newTransitivity);
+                    	continue;
+                    }
+                    Vector<Decomposition> analyses = __decompose_simplified_term__(ctx, (String) stemAffs[iro][0],
                             (String) stemAffs[iro][1], word,
                             newMorphparts,
                             nextStates, 
@@ -666,7 +1221,7 @@ public class MorphologicalAnalyzer extends MorphologicalAnalyzerAbstract {
 
 	//----------------------------------------------------------------------
 
-    private Object[][] validateContextActions(String context,
+    private Object[][] validateContextActions(MorphAnalysisContext ctx, String context,
             Action action1, Action action2, String stem, int posAffix,
             Affix affix, SurfaceFormOfAffix form, boolean isSyllabic,
             boolean checkPossibleDialectalChanges,
@@ -688,92 +1243,92 @@ public class MorphologicalAnalyzer extends MorphologicalAnalyzerAbstract {
          */    
         if (affix.isNonMobileSuffix()) {
             Condition avc = new Condition.NonMobilityOfInfix(affix.id);
-            affix.addPrecConstraint(avc);
+            ctx.addPrecConstraint(avc);
         }
         
             
         if (action1Type == Action.NEUTRAL && action2Type == Action.NULLACTION ) {
-        	res = validate_neutral_null(context, action1, action2, stem, affixCandidate, 
+        	res = validate_neutral_null(ctx, context, action1, action2, stem, affixCandidate, 
             		form, affix, posAffix, partOfComp);
         }
         else if (action1Type == Action.NEUTRAL && action2Type == Action.DELETION) {
-        	res = validate_neutral_deletion(context, action1, action2, stem, affixCandidate, 
+        	res = validate_neutral_deletion(ctx, context, action1, action2, stem, affixCandidate, 
             		form, affix, posAffix, partOfComp);
         }
         else if (action1Type == Action.NEUTRAL && action2Type == Action.INSERTION) {
-        	res = validate_neutral_insertion(context, action1, action2, stem, affixCandidate, 
+        	res = validate_neutral_insertion(ctx, context, action1, action2, stem, affixCandidate, 
             		form, affix, posAffix, partOfComp);
         }
         else if (action1Type == Action.DELETION && action2Type == Action.NULLACTION) {
-        	res = validate_deletion_null(context, action1, action2, stem, affixCandidate, 
+        	res = validate_deletion_null(ctx, context, action1, action2, stem, affixCandidate, 
             		form, affix, posAffix, partOfComp);
         }
         else if (action1Type == Action.DELETIONINSERTION && action2Type == Action.NULLACTION) {
-        	res = validate_deletion_insertion(context, action1, action2, stem, affixCandidate, 
+        	res = validate_deletion_insertion(ctx, context, action1, action2, stem, affixCandidate, 
             		form, affix, posAffix, partOfComp);
         }
         else if (action1Type == Action.CONDITIONALDELETION && action2Type == Action.NULLACTION) {
-        	res = validate_conditionaldeletion_null(context, action1, action2, stem, affixCandidate, 
+        	res = validate_conditionaldeletion_null(ctx, context, action1, action2, stem, affixCandidate, 
             		form, affix, posAffix, partOfComp, checkPossibleDialectalChanges);
         }
         else if (action1Type == Action.VOICING && action2Type == Action.NULLACTION) {
-        	res = validate_voicing_null(context, action1, action2, stem, affixCandidate, 
+        	res = validate_voicing_null(ctx, context, action1, action2, stem, affixCandidate, 
             		form, affix, posAffix, partOfComp, checkPossibleDialectalChanges);
         }
         else if (action1Type == Action.NASALIZATION) {
-        	res = validate_nasalization_null(context, action1, action2, stem, affixCandidate, 
+        	res = validate_nasalization_null(ctx, context, action1, action2, stem, affixCandidate, 
             		form, affix, posAffix, partOfComp, checkPossibleDialectalChanges);
         }
         else if (action1Type == Action.CONDITIONALNASALIZATION) {
-        	res = validate_conditionalnasalization_null(context, action1, action2, stem, affixCandidate, 
+        	res = validate_conditionalnasalization_null(ctx, context, action1, action2, stem, affixCandidate, 
             		form, affix, posAffix, partOfComp, checkPossibleDialectalChanges);
         }
         else if (action1Type == Action.INSERTION && action2Type == Action.NULLACTION) {
-        	res = validate_insertion_null(context, action1, action2, stem, affixCandidate, 
+        	res = validate_insertion_null(ctx, context, action1, action2, stem, affixCandidate, 
             		form, affix, posAffix, partOfComp, checkPossibleDialectalChanges);
         }
         else if (action1Type == Action.FUSION && action2Type == Action.NULLACTION) {
-        	res = validate_fusion_null(context, action1, action2, stem, affixCandidate, 
+        	res = validate_fusion_null(ctx, context, action1, action2, stem, affixCandidate, 
             		form, affix, posAffix, partOfComp, checkPossibleDialectalChanges);
         }
         else if (action1Type == Action.ASSIMILATION && action2Type == Action.NULLACTION) {
-        	res = validate_assimilation_null(context, action1, action2, stem, affixCandidate, 
+        	res = validate_assimilation_null(ctx, context, action1, action2, stem, affixCandidate, 
             		form, affix, posAffix, partOfComp, checkPossibleDialectalChanges);
         }
         else if (action1Type == Action.SPECIFICASSIMILATION && action2Type == Action.NULLACTION) {
-        	res = validate_specificassimilation_null(context, action1, action2, stem, affixCandidate, 
+        	res = validate_specificassimilation_null(ctx, context, action1, action2, stem, affixCandidate, 
             		form, affix, posAffix, partOfComp, checkPossibleDialectalChanges);
         }
         else if (action1Type == Action.DELETION && action2Type == Action.SPECIFICDELETION) {
-        	res = validate_deletion_specificdeletion(context, action1, action2, stem, affixCandidate, 
+        	res = validate_deletion_specificdeletion(ctx, context, action1, action2, stem, affixCandidate, 
             		form, affix, posAffix, partOfComp, checkPossibleDialectalChanges);
         }
         else if (action1Type == Action.DELETION && action2Type == Action.INSERTION) {
-        	res = validate_deletion_insertion(context, action1, action2, stem, affixCandidate, 
+        	res = validate_deletion_insertion(ctx, context, action1, action2, stem, affixCandidate, 
             		form, affix, posAffix, partOfComp, checkPossibleDialectalChanges);
         }
         else if (action1Type == Action.VOWELLENGTHENING && action2Type == Action.CANCELLATION) {
-        	res = validate_vowellengthening_cancellation(context, action1, action2, stem, affixCandidate, 
+        	res = validate_vowellengthening_cancellation(ctx, context, action1, action2, stem, affixCandidate, 
             		form, affix, posAffix, partOfComp, checkPossibleDialectalChanges);
         }
         else if (action1Type == Action.DELETIONVOWELLENGTHENING && action2Type == Action.CANCELLATION) {
-        	res = validate_deletionvowellengthening_cancellation(context, action1, action2, stem, affixCandidate, 
+        	res = validate_deletionvowellengthening_cancellation(ctx, context, action1, action2, stem, affixCandidate, 
             		form, affix, posAffix, partOfComp, checkPossibleDialectalChanges);
         }
         else if (action1Type == Action.INSERTIONVOWELLENGTHENING && action2Type == Action.NULLACTION) {
-        	res = validate_insertionvowellengthening_null(context, action1, action2, stem, affixCandidate, 
+        	res = validate_insertionvowellengthening_null(ctx, context, action1, action2, stem, affixCandidate, 
             		form, affix, posAffix, partOfComp, checkPossibleDialectalChanges);
         }
         else if (action1Type == Action.NEUTRAL && action2Type == Action.SELFDECAPITATION) {
-        	res = validate_neutral_selfdecapitation(context, action1, action2, stem, affixCandidate, 
+        	res = validate_neutral_selfdecapitation(ctx, context, action1, action2, stem, affixCandidate, 
             		form, affix, posAffix, partOfComp, checkPossibleDialectalChanges);
         }
         else if (action1Type == Action.DELETION && action2Type == Action.SELFDECAPITATION) {
-        	res = validate_deletion_selfdecapitation(context, action1, action2, stem, affixCandidate, 
+        	res = validate_deletion_selfdecapitation(ctx, context, action1, action2, stem, affixCandidate, 
             		form, affix, posAffix, partOfComp, checkPossibleDialectalChanges);
         }
         else if (action1Type == Action.DELETION && action2Type == Action.DELETION) {
-        	res = validate_deletion_deletion(context, action1, action2, stem, affixCandidate, 
+        	res = validate_deletion_deletion(ctx, context, action1, action2, stem, affixCandidate, 
             		form, affix, posAffix, partOfComp, checkPossibleDialectalChanges);
         } else
             ;
@@ -784,7 +1339,7 @@ public class MorphologicalAnalyzer extends MorphologicalAnalyzerAbstract {
 
         if (!affix.type.equals("tad"))
             for (int i = 0; i < res.size(); i++) {
-            	stpw.check("validateContextActions -- checking stem with 2 consonants");
+            	ctx.stpw.check("validateContextActions -- checking stem with 2 consonants");
                 String stemres = (String) ((Object[]) res.get(i))[0];
                 if (stemres.length() > 2
                         && Roman.typeOfLetterLat(stemres
@@ -806,11 +1361,12 @@ public class MorphologicalAnalyzer extends MorphologicalAnalyzerAbstract {
      * Analyse d'un terme comme racine.
      */
     @SuppressWarnings("unchecked")
-	private Vector<Decomposition> analyzeAsRoot(String term, String termOrig, 
+	private Vector<Decomposition> analyzeAsRoot(MorphAnalysisContext ctx, String term, String termOrig, 
             String word, Vector<AffixPartOfComposition> morphParts, Graph.State states[],
             Conditions preConds,
             String transitivity) throws TimeoutException, LinguisticDataException {
 
+        long rootsStart = (ctx.stats == null ? 0 : System.nanoTime());
         Vector<Decomposition> allAnalyses = new Vector<Decomposition>();
 
         boolean isSyllabic = false;
@@ -849,22 +1405,40 @@ public class MorphologicalAnalyzer extends MorphologicalAnalyzerAbstract {
          * On cherche aussi des groupes de consonnes équivalents à l'intérieur
          * de la racine candidate. Toutes les possibilités sont retenues.
          */
-        newRootCandidates = Dialect.newRootCandidates(termICI); 
+        long dialectStart = (ctx.stats == null ? 0 : System.nanoTime());
+        newRootCandidates = Dialect.newRootCandidates(ctx.stpw, termICI); 
+        if (ctx.stats != null) {
+        	ctx.stats.dialectVariantsNanos += System.nanoTime() - dialectStart;
+        	ctx.stats.dialectVariants += (newRootCandidates == null ? 0 : newRootCandidates.size());
+        }
+        /*
+         * 'lexs' peut être le vecteur même du lexique (voir Lexicon.lookForBase):
+         * il faut le copier avant d'y ajouter quoi que ce soit.
+         */
+        boolean lexsIsCopy = false;
         if (newRootCandidates != null)
             for (int k = 0; k < newRootCandidates.size(); k++) {
 //                stpw.check("analyzeAsRoot -- newRootCandidate: "+((Base)newRootCandidates.elementAt(k)).morpheme);
                 Vector<Morpheme> tr = lookForBase((String) newRootCandidates.elementAt(k), isSyllabic);
                 if (tr != null)
-                    if (lexs == null)
+                    if (lexs == null) {
                         lexs = (Vector<Morpheme>) tr.clone();
-                    else {
+                        lexsIsCopy = true;
+                    } else {
+                        if (!lexsIsCopy) {
+                            lexs = (Vector<Morpheme>) lexs.clone();
+                            lexsIsCopy = true;
+                        }
                         lexs.addAll(tr);
                     }
             }
-        Vector<Decomposition> rootAnalyses = checkRoots(lexs,word,termOrigICI,morphParts,states,
+        Vector<Decomposition> rootAnalyses = checkRoots(ctx, lexs,word,termOrigICI,morphParts,states,
                 preConds,transitivity);
         
         allAnalyses.addAll(rootAnalyses);
+        if (ctx.stats != null) {
+        	ctx.stats.rootLookupNanos += System.nanoTime() - rootsStart;
+        }
         
         return allAnalyses;
     }
@@ -872,19 +1446,10 @@ public class MorphologicalAnalyzer extends MorphologicalAnalyzerAbstract {
     public Vector<Morpheme> lookForBase(String termICI, boolean isSyllabic) throws LinguisticDataException {
     	Vector<Morpheme> basesFound = null;
     	if (termICI.endsWith("*")) {
-    		String[] cons = isSyllabic ? Lexicon.consonantsSyl : Lexicon.consonants;
-
-    		basesFound = new Vector<Morpheme>();
+            // Racines qui consistent en le terme suivi de n'importe quelle
+            // consonne finale.
             String termICIWithoutStar = termICI.substring(0, termICI.length() - 1);
-            for (int i = 0; i < cons.length; i++) {
-                String termICIWithConsonant = termICIWithoutStar + cons[i];
-                Vector<Morpheme> morphemesFoundForWordWithAddedConsonant = Lexicon.lookForBase(termICIWithConsonant, isSyllabic);
-                if (morphemesFoundForWordWithAddedConsonant != null) {
-                    basesFound.addAll(morphemesFoundForWordWithAddedConsonant);
-                }
-            }
-            if (basesFound.size() == 0)
-                basesFound = null;
+            basesFound = Lexicon.lookForBaseWithAnyFinalConsonant(termICIWithoutStar, isSyllabic);
     	} else {
             basesFound = Lexicon.lookForBase(termICI, isSyllabic);
     	}
@@ -905,7 +1470,7 @@ public class MorphologicalAnalyzer extends MorphologicalAnalyzerAbstract {
      * @throws TimeoutException
      * @throws LinguisticDataException 
      */
-	private Vector<Decomposition> checkRoots(Vector<Morpheme> lexs, String word, String termOrigICI,
+	private Vector<Decomposition> checkRoots(MorphAnalysisContext ctx, Vector<Morpheme> lexs, String word, String termOrigICI,
             Vector<AffixPartOfComposition> morphParts, Graph.State states[], Conditions preConds,
             String transitivity) throws TimeoutException, LinguisticDataException {
 
@@ -929,7 +1494,11 @@ public class MorphologicalAnalyzer extends MorphologicalAnalyzerAbstract {
             // {Integer,Base}.
             Base root = (Base) lexs.elementAt(ib);
 
-            stpw.check("checkRoots -- morpheme: "+root.morpheme);
+            ctx.stpw.check("checkRoots -- morpheme: ", root.morpheme);
+            
+            if (!isCandidateMorpheme(ctx, root)) {
+            	continue;
+            }
 
             typeBase = root.type.charAt(0);
             
@@ -948,7 +1517,7 @@ public class MorphologicalAnalyzer extends MorphologicalAnalyzerAbstract {
                 /*
                  * Si la racine est connue : vérifier la validité du candidat.
                  */
-            	Graph.Arc arcFollowed = checkValidityOfRoot(root,states,morphParts,preConds,transitivity);
+            	Graph.Arc arcFollowed = checkValidityOfRoot(ctx, root,states,morphParts,preConds,transitivity);
                 
                  if (arcFollowed != null) {
                     /*
@@ -969,7 +1538,16 @@ public class MorphologicalAnalyzer extends MorphologicalAnalyzerAbstract {
         return rootAnalyses;
     }
 	
-	private Graph.Arc checkValidityOfRoot(Morpheme root, Graph.State states[],
+	/*
+	 * Le morphème fait-il partie des candidats du terme en cours d'analyse
+	 * (voir candidateMorphemes)?
+	 */
+	private boolean isCandidateMorpheme(MorphAnalysisContext ctx, Morpheme morph) {
+		return ctx.candidateMorphemes == null || morph == null || morph.intId < 0 ||
+			ctx.candidateMorphemes.get(morph.intId);
+	}
+	
+	private Graph.Arc checkValidityOfRoot(MorphAnalysisContext ctx, Morpheme root, Graph.State states[],
 			Vector<AffixPartOfComposition> morphParts, Conditions preConds,
             String transitivity) throws TimeoutException, LinguisticDataException {
        	/* il faut vérifier si le type de la
@@ -1013,12 +1591,10 @@ public class MorphologicalAnalyzer extends MorphologicalAnalyzerAbstract {
          */
         boolean accepted = false;
 
-		String keyStateIDs = computeStateIDs(states);
-
         Graph.Arc arcFollowed = null;
-        Graph.Arc[] arcsFollowed = arcsSuivis(root,states,keyStateIDs);
+        Graph.Arc[] arcsFollowed = arcsSuivis(ctx, root, states);
 		if (arcsFollowed != null) {
-			arcFollowed = arcToZero(arcsFollowed);
+			arcFollowed = arcToZero(ctx, arcsFollowed);
 			if (arcFollowed != null) {
 				boolean preConditionsMet = root.meetsConditions(preConds, morphParts);
 				if (preConditionsMet) {
@@ -1047,9 +1623,9 @@ public class MorphologicalAnalyzer extends MorphologicalAnalyzerAbstract {
 
 	//-----------------------------------------------
 	
-	private Graph.Arc arcToZero(Graph.Arc[] arcsFollowed) throws TimeoutException {
+	private Graph.Arc arcToZero(MorphAnalysisContext ctx, Graph.Arc[] arcsFollowed) throws TimeoutException {
         for (int i=0; i<arcsFollowed.length; i++) {
-        	stpw.check("arcToZero -- arc: "+arcsFollowed[i].toString());
+        	ctx.stpw.check("arcToZero -- arc: ", arcsFollowed[i]);
             if (arcsFollowed[i].getDestinationState() == Graph.finalState) {
                 return arcsFollowed[i];
             }
@@ -1099,31 +1675,20 @@ public class MorphologicalAnalyzer extends MorphologicalAnalyzerAbstract {
     /*
      * 3. Vérifier si ce suffixe est permis en ce moment. Il doit
      * correspondre à un des arcs partant de l'état actuel.
+     * 
+     * Les arcs de chaque état pour chaque morphème sont calculés une fois
+     * pour toutes dans la table des transitions (voir GraphTransitionTable):
+     * il n'y a plus de conditions à évaluer ici, ni donc de temps limite à
+     * vérifier. Le tableau retourné ne doit pas être modifié.
      */
         
-    private Graph.Arc[] arcsSuivis(Morpheme morpheme, Graph.State states[],
-			String keyStateIDs) throws TimeoutException, LinguisticDataException {
-		Graph.Arc arcsFollowed[] = null;
-		String keyMorphemeStateIDs = morpheme.id + ":" + keyStateIDs;
-		Graph.Arc[] arcsFollowedByHash = (Graph.Arc[]) arcsByMorpheme
-				.get(keyMorphemeStateIDs);
-		if (arcsFollowedByHash == null) {
-			Vector<Graph.Arc> arcs = null;
-			Vector<Graph.Arc> arcsFollowedV = new Vector<Graph.Arc>();
-			for (int j = 0; j < states.length; j++) {
-				stpw.check("arcsSuivis --- morpheme: "+morpheme.morpheme);
-				arcs = states[j].verify(morpheme);
-				arcsFollowedV.addAll(arcs);
-			}
-			if (arcsFollowedV.size() != 0) {
-				arcsFollowed = (Graph.Arc[]) arcsFollowedV
-						.toArray(new Graph.Arc[] {});
-				arcsByMorpheme.put(keyMorphemeStateIDs, arcsFollowed);
-			} 
-		} else {
-			arcsFollowed = arcsFollowedByHash;
+    private Graph.Arc[] arcsSuivis(MorphAnalysisContext ctx, Morpheme morpheme, Graph.State states[]) 
+    		throws LinguisticDataException {
+		Graph.Arc[] arcs = ctx.transitions.arcsFollowed(morpheme, states);
+		if (arcs == null && ctx.stats != null) {
+			ctx.stats.arcsRejected++;
 		}
-		return arcsFollowed;
+		return arcs;
 	}
     
     
@@ -1140,7 +1705,7 @@ public class MorphologicalAnalyzer extends MorphologicalAnalyzerAbstract {
      * position de l'affixe dans le mot (la valeur de i); 2. un objet de
      * classe SurfaceFormOfAffix décrivant totalement l'affixe.
      */
-    private Object[][] agreeWithContextAndActions(
+    private Object[][] agreeWithContextAndActions(MorphAnalysisContext ctx,
     		String affixCandidateOrig,
             Affix affix, 
             String stem, 
@@ -1149,6 +1714,7 @@ public class MorphologicalAnalyzer extends MorphologicalAnalyzerAbstract {
             boolean notResultingFromDialectalPhonologicalTransformation) throws TimeoutException, MorphInukException, LinguisticDataException {
         Object[][] stemAffs = null;
         boolean checkStartOfConsonantsGroup = true;
+        ctx.startAffixCandidate();
         /*
          * Si la forme du candidat affixe est le résultat de changements
          * phonologiques, et si ces changements impliquent la consonne initiale,
@@ -1164,9 +1730,13 @@ public class MorphologicalAnalyzer extends MorphologicalAnalyzerAbstract {
         String context = (String) form.context;
         Action action1 = form.action1;
         Action action2 = form.action2;
-        stemAffs = validateContextActions(context, action1, action2,
+        long validationStart = (ctx.stats == null ? 0 : System.nanoTime());
+        stemAffs = validateContextActions(ctx, context, action1, action2,
                 stem, positionAffixInWord, affix, form, false,
                 checkStartOfConsonantsGroup,affixCandidateOrig);
+        if (ctx.stats != null) {
+        	ctx.stats.affixValidationNanos += System.nanoTime() - validationStart;
+        }
         return stemAffs;
     }
     
@@ -1185,7 +1755,7 @@ public class MorphologicalAnalyzer extends MorphologicalAnalyzerAbstract {
      * Note: Il y a un cas où le contexte est nul: les terminaisons
      * démonstratives. On accepte tout simplement.
      */
-    protected Vector<Object[]> validate_neutral_null(
+    protected Vector<Object[]> validate_neutral_null(MorphAnalysisContext ctx,
     		String context, Action action1, Action action2, String stem, String affixCandidate, 
     		SurfaceFormOfAffix form, Affix affix, int posAffix, AffixPartOfComposition partOfComp
     		) throws TimeoutException, MorphInukException {
@@ -1241,7 +1811,7 @@ public class MorphologicalAnalyzer extends MorphologicalAnalyzerAbstract {
                     && typeOfFormFirstChar == Roman.C) {
                 // Both are consonants
                 // Find equivalent clusters
-                Vector<String> grs = Dialect.equivalentGroups(stemEndChar,
+                Vector<String> grs = Dialect.equivalentGroups(ctx.stpw, stemEndChar,
                         formFirstChar);
                 /*
                  * For each equivalent cluster the first consonant of which
@@ -1255,7 +1825,7 @@ public class MorphologicalAnalyzer extends MorphologicalAnalyzerAbstract {
                  */
                 if (grs != null)
                     for (int i = 0; i < grs.size(); i++) {
-                    	stpw.check("validateContextActions -- NEUTRAL, checking equivalent groups");
+                    	ctx.stpw.check("validateContextActions -- NEUTRAL, checking equivalent groups");
                         if (((String) grs.elementAt(i)).charAt(0) == context
                                 .charAt(0) &&
                                 ((String)grs.elementAt(i)).charAt(1) == formFirstChar) {
@@ -1274,7 +1844,7 @@ public class MorphologicalAnalyzer extends MorphologicalAnalyzerAbstract {
              * suffixe with the modified stems.
              */
             if (typeOfStemEndChar==Roman.V && typeOfFormFirstChar==Roman.C) {
-                Object x[] = Dialect.schneiderStateAtEnd(stemOrig);
+                Object x[] = Dialect.schneiderStateAtEnd(ctx.stpw, stemOrig);
                 boolean doubleConsonants = ((Boolean) x[0]).booleanValue();
                 if (doubleConsonants) {
                     /*
@@ -1298,9 +1868,8 @@ public class MorphologicalAnalyzer extends MorphologicalAnalyzerAbstract {
             // précédente, pour la passer à l'extérieur de cette
             // méthode.
             try {
-                Condition avc = new Imacond(
-                        new ByteArrayInputStream(cond.getBytes())).ParseCondition();
-                affix.addPrecConstraint(avc);
+                Condition avc = action1.getParsedCondition();
+                ctx.addPrecConstraint(avc);
             } catch (ParseException e) {
             	throw new MorphInukException(e);
             }
@@ -1329,7 +1898,7 @@ public class MorphologicalAnalyzer extends MorphologicalAnalyzerAbstract {
      * suggère que si la syllabe finale contient 2 voyelles, la consonne
      * finale sera supprimée.
      */
-    protected Vector<Object[]> validate_neutral_deletion(
+    protected Vector<Object[]> validate_neutral_deletion(MorphAnalysisContext ctx,
     		String context, Action action1, Action action2, String stem, String affixCandidate, 
     		SurfaceFormOfAffix form, Affix affix, int posAffix, AffixPartOfComposition partOfComp
     		) throws TimeoutException, MorphInukException {
@@ -1398,7 +1967,7 @@ public class MorphologicalAnalyzer extends MorphologicalAnalyzerAbstract {
      * caractère à insérer. Dans le second cas, le résultat est unique
      * aussi: le radical tel quel et le suffixe tel quel.
      */
-    protected Vector<Object[]> validate_neutral_insertion(
+    protected Vector<Object[]> validate_neutral_insertion(MorphAnalysisContext ctx,
     		String context, Action action1, Action action2, String stem, String affixCandidate, 
     		SurfaceFormOfAffix form, Affix affix, int posAffix, AffixPartOfComposition partOfComp
     		) throws TimeoutException, MorphInukException {
@@ -1456,7 +2025,7 @@ public class MorphologicalAnalyzer extends MorphologicalAnalyzerAbstract {
      * terminer par deux consonnes), et le résultat sera unique: le radical
      * augmenté de la consonne contextuelle, et le suffixe tel quel.
      */
-   protected Vector<Object[]> validate_deletion_null(
+   protected Vector<Object[]> validate_deletion_null(MorphAnalysisContext ctx,
     		String context, Action action1, Action action2, String stem, String affixCandidate, 
     		SurfaceFormOfAffix form, Affix affix, int posAffix, AffixPartOfComposition partOfComp
     		) throws TimeoutException, MorphInukException {
@@ -1493,7 +2062,7 @@ public class MorphologicalAnalyzer extends MorphologicalAnalyzerAbstract {
     * caractères insérés et augmenté de la consonne contextuelle, et le
     * suffixe tel quel.
     */
-   protected Vector<Object[]> validate_deletion_insertion(
+   protected Vector<Object[]> validate_deletion_insertion(MorphAnalysisContext ctx,
    		String context, Action action1, Action action2, String stem, String affixCandidate, 
    		SurfaceFormOfAffix form, Affix affix, int posAffix, AffixPartOfComposition partOfComp
    		) throws TimeoutException, MorphInukException {
@@ -1533,7 +2102,7 @@ public class MorphologicalAnalyzer extends MorphologicalAnalyzerAbstract {
     * contexte de voyelle: le suffixe antipassif -ji/1vv- après -uti/1vv- où le
     * 'i' de 'uti' est supprimé par contraction.
     */
-   protected Vector<Object[]> validate_conditionaldeletion_null(
+   protected Vector<Object[]> validate_conditionaldeletion_null(MorphAnalysisContext ctx,
 	   		String context, Action action1, Action action2, String stem, String affixCandidate, 
 	   		SurfaceFormOfAffix form, Affix affix, int posAffix, AffixPartOfComposition partOfComp,
 	   		boolean checkPossibleDialectalChanges
@@ -1557,8 +2126,8 @@ public class MorphologicalAnalyzer extends MorphologicalAnalyzerAbstract {
 				// précédente, pour la passer à l'extérieur de cette
 				// méthode.
 				try {
-					Condition avc = new Imacond(new ByteArrayInputStream(cond.getBytes())).ParseCondition();
-					affix.addPrecConstraint(avc);
+					Condition avc = action1.getParsedCondition();
+					ctx.addPrecConstraint(avc);
 				} catch (ParseException e) {
 					throw new MorphInukException(e);
 				}
@@ -1578,10 +2147,10 @@ public class MorphologicalAnalyzer extends MorphologicalAnalyzerAbstract {
 					 */
 					if (typeOfStemEndChar == Roman.C && typeOfFormFirstChar == Roman.C
 							&& checkPossibleDialectalChanges) {
-						Vector<String> grs = Dialect.equivalentGroups(stemEndChar, formFirstChar);
+						Vector<String> grs = Dialect.equivalentGroups(ctx.stpw, stemEndChar, formFirstChar);
 						if (grs != null)
 							for (int i = 0; i < grs.size(); i++) {
-								stpw.check(
+								ctx.stpw.check(
 										"validateContextActions -- CONDITIONALDELETION+NULLACTION, checking equivalent groups");
 								if (((String) grs.elementAt(i)).charAt(1) == formFirstChar) {
 									res.add(new Object[] {
@@ -1619,7 +2188,7 @@ public class MorphologicalAnalyzer extends MorphologicalAnalyzerAbstract {
     * finale est remplacée par sa version sourde, et le suffixe tel quel.
     * 
     */
-   protected Vector<Object[]> validate_voicing_null(
+   protected Vector<Object[]> validate_voicing_null(MorphAnalysisContext ctx,
 	   		String context, Action action1, Action action2, String stem, String affixCandidate, 
 	   		SurfaceFormOfAffix form, Affix affix, int posAffix, AffixPartOfComposition partOfComp,
 	   		boolean checkPossibleDialectalChanges
@@ -1649,7 +2218,7 @@ public class MorphologicalAnalyzer extends MorphologicalAnalyzerAbstract {
                  * return the suffixe with the modified stems.
                  */
                 if (typeOfStemEndChar==Roman.V && typeOfFormFirstChar==Roman.C) {
-                    Object x[] = Dialect.schneiderStateAtEnd(stem);
+                    Object x[] = Dialect.schneiderStateAtEnd(ctx.stpw, stem);
                     boolean doubleConsonants = ((Boolean) x[0]).booleanValue();
                     if (doubleConsonants) {
                         /*
@@ -1664,11 +2233,11 @@ public class MorphologicalAnalyzer extends MorphologicalAnalyzerAbstract {
                     }
                 }
             } else if (checkPossibleDialectalChanges){
-                Vector<String> grs = Dialect.equivalentGroups(stemEndChar,
+                Vector<String> grs = Dialect.equivalentGroups(ctx.stpw, stemEndChar,
                         formFirstChar);
                 if (grs != null)
                     for (int i = 0; i < grs.size(); i++) {
-                    	stpw.check("validateContextActions -- VOICING+NULLACTION, checking equivalent groups");
+                    	ctx.stpw.check("validateContextActions -- VOICING+NULLACTION, checking equivalent groups");
                         if (((String) grs.elementAt(i)).charAt(0) == voicedCorrespondingChar &&
                                 ((String)grs.elementAt(i)).charAt(1) == formFirstChar) {
                             res.add(new Object[] {
@@ -1701,7 +2270,7 @@ public class MorphologicalAnalyzer extends MorphologicalAnalyzerAbstract {
     * unique: le radical dont la consonne finale est remplacée par sa
     * version sourde, et le suffixe tel quel.
     */
-   protected Vector<Object[]> validate_nasalization_null(
+   protected Vector<Object[]> validate_nasalization_null(MorphAnalysisContext ctx,
 	   		String context, Action action1, Action action2, String stem, String affixCandidate, 
 	   		SurfaceFormOfAffix form, Affix affix, int posAffix, AffixPartOfComposition partOfComp,
 	   		boolean checkPossibleDialectalChanges
@@ -1732,7 +2301,7 @@ public class MorphologicalAnalyzer extends MorphologicalAnalyzerAbstract {
                  * return the suffixe with the modified stems.
                  */
                 if (typeOfStemEndChar==Roman.V && typeOfFormFirstChar==Roman.C) {
-                    Object x[] = Dialect.schneiderStateAtEnd(stem);
+                    Object x[] = Dialect.schneiderStateAtEnd(ctx.stpw, stem);
                     boolean doubleConsonants = ((Boolean) x[0]).booleanValue();
                     if (doubleConsonants) {
                         /*
@@ -1747,11 +2316,11 @@ public class MorphologicalAnalyzer extends MorphologicalAnalyzerAbstract {
                     }
                 }
             } else if (checkPossibleDialectalChanges) {
-                Vector<String> grs = Dialect.equivalentGroups(stemEndChar,
+                Vector<String> grs = Dialect.equivalentGroups(ctx.stpw, stemEndChar,
                         formFirstChar);
                 if (grs != null)
                     for (int i = 0; i < grs.size(); i++) {
-                    	stpw.check("validateContextActions -- NASALISATION, checking equivalent groups");
+                    	ctx.stpw.check("validateContextActions -- NASALISATION, checking equivalent groups");
                         if (((String) grs.elementAt(i)).charAt(0) == nasalCorrespondingChar &&
                                 ((String)grs.elementAt(i)).charAt(1) == formFirstChar) {
                             res.add(new Object[] {
@@ -1769,7 +2338,7 @@ public class MorphologicalAnalyzer extends MorphologicalAnalyzerAbstract {
    /*
     * ------- NASALIZATION CONDITIONNELLE
     */
-   protected Vector<Object[]> validate_conditionalnasalization_null(
+   protected Vector<Object[]> validate_conditionalnasalization_null(MorphAnalysisContext ctx,
 	   		String context, Action action1, Action action2, String stem, String affixCandidate, 
 	   		SurfaceFormOfAffix form, Affix affix, int posAffix, AffixPartOfComposition partOfComp,
 	   		boolean checkPossibleDialectalChanges
@@ -1792,9 +2361,8 @@ public class MorphologicalAnalyzer extends MorphologicalAnalyzerAbstract {
         char nasalCorrespondingChar = Roman.nasalOfOcclusiveUnvoicedLat(context.charAt(0));
         if (stemEndChar == nasalCorrespondingChar) {
             try {
-                Condition avc = new Imacond(
-                        new ByteArrayInputStream(cond.getBytes())).ParseCondition();
-                affix.addPrecConstraint(avc);
+                Condition avc = action1.getParsedCondition();
+                ctx.addPrecConstraint(avc);
             } catch (ParseException e) {
             	throw new MorphInukException(e);
             }
@@ -1809,13 +2377,12 @@ public class MorphologicalAnalyzer extends MorphologicalAnalyzerAbstract {
              * return the suffixe with the modified stems.
              */
             if (typeOfStemEndChar==Roman.V && typeOfFormFirstChar==Roman.C) {
-                Object x[] = Dialect.schneiderStateAtEnd(stem);
+                Object x[] = Dialect.schneiderStateAtEnd(ctx.stpw, stem);
                 boolean doubleConsonants = ((Boolean) x[0]).booleanValue();
                 if (doubleConsonants) {
                     try {
-                        Condition avc = new Imacond(
-                                new ByteArrayInputStream(cond.getBytes())).ParseCondition();
-                        affix.addPrecConstraint(avc);
+                        Condition avc = action1.getParsedCondition();
+                        ctx.addPrecConstraint(avc);
                     } catch (ParseException e) {
                     	throw new MorphInukException(e);
                     }
@@ -1831,17 +2398,16 @@ public class MorphologicalAnalyzer extends MorphologicalAnalyzerAbstract {
                 }
             }
         } else if (checkPossibleDialectalChanges) {
-            Vector<String> grs = Dialect.equivalentGroups(stemEndChar,
+            Vector<String> grs = Dialect.equivalentGroups(ctx.stpw, stemEndChar,
                     formFirstChar);
             if (grs != null)
                 for (int i = 0; i < grs.size(); i++) {
-                	stpw.check("validateContextActions -- CONDITIONAL NASALIZATION, checking equivalent groups");
+                	ctx.stpw.check("validateContextActions -- CONDITIONAL NASALIZATION, checking equivalent groups");
                     if (((String) grs.elementAt(i)).charAt(0) == nasalCorrespondingChar &&
                             ((String)grs.elementAt(i)).charAt(1) == formFirstChar) {
                         try {
-                            Condition avc = new Imacond(
-                                    new ByteArrayInputStream(cond.getBytes())).ParseCondition();
-                            affix.addPrecConstraint(avc);
+                            Condition avc = action1.getParsedCondition();
+                            ctx.addPrecConstraint(avc);
                         } catch (ParseException e) {
                         	throw new MorphInukException(e);
                         }
@@ -1865,7 +2431,7 @@ public class MorphologicalAnalyzer extends MorphologicalAnalyzerAbstract {
     * quel.  La forme du suffixe passée ici contient le caractère inséré, par
     * exemple vvik pour vik dans le contexte de voyelle.
     */
-   protected Vector<Object[]> validate_insertion_null(
+   protected Vector<Object[]> validate_insertion_null(MorphAnalysisContext ctx,
 	   		String context, Action action1, Action action2, String stem, String affixCandidate, 
 	   		SurfaceFormOfAffix form, Affix affix, int posAffix, AffixPartOfComposition partOfComp,
 	   		boolean checkPossibleDialectalChanges
@@ -1897,7 +2463,7 @@ public class MorphologicalAnalyzer extends MorphologicalAnalyzerAbstract {
     * radical auquel on a ajouté la consonne spécifiée par le contexte, et
     * le suffixe tel quel.
     */
-	protected Vector<Object[]> validate_fusion_null(String context, Action action1, Action action2, String stem,
+	protected Vector<Object[]> validate_fusion_null(MorphAnalysisContext ctx, String context, Action action1, Action action2, String stem,
 			String affixCandidate, SurfaceFormOfAffix form, Affix affix, int posAffix,
 			AffixPartOfComposition partOfComp, boolean checkPossibleDialectalChanges)
 			throws TimeoutException, MorphInukException {
@@ -1925,7 +2491,7 @@ public class MorphologicalAnalyzer extends MorphologicalAnalyzerAbstract {
      * finale assimilée est remplacée par la consonne spécifiée par le
      * contexte, et le suffixe tel quel.
      */
-	protected Vector<Object[]> validate_assimilation_null(String context, Action action1, Action action2, String stem,
+	protected Vector<Object[]> validate_assimilation_null(MorphAnalysisContext ctx, String context, Action action1, Action action2, String stem,
 			String affixCandidate, SurfaceFormOfAffix form, Affix affix, int posAffix,
 			AffixPartOfComposition partOfComp, boolean checkPossibleDialectalChanges)
 			throws TimeoutException, MorphInukException {
@@ -1952,7 +2518,7 @@ public class MorphologicalAnalyzer extends MorphologicalAnalyzerAbstract {
          * modified stems.
          */
         if (typeOfStemEndChar==Roman.V && typeOfFormFirstChar==Roman.C) {
-            Object x[] = Dialect.schneiderStateAtEnd(stem);
+            Object x[] = Dialect.schneiderStateAtEnd(ctx.stpw, stem);
             boolean doubleConsonants = ((Boolean) x[0]).booleanValue();
             if (doubleConsonants) {
                 /*
@@ -1980,7 +2546,7 @@ public class MorphologicalAnalyzer extends MorphologicalAnalyzerAbstract {
      * assim(k) -> k). Le résultat est unique: le radical avec la consonne
      * finale remplacée par le contexte, et le suffixe tel quel.
      */
-	protected Vector<Object[]> validate_specificassimilation_null(String context, Action action1, Action action2, String stem,
+	protected Vector<Object[]> validate_specificassimilation_null(MorphAnalysisContext ctx, String context, Action action1, Action action2, String stem,
 			String affixCandidate, SurfaceFormOfAffix form, Affix affix, int posAffix,
 			AffixPartOfComposition partOfComp, boolean checkPossibleDialectalChanges)
 			throws TimeoutException, MorphInukException {
@@ -2017,7 +2583,7 @@ public class MorphologicalAnalyzer extends MorphologicalAnalyzerAbstract {
      * consonne.  Dans ce dernier cas, s'il y a condition à la suppression,
      * elle doit être respectée par le radical.
      */
-	protected Vector<Object[]> validate_deletion_specificdeletion(String context, Action action1, Action action2, String stem,
+	protected Vector<Object[]> validate_deletion_specificdeletion(MorphAnalysisContext ctx, String context, Action action1, Action action2, String stem,
 			String affixCandidate, SurfaceFormOfAffix form, Affix affix, int posAffix,
 			AffixPartOfComposition partOfComp, boolean checkPossibleDialectalChanges)
 			throws TimeoutException, MorphInukException {
@@ -2076,7 +2642,7 @@ public class MorphologicalAnalyzer extends MorphologicalAnalyzerAbstract {
      *       i. le radical + consonne de contexte,
      *          et le suffixe tel quel sans les caractères insérés.
      */
-	protected Vector<Object[]> validate_deletion_insertion(String context, Action action1, Action action2, String stem,
+	protected Vector<Object[]> validate_deletion_insertion(MorphAnalysisContext ctx, String context, Action action1, Action action2, String stem,
 			String affixCandidate, SurfaceFormOfAffix form, Affix affix, int posAffix,
 			AffixPartOfComposition partOfComp, boolean checkPossibleDialectalChanges)
 			throws TimeoutException, MorphInukException {
@@ -2151,7 +2717,7 @@ public class MorphologicalAnalyzer extends MorphologicalAnalyzerAbstract {
      *      quel.
      * 
      */
-	protected Vector<Object[]> validate_vowellengthening_cancellation(String context, Action action1, Action action2, String stem,
+	protected Vector<Object[]> validate_vowellengthening_cancellation(MorphAnalysisContext ctx, String context, Action action1, Action action2, String stem,
 			String affixCandidate, SurfaceFormOfAffix form, Affix affix, int posAffix,
 			AffixPartOfComposition partOfComp, boolean checkPossibleDialectalChanges)
 			throws TimeoutException, MorphInukException {
@@ -2193,7 +2759,7 @@ public class MorphologicalAnalyzer extends MorphologicalAnalyzerAbstract {
      * résultats, sauf qu'à cause de la suppression, le radical se voit
      * ajouter la consonne du contexte. (voir suppression ci-dessus)
      */
-	protected Vector<Object[]> validate_deletionvowellengthening_cancellation(String context, Action action1, Action action2, String stem,
+	protected Vector<Object[]> validate_deletionvowellengthening_cancellation(MorphAnalysisContext ctx, String context, Action action1, Action action2, String stem,
 			String affixCandidate, SurfaceFormOfAffix form, Affix affix, int posAffix,
 			AffixPartOfComposition partOfComp, boolean checkPossibleDialectalChanges)
 			throws TimeoutException, MorphInukException {
@@ -2234,7 +2800,7 @@ public class MorphologicalAnalyzer extends MorphologicalAnalyzerAbstract {
      * respecté si le radical se termine par la consonne de contexte et deux
      * occurrences de la voyelle insérée.
      */
-	protected Vector<Object[]> validate_insertionvowellengthening_null(String context, Action action1, Action action2, String stem,
+	protected Vector<Object[]> validate_insertionvowellengthening_null(MorphAnalysisContext ctx, String context, Action action1, Action action2, String stem,
 			String affixCandidate, SurfaceFormOfAffix form, Affix affix, int posAffix,
 			AffixPartOfComposition partOfComp, boolean checkPossibleDialectalChanges)
 			throws TimeoutException, MorphInukException {
@@ -2265,7 +2831,7 @@ public class MorphologicalAnalyzer extends MorphologicalAnalyzerAbstract {
      * supprimée, et la forme devrait être la forme autodécapitée. Le
      * contexte est respecté si le radical se termine par deux voyelles.
      */
-	protected Vector<Object[]> validate_neutral_selfdecapitation(String context, Action action1, Action action2, String stem,
+	protected Vector<Object[]> validate_neutral_selfdecapitation(MorphAnalysisContext ctx, String context, Action action1, Action action2, String stem,
 			String affixCandidate, SurfaceFormOfAffix form, Affix affix, int posAffix,
 			AffixPartOfComposition partOfComp, boolean checkPossibleDialectalChanges)
 			throws TimeoutException, MorphInukException, LinguisticDataException {
@@ -2304,7 +2870,7 @@ public class MorphologicalAnalyzer extends MorphologicalAnalyzerAbstract {
      * pour que le contexte soit respecté. Même résultat, sauf que la
      * consonne de contexte est ajoutée au radical.
      */
-  	protected Vector<Object[]> validate_deletion_selfdecapitation(String context, Action action1, Action action2, String stem,
+  	protected Vector<Object[]> validate_deletion_selfdecapitation(MorphAnalysisContext ctx, String context, Action action1, Action action2, String stem,
 			String affixCandidate, SurfaceFormOfAffix form, Affix affix, int posAffix,
 			AffixPartOfComposition partOfComp, boolean checkPossibleDialectalChanges)
 			throws TimeoutException, MorphInukException, LinguisticDataException {
@@ -2341,7 +2907,7 @@ public class MorphologicalAnalyzer extends MorphologicalAnalyzerAbstract {
      * supprimée est précédée de deux voyelles, la dernière voyelle du
      * radical est supprimée.
      */
-	protected Vector<Object[]> validate_deletion_deletion(String context, Action action1, Action action2, String stem,
+	protected Vector<Object[]> validate_deletion_deletion(MorphAnalysisContext ctx, String context, Action action1, Action action2, String stem,
 			String affixCandidate, SurfaceFormOfAffix form, Affix affix, int posAffix,
 			AffixPartOfComposition partOfComp, boolean checkPossibleDialectalChanges)
 			throws TimeoutException, MorphInukException {
@@ -2375,19 +2941,29 @@ public class MorphologicalAnalyzer extends MorphologicalAnalyzerAbstract {
 		removeFromCache(word, null);
 	}
 
-	public static synchronized void removeFromCache(String word, Boolean extendedAnalyses) {
+	public static void removeFromCache(String word, Boolean extendedAnalyses) {
 		if (extendedAnalyses == null) {
 			extendedAnalyses = false;
 		}
 		
-		String key = cacheKeyFor(word, extendedAnalyses);
+		String[] namespaces;
+		synchronized (cacheNamespaces) {
+			namespaces = cacheNamespaces.toArray(new String[0]);
+		}
 		
-		decompsCache.invalidate(key);
+		DecompositionsDiskCache disk = getDiskCache();
+		for (String namespace: namespaces) {
+			decompsCache.remove(cacheKeyFor(namespace, word, extendedAnalyses));
+			if (disk != null) {
+				disk.remove(namespace+word, extendedAnalyses);
+			}
+		}
 	}
 
 
-	private static String cacheKeyFor(String word, boolean extendedAnalyses) {
-		String key = word; 
+	private static String cacheKeyFor(String namespace, String word, 
+			boolean extendedAnalyses) {
+		String key = namespace + word; 
 		if (extendedAnalyses) {
 			key += "/extended";
 		}
@@ -1,22 +1,30 @@
 package ca.inuktitutcomputing.morph;
 
-import java.util.HashMap;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
 import java.util.HashSet;
-import java.util.Map;
+import java.util.Iterator;
+import java.util.List;
 import java.util.Set;
+import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.apache.log4j.Logger;
 
 import ca.inuktitutcomputing.data.LinguisticDataException;
-import ca.inuktitutcomputing.utilities.StopWatch;
+import ca.inuktitutcomputing.utilities.CancellationToken;
 import ca.nrc.debug.Debug;
-import ca.nrc.string.StringUtils;
 
 public abstract class MorphologicalAnalyzerAbstract implements AutoCloseable {
 	
@@ -24,7 +32,9 @@ public abstract class MorphologicalAnalyzerAbstract implements AutoCloseable {
 	 * Strategy used to monitor execution of the analyzer and timing it out 
 	 * after a set time.
 	 * 
-	 * - EXECUTOR: Use the Java Executor+Future classes
+	 * - EXECUTOR: Run the analysis on a fixed-size pool of threads, and 
+	 *     cancel it (through a CancellationToken) if it does not complete
+	 *     in time
 	 * - STOPWATCH: Use the homegrown StopWatch class
 	 * - BOTH: Use the EXECUTOR approach in tandem with STOPWATCH 
 	 * 
@@ -39,19 +49,30 @@ public abstract class MorphologicalAnalyzerAbstract implements AutoCloseable {
 //	protected TimeoutStrategy timeoutStrategy = TimeoutStrategy.EXECUTOR;
     protected Long millisTimeout = new Long(10*1000);
     protected boolean timeoutActive = true;
-    protected StopWatch stpw;
     
-    protected static ExecutorService executor = null;
-    public static Map<String,Future<Decomposition[]>> taskFutures = 
-    	new HashMap<String,Future<Decomposition[]>>();
+    /*
+     * Pool of threads shared by all analyzers, for the EXECUTOR and BOTH 
+     * timeout strategies. Its size is fixed: a word that times out is 
+     * cancelled and gives its thread back to the pool at the next check of
+     * its StopWatch, instead of running on in the background. So is the 
+     * size of the queue of words that wait for a thread: once it is full,
+     * new words are rejected (see AnalyzerBusyException) instead of piling
+     * up.
+     */
+    protected static ThreadPoolExecutor executor = null;
+    private static int executorPoolSize = 
+    	Runtime.getRuntime().availableProcessors();
+    private static int executorQueueCapacity = 16 * executorPoolSize;
+    private static AtomicLong numSubmittedTasks = new AtomicLong(0);
+    private static AtomicLong numCancelledTasks = new AtomicLong(0);
+    private static AtomicLong numRejectedTasks = new AtomicLong(0);
     
     
     public void close() throws Exception {
     	System.out.println("--** MorphologicalAnalyzerAbstract.close: INVOKED");
     }
     
-    // TODO: Make that synchronized?
-    public static void shutdownExecutorPool() {
+    public static synchronized void shutdownExecutorPool() {
     	Logger mLogger = Logger.getLogger("ca.inuktitutcomputing.morph.MorphologicalAnalyzerAbstract.shutdownExecutorPool");
     	
     	traceTasks(mLogger, "Before shutting down executor pool");
@@ -72,47 +93,59 @@ public abstract class MorphologicalAnalyzerAbstract implements AutoCloseable {
     	mLogger.trace("Upon exit, #threads="+Thread.activeCount());
     }
     
-    private static void traceTasks(Logger logger) {
-    	traceTasks(logger, null);
+    /**
+     * Set the max number of words that can be decomposed at the same time
+     * with the EXECUTOR and BOTH timeout strategies.
+     */
+    public static synchronized void setExecutorPoolSize(int size) {
+    	if (size < 1) {
+    		size = 1;
+    	}
+    	executorPoolSize = size;
+    	if (executor != null) {
+    		// Core size can never exceed the max size, so change them in the
+    		// right order
+    		if (size > executor.getMaximumPoolSize()) {
+    			executor.setMaximumPoolSize(size);
+    			executor.setCorePoolSize(size);
+    		} else {
+    			executor.setCorePoolSize(size);
+    			executor.setMaximumPoolSize(size);
+    		}
+    	}
     }
-
     
-    private static void traceTasks(Logger logger, String mess) {
-    	if (mess == null) {
-    		mess = "";
+    /**
+     * Set the max number of words that can wait for a thread of the pool 
+     * (see setExecutorPoolSize()). Takes effect the next time the pool is 
+     * created, ex: after shutdownExecutorPool().
+     */
+    public static synchronized void setExecutorQueueCapacity(int capacity) {
+    	if (capacity < 1) {
+    		capacity = 1;
+    	}
+    	executorQueueCapacity = capacity;
+    }
+    
+    public static synchronized ExecutorPoolStats executorPoolStats() {
+    	ExecutorPoolStats stats = new ExecutorPoolStats();
+    	stats.poolSize = executorPoolSize;
+    	stats.submittedTasks = numSubmittedTasks.get();
+    	stats.cancelledTasks = numCancelledTasks.get();
+    	stats.rejectedTasks = numRejectedTasks.get();
+    	stats.queueCapacity = executorQueueCapacity;
+    	if (executor != null) {
+    		stats.activeThreads = executor.getActiveCount();
+    		stats.queuedTasks = executor.getQueue().size();
+    		stats.largestPoolSize = executor.getLargestPoolSize();
+    		stats.completedTasks = executor.getCompletedTaskCount();
     	}
+    	return stats;
+    }
+    
+    private static void traceTasks(Logger logger, String mess) {
 		if (logger.isTraceEnabled()) {
-			int numDone = 0;
-			int numCancelled = 0;
-			int numPending = 0;
-			Set<String> pendingWords = new HashSet<String>();
-			Set<String> cancelledWords = new HashSet<String>();
-			for (String word: taskFutures.keySet()) {
-				Future<Decomposition[]> aFuture = taskFutures.get(word);
-				if (aFuture.isCancelled()) {
-					cancelledWords.add(word);
-					numCancelled++;
-				} else if (aFuture.isDone()) {
-					numDone++;
-				} else {
-					pendingWords.add(word);
-					numPending++;
-				}
-			}
-			mess += 
-				"\nState of all decomposition tasks\n"+
-				"  #Done      : "+numDone+"\n"+
-				"  #Cancelled : "+numCancelled+"\n"+
-				"  #Pending   : "+numPending+"\n"+
-				"\n"+
-				"Cancelled words:\n  "+
-				StringUtils.join(cancelledWords.iterator(), "\n  ")+"\n"+
-				"\n"+
-				"Pending words:\n  "+
-				StringUtils.join(pendingWords.iterator(), "\n  ")
-				;
-			
-			logger.trace(mess);			
+			logger.trace(mess+"\n"+executorPoolStats());			
 		}
 	}
 
@@ -147,9 +180,6 @@ public abstract class MorphologicalAnalyzerAbstract implements AutoCloseable {
     	}
     	
     	long start = System.currentTimeMillis();
-    	if (timeoutStrategy != TimeoutStrategy.EXECUTOR) {
-    		this.stpw = new StopWatch(millisTimeout, "Decomposing word="+word);
-    	}
     	
     	Logger tLogger = Logger.getLogger("ca.inuktitutcomputing.morph.decomposeWord");
     	tLogger.trace("word="+word+", lenient="+lenient);
@@ -178,28 +208,177 @@ public abstract class MorphologicalAnalyzerAbstract implements AutoCloseable {
     	return decomps;
     }
 
+    /**
+     * Decompose a word, looking only for its best decompositions.
+     * 
+     * Returns at most maxDecomps decompositions, which are the same (and in
+     * the same order) as the first maxDecomps decompositions returned by 
+     * decomposeWord(). Analyzers that support it find them with a best-first 
+     * search that stops as soon as no better decomposition can be found, 
+     * which is much faster for callers that only need the top 
+     * decomposition(s).
+     * 
+     * This method never raises a TimeoutException. If the analyzer runs out
+     * of time, the results are flagged as timedOut and provide the best 
+     * decompositions that were found so far (possibly none).
+     */
+    public DecompositionResults decomposeWordBestFirst(String word, 
+    		int maxDecomps) throws MorphologicalAnalyzerException {
+    	return decomposeWordBestFirst(word, maxDecomps, null);
+    }
+    
+    public DecompositionResults decomposeWordBestFirst(String word, 
+    		int maxDecomps, Boolean lenient) throws MorphologicalAnalyzerException {
+    	if (lenient == null) {
+    		lenient = true;
+    	}
+    	Logger tLogger = Logger.getLogger("ca.inuktitutcomputing.morph.decomposeWordBestFirst");
+    	tLogger.trace("word="+word+", maxDecomps="+maxDecomps+", lenient="+lenient);
+    	
+    	return doDecomposeBestFirst(word, maxDecomps, lenient);
+    }
+    
+    /**
+     * Analyzers that cannot do a best-first search do a complete 
+     * decomposition and keep its first maxDecomps decompositions.
+     */
+    protected DecompositionResults doDecomposeBestFirst(String word, 
+    		int maxDecomps, Boolean lenient) throws MorphologicalAnalyzerException {
+    	DecompositionResults results = new DecompositionResults(word);
+    	long start = System.currentTimeMillis();
+    	try {
+    		Decomposition[] decomps = invokeDirectly(word, lenient);
+    		if (decomps != null) {
+    			results.decompositions = 
+    				Arrays.copyOf(decomps, Math.min(maxDecomps, decomps.length));
+    		}
+    	} catch (TimeoutException e) {
+    		results.timedOut = true;
+    	}
+    	results.totalMSecs = System.currentTimeMillis() - start;
+    	return results;
+    }
+
+    /**
+     * Decompose a batch of words.
+     * 
+     * The words are decomposed in parallel, by a pool of 
+     * options.getNumThreads() threads, and the results are passed to the 
+     * handler in the order of the batch. Words are read from the batch as
+     * the analysis progresses, so the batch can be arbitrarily large (ex: 
+     * all the words of a corpus).
+     * 
+     * A word that times out or causes an exception does not stop the batch:
+     * its DecompositionResults is flagged as timedOut, or provides the 
+     * exception.
+     */
+    public void decomposeWords(Iterable<String> words, 
+    		DecomposeWordsOptions options, DecompositionResultsHandler handler) 
+    		throws MorphologicalAnalyzerException {
+    	Logger tLogger = Logger.getLogger("ca.inuktitutcomputing.morph.decomposeWords");
+    	if (options == null) {
+    		options = new DecomposeWordsOptions();
+    	}
+    	final Boolean lenient = options.getLenient();
+    	tLogger.trace("numThreads="+options.getNumThreads()+", lenient="+lenient+
+    		", dedupe="+options.getDedupe());
+    	
+    	ExecutorService pool = Executors.newFixedThreadPool(options.getNumThreads());
+    	Deque<Future<DecompositionResults>> pending = 
+    		new ArrayDeque<Future<DecompositionResults>>();
+    	Set<String> wordsSeen = new HashSet<String>();
+    	long numDone = 0;
+    	try {
+    		Iterator<String> iterWords = words.iterator();
+    		while (true) {
+    			while (iterWords.hasNext() && 
+    					pending.size() < options.maxPendingWords()) {
+    				final String word = iterWords.next();
+    				if (options.getDedupe() && !wordsSeen.add(word)) {
+    					continue;
+    				}
+    				pending.add(pool.submit(new Callable<DecompositionResults>() {
+						@Override
+						public DecompositionResults call() {
+							return decomposeWordResults(word, lenient);
+						}
+    				}));
+    			}
+    			if (pending.isEmpty()) {
+    				break;
+    			}
+    			
+    			DecompositionResults results = pending.remove().get();
+    			numDone++;
+    			try {
+    				handler.onResults(results);
+    				if (options.getProgressEvery() > 0 && 
+    						numDone % options.getProgressEvery() == 0) {
+    					handler.onProgress(numDone);
+    				}
+    			} catch (Exception e) {
+    				throw new MorphologicalAnalyzerException(
+    					"Handler failed on results for word="+results.word, e);
+    			}
+    		}
+    	} catch (InterruptedException | ExecutionException e) {
+    		throw new MorphologicalAnalyzerException(e);
+    	} finally {
+    		pool.shutdownNow();
+    	}
+    	tLogger.trace("Decomposed "+numDone+" words");
+    }
+
+    /**
+     * Decompose a batch of words, and return the results in the order of 
+     * the batch. See decomposeWords(Iterable,DecomposeWordsOptions,DecompositionResultsHandler).
+     */
+    public List<DecompositionResults> decomposeWords(Iterable<String> words, 
+    		DecomposeWordsOptions options) throws MorphologicalAnalyzerException {
+    	final List<DecompositionResults> allResults = 
+    		new ArrayList<DecompositionResults>();
+    	decomposeWords(words, options, new DecompositionResultsHandler() {
+			@Override
+			public void onResults(DecompositionResults results) {
+				allResults.add(results);
+			}
+    	});
+    	return allResults;
+    }
+
+    protected DecompositionResults decomposeWordResults(String word, Boolean lenient) {
+    	DecompositionResults results = new DecompositionResults(word);
+    	long start = System.currentTimeMillis();
+    	try {
+    		results.decompositions = invokeDirectly(word, lenient);
+    	} catch (TimeoutException e) {
+    		results.timedOut = true;
+    	} catch (MorphologicalAnalyzerException e) {
+    		results.exception = e;
+    	}
+    	results.totalMSecs = System.currentTimeMillis() - start;
+    	return results;
+    }
+
     private Decomposition[] invokeThroughExecutor(MorphAnalyzerTask task) 
     		throws TimeoutException, MorphologicalAnalyzerException, InterruptedException {
     	Logger tLogger = Logger.getLogger("ca.inuktitutcomputing.morph.invokeThroughExecutor");
     	
     	String word = task.word;
     	traceTasks(tLogger, "processing word="+word);
-    	if (executor == null) {
-    		// TODO: Make the creation of the executor synchronized
-    		//   ... as in https://dzone.com/articles/prevent-breaking-a-singleton-class-pattern
-    		// make it a call to a method getExecutor()...
-    		// The method itself will not be synchronized, but the bit of code that actually
-    		// creates the executor will be.
-    		//
-    		traceTasks(tLogger, "Before creating the executor for word="+word+", #threads="+Thread.activeCount());
-    		executor = Executors.newCachedThreadPool();
-    		traceTasks(tLogger, "AFTER creating the executor for word="+word+", #threads="+Thread.activeCount());
-    	}
-
 		
     	traceTasks(tLogger, "Before submitting the future for word="+word+", #threads="+Thread.activeCount());
-		Future<Decomposition[]> future = executor.submit(task);
-		taskFutures.put(word, future);
+		ThreadPoolExecutor pool = getExecutor(word);
+		Future<Decomposition[]> future = null;
+		try {
+			future = pool.submit(task);
+		} catch (RejectedExecutionException e) {
+			numRejectedTasks.incrementAndGet();
+			throw new AnalyzerBusyException("Word "+word+
+				" was rejected: "+pool.getQueue().size()+
+				" words are already waiting for a thread of the analyzers", e);
+		}
+		numSubmittedTasks.incrementAndGet();
 		traceTasks(tLogger, "After submitting the future for word="+word+", #threads="+Thread.activeCount());
 		Decomposition[] decomps = null;	
     	long start = System.currentTimeMillis();
@@ -207,13 +386,18 @@ public abstract class MorphologicalAnalyzerAbstract implements AutoCloseable {
     	traceTasks(tLogger, "Before getting the future for word="+word+", #threads="+Thread.activeCount());
 		try {
 			if (timeoutActive) {
-				decomps = (Decomposition[])future.get(millisTimeout, TimeUnit.MILLISECONDS);
+				decomps = getWithinTimeAllowed(task, future, pool, start);
 			} else {
 				decomps = (Decomposition[])future.get();
 			}
 			traceTasks(tLogger, "Future for word="+word+" has completed normally, #threads="+Thread.activeCount());
+		} catch (TimeoutException e) {
+			traceTasks(tLogger, "Future for word="+task.word+" timed out; Cancelling it...");
+			cancelTask(task, future, "timed out after "+millisTimeout+"msecs");
+			throw e;
 		} catch (InterruptedException e) {
-			traceTasks(tLogger, "Future for word="+task.word+" caught InterruptedException; Rethrowing it...");
+			traceTasks(tLogger, "Future for word="+task.word+" caught InterruptedException; Cancelling it and rethrowing...");
+			cancelTask(task, future, "caller was interrupted");
 			throw e;
 		} catch (ExecutionException e) {
 			traceTasks(tLogger, "Future for word="+task.word+
@@ -231,16 +415,69 @@ public abstract class MorphologicalAnalyzerAbstract implements AutoCloseable {
 		} finally {
 			traceTasks(tLogger, "'finally' clause for word="+word+"; at beginning, #threads="+Thread.activeCount());
 			checkElapsedTime(word, start);
-//			future.cancel(true); // may or may not desire this
 			tLogger.trace("'finally' clause for word="+word+"; at END, #threads="+Thread.activeCount());
-//			executor.shutdown();
 		}	
 				
 		traceTasks(tLogger, "Upon exit for word="+word+", #threads="+Thread.activeCount());
 		return decomps;
 	}
 
-	private Decomposition[] invokeDirectly(String word, boolean lenient) 
+	/*
+	 * Waits for the results of the task. The time allowed for the word 
+	 * starts when a thread starts to decompose it, not while it waits in 
+	 * the queue: the wait is extended for as long as the task has not 
+	 * started (unless the pool was shut down, in which case it never will).
+	 */
+	private Decomposition[] getWithinTimeAllowed(MorphAnalyzerTask task, 
+			Future<Decomposition[]> future, ThreadPoolExecutor pool, 
+			long submitted) 
+			throws TimeoutException, InterruptedException, ExecutionException {
+		long deadline = submitted + millisTimeout;
+		while (true) {
+			long now = System.currentTimeMillis();
+			try {
+				return future.get(Math.max(deadline - now, 0), 
+					TimeUnit.MILLISECONDS);
+			} catch (TimeoutException e) {
+				now = System.currentTimeMillis();
+				long taskStart = task.startTime;
+				if (taskStart < 0 && !pool.isShutdown()) {
+					deadline = now + millisTimeout;
+				} else if (taskStart >= 0 && taskStart + millisTimeout > now) {
+					deadline = taskStart + millisTimeout;
+				} else {
+					throw e;
+				}
+			}
+		}
+	}
+
+	/*
+	 * The task stops at the next check of its StopWatch (or never starts, if
+	 * it is still in the queue), which frees its thread for other words.
+	 */
+	private void cancelTask(MorphAnalyzerTask task, 
+			Future<Decomposition[]> future, String reason) {
+		task.cancellationToken.cancel(reason);
+		future.cancel(false);
+		numCancelledTasks.incrementAndGet();
+	}
+
+	private static synchronized ThreadPoolExecutor getExecutor(String word) {
+    	Logger tLogger = Logger.getLogger("ca.inuktitutcomputing.morph.getExecutor");
+    	if (executor == null) {
+    		traceTasks(tLogger, "Before creating the executor for word="+word+", #threads="+Thread.activeCount());
+    		executor = new ThreadPoolExecutor(
+    			executorPoolSize, executorPoolSize, 60L, TimeUnit.SECONDS, 
+    			new ArrayBlockingQueue<Runnable>(executorQueueCapacity));
+    		// Like a cached pool, don't keep idle threads alive forever
+    		executor.allowCoreThreadTimeOut(true);
+    		traceTasks(tLogger, "AFTER creating the executor for word="+word+", #threads="+Thread.activeCount());
+    	}
+    	return executor;
+	}
+
+	private Decomposition[] invokeDirectly(String word, Boolean lenient) 
 			throws TimeoutException, MorphologicalAnalyzerException {
     	Logger tLogger = Logger.getLogger("ca.inuktitutcomputing.morph.invokeDirectly");
     	
@@ -301,6 +538,17 @@ public abstract class MorphologicalAnalyzerAbstract implements AutoCloseable {
     
 	protected abstract Decomposition[] doDecompose(String word, Boolean lenient) 
 		throws MorphologicalAnalyzerException, TimeoutException;
+
+	/**
+	 * Same as doDecompose(word, lenient), but the analysis stops with a 
+	 * TimeoutException as soon as possible after the token is cancelled.
+	 * Analyzers that do not support cancellation ignore the token. 
+	 */
+	protected Decomposition[] doDecompose(String word, Boolean lenient, 
+			CancellationToken cancellationToken) 
+			throws MorphologicalAnalyzerException, TimeoutException {
+		return doDecompose(word, lenient);
+	}
     
     public MorphologicalAnalyzerAbstract() throws LinguisticDataException {
     	
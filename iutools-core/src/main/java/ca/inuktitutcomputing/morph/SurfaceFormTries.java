@@ -0,0 +1,444 @@
+package ca.inuktitutcomputing.morph;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.Vector;
+import java.util.concurrent.TimeoutException;
+
+import ca.inuktitutcomputing.data.Action;
+import ca.inuktitutcomputing.data.Affix;
+import ca.inuktitutcomputing.data.AffixSurfaceFormsTrie;
+import ca.inuktitutcomputing.data.LexiconTrie;
+import ca.inuktitutcomputing.data.LinguisticData;
+import ca.inuktitutcomputing.data.LinguisticDataException;
+import ca.inuktitutcomputing.data.Morpheme;
+import ca.inuktitutcomputing.data.SurfaceFormOfAffix;
+import ca.inuktitutcomputing.phonology.Dialect;
+import ca.inuktitutcomputing.script.Orthography;
+import ca.inuktitutcomputing.script.Roman;
+import ca.inuktitutcomputing.utilities.StopWatch;
+
+/**
+ * Tries of the surface forms of the roots and affixes of the linguistic
+ * data, read from left to right, with which MorphologicalAnalyzer_L2R finds
+ * the morphemes that may appear in a word.
+ *
+ * The tries are computed once from LinguisticData (ex: for the roots, from
+ * the canonical forms of the bases; for the affixes, from their surface
+ * forms in context), in the simplified orthography used by the analyzer.
+ *
+ * The written form of a morpheme can change at its end, through the
+ * actions of the morpheme that follows it: its final consonant may be
+ * deleted, voiced, nasalized or assimilated (ex: 'malik' written mali,
+ * malig, maling, malil...), the vowel that precedes the consonant may be
+ * deleted too (ex: 'liaq' written li in liuq), and its final vowel may be
+ * lengthened. An affix can also insert characters in front of its form
+ * (ex: 'ut' after two vowels: jjut). Rather than generating all the forms
+ * that such changes could produce, the tries are keyed on the forms and on
+ * their prefixes that the MorphologicalAnalyzer could complete. A morpheme
+ * found with a key at a given position of the word then ends right after
+ * the key, or one character further.
+ *
+ * The prefixes follow from the way the MorphologicalAnalyzer validates
+ * the actions of an affix (see validateContextActions): it restores at the
+ * end of the stem the context consonant of the affix, possibly preceded by
+ * a vowel (ex: validate_deletion_deletion), it may replace the final
+ * consonant of the stem with the context consonant (ex:
+ * validate_voicing_null), and it may remove from the stem characters that
+ * belong to the affix (ex: validate_vowellengthening_cancellation). An
+ * affix found among the characters restored for the affix that follows it
+ * leaves the vowels that precede it, to which its own actions add others.
+ * The end of a morpheme that is not written in the word is thus made of
+ * vowels, possibly followed by a context consonant or by the consonant
+ * that the MorphologicalAnalyzer adds to a word that ends with a vowel. An
+ * affix whose form is made of such characters only may not be written at
+ * all. If an affix of the data deletes a vowel on a condition, the
+ * character before that end may also be written differently (see
+ * validate_conditionaldeletion_null).
+ *
+ * The clusters of consonants of a morpheme are written differently in some
+ * dialects (ex: iglu, illu; see Dialect), so each form is also keyed with
+ * the equivalents of its clusters, and with the first consonant of a
+ * cluster dropped when another cluster precedes it (ex: unnuksaq, unnusaq;
+ * naammak+ksaq, naammasaq). The first consonant of an affix may also have
+ * changed, as part of a cluster with the last consonant of the morpheme
+ * that precedes it.
+ *
+ * A morpheme is a candidate for a word if it is found in at least one
+ * sequence of a root followed by affixes that covers the whole word. This
+ * errs on the side of caution: it is the MorphologicalAnalyzer that decides
+ * whether the candidates actually go together.
+ */
+class SurfaceFormTries {
+
+	/*
+	 * A morpheme found with a key of length L at position P of the word
+	 * ends between P+L and P+L+MAX_CHARS_AFTER_KEY.
+	 */
+	private static final int MAX_CHARS_AFTER_KEY = 1;
+
+	/*
+	 * Consonants that the MorphologicalAnalyzer may restore at the end of a
+	 * stem: the context consonants of the affixes (k, q, t), and those that
+	 * may be missing at the end of the word (see Lexicon.consonants).
+	 */
+	private static final String RESTORABLE_CONSONANTS = "kpqt";
+
+	private static SurfaceFormTries tries = null;
+
+	/*
+	 * Tries of LinguisticData from which these tries were built.
+	 * LinguisticData rebuilds them whenever a root or an affix form is
+	 * added, and so are these ones.
+	 */
+	private final LexiconTrie<Morpheme> builtForRoots;
+	private final AffixSurfaceFormsTrie builtForAffixes;
+
+	private final LexiconTrie<Morpheme> roots;
+	private final LexiconTrie<Morpheme> affixes;
+
+	/* Consonants that start at least one key of the affixes */
+	private final char[] affixInitialConsonants;
+
+	/* Int ids of the affixes that may not be written at all */
+	private final BitSet unwrittenAffixes = new BitSet();
+
+	/*
+	 * Whether the character that precedes the restored end of a morpheme
+	 * may be written differently (see validate_conditionaldeletion_null).
+	 */
+	private final boolean charBeforeRestoredEndMayDiffer;
+
+	/**
+	 * @return The tries for the current linguistic data.
+	 */
+	public static synchronized SurfaceFormTries forCurrentData()
+			throws LinguisticDataException {
+		LinguisticData data = LinguisticData.getInstance();
+		LexiconTrie<Morpheme> basesTrie = data.getBasesTrie();
+		AffixSurfaceFormsTrie formsTrie = data.getAffixSurfaceFormsTrie();
+		if (tries == null || tries.builtForRoots != basesTrie ||
+				tries.builtForAffixes != formsTrie) {
+			tries = new SurfaceFormTries(data, basesTrie, formsTrie);
+		}
+		return tries;
+	}
+
+	SurfaceFormTries(LinguisticData data, LexiconTrie<Morpheme> builtForRoots,
+			AffixSurfaceFormsTrie builtForAffixes)
+			throws LinguisticDataException {
+		this.builtForRoots = builtForRoots;
+		this.builtForAffixes = builtForAffixes;
+		StopWatch noTimeout = new StopWatch(0, "SurfaceFormTries");
+		noTimeout.disactivate();
+		this.charBeforeRestoredEndMayDiffer =
+			vowelMayBeRestoredAfterReplacedConsonant(data);
+
+		Map<String,Vector<Morpheme>> rootsTable = new HashMap<String,Vector<Morpheme>>();
+		for (Map.Entry<String,Vector<Morpheme>> entry:
+				data.getBasesForAllCanonicalForms_hashtable().entrySet()) {
+			String form = Orthography.simplifiedOrthographyLat(entry.getKey());
+			for (String dialectalForm: dialectalForms(form, noTimeout)) {
+				for (String surfaceForm: reducedForms(dialectalForm, false)) {
+					for (String key: keysFor(surfaceForm)) {
+						for (Morpheme root: entry.getValue()) {
+							addToTable(rootsTable, key, root);
+						}
+					}
+				}
+			}
+		}
+		this.roots = new LexiconTrie<Morpheme>(rootsTable);
+
+		Map<String,Vector<Morpheme>> affixesTable = new HashMap<String,Vector<Morpheme>>();
+		TreeSet<Character> initialConsonants = new TreeSet<Character>();
+		for (Map.Entry<String,Vector<SurfaceFormOfAffix>> entry:
+				data.getFormToSurfaceFormsOfAffixesTable().entrySet()) {
+			String form = entry.getKey();
+			for (SurfaceFormOfAffix formOfAffix: entry.getValue()) {
+				Affix affix = formOfAffix.getAffix();
+				if (affix == null) {
+					continue;
+				}
+				for (String formWithInsertion: formsWithInsertions(form, formOfAffix)) {
+					for (String dialectalForm: dialectalForms(formWithInsertion, noTimeout)) {
+						for (String surfaceForm: reducedForms(dialectalForm, true)) {
+							for (String key: keysFor(surfaceForm)) {
+								addToTable(affixesTable, key, affix);
+								if (Roman.typeOfLetterLat(key.charAt(0)) == Roman.C) {
+									initialConsonants.add(key.charAt(0));
+								}
+							}
+							if (affix.intId >= 0 &&
+									lengthNotWritten(surfaceForm) >= surfaceForm.length()) {
+								unwrittenAffixes.set(affix.intId);
+							}
+						}
+					}
+				}
+			}
+		}
+		this.affixes = new LexiconTrie<Morpheme>(affixesTable);
+		this.affixInitialConsonants = new char[initialConsonants.size()];
+		int ic = 0;
+		for (Character cons: initialConsonants) {
+			affixInitialConsonants[ic++] = cons;
+		}
+	}
+
+	/**
+	 * Find the morphemes that may appear in the decompositions of a term,
+	 * by reading the term from left to right: a root at the start of the
+	 * term, then affixes, each one starting where the previous one ends,
+	 * up to the end of the term.
+	 *
+	 * @param term Term in simplified orthography
+	 * @return The int ids (see Morpheme.intId) of the morphemes found in at
+	 *    least one sequence of morphemes that covers the whole term.
+	 */
+	public BitSet candidateMorphemes(String term) {
+		int termLength = term.length();
+		Edges edges = new Edges();
+
+		// Positions of the term where a morpheme may end, reading from the
+		// start of the term
+		BitSet reached = new BitSet(termLength+1);
+		edges.addAll(roots.getForEveryPrefix(term, 0), 0, termLength, reached);
+		StringBuilder variant = new StringBuilder(term);
+		for (int start = 1; start < termLength; start++) {
+			if (!reached.get(start)) {
+				continue;
+			}
+			edges.addAll(affixes.getForEveryPrefix(term, start), start, termLength, reached);
+			char initial = term.charAt(start);
+			if (Roman.typeOfLetterLat(initial) == Roman.C) {
+				for (char cons: affixInitialConsonants) {
+					if (cons == initial) {
+						continue;
+					}
+					variant.setCharAt(start, cons);
+					edges.addAll(affixes.getForEveryPrefix(variant.toString(), start),
+						start, termLength, reached);
+				}
+				variant.setCharAt(start, initial);
+			}
+		}
+
+		// Positions from which the end of the term can be reached. The
+		// edges were added in order of their starting position.
+		BitSet leadsToEnd = new BitSet(termLength+1);
+		leadsToEnd.set(termLength);
+		for (int ie = edges.size - 1; ie >= 0; ie--) {
+			if (leadsToEnd.get(edges.ends[ie])) {
+				leadsToEnd.set(edges.starts[ie]);
+			}
+		}
+
+		BitSet candidates = new BitSet();
+		for (int ie = 0; ie < edges.size; ie++) {
+			if (leadsToEnd.get(edges.ends[ie])) {
+				candidates.set(edges.intIds[ie]);
+			}
+		}
+		// The affixes that are not written may be found between any two
+		// morphemes of a sequence that covers the term, or at its end
+		reached.and(leadsToEnd);
+		if (!reached.isEmpty()) {
+			candidates.or(unwrittenAffixes);
+		}
+		return candidates;
+	}
+
+	/*
+	 * The forms of an affix that can appear in a word: its surface form,
+	 * possibly preceded by the characters that its actions insert at the
+	 * end of the stem.
+	 */
+	private static Vector<String> formsWithInsertions(String form,
+			SurfaceFormOfAffix formOfAffix) {
+		Vector<String> forms = new Vector<String>();
+		forms.add(form);
+		for (Action action: new Action[] {formOfAffix.action1, formOfAffix.action2}) {
+			String insert = (action == null ? null : action.getInsert());
+			if (insert != null) {
+				insert = Orthography.simplifiedOrthographyLat(insert);
+				if (!insert.isEmpty() && !forms.contains(insert+form)) {
+					forms.add(insert+form);
+				}
+			}
+		}
+		return forms;
+	}
+
+	/*
+	 * The form, and the forms in which its clusters of consonants are
+	 * replaced with their equivalents in other dialects.
+	 */
+	private static Vector<String> dialectalForms(String form, StopWatch noTimeout)
+			throws LinguisticDataException {
+		Vector<String> forms = new Vector<String>();
+		forms.add(form);
+		try {
+			for (String variant: Dialect.correspondingTermsEquivalentGroups(noTimeout, form)) {
+				if (!forms.contains(variant)) {
+					forms.add(variant);
+				}
+			}
+		} catch (TimeoutException e) {
+			// Cannot happen: the stopwatch is not active
+			throw new LinguisticDataException(e);
+		}
+		return forms;
+	}
+
+	/*
+	 * The form, and the forms in which one of its clusters of two
+	 * consonants, preceded by another cluster, is reduced to its second
+	 * consonant. An initial cluster may be preceded by a cluster at the end
+	 * of the previous morpheme if the form is that of an affix.
+	 */
+	private static Vector<String> reducedForms(String form, boolean isAffix) {
+		Vector<String> forms = new Vector<String>();
+		forms.add(form);
+		boolean afterCluster = false;
+		for (int ic = 0; ic + 1 < form.length(); ic++) {
+			if (Roman.typeOfLetterLat(form.charAt(ic)) != Roman.C ||
+					Roman.typeOfLetterLat(form.charAt(ic+1)) != Roman.C) {
+				continue;
+			}
+			if (afterCluster || (ic == 0 && isAffix)) {
+				String reduced = form.substring(0, ic) + form.substring(ic+1);
+				if (!forms.contains(reduced)) {
+					forms.add(reduced);
+				}
+			}
+			afterCluster = true;
+		}
+		return forms;
+	}
+
+	/*
+	 * The keys of a form: the form, and its prefixes of at least one
+	 * character without the end that may not be written.
+	 */
+	private Vector<String> keysFor(String form) {
+		Vector<String> keys = new Vector<String>();
+		int minLength = Math.max(1, form.length() - lengthNotWritten(form));
+		for (int length = form.length(); length >= minLength; length--) {
+			keys.add(form.substring(0, length));
+		}
+		return keys;
+	}
+
+	/*
+	 * Length of the longest end of the form that may not be written as it
+	 * is in the word: its restorable end, and the character that precedes
+	 * it if that character may be written differently.
+	 */
+	private int lengthNotWritten(String form) {
+		int length = lengthOfRestorableEnd(form);
+		if (charBeforeRestoredEndMayDiffer && length < form.length()) {
+			length++;
+		}
+		return length;
+	}
+
+	/*
+	 * Length of the longest end of the form that the MorphologicalAnalyzer
+	 * may have restored: vowels, possibly followed by a consonant that can
+	 * be restored (see RESTORABLE_CONSONANTS).
+	 */
+	private static int lengthOfRestorableEnd(String form) {
+		int start = form.length();
+		if (start > 0 && RESTORABLE_CONSONANTS.indexOf(form.charAt(start-1)) >= 0) {
+			start--;
+		}
+		while (start > 0 && Roman.typeOfLetterLat(form.charAt(start-1)) == Roman.V) {
+			start--;
+		}
+		return form.length() - start;
+	}
+
+	/*
+	 * Whether an affix of the data deletes a vowel of the stem on a
+	 * condition, in which case the MorphologicalAnalyzer restores the vowel
+	 * after the final consonant of the stem, replaced with one of its
+	 * dialectal equivalents.
+	 */
+	private static boolean vowelMayBeRestoredAfterReplacedConsonant(LinguisticData data) {
+		for (Vector<SurfaceFormOfAffix> formsOfAffixes:
+				data.getFormToSurfaceFormsOfAffixesTable().values()) {
+			for (SurfaceFormOfAffix formOfAffix: formsOfAffixes) {
+				if (formOfAffix.action1 != null &&
+						formOfAffix.action1.getType() == Action.CONDITIONALDELETION &&
+						"V".equals(formOfAffix.context)) {
+					return true;
+				}
+			}
+		}
+		return false;
+	}
+
+	private static void addToTable(Map<String,Vector<Morpheme>> table,
+			String key, Morpheme morph) {
+		Vector<Morpheme> morphs = table.get(key);
+		if (morphs == null) {
+			morphs = new Vector<Morpheme>();
+			table.put(key, morphs);
+		}
+		if (!morphs.contains(morph)) {
+			morphs.add(morph);
+		}
+	}
+
+	/*
+	 * Morphemes found in the term, with the positions where they start and
+	 * end, in parallel arrays.
+	 */
+	private static class Edges {
+		int size = 0;
+		int[] starts = new int[64];
+		int[] ends = new int[64];
+		int[] intIds = new int[64];
+
+		/*
+		 * Add the morphemes found at a position of the term, for every
+		 * length of key, and mark the positions where they may end.
+		 */
+		void addAll(Vector<Morpheme>[] foundForLength, int start, int termLength,
+				BitSet reached) {
+			for (int keyLength = 0; keyLength < foundForLength.length; keyLength++) {
+				if (foundForLength[keyLength] == null) {
+					continue;
+				}
+				for (Morpheme morph: foundForLength[keyLength]) {
+					if (morph.intId < 0) {
+						continue;
+					}
+					for (int extra = 0; extra <= MAX_CHARS_AFTER_KEY; extra++) {
+						int end = start + keyLength + extra;
+						if (end > start && end <= termLength) {
+							add(start, end, morph.intId);
+							reached.set(end);
+						}
+					}
+				}
+			}
+		}
+
+		void add(int start, int end, int intId) {
+			if (size == starts.length) {
+				starts = Arrays.copyOf(starts, 2 * size);
+				ends = Arrays.copyOf(ends, 2 * size);
+				intIds = Arrays.copyOf(intIds, 2 * size);
+			}
+			starts[size] = start;
+			ends[size] = end;
+			intIds[size] = intId;
+			size++;
+		}
+	}
+}
@@ -8,6 +8,10 @@
 package ca.inuktitutcomputing.phonology;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Hashtable;
+import java.util.Set;
 import java.util.Vector;
 import java.util.concurrent.TimeoutException;
 import java.util.regex.Matcher;
@@ -20,8 +24,6 @@ import ca.inuktitutcomputing.script.Roman;
 import ca.inuktitutcomputing.utilities.StopWatch;
 
 public class Dialect {
-	
-	private static StopWatch stpw;
 
     /*
      * Il est � noter que les seuls cas o� la seconde consonne du groupe change
@@ -68,6 +70,75 @@ public class Dialect {
         };
     private static String[][] groups2 = new String[][] { { "it", "is" } };
 
+    /*
+     * Les groupes équivalents à chaque groupe de deux consonnes sont 
+     * calculés une fois pour toutes à partir de 'groups' et 'groups2'. 
+     * L'élément [l1*NB_CHARS+l2] des tables contient les groupes 
+     * équivalents à "l1l2", dans l'ordre des tables, ou null. 
+     * 
+     * Les tables 'alternatives...' contiennent en plus le groupe lui-même, 
+     * à la fin: ce sont tous les groupes qui peuvent se trouver à la place 
+     * de "l1l2" dans un mot (voir correspondingTermsEquivalentGroups).
+     */
+    private static final int NB_CHARS = 128;
+    private static final String[][] equivalents = compileEquivalents(groups);
+    private static final String[][] equivalents2 = compileEquivalents(groups2);
+    private static final String[][] alternatives = 
+    		compileAlternatives(equivalents, null);
+    private static final String[][] alternativesBeforeVowel = 
+    		compileAlternatives(equivalents, equivalents2);
+
+    private static String[][] compileEquivalents(String[][] grps) {
+    	String[][] table = new String[NB_CHARS*NB_CHARS][];
+    	for (int i = 0; i < grps.length; i++) {
+    		addEquivalent(table, grps[i][0], grps[i][1]);
+    		addEquivalent(table, grps[i][1], grps[i][0]);
+    	}
+    	return table;
+    }
+
+    private static void addEquivalent(String[][] table, String group, String equivalent) {
+    	int index = indexOfGroup(group.charAt(0), group.charAt(1));
+    	String[] equivs = table[index];
+    	if (equivs == null) {
+    		equivs = new String[] {equivalent};
+    	} else {
+    		equivs = Arrays.copyOf(equivs, equivs.length+1);
+    		equivs[equivs.length-1] = equivalent;
+    	}
+    	table[index] = equivs;
+    }
+
+    private static String[][] compileAlternatives(String[][] table1, String[][] table2) {
+    	String[][] alts = new String[NB_CHARS*NB_CHARS][];
+    	for (int index = 0; index < alts.length; index++) {
+    		String[] equivs1 = table1[index];
+    		String[] equivs2 = (table2 == null ? null : table2[index]);
+    		if (equivs1 != null || equivs2 != null) {
+    			int nb1 = (equivs1 == null ? 0 : equivs1.length);
+    			int nb2 = (equivs2 == null ? 0 : equivs2.length);
+    			String[] alt = new String[nb1 + nb2 + 1];
+    			if (equivs1 != null) System.arraycopy(equivs1, 0, alt, 0, nb1);
+    			if (equivs2 != null) System.arraycopy(equivs2, 0, alt, nb1, nb2);
+    			alt[nb1+nb2] = new String(new char[] {
+    				(char)(index / NB_CHARS), (char)(index % NB_CHARS)});
+    			alts[index] = alt;
+    		}
+    	}
+    	return alts;
+    }
+
+    private static int indexOfGroup(char l1, char l2) {
+    	if (l1 >= NB_CHARS || l2 >= NB_CHARS)
+    		return -1;
+    	return l1 * NB_CHARS + l2;
+    }
+
+    private static String[] lookup(String[][] table, char l1, char l2) {
+    	int index = indexOfGroup(l1, l2);
+    	return (index < 0 ? null : table[index]);
+    }
+
     public static String [] getKeys() {
     	String keys[] = new String[groups.length * 2];
     	for (int i=0; i<groups.length; i++) {
@@ -81,29 +152,26 @@ public class Dialect {
     /**
      * Returns groups of consonants equivalent to "l1l2"
      * For example, for "pp", return "mp","tp","kp"
+     * @param stpw StopWatch of the current decomposition
      * @param l1 char
      * @param l2 char 
      * @return 
      * @throws TimeoutException 
      */
-    public static Vector<String> equivalentGroups(char l1, char l2) throws TimeoutException {
-    	stpw.check("\"Dialect.equivalentGroups -- upon entry, l1="+
-    		l1+", l2="+l2);
-        String group = new String(new char[] { l1, l2 });
-        Vector<String> terms = new Vector<String>();
-        for (int i = 0; i < groups.length; i++) {
-        	stpw.check("Dialect.equivalentGroups -- first loop, i="+i);
-            if (groups[i][0].equals(group)) {
-                terms.add(groups[i][1]);
-            }
-            if (groups[i][1].equals(group)) {
-                terms.add(groups[i][0]);
-            }
-        }
-        if (terms.size() == 0)
+    public static Vector<String> equivalentGroups(StopWatch stpw, char l1, char l2) throws TimeoutException {
+    	stpw.check("Dialect.equivalentGroups");
+        return equivalentGroups(l1, l2);
+    }
+    
+    /**
+     * Same as equivalentGroups(stpw, l1, l2), outside of a decomposition.
+     */
+    public static Vector<String> equivalentGroups(char l1, char l2) {
+        String[] equivs = lookup(equivalents, l1, l2);
+        if (equivs == null)
             return null;
         else
-            return terms;
+            return new Vector<String>(Arrays.asList(equivs));
     }
     
     /*
@@ -116,15 +184,13 @@ public class Dialect {
      * 
      * The results of each check are joined.
      */
-    public static Vector<String> newCandidates(String stem, String candidateMorpheme, 
+    public static Vector<String> newCandidates(StopWatch stpw, String stem, String candidateMorpheme, 
     		String followingMorpheme) throws TimeoutException, 
     		LinguisticDataException {
     	
-    	stpw.check("newCandidates -- upon entry, stem="+stem+
-    		", candidateMorpheme="+candidateMorpheme+", followingMorpheme="+
-    			followingMorpheme);
+    	stpw.check("Dialect.newCandidates");
         Vector<String> cands = new Vector<String>(); // to hold the new candidates
-        ArrayList<Object[]> candsAndChanges = new ArrayList<Object[]>();
+        Set<String> candsSet = new HashSet<String>();
         
         if (stem != null) {
             /*
@@ -136,26 +202,18 @@ public class Dialect {
             char finalStem = stem.charAt(stem.length() - 1);
             char initialFollowingMorpheme = candidateMorpheme.charAt(0);
             if (Roman.typeOfLetterLat(initialFollowingMorpheme) == Roman.C) {
-                String groupOrig = new String(new char[]{finalStem,initialFollowingMorpheme});
-                Vector<String> grps = Dialect.equivalentGroups(
-                        groupOrig.charAt(0), groupOrig.charAt(1));
+                String[] grps = lookup(equivalents, finalStem, initialFollowingMorpheme);
                 if (grps != null) {
-                    for (int j = 0; j < grps.size(); j++) {
-                    	stpw.check("Dialect.newCandidates::136 -- j: "+j);
-                        String groupj = grps.elementAt(j);
-                        char c = groupj.charAt(1);
+                    for (int j = 0; j < grps.length; j++) {
                         /*
                          * Replace the initial consonant of the candidate
                          * with the final consonant of the equivalent
                          * cluster, for each possible equivalent
                          * cluster.
                          */
-                        String candStr = c + candidateMorpheme.substring(1);
-                        if (!cands.contains(candStr)) {
+                        String candStr = grps[j].charAt(1) + candidateMorpheme.substring(1);
+                        if (candsSet.add(candStr)) {
                             cands.add(candStr);
-                            ArrayList<PhonologicalTransformation> l = new ArrayList<PhonologicalTransformation>();
-                            l.add(new PhonologicalTransformation(groupOrig,groupj,0));
-                            candsAndChanges.add(new Object[]{candStr,l});
                         }
                     }
                 }
@@ -169,58 +227,27 @@ public class Dialect {
         Vector<String> cands2 = new Vector<String>();
         cands2.add(candidateMorpheme);
         cands2.addAll(cands);
-        ArrayList<Object[]> candsAndChanges2 = new ArrayList<Object[]>();
-        candsAndChanges2.add(new Object[]{candidateMorpheme,null});
-        candsAndChanges2.addAll(candsAndChanges);
         for (int m = 0; m < cands2.size(); m++) {
-        	stpw.check("Dialect.newCandidates::168 -- m: "+m);
-            String candStr = cands2.elementAt(m);
-            Vector correspondingTerms = correspondingTermsEquivalentGroups(candStr);
-            ArrayList<Object[]> correspTermsAndChanges =
-                correspondingTermsEquivalentGroups(candStr,0);
-            if (correspondingTerms != null) {
-                /*
-                 * For each term, add the change to the initial consonant, if any.
-                 */
-                ArrayList ltf = (ArrayList)candsAndChanges2.get(m)[1];
-                if (ltf != null) {
-                    PhonologicalTransformation tf =
-                        (PhonologicalTransformation) ltf.get(0);
-                    for (int i=0; i<correspTermsAndChanges.size(); i++) {
-                    	stpw.check("Dialect.newCandidates::182 -- i: "+i);
-                        ArrayList<PhonologicalTransformation> l = (ArrayList<PhonologicalTransformation>)correspTermsAndChanges.get(i)[1];
-                        l.add(tf);
-                    }
-                }
-                for (int n = 0; n < correspondingTerms.size(); n++) {
-                	stpw.check("Dialect.newCandidates::188 -- n: "+n);
-                    String candN = (String) correspondingTerms.elementAt(n);
-                    if (!cands.contains(candN)) {
-                        cands.add(candN);
-                        candsAndChanges.add(correspTermsAndChanges.get(n));
-                    }
+            Vector<String> correspondingTerms = 
+            	correspondingTermsEquivalentGroups(stpw, cands2.elementAt(m));
+            for (int n = 0; n < correspondingTerms.size(); n++) {
+                String candN = correspondingTerms.elementAt(n);
+                if (candsSet.add(candN)) {
+                    cands.add(candN);
                 }
             }
         }
         if (cands.size() == 0)
             return null;
         else {
-            for (int i=0; i<cands.size(); i++) {
-            	stpw.check("Dialect.newCandidates::201 -- i: "+i);
-                if (cands.elementAt(i).equals(candidateMorpheme)) {
-                    cands.remove(i);
-                    candsAndChanges.remove(i--);
-                }
-            }
-//            while (cands.removeElement(candidateMorpheme))
-//                ;
+            while (cands.removeElement(candidateMorpheme))
+                ;
         }
 
         // Schneider's Law
-        Vector<String> schCands = _schneiderCandidates(stem, candidateMorpheme);
+        Vector<String> schCands = _schneiderCandidates(stpw, stem, candidateMorpheme);
         for (int i=0; i<cands.size(); i++) {
-        	stpw.check("Dialect.newCandidates::214 -- i: "+i);
-            schCands.addAll(_schneiderCandidates(stem,cands.elementAt(i)));
+            schCands.addAll(_schneiderCandidates(stpw, stem,cands.elementAt(i)));
             //while(schCands.removeElement(cands.elementAt(i)));
             schCands.removeElement(cands.elementAt(i));
         }
@@ -234,20 +261,20 @@ public class Dialect {
         return cands;
     }
     
-	public static Vector<String> newRootCandidates(String rootICI) throws TimeoutException, LinguisticDataException {
+	public static Vector<String> newRootCandidates(StopWatch stpw, String rootICI) throws TimeoutException, LinguisticDataException {
 		Vector<String> cands = new Vector<String>(); // to hold the new candidates
 
 		/*
 		 * Check for internal equivalent clusters in the root and add the
 		 * corresponding terms to the candidates.
 		 */
-		Vector<String> correspondingTerms = correspondingTermsEquivalentGroups(rootICI);
+		Vector<String> correspondingTerms = correspondingTermsEquivalentGroups(stpw, rootICI);
 		if (correspondingTerms != null)
 			for (int n = 0; n < correspondingTerms.size(); n++) {
 				String candN = Orthography
 						.orthographyICILat((String) correspondingTerms
 								.elementAt(n));
-				stpw.check("Dialect.newRootCandidates::242 -- corresponding term "+n+" ("+candN+")");
+				stpw.check("Dialect.newRootCandidates::242 -- corresponding term ", candN);
 				if (!cands.contains(candN))
 					cands.add(candN);
 			}
@@ -258,10 +285,10 @@ public class Dialect {
 			cands.removeElement(rootICI);
 
 		// Schneider's Law
-		Vector<String> schCands = _schneiderCandidates(null, rootICI);
+		Vector<String> schCands = _schneiderCandidates(stpw, null, rootICI);
 		for (int i = 0; i < cands.size(); i++) {
-			stpw.check("Dialect.newRootCandidates::255 -- cands "+i);
-			schCands.addAll(_schneiderCandidates(null,
+			stpw.check("Dialect.newRootCandidates::255 -- cands ", i);
+			schCands.addAll(_schneiderCandidates(stpw, null,
 					cands.elementAt(i)));
 			//while (schCands.removeElement(cands.elementAt(i)));
 			schCands.removeElement(cands.elementAt(i));
@@ -276,7 +303,7 @@ public class Dialect {
 		return cands;
 	}
     
-    static public Object[] schneiderStateAtEnd(String stem) throws TimeoutException {
+    static public Object[] schneiderStateAtEnd(StopWatch stpw, String stem) throws TimeoutException {
         Vector cands = null;
         boolean doubleConsonants = false;
         int vcState;
@@ -291,7 +318,7 @@ public class Dialect {
         
         // Check whether the stem's last group of consonants is single or double
         for (int i=stem.length()-1; i > 0; i--) {
-			stpw.check("Dialect.schneiderStateAtEnd::286 -- i: "+i+" in stem '"+stem+"'");
+			stpw.check("Dialect.schneiderStateAtEnd::286 -- stem: ", stem);
             if (Roman.isConsonant(stem.charAt(i))) {
                 if (Roman.isConsonant(stem.charAt(i-1))) 
                     doubleConsonants = true;
@@ -322,71 +349,57 @@ public class Dialect {
      * 'terme' est un morph�me inuktitut en caract�res latins
      * dans l'orthographe simplifi�e.
      */
-    public static Vector<String> correspondingTermsEquivalentGroups(String term) throws TimeoutException {
+    public static Vector<String> correspondingTermsEquivalentGroups(StopWatch stpw, String term) throws TimeoutException {
+    	stpw.check("Dialect.correspondingTermsEquivalentGroups");
         Vector<String> terms = new Vector<String>();
-        int i;
-        for (i = 0; i < term.length() - 1; i++) {
-        	stpw.check("Dialect.correspondingTermsEquivalentGroups::321 -- term: "+term+"; i: "+i);
-            Vector<String> greqs = equivalentGroups(term.charAt(i), term
-                    .charAt(i + 1));
-            char l3;
-            if (i==term.length()-2)
-                l3 = (char)-1;
-            else
-                l3 = term.charAt(i+2);
-            Vector<String> greqs2 = equivalentGroups2(term.charAt(i),
-                    term.charAt(i+1),l3);
-            if (greqs2 != null)
-                if (greqs != null)
-                    greqs.addAll(greqs2);
-                else
-                    greqs = (Vector<String>)greqs2.clone();
-            
-            if (greqs != null) {
-                greqs.add(new String(new char[] { term.charAt(i),
-                        term.charAt(i + 1) }));
-                Vector<?> remains = correspondingTermsEquivalentGroups(term
-                        .substring(i + 2));
-                for (int j = 0; j < greqs.size(); j++) {
-                	stpw.check("Dialect.correspondingTermsEquivalentGroups::343 -- j: "+j);
-                    String termTemp = term.substring(0, i) + greqs.elementAt(j);
-                    if (remains.size() > 0)
-                        for (int k = 0; k < remains.size(); k++) {
-                        	stpw.check("Dialect.correspondingTermsEquivalentGroups::347 -- j: "+j);
-                            terms.add(termTemp
-                                    + (String) remains.elementAt(k));
-                        }
-                    else
-                        terms.add(termTemp);
-                }
-                break;
-            }
-        }
-        if (i == term.length() - 1) {
-            terms.add(term);
+        if (term.length() > 0) {
+        	equivalentGroupsVariants(term).addVariantsTo(terms, stpw);
         }
         return terms;
     }
 
+    /*
+     * Les groupes de consonnes du terme qui ont des équivalents, de gauche à
+     * droite, avec les groupes qui peuvent les remplacer (le groupe 
+     * lui-même en dernier). Un groupe trouvé n'est pas réexaminé: la 
+     * recherche reprend après sa seconde consonne.
+     */
+    private static TermVariants equivalentGroupsVariants(String term) {
+    	TermVariants variants = new TermVariants(term);
+    	int i = 0;
+    	while (i < term.length() - 1) {
+    		String[] alts;
+    		if (i < term.length() - 2 && Roman.typeOfLetterLat(term.charAt(i+2)) == Roman.V)
+    			alts = lookup(alternativesBeforeVowel, term.charAt(i), term.charAt(i+1));
+    		else
+    			alts = lookup(alternatives, term.charAt(i), term.charAt(i+1));
+    		if (alts != null) {
+    			variants.addEdit(i, 2, alts);
+    			i += 2;
+    		} else {
+    			i++;
+    		}
+    	}
+    	return variants;
+    }
+
 
-    public static ArrayList<Object[]> correspondingTermsEquivalentGroups(String term, int pos) throws TimeoutException {
-    	stpw.check(
-    		"Dialect.correspondingTermsEquivalentGroups -- upon entry, term="+
-    		term+", pos="+pos);
+    public static ArrayList<Object[]> correspondingTermsEquivalentGroups(StopWatch stpw, String term, int pos) throws TimeoutException {
+    	stpw.check("Dialect.correspondingTermsEquivalentGroups -- upon entry, term=", term);
         ArrayList<Object[]> termsAndAlterations = new ArrayList<Object[]>();
         int i;
         for (i = pos; i < term.length() - 1; i++) {
-        	stpw.check("Dialect.correspondingTermsEquivalentGroups -- first loop, i="+i);
+        	stpw.check("Dialect.correspondingTermsEquivalentGroups -- first loop, i=", i);
             String groupOfConsonants =
                 new String(new char[]{term.charAt(i), term.charAt(i + 1)});
-            Vector<String> greqs = equivalentGroups(term.charAt(i), term
+            Vector<String> greqs = equivalentGroups(stpw, term.charAt(i), term
                     .charAt(i + 1));
             char l3;
             if (i==term.length()-2)
                 l3 = (char)-1;
             else
                 l3 = term.charAt(i+2);
-            Vector<String> greqs2 = equivalentGroups2(term.charAt(i),
+            Vector<String> greqs2 = equivalentGroups2(stpw, term.charAt(i),
                     term.charAt(i+1),l3);
             if (greqs2 != null)
                 if (greqs != null)
@@ -400,21 +413,21 @@ public class Dialect {
                 
                 // Traiter le reste du mot pour chercher d'autres groupes.
                 ArrayList<Object[]> remainsAndAlterations = 
-                    correspondingTermsEquivalentGroups(term,i + 2);
+                    correspondingTermsEquivalentGroups(stpw, term,i + 2);
                 
                 /*
                  * Pour chacun des groupes de consonnes �quivalents, former un mot
                  * avec chaque possibilit� retourn�e pour le reste du mot.
                  */
                 for (int j = 0; j < greqs.size(); j++) {
-                	stpw.check("Dialect.correspondingTermsEquivalentGroups::399 -- j: "+j);
+                	stpw.check("Dialect.correspondingTermsEquivalentGroups::399 -- j: ", j);
                     String grp = greqs.elementAt(j);
                     String termTemp = term.substring(pos, i) + grp;
                     PhonologicalTransformation tp =
                         new PhonologicalTransformation(groupOfConsonants,grp,i);
                     if (remainsAndAlterations.size() > 0)
                         for (int k = 0; k < remainsAndAlterations.size(); k++) {
-                        	stpw.check("Dialect.correspondingTermsEquivalentGroups::406 -- k: "+k);
+                        	stpw.check("Dialect.correspondingTermsEquivalentGroups::406 -- k: ", k);
                             String newTerm = termTemp + (String) remainsAndAlterations.get(k)[0];
                             ArrayList<PhonologicalTransformation> alterations = (ArrayList<PhonologicalTransformation>)((ArrayList<PhonologicalTransformation>) remainsAndAlterations.get(k)[1]).clone();
                             alterations.add(0,tp);
@@ -440,24 +453,15 @@ public class Dialect {
     // additional constraint that the group is followed by a vowel.
     // For example : isa returns ita
     // NOTE: this is a hack and it will have to be revised.
-    private static Vector<String> equivalentGroups2(char l1, char l2, char l3) throws TimeoutException {
-        String group = new String(new char[] { l1, l2 });
-        Vector<String> terms = new Vector<String>();
+    private static Vector<String> equivalentGroups2(StopWatch stpw, char l1, char l2, char l3) throws TimeoutException {
+        String[] equivs = null;
         if (l3 != (char) -1 && Roman.typeOfLetterLat(l3) == Roman.V) {
-            for (int i = 0; i < groups2.length; i++) {
-            	stpw.check("Dialect.equivalentGroups2::437 -- i: "+i);
-                if (groups2[i][0].equals(group)) {
-                    terms.add(groups2[i][1]);
-                }
-                if (groups2[i][1].equals(group)) {
-                    terms.add(groups2[i][0]);
-                }
-            }
+            equivs = lookup(equivalents2, l1, l2);
         }
-        if (terms.size() == 0)
+        if (equivs == null)
             return null;
         else
-            return terms;
+            return new Vector<String>(Arrays.asList(equivs));
     }
     
  
@@ -468,26 +472,26 @@ public class Dialect {
      * is deleted. This method returns a number of possible words corresponding
      * to the 'candidate' word assuming that Schneide's law has been applied to it.
      */
-    public static Vector<String> _schneiderCandidates(String stem, String candidate) throws TimeoutException, LinguisticDataException {
-    	return __schneiderCandidates(stem,candidate,'@');
+    public static Vector<String> _schneiderCandidates(StopWatch stpw, String stem, String candidate) throws TimeoutException, LinguisticDataException {
+    	return __schneiderCandidates(stpw, stem,candidate,'@');
     }
     
-    private static Vector<String> __schneiderCandidates(String stem, String candidate, char mark) throws TimeoutException, LinguisticDataException {
-    	String markedCandidate = schneiderCandidatesToString(stem,candidate,mark);
-        Vector<String> cands = __explode(markedCandidate);
+    private static Vector<String> __schneiderCandidates(StopWatch stpw, String stem, String candidate, char mark) throws TimeoutException, LinguisticDataException {
+    	String markedCandidate = schneiderCandidatesToString(stpw, stem,candidate,mark);
+        Vector<String> cands = __explode(stpw, markedCandidate);
 //        for (int i=0; i<cands.size(); i++)
 //            cands.setElementAt(
 //                    Orthography.orthographyICILat((String)cands.elementAt(i)),i);
         return cands;
     }
     
-    public static String schneiderCandidatesToString(String stem, String candidate, char mark) throws TimeoutException {
+    public static String schneiderCandidatesToString(StopWatch stpw, String stem, String candidate, char mark) throws TimeoutException {
 //      String candSimp = Orthography.simplifiedOrthographyLat(candidate);
         String candSimp = candidate;
         boolean doubleConsonants = false;
         int vcState;
         // Check whether the stem's last group of consonants is single or double
-        Object x[] = schneiderStateAtEnd(stem);
+        Object x[] = schneiderStateAtEnd(stpw, stem);
         doubleConsonants = ((Boolean)x[0]).booleanValue();
         vcState = ((Integer)x[1]).intValue();
         /*
@@ -498,69 +502,70 @@ public class Dialect {
         return markedCandidate;
     }
     
+    private static final Pattern schneiderPattern = 
+    		Pattern.compile("(([^aiu][^aiu][aiu][aiu]?)([^aiu][aiu]))");
+
     public static String markCandidate(String cand, int vcState, boolean doubleConsonants, char mark) {
-    	String marked = "";
+    	StringBuilder marked = new StringBuilder();
     	String str = cand;
     	if (doubleConsonants && vcState==0) str = "XXa"+str;
-        Pattern p = Pattern.compile("(([^aiu][^aiu][aiu][aiu]?)([^aiu][aiu]))");
-        Matcher m = p.matcher(str);
+        Matcher m = schneiderPattern.matcher(str);
         int pos =0;
         while (m.find(pos)) {
-        	marked += str.substring(pos,m.start(1));
-        	marked += m.group(2);
-        	marked += mark;
-        	marked += m.group(3);
+        	marked.append(str, pos, m.start(1));
+        	marked.append(m.group(2));
+        	marked.append(mark);
+        	marked.append(m.group(3));
         	pos = m.end(1);
         }
-        marked += str.substring(pos);
-        marked = marked.replaceFirst("^XXa", "");
-        return marked;
+        marked.append(str, pos, str.length());
+        if (marked.length() >= 3 && marked.charAt(0) == 'X' && 
+        		marked.charAt(1) == 'X' && marked.charAt(2) == 'a')
+        	marked.delete(0, 3);
+        return marked.toString();
     }
         
     
 //    static char cons[] = {'p', 't', 'k', 'g', 'm', 'n', 's', 'l', 'j', 'v',
 //            'r', 'q', 'N', '&'};
     
-    private static Vector<String> __explode(String s) throws TimeoutException, LinguisticDataException {
-        if (s.length()==0)
-            return new Vector<String>();
-        else
-            return __explode2(s);
+    private static Vector<String> __explode(StopWatch stpw, String s) throws TimeoutException, LinguisticDataException {
+        Vector<String> a = new Vector<String>();
+        if (s.length() > 0)
+            schneiderVariants(s).addVariantsTo(a, stpw);
+        return a;
     }
     
     /*
      * Wherever there might be a deleted consonant, add a word with one of the
-     * possible consonant at that place.
+     * possible consonant at that place: each mark, with the consonant that
+     * follows it, is replaced by the groups of consonants that end with that
+     * consonant. A mark in front of a consonant that ends no group is simply
+     * removed.
      */
-    private static Vector<String> __explode2(String s) throws TimeoutException, LinguisticDataException {
-        Vector<String> a = new Vector<String>();
-        StringBuffer sb = new StringBuffer();
-        for (int i=0; i<s.length(); i++) {
-        	stpw.check("Dialect.explode2::528 -- i: "+i);
+    private static TermVariants schneiderVariants(String s) throws LinguisticDataException {
+        TermVariants variants = new TermVariants(s);
+        Hashtable<Character,Vector<String>> groupsOfConsonants = 
+        		LinguisticData.getInstance().getGroupsOfConsonants();
+        int i = 0;
+        while (i < s.length()) {
             if (s.charAt(i)=='@') {
-                Vector<String> grCons = LinguisticData.getInstance().getGroupsOfConsonants().get(new Character(s.charAt(i+1)));
-                if (grCons!=null) {
-                	for (int j=0; j<grCons.size(); j++) {
-                    	stpw.check("Dialect.explode::533 -- j: "+j);
-                		a.addAll(__explode(new String()+(String)grCons.elementAt(j)+s.substring(i+2)));
-                	}
-                	break;
+                Vector<String> grCons = groupsOfConsonants.get(s.charAt(i+1));
+                if (grCons == null) {
+                    variants.addEdit(i, 1, new String[] {""});
+                    i++;
+                } else if (grCons.size() == 0) {
+                    // Nothing can replace the mark: the rest of the word is lost.
+                    variants.addEdit(i, s.length() - i, new String[] {""});
+                    break;
+                } else {
+                    variants.addEdit(i, 2, grCons.toArray(new String[grCons.size()]));
+                    i += 2;
                 }
             }
             else
-                sb.append(s.charAt(i));
+                i++;
         }
-        if (a.size()==0)
-            a.add("");
-        String deb = sb.toString();
-        for (int i=0; i<a.size(); i++) {
-        	stpw.check("Dialect.equivalentGroups2::546 -- i: "+i);
-            a.setElementAt(deb+a.elementAt(i),i);
-        }
-        return a;
+        return variants;
     }
-
-	public static void setStopWatch(StopWatch _stpw) {
-		stpw = _stpw;
-	}
 }
\ No newline at end of file
@@ -0,0 +1,88 @@
+package ca.inuktitutcomputing.phonology;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.concurrent.TimeoutException;
+
+import ca.inuktitutcomputing.utilities.StopWatch;
+
+/**
+ * Variants of a term, described as a list of edits on the term rather than
+ * as strings. Each edit replaces the characters of the term at a given
+ * offset with one of several replacements (ex: a consonant cluster with
+ * each of its dialectal equivalents).
+ *
+ * The variants are all the combinations of one replacement per edit. They
+ * are only turned into strings at the very end, each one in a single pass
+ * over the term, instead of being built piece by piece through substrings
+ * of substrings.
+ */
+class TermVariants {
+
+	private final String term;
+	private int nbEdits = 0;
+	private int[] offsets = new int[4];
+	private int[] lengths = new int[4];
+	private String[][] replacements = new String[4][];
+
+	public TermVariants(String term) {
+		this.term = term;
+	}
+
+	/**
+	 * Add an edit. Edits must be added from left to right and must not
+	 * overlap.
+	 *
+	 * @param offset Offset in the term of the characters to replace
+	 * @param length Number of characters to replace
+	 * @param replacementChoices Possible replacements of those characters
+	 */
+	public void addEdit(int offset, int length, String[] replacementChoices) {
+		if (nbEdits == offsets.length) {
+			int newSize = 2 * nbEdits;
+			offsets = Arrays.copyOf(offsets, newSize);
+			lengths = Arrays.copyOf(lengths, newSize);
+			replacements = Arrays.copyOf(replacements, newSize);
+		}
+		offsets[nbEdits] = offset;
+		lengths[nbEdits] = length;
+		replacements[nbEdits] = replacementChoices;
+		nbEdits++;
+	}
+
+	public int nbEdits() {
+		return nbEdits;
+	}
+
+	/**
+	 * Add the variants to a collection. The first edit varies the slowest
+	 * and, for each edit, the replacements are used in the order they were
+	 * given.
+	 */
+	public void addVariantsTo(Collection<String> variants, StopWatch stpw)
+			throws TimeoutException {
+		int[] choices = new int[nbEdits];
+		StringBuilder sb = new StringBuilder(term.length() + 2 * nbEdits);
+		while (true) {
+			stpw.check("TermVariants.addVariantsTo");
+			sb.setLength(0);
+			int from = 0;
+			for (int ie=0; ie < nbEdits; ie++) {
+				sb.append(term, from, offsets[ie]);
+				sb.append(replacements[ie][choices[ie]]);
+				from = offsets[ie] + lengths[ie];
+			}
+			sb.append(term, from, term.length());
+			variants.add(sb.toString());
+
+			int ie = nbEdits - 1;
+			while (ie >= 0 && ++choices[ie] == replacements[ie].length) {
+				choices[ie] = 0;
+				ie--;
+			}
+			if (ie < 0) {
+				break;
+			}
+		}
+	}
+}
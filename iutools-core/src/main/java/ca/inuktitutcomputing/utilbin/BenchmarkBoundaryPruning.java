@@ -0,0 +1,116 @@
+package ca.inuktitutcomputing.utilbin;
+
+import java.io.BufferedReader;
+import java.io.FileInputStream;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeoutException;
+
+import ca.inuktitutcomputing.morph.BoundaryPruningStats;
+import ca.inuktitutcomputing.morph.Decomposition;
+import ca.inuktitutcomputing.morph.MorphologicalAnalyzer;
+
+/**
+ * Compares the time it takes to decompose a list of words with and without
+ * the early rejection of impossible stem-affix boundaries, and checks that
+ * both runs produce the same decompositions.
+ *
+ * Usage: BenchmarkBoundaryPruning goldStandardFile [maxWords [timeoutMSecs]]
+ *
+ * Each line of the gold standard (ex: the goldstandardHansard.txt file of
+ * the tests) gives the word (preceded by a '*' or a '@' for proper names
+ * and misspelled words) then the word alone, then its decomposition.
+ */
+public class BenchmarkBoundaryPruning {
+
+	public static void main(String[] args) throws Exception {
+		if (args.length < 1) {
+			System.err.println("Usage: BenchmarkBoundaryPruning goldStandardFile [maxWords [timeoutMSecs]]");
+			System.exit(1);
+		}
+		int maxWords = Integer.MAX_VALUE;
+		if (args.length > 1) {
+			maxWords = Integer.parseInt(args[1]);
+		}
+		long timeout = 10000;
+		if (args.length > 2) {
+			timeout = Long.parseLong(args[2]);
+		}
+		List<String> words = readWords(args[0], maxWords);
+
+		MorphologicalAnalyzer analyzer = new MorphologicalAnalyzer();
+		analyzer.setTimeout(timeout);
+
+		// Warm up the analyzer and the JIT before timing anything
+		decomposeAll(analyzer, words);
+
+		analyzer.setBoundaryPruning(false);
+		long start = System.currentTimeMillis();
+		List<String> unprunedDecomps = decomposeAll(analyzer, words);
+		long unprunedMSecs = System.currentTimeMillis() - start;
+
+		analyzer.setBoundaryPruning(true);
+		MorphologicalAnalyzer.resetBoundaryPruningStats();
+		start = System.currentTimeMillis();
+		List<String> prunedDecomps = decomposeAll(analyzer, words);
+		long prunedMSecs = System.currentTimeMillis() - start;
+		BoundaryPruningStats stats = MorphologicalAnalyzer.boundaryPruningStats();
+
+		int nbDiffs = 0;
+		for (int iw = 0; iw < words.size(); iw++) {
+			if (!unprunedDecomps.get(iw).equals(prunedDecomps.get(iw))) {
+				nbDiffs++;
+				System.out.println("Different decompositions for "+words.get(iw)+
+					"\n  unpruned: "+unprunedDecomps.get(iw)+
+					"\n  pruned  : "+prunedDecomps.get(iw));
+			}
+		}
+
+		System.out.println("Nb. words: "+words.size());
+		System.out.println("Unpruned : "+unprunedMSecs+" ms");
+		System.out.println("Pruned   : "+prunedMSecs+" ms");
+		System.out.println("Nb. words with different decompositions: "+nbDiffs);
+		System.out.println(stats);
+		MorphologicalAnalyzer.shutdownExecutorPool();
+	}
+
+	private static List<String> readWords(String fileName, int maxWords) throws Exception {
+		List<String> words = new ArrayList<String>();
+		BufferedReader reader = new BufferedReader(
+			new InputStreamReader(new FileInputStream(fileName), "UTF-8"));
+		try {
+			String line;
+			while (words.size() < maxWords && (line = reader.readLine()) != null) {
+				String[] fields = line.trim().split("\\s+");
+				if (fields.length < 3) {
+					continue;
+				}
+				words.add(fields[1]);
+			}
+		} finally {
+			reader.close();
+		}
+		return words;
+	}
+
+	private static List<String> decomposeAll(MorphologicalAnalyzer analyzer,
+			List<String> words) throws Exception {
+		List<String> allDecomps = new ArrayList<String>();
+		for (String word: words) {
+			// Decompositions are cached with the 'extended analysis' flag of
+			// decomposeWord(word), which is true by default
+			MorphologicalAnalyzer.removeFromCache(word, true);
+			StringBuilder decomps = new StringBuilder();
+			try {
+				for (Decomposition dec: analyzer.decomposeWord(word)) {
+					decomps.append(dec.toStr2()).append(" ");
+				}
+			} catch (TimeoutException e) {
+				decomps.append("TIMEOUT");
+			}
+			allDecomps.add(decomps.toString());
+		}
+		return allDecomps;
+	}
+}
@@ -0,0 +1,124 @@
+package ca.inuktitutcomputing.utilbin;
+
+import java.io.BufferedReader;
+import java.io.FileInputStream;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeoutException;
+
+import ca.inuktitutcomputing.morph.Decomposition;
+import ca.inuktitutcomputing.morph.DecompositionResults;
+import ca.inuktitutcomputing.morph.MorphologicalAnalyzer;
+
+/**
+ * Checks that the best-first search of the MorphologicalAnalyzer
+ * (decomposeWordBestFirst()) returns the same decompositions as the first
+ * ones of a complete decomposition (decomposeWord()), over all the words
+ * of a gold standard, and compares the time the two take.
+ *
+ * Usage: CompareBestFirstSearch goldStandardFile [maxWords [timeoutMSecs]]
+ *
+ * Each line of the gold standard (ex: the goldstandardHansard.txt file of
+ * the tests) gives the word (preceded by a '*' or a '@' for proper names
+ * and misspelled words) then the word alone, then its decomposition. The
+ * words are decomposed for 1 and for 3 best decompositions.
+ */
+public class CompareBestFirstSearch {
+
+	public static void main(String[] args) throws Exception {
+		if (args.length < 1) {
+			System.err.println("Usage: CompareBestFirstSearch goldStandardFile [maxWords [timeoutMSecs]]");
+			System.exit(1);
+		}
+		int maxWords = Integer.MAX_VALUE;
+		if (args.length > 1) {
+			maxWords = Integer.parseInt(args[1]);
+		}
+		long timeout = 10000;
+		if (args.length > 2) {
+			timeout = Long.parseLong(args[2]);
+		}
+		List<String> words = readWords(args[0], maxWords);
+
+		MorphologicalAnalyzer analyzer = new MorphologicalAnalyzer();
+		analyzer.setTimeout(timeout);
+
+		// Warm up the analyzer and the JIT before timing anything
+		for (String word: words) {
+			MorphologicalAnalyzer.removeFromCache(word, true);
+			analyzer.decomposeWordBestFirst(word, 1);
+		}
+
+		int nbDiffs = 0;
+		int nbTimeouts = 0;
+		for (int maxDecomps: new int[] {1, 3}) {
+			long completeMSecs = 0;
+			long bestFirstMSecs = 0;
+			for (String word: words) {
+				MorphologicalAnalyzer.removeFromCache(word, true);
+				long start = System.currentTimeMillis();
+				Decomposition[] allDecomps = null;
+				try {
+					allDecomps = analyzer.decomposeWord(word);
+				} catch (TimeoutException e) {
+					// Nothing to compare with
+					nbTimeouts++;
+					continue;
+				}
+				completeMSecs += System.currentTimeMillis() - start;
+				String expDecomps = decompsToString(
+					Arrays.copyOf(allDecomps, Math.min(maxDecomps, allDecomps.length)));
+
+				MorphologicalAnalyzer.removeFromCache(word, true);
+				DecompositionResults gotResults =
+					analyzer.decomposeWordBestFirst(word, maxDecomps);
+				bestFirstMSecs += gotResults.totalMSecs;
+				String gotDecomps = (gotResults.timedOut ? "TIMEOUT" :
+					decompsToString(gotResults.decompositions));
+				if (!gotDecomps.equals(expDecomps)) {
+					nbDiffs++;
+					System.out.println("Different best "+maxDecomps+
+						" decomposition(s) for "+word+
+						"\n  complete  : "+expDecomps+
+						"\n  best-first: "+gotDecomps);
+				}
+			}
+			System.out.println("Best "+maxDecomps+" decomposition(s): complete "+
+				completeMSecs+" ms, best-first "+bestFirstMSecs+" ms");
+		}
+
+		System.out.println("Nb. words: "+words.size());
+		System.out.println("Nb. complete decompositions that timed out: "+nbTimeouts);
+		System.out.println("Nb. words with different decompositions: "+nbDiffs);
+		MorphologicalAnalyzer.shutdownExecutorPool();
+	}
+
+	private static List<String> readWords(String fileName, int maxWords) throws Exception {
+		List<String> words = new ArrayList<String>();
+		BufferedReader reader = new BufferedReader(
+			new InputStreamReader(new FileInputStream(fileName), "UTF-8"));
+		try {
+			String line;
+			while (words.size() < maxWords && (line = reader.readLine()) != null) {
+				String[] fields = line.trim().split("\\s+");
+				if (fields.length < 3) {
+					continue;
+				}
+				words.add(fields[1]);
+			}
+		} finally {
+			reader.close();
+		}
+		return words;
+	}
+
+	private static String decompsToString(Decomposition[] decomps) throws Exception {
+		StringBuilder str = new StringBuilder();
+		for (Decomposition dec: decomps) {
+			str.append(dec.toStr2()).append(" ");
+		}
+		return str.toString();
+	}
+}
@@ -0,0 +1,197 @@
+package ca.inuktitutcomputing.utilbin;
+
+import java.io.BufferedReader;
+import java.io.FileInputStream;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeoutException;
+
+import ca.inuktitutcomputing.morph.Decomposition;
+import ca.inuktitutcomputing.morph.MorphologicalAnalyzer;
+import ca.inuktitutcomputing.morph.MorphologicalAnalyzerAbstract;
+import ca.inuktitutcomputing.morph.MorphologicalAnalyzer_L2R;
+
+/**
+ * Runs the MorphologicalAnalyzer and the MorphologicalAnalyzer_L2R (the
+ * same analysis, restricted to the morphemes found in the surface-form
+ * tries) over a gold standard of decompositions, and reports their
+ * accuracy and speed side by side, as well as the words for which the
+ * second one does not find the same decompositions.
+ *
+ * Usage: CompareMorphAnalyzers goldStandardFile [maxWords [timeoutMSecs]]
+ *
+ * Each line of the gold standard (ex: the goldstandardHansard.txt file of
+ * the tests) gives the word twice, then its correct decomposition. The
+ * line starts with a '*' for proper names, which have no decomposition,
+ * and with a '@' for misspelled words.
+ */
+public class CompareMorphAnalyzers {
+
+	private static class GoldCase {
+		String word;
+		String correctDecomp;
+	}
+
+	private static class Results {
+		String analyzerName;
+		List<String> decomps = new ArrayList<String>();
+		long msecs = 0;
+		int nbFirstCorrect = 0;
+		int nbCorrectNotFirst = 0;
+		int nbCorrectNotPresent = 0;
+		int nbNoDecomps = 0;
+		int nbTimeouts = 0;
+	}
+
+	public static void main(String[] args) throws Exception {
+		if (args.length < 1) {
+			System.err.println("Usage: CompareMorphAnalyzers goldStandardFile [maxWords [timeoutMSecs]]");
+			System.exit(1);
+		}
+		int maxWords = Integer.MAX_VALUE;
+		if (args.length > 1) {
+			maxWords = Integer.parseInt(args[1]);
+		}
+		long timeout = 10000;
+		if (args.length > 2) {
+			timeout = Long.parseLong(args[2]);
+		}
+		List<GoldCase> cases = readGoldStandard(args[0], maxWords);
+
+		Results r2l = run("R2L", new MorphologicalAnalyzer(), timeout, cases);
+		Results l2r = run("L2R", new MorphologicalAnalyzer_L2R(), timeout, cases);
+
+		int nbSame = 0;
+		int nbCorrectMissed = 0;
+		for (int ic = 0; ic < cases.size(); ic++) {
+			String r2lDecomps = r2l.decomps.get(ic);
+			String l2rDecomps = l2r.decomps.get(ic);
+			if (r2lDecomps.equals(l2rDecomps)) {
+				nbSame++;
+				continue;
+			}
+			String correct = cases.get(ic).correctDecomp;
+			boolean missesCorrect = (correct != null &&
+				r2lDecomps.contains(correct+" ") && !l2rDecomps.contains(correct+" "));
+			if (missesCorrect) {
+				nbCorrectMissed++;
+			}
+			System.out.println("Different decompositions for "+cases.get(ic).word+
+				(missesCorrect ? " (correct one missed by L2R)" : "")+
+				"\n  R2L: "+r2lDecomps+
+				"\n  L2R: "+l2rDecomps);
+		}
+
+		System.out.println();
+		System.out.println(String.format("%-34s%12s%12s", "", r2l.analyzerName, l2r.analyzerName));
+		printRow("Nb. words", cases.size(), cases.size());
+		printRow("Time (ms)", r2l.msecs, l2r.msecs);
+		printRow("Words/sec", wordsPerSec(cases.size(), r2l.msecs),
+			wordsPerSec(cases.size(), l2r.msecs));
+		printRow("First decomposition is correct", r2l.nbFirstCorrect, l2r.nbFirstCorrect);
+		printRow("Correct decomposition not first", r2l.nbCorrectNotFirst, l2r.nbCorrectNotFirst);
+		printRow("Correct decomposition not present", r2l.nbCorrectNotPresent, l2r.nbCorrectNotPresent);
+		printRow("No decompositions", r2l.nbNoDecomps, l2r.nbNoDecomps);
+		printRow("Timeouts", r2l.nbTimeouts, l2r.nbTimeouts);
+		System.out.println();
+		System.out.println("Words with the same decompositions in both: "+nbSame);
+		System.out.println("Words whose correct decomposition is only found by R2L: "+nbCorrectMissed);
+		MorphologicalAnalyzer.shutdownExecutorPool();
+	}
+
+	private static Results run(String analyzerName, MorphologicalAnalyzerAbstract analyzer,
+			long timeout, List<GoldCase> cases) throws Exception {
+		analyzer.setTimeout(timeout);
+
+		// Warm up the analyzer and the JIT before timing anything
+		decomposeAll(analyzer, cases, new Results());
+
+		Results results = new Results();
+		results.analyzerName = analyzerName;
+		long start = System.currentTimeMillis();
+		decomposeAll(analyzer, cases, results);
+		results.msecs = System.currentTimeMillis() - start;
+		return results;
+	}
+
+	private static void decomposeAll(MorphologicalAnalyzerAbstract analyzer,
+			List<GoldCase> cases, Results results) throws Exception {
+		for (GoldCase goldCase: cases) {
+			// Decompositions are cached with the 'extended analysis' flag of
+			// decomposeWord(word), which is true by default
+			MorphologicalAnalyzer.removeFromCache(goldCase.word, true);
+			StringBuilder decomps = new StringBuilder();
+			Decomposition[] decs = null;
+			try {
+				decs = analyzer.decomposeWord(goldCase.word);
+				for (Decomposition dec: decs) {
+					decomps.append(dec.toStr2()).append(" ");
+				}
+			} catch (TimeoutException e) {
+				results.nbTimeouts++;
+				decomps.append("TIMEOUT");
+			}
+			results.decomps.add(decomps.toString());
+			countOutcome(decs, goldCase.correctDecomp, results);
+		}
+	}
+
+	private static void countOutcome(Decomposition[] decs, String correctDecomp,
+			Results results) throws Exception {
+		if (correctDecomp == null) {
+			return;
+		}
+		if (decs == null || decs.length == 0) {
+			results.nbNoDecomps++;
+			return;
+		}
+		int rank = -1;
+		for (int id = 0; id < decs.length && rank < 0; id++) {
+			if (decs[id].toStr2().equals(correctDecomp)) {
+				rank = id;
+			}
+		}
+		if (rank == 0) {
+			results.nbFirstCorrect++;
+		} else if (rank > 0) {
+			results.nbCorrectNotFirst++;
+		} else {
+			results.nbCorrectNotPresent++;
+		}
+	}
+
+	private static List<GoldCase> readGoldStandard(String fileName, int maxWords)
+			throws Exception {
+		List<GoldCase> cases = new ArrayList<GoldCase>();
+		BufferedReader reader = new BufferedReader(
+			new InputStreamReader(new FileInputStream(fileName), "UTF-8"));
+		try {
+			String line;
+			while (cases.size() < maxWords && (line = reader.readLine()) != null) {
+				String[] fields = line.trim().split("\\s+");
+				if (fields.length < 3) {
+					continue;
+				}
+				GoldCase goldCase = new GoldCase();
+				goldCase.word = fields[1];
+				if (!fields[0].startsWith("*")) {
+					goldCase.correctDecomp = fields[2];
+				}
+				cases.add(goldCase);
+			}
+		} finally {
+			reader.close();
+		}
+		return cases;
+	}
+
+	private static double wordsPerSec(int nbWords, long msecs) {
+		return (msecs == 0 ? 0.0 : 1000.0 * nbWords / msecs);
+	}
+
+	private static void printRow(String label, Object r2lValue, Object l2rValue) {
+		String format = (r2lValue instanceof Double ? "%-34s%12.1f%12.1f" : "%-34s%12s%12s");
+		System.out.println(String.format(format, label, r2lValue, l2rValue));
+	}
+}
@@ -0,0 +1,108 @@
+package ca.inuktitutcomputing.utilbin;
+
+import java.io.BufferedReader;
+import java.io.FileInputStream;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.List;
+
+import ca.nrc.datastructure.trie.Trie;
+import ca.nrc.datastructure.trie.Trie_InCompactMemory;
+import ca.nrc.datastructure.trie.Trie_InMemory;
+
+/**
+ * Reports the heap used per node by a Trie_InMemory and by a
+ * Trie_InCompactMemory that index the characters of the same words.
+ *
+ * Usage: CompareTrieMemory wordsFile [maxWords]
+ *
+ * The words are the first token of each line of the file; a word that
+ * appears on several lines is added as many times. The heap used is
+ * measured after garbage collection, so the JVM should be run with a
+ * fixed heap (ex: -Xms4g -Xmx4g) for the figures to be stable. The heap
+ * used by both tries includes that of the index of their terminals'
+ * n-grams (see TerminalsNgramIndex), which is the same for both.
+ */
+public class CompareTrieMemory {
+
+	public static void main(String[] args) throws Exception {
+		if (args.length < 1) {
+			System.err.println("Usage: CompareTrieMemory wordsFile [maxWords]");
+			System.exit(1);
+		}
+		int maxWords = Integer.MAX_VALUE;
+		if (args.length > 1) {
+			maxWords = Integer.parseInt(args[1]);
+		}
+		List<String> words = readWords(args[0], maxWords);
+
+		long before = usedHeap();
+		Trie_InMemory trie = new Trie_InMemory();
+		long msecs = addAll(trie, words);
+		long inMemoryBytes = usedHeap() - before;
+		// So that the trie is still reachable when the heap is measured
+		long totalOccurences = trie.getRoot().getFrequency();
+		trie = null;
+
+		before = usedHeap();
+		Trie_InCompactMemory compactTrie = new Trie_InCompactMemory();
+		long compactMSecs = addAll(compactTrie, words);
+		long compactBytes = usedHeap() - before;
+		// Both tries have the same nodes
+		long nodes = compactTrie.totalNodes();
+
+		System.out.println("Nb. words: "+totalOccurences);
+		System.out.println("Nb. nodes: "+nodes);
+		System.out.println(String.format("%-22s%16s%16s",
+			"", "InMemory", "InCompactMemory"));
+		System.out.println(String.format("%-22s%16d%16d",
+			"Heap used (bytes)", inMemoryBytes, compactBytes));
+		System.out.println(String.format("%-22s%16.1f%16.1f", "Bytes per node",
+			1.0 * inMemoryBytes / nodes, 1.0 * compactBytes / nodes));
+		System.out.println(String.format("%-22s%16d%16d",
+			"Time to add (ms)", msecs, compactMSecs));
+		System.out.println("Distinct segments: "+compactTrie.totalSegments());
+	}
+
+	private static long addAll(Trie trie, List<String> words) throws Exception {
+		long start = System.currentTimeMillis();
+		trie.beginBatch();
+		for (String word: words) {
+			trie.add(Trie.wordChars(word), word);
+		}
+		trie.commitBatch();
+		return System.currentTimeMillis() - start;
+	}
+
+	private static long usedHeap() throws InterruptedException {
+		Runtime runtime = Runtime.getRuntime();
+		for (int ii=0; ii < 3; ii++) {
+			System.gc();
+			Thread.sleep(100);
+		}
+		return runtime.totalMemory() - runtime.freeMemory();
+	}
+
+	private static List<String> readWords(String fileName, int maxWords) throws Exception {
+		List<String> words = new ArrayList<String>();
+		BufferedReader reader = new BufferedReader(
+			new InputStreamReader(new FileInputStream(fileName), "UTF-8"));
+		try {
+			String line;
+			while (words.size() < maxWords && (line = reader.readLine()) != null) {
+				line = line.trim();
+				if (line.isEmpty()) {
+					continue;
+				}
+				String word = line.split("\\s+")[0];
+				if (word.startsWith("*")) {
+					word = word.substring(1);
+				}
+				words.add(word);
+			}
+		} finally {
+			reader.close();
+		}
+		return words;
+	}
+}
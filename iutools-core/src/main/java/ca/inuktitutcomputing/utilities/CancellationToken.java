@@ -0,0 +1,33 @@
+package ca.inuktitutcomputing.utilities;
+
+/**
+ * Token used to ask a long task to stop.
+ *
+ * The task checks the token regularly (StopWatch.check() does it when a
+ * token is attached to the StopWatch) and raises a TimeoutException as soon
+ * as it finds that it was cancelled. Unlike thread interruption, this does
+ * not depend on the task reaching an interruptible operation, and the
+ * token can be cancelled before the task has even started.
+ */
+public class CancellationToken {
+
+	private volatile boolean cancelled = false;
+	private volatile String reason = null;
+
+	public void cancel() {
+		cancel(null);
+	}
+
+	public void cancel(String _reason) {
+		this.reason = _reason;
+		this.cancelled = true;
+	}
+
+	public boolean isCancelled() {
+		return cancelled;
+	}
+
+	public String getReason() {
+		return reason;
+	}
+}
@@ -44,6 +44,21 @@ public class StopWatch {
 	private int clockNotForcedSince = 0;
 	private long checksSoFar = 0;
 	
+	private CancellationToken cancellationToken = null;
+	
+	/*
+	 * check() is called very often during a long task: its loggers are
+	 * looked up once and for all.
+	 */
+	private static final Logger checkLogger = 
+		Logger.getLogger("ca.inuktitutcomputing.utilities.StopWatch.check");
+	private static final Logger elapsedTimeLogger = 
+		Logger.getLogger("ca.inuktitutcomputing.utilities.StopWatch.checkElapsedTime");
+	private static final Logger interruptionLogger = 
+		Logger.getLogger("ca.inuktitutcomputing.utilities.StopWatch.checkForInterruption");
+	private static final Logger clockLogger = 
+		Logger.getLogger("ca.inuktitutcomputing.utilities.StopWatch.forceClockUpdate");
+	
 	public StopWatch(long _timeoutMSecs, String taskName) {
 		initStopWatch(_timeoutMSecs, taskName);
 	}
@@ -61,9 +76,27 @@ public class StopWatch {
 		this.startTime = nowMSecs();
 	}
 	
+	/**
+	 * Attach a token that someone else can use to cancel the task. The token 
+	 * is checked at every check(), even if the StopWatch is disactivated.
+	 */
+	public StopWatch setCancellationToken(CancellationToken token) {
+		this.cancellationToken = token;
+		return this;
+	}
+	
 	public void check(String message) throws TimeoutException {
-		Logger mLogger = Logger.getLogger("ca.inuktitutcomputing.utilities.StopWatch.check");
-		
+		check(message, null);
+	}
+	
+	/**
+	 * Same as check(message), for a message with a variable part (ex: a 
+	 * position in a word). The message and its detail are only put together 
+	 * when the check is traced, so that callers do not build a new string 
+	 * at every check.
+	 */
+	public void check(String message, Object detail) throws TimeoutException {
+		checkForCancellation();
 		if (deactivated) {
 			return;
 		}
@@ -76,8 +109,9 @@ public class StopWatch {
 		// We only print traces every 10K calls...
 		boolean traceThisCall = (checksSoFar % 10000) == 0;
 		
-		if (traceThisCall) {
-			mLogger.trace("Checking for task="+taskName+" (#checks="+checksSoFar+")");
+		if (traceThisCall && checkLogger.isTraceEnabled()) {
+			checkLogger.trace("Checking for task="+taskName+" (#checks="+checksSoFar+"): "+
+				message+(detail == null ? "" : detail));
 		}
 		
 		checkForInterruption();
@@ -86,23 +120,28 @@ public class StopWatch {
 	}
 	
 	private void checkElapsedTime(boolean traceThisCall) throws TimeoutException {
-		Logger mLogger = Logger.getLogger("ca.inuktitutcomputing.utilities.StopWatch.checkElapsedTime");		
-		Long elapsed = nowMSecs() - startTime;
-		if (traceThisCall) {
-			mLogger.trace("Task "+taskName+" elapsed = "+elapsed/1000+" secs (max: "+timeoutMSecs/1000+" secs)");
+		long elapsed = nowMSecs() - startTime;
+		if (traceThisCall && elapsedTimeLogger.isTraceEnabled()) {
+			elapsedTimeLogger.trace("Task "+taskName+" elapsed = "+elapsed/1000+" secs (max: "+timeoutMSecs/1000+" secs)");
 		}
 		
 		if (elapsed > timeoutMSecs) {
-			mLogger.trace("Task "+taskName+" exceeded its allocated time.\nThrowing a TimeoutException");
+			elapsedTimeLogger.trace("Task "+taskName+" exceeded its allocated time.\nThrowing a TimeoutException");
 			throw new TimeoutException("Task "+taskName+"\nTimed out after "+elapsed+"msecs");
 		}
 	}
 
+	private void checkForCancellation() throws TimeoutException {
+		if (cancellationToken != null && cancellationToken.isCancelled()) {
+			String reason = cancellationToken.getReason();
+			throw new MorphTimeoutException("Task "+taskName+" was cancelled"+
+				(reason == null ? "" : " ("+reason+")"));
+		}
+	}
+
 	private void checkForInterruption() throws TimeoutException {
-		Logger mLogger = Logger.getLogger("ca.inuktitutcomputing.utilities.StopWatch.checkForInterruption");
-		
 		if (Thread.interrupted()) {
-			mLogger.trace("Task "+taskName+" was interrupted.\nRaising TimeoutException");
+			interruptionLogger.trace("Task "+taskName+" was interrupted.\nRaising TimeoutException");
 			// Note: The call to interrupted() sets the thread's interrupted 
 			//  status to false. So we invoke interrupt() to reset it true in 
 			//  someone above us depends on that.  
@@ -134,15 +173,15 @@ public class StopWatch {
 	 * to do the trick.
 	 */	
 	private void forceClockUpdate() throws MorphTimeoutException {
-		Logger mLogger = Logger.getLogger("ca.inuktitutcomputing.utilities.StopWatch.forceClockUpdate");
-		
 		ClockUpdateStrategy updateStrat =
 				ClockUpdateStrategy.CHECK_FILE;
 		
 		clockNotForcedSince++;
 		// Don't force at each iteration as it will slow things down
 		if (clockNotForcedSince > updateClockEveryNTimes) {
-			mLogger.trace("Forcing clock updated for Task "+taskName);			
+			if (clockLogger.isTraceEnabled()) {
+				clockLogger.trace("Forcing clock updated for Task "+taskName);
+			}			
 			clockNotForcedSince = 0;
 		
 			if (updateStrat == ClockUpdateStrategy.CALL_STACK) {
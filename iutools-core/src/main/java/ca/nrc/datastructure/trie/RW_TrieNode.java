@@ -59,6 +59,24 @@ public class RW_TrieNode {
 		
 	}
 
+	public byte[] writeValueAsBytes(TrieNode node) throws RW_TrieNodeException {
+		try {
+			return getNodeWriter().writeValueAsBytes(node);
+		} catch (JsonProcessingException e) {
+			throw new RW_TrieNodeException(e);
+		}
+	}
+
+	public TrieNode readValue(byte[] nodeBytes) throws RW_TrieNodeException {
+		TrieNode node = null;
+		try {
+			node = getNodeMapper().readValue(nodeBytes, TrieNode.class);
+		} catch (IOException e) {
+			throw new RW_TrieNodeException(e);
+		}
+		return node;
+	}
+
 	public TrieNode readValue(File nodeFile) throws RW_TrieNodeException {
 		TrieNode node = null;
 		try {
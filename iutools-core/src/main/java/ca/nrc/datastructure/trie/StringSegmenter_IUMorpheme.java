@@ -2,10 +2,7 @@ package ca.nrc.datastructure.trie;
 
 import java.util.ArrayList;
 import java.util.List;
-import java.util.Vector;
 import java.util.concurrent.TimeoutException;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 
 import ca.inuktitutcomputing.data.LinguisticDataException;
 import ca.inuktitutcomputing.morph.MorphInukException;
@@ -13,6 +10,8 @@ import ca.inuktitutcomputing.morph.MorphologicalAnalyzer;
 import ca.inuktitutcomputing.morph.MorphologicalAnalyzerException;
 import ca.inuktitutcomputing.script.Syllabics;
 import ca.inuktitutcomputing.morph.Decomposition;
+import ca.inuktitutcomputing.morph.Decomposition.DecompositionExpression.DecPart;
+import ca.inuktitutcomputing.morph.DecompositionResults;
 
 
 public class StringSegmenter_IUMorpheme extends StringSegmenter {
@@ -33,9 +32,23 @@ public class StringSegmenter_IUMorpheme extends StringSegmenter {
 
 	public String[] segment(String string, boolean fullAnalysis) throws TimeoutException, StringSegmenterException, LinguisticDataException {
 		String[] bestSegmentation = null;
-		String[][] allSegmentations = possibleSegmentations(string, fullAnalysis);
-		if (allSegmentations != null && allSegmentations.length > 0) {
-			bestSegmentation = allSegmentations[0];
+		
+		// Only the best decomposition is needed, so there is no need to 
+		// find all of them. If the analyzer runs out of time, use the best 
+		// decomposition found so far, if any.
+		DecompositionResults results = null;
+		try {
+			results = morphAnalyzer.decomposeWordBestFirst(romanized(string), 1);
+		} catch (MorphologicalAnalyzerException e) {
+			throw new StringSegmenterException(e);
+		}
+		if (results.timedOut && results.decompositions.length == 0) {
+			throw new TimeoutException("Could not segment "+string+" in the time allowed");
+		}
+		
+		// Only the best decomposition is turned into a segmentation
+		if (results.decompositions.length > 0) {
+			bestSegmentation = segmentation(results.decompositions[0], fullAnalysis);
 		}
 		
 		return bestSegmentation;
@@ -53,37 +66,30 @@ public class StringSegmenter_IUMorpheme extends StringSegmenter {
 	@Override
 	public String[][] possibleSegmentations(String string, boolean fullAnalysis)
 			throws TimeoutException, StringSegmenterException {
-		List<String[]> allSegmentations = new ArrayList<String[]>();
-		String word = string;
-		if (Syllabics.allInuktitut(string)) {
-			word = Syllabics.transcodeToRoman(string); 
-		}
-		
 		Decomposition[] decs = null;
 		try {
-			decs = morphAnalyzer.decomposeWord(word);
+			decs = morphAnalyzer.decomposeWord(romanized(string));
 		} catch (MorphologicalAnalyzerException e) {
 			throw new StringSegmenterException(e);
 		}
 		
+		return segmentations(decs, fullAnalysis);
+	}
+	
+	private String romanized(String string) {
+		String word = string;
+		if (Syllabics.allInuktitut(string)) {
+			word = Syllabics.transcodeToRoman(string); 
+		}
+		return word;
+	}
+	
+	private String[][] segmentations(Decomposition[] decs, boolean fullAnalysis) 
+			throws StringSegmenterException {
+		List<String[]> allSegmentations = new ArrayList<String[]>();
         if (decs != null && decs.length > 0) {
         	for (Decomposition dec: decs) {
-	        	Pattern p = Pattern.compile("(\\{[^:]+\\:(.+?)\\})") ;      
-	        	Matcher m;
-				try {
-					m = p.matcher(dec.toStr2());
-				} catch (LinguisticDataException e) {
-					throw new StringSegmenterException(e);
-				}
-	        	Vector<String> v = new Vector<String>();
-	        	while (m.find()) {
-	        		if (fullAnalysis) {
-	        			v.add(m.group(1));
-	        		} else {
-	        			v.add("{"+m.group(2)+"}");
-	        		}
-	        	}
-	        	allSegmentations.add((String[]) v.toArray(new String[v.size()]));
+	        	allSegmentations.add(segmentation(dec, fullAnalysis));
         	}
         }
         
@@ -97,6 +103,29 @@ public class StringSegmenter_IUMorpheme extends StringSegmenter {
         return allSegmentationsArr;
 	}
 	
+	/*
+	 * The segments of a decomposition, read directly from its parts (surface
+	 * form and morpheme id), without going through its string expression.
+	 */
+	private String[] segmentation(Decomposition dec, boolean fullAnalysis) 
+			throws StringSegmenterException {
+		DecPart[] parts;
+		try {
+			parts = dec.parts();
+		} catch (LinguisticDataException e) {
+			throw new StringSegmenterException(e);
+		}
+		String[] segments = new String[parts.length];
+		for (int ii=0; ii < segments.length; ii++) {
+			if (fullAnalysis) {
+				segments[ii] = parts[ii].str;
+			} else {
+				segments[ii] = parts[ii].toStringWithoutSurfaceForm();
+			}
+		}
+		return segments;
+	}
+	
 	
 
 }
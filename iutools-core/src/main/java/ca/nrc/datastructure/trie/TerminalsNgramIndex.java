@@ -0,0 +1,297 @@
+package ca.nrc.datastructure.trie;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.log4j.Logger;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Inverted index of the segment n-grams of the terminals of a trie, used
+ * to find the terminals that contain a given sequence of segments anywhere
+ * (not just at their start).
+ *
+ * Each terminal gets an id (its rank in the order in which the terminals
+ * were added), and every n-gram of up to maxNgramLength segments of the
+ * terminal points to the list of ids of the terminals that contain it.
+ * Those postings are sorted, so the terminals that contain a longer
+ * sequence are found by intersecting the postings of its n-grams.
+ *
+ * Only the list of terminals is serialized (with Gson, as part of the trie
+ * that owns the index). The postings are rebuilt from it the first time
+ * they are needed. The terminals can also be journaled to a file (one JSON
+ * array of segments per line) for the tries whose nodes are in files; the
+ * file is kept open until closeJournal().
+ *
+ * The index is safe to use from several threads: even a lookup can update
+ * the postings, so all the public methods are synchronized.
+ */
+public class TerminalsNgramIndex {
+
+	public static final int DEFAULT_MAX_NGRAM_LENGTH = 3;
+
+	private int maxNgramLength = DEFAULT_MAX_NGRAM_LENGTH;
+
+	// Segments of the terminals, in the order they were added. The id of a
+	// terminal is its position in this list.
+	private List<String[]> terminals = new ArrayList<String[]>();
+
+	private transient Map<String,Integer> terminalIds = null;
+	private transient Map<String,Postings> postings = null;
+
+	// Number of terminals (from the start of the list) that are in the
+	// postings.
+	private transient int indexedTerminals = 0;
+
+	private transient File journalFile = null;
+	private transient OutputStream journalOut = null;
+	private transient ObjectMapper mapper = null;
+
+	private static class Postings {
+		int[] ids = new int[2];
+		int size = 0;
+
+		void add(int id) {
+			if (size > 0 && ids[size-1] == id) {
+				// The terminal contains the n-gram more than once
+				return;
+			}
+			if (size == ids.length) {
+				ids = Arrays.copyOf(ids, 2*size);
+			}
+			ids[size++] = id;
+		}
+	}
+
+	public TerminalsNgramIndex() {
+	}
+
+	public TerminalsNgramIndex(int _maxNgramLength) {
+		this.maxNgramLength = _maxNgramLength;
+	}
+
+	public synchronized int size() {
+		return terminals.size();
+	}
+
+	/**
+	 * Reads the terminals journaled in a file, and appends to it the
+	 * terminals that are added from now on.
+	 */
+	public synchronized void useJournal(File _journalFile) throws TrieException {
+		if (_journalFile.exists()) {
+			try (BufferedReader reader = new BufferedReader(
+					new InputStreamReader(new FileInputStream(_journalFile), "UTF-8"))) {
+				String line;
+				while ((line = reader.readLine()) != null) {
+					if (!line.isEmpty()) {
+						addToList(getMapper().readValue(line, String[].class));
+					}
+				}
+			} catch (IOException e) {
+				throw new TrieException(
+					"Could not read terminals index "+_journalFile, e);
+			}
+		}
+		this.journalFile = _journalFile;
+	}
+
+	/**
+	 * Adds a terminal to the index, unless it is already in it.
+	 *
+	 * @return true if the terminal was not already in the index
+	 */
+	public synchronized boolean add(String[] segments) throws TrieException {
+		ensureIndexed();
+		if (terminalIds.containsKey(ngramKey(segments, 0, segments.length))) {
+			return false;
+		}
+		addToList(segments);
+		if (journalFile != null) {
+			appendToJournal(segments);
+		}
+		ensureIndexed();
+		return true;
+	}
+
+	/**
+	 * Segments of the terminals that contain the given sequence of segments,
+	 * in the order in which they were added to the index.
+	 */
+	public synchronized List<String[]> terminalsContaining(String[] ngram) {
+		Logger tLogger = Logger.getLogger("ca.nrc.datastructure.trie.TerminalsNgramIndex.terminalsContaining");
+		ensureIndexed();
+		List<String[]> found = new ArrayList<String[]>();
+		if (ngram.length == 0) {
+			found.addAll(terminals);
+			return found;
+		}
+
+		int[] candidates = null;
+		int nbCandidates = 0;
+		int gramLength = Math.min(ngram.length, maxNgramLength);
+		for (int start = 0; start + gramLength <= ngram.length; start++) {
+			Postings gramPostings =
+				postings.get(ngramKey(ngram, start, start+gramLength));
+			if (gramPostings == null) {
+				return found;
+			}
+			if (candidates == null) {
+				candidates = Arrays.copyOf(gramPostings.ids, gramPostings.size);
+				nbCandidates = gramPostings.size;
+			} else {
+				nbCandidates = intersect(candidates, nbCandidates, gramPostings);
+			}
+			if (nbCandidates == 0) {
+				return found;
+			}
+		}
+		if (tLogger.isTraceEnabled()) {
+			tLogger.trace(nbCandidates+" candidate terminals for ngram "+
+				String.join(",", ngram));
+		}
+
+		for (int ii=0; ii < nbCandidates; ii++) {
+			String[] terminal = terminals.get(candidates[ii]);
+			// The n-grams of a sequence longer than maxNgramLength can all be
+			// in a terminal without the sequence itself being in it.
+			if (ngram.length <= maxNgramLength ||
+					indexOf(terminal, ngram) >= 0) {
+				found.add(terminal);
+			}
+		}
+		return found;
+	}
+
+	/**
+	 * Keeps only the ids of candidates[0..nbCandidates) that are also
+	 * in the postings, and returns how many there are.
+	 */
+	private static int intersect(int[] candidates, int nbCandidates,
+			Postings other) {
+		int kept = 0;
+		int ii = 0;
+		int jj = 0;
+		while (ii < nbCandidates && jj < other.size) {
+			if (candidates[ii] < other.ids[jj]) {
+				ii++;
+			} else if (candidates[ii] > other.ids[jj]) {
+				jj++;
+			} else {
+				candidates[kept++] = candidates[ii];
+				ii++;
+				jj++;
+			}
+		}
+		return kept;
+	}
+
+	private static int indexOf(String[] segments, String[] ngram) {
+		for (int start = 0; start + ngram.length <= segments.length; start++) {
+			int ii = 0;
+			while (ii < ngram.length && ngram[ii].equals(segments[start+ii])) {
+				ii++;
+			}
+			if (ii == ngram.length) {
+				return start;
+			}
+		}
+		return -1;
+	}
+
+	private void addToList(String[] segments) {
+		terminals.add(Arrays.copyOf(segments, segments.length));
+	}
+
+	/**
+	 * Adds to the postings the terminals that are not yet in them (all of
+	 * them, after the index was deserialized).
+	 */
+	private void ensureIndexed() {
+		if (postings == null) {
+			terminalIds = new HashMap<String,Integer>();
+			postings = new HashMap<String,Postings>();
+			indexedTerminals = 0;
+		}
+		for (; indexedTerminals < terminals.size(); indexedTerminals++) {
+			int id = indexedTerminals;
+			String[] segments = terminals.get(id);
+			terminalIds.put(ngramKey(segments, 0, segments.length), id);
+			for (int start = 0; start < segments.length; start++) {
+				int maxEnd = Math.min(segments.length, start+maxNgramLength);
+				for (int end = start+1; end <= maxEnd; end++) {
+					String key = ngramKey(segments, start, end);
+					Postings gramPostings = postings.get(key);
+					if (gramPostings == null) {
+						gramPostings = new Postings();
+						postings.put(key, gramPostings);
+					}
+					gramPostings.add(id);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Closes the journal file, if it is open. It is opened again the next
+	 * time a terminal is added.
+	 */
+	public synchronized void closeJournal() throws TrieException {
+		if (journalOut != null) {
+			try {
+				journalOut.close();
+			} catch (IOException e) {
+				throw new TrieException(
+					"Could not close terminals index "+journalFile, e);
+			} finally {
+				journalOut = null;
+			}
+		}
+	}
+
+	private void appendToJournal(String[] segments) throws TrieException {
+		try {
+			if (journalOut == null) {
+				journalFile.getParentFile().mkdirs();
+				journalOut = new FileOutputStream(journalFile, true);
+			}
+			// A single write per line, so that the line is complete in the
+			// file as soon as add() returns
+			byte[] json = getMapper().writeValueAsBytes(segments);
+			byte[] line = Arrays.copyOf(json, json.length+1);
+			line[json.length] = '\n';
+			journalOut.write(line);
+		} catch (IOException e) {
+			throw new TrieException(
+				"Could not write to terminals index "+journalFile, e);
+		}
+	}
+
+	// Each segment is prefixed with a character that does not appear in
+	// segments, so that ["ab","c"] and ["a","bc"] have different keys.
+	private static String ngramKey(String[] segments, int start, int end) {
+		StringBuilder key = new StringBuilder();
+		for (int ii=start; ii < end; ii++) {
+			key.append('\u0001').append(segments[ii]);
+		}
+		return key.toString();
+	}
+
+	private ObjectMapper getMapper() {
+		if (mapper == null) {
+			mapper = new ObjectMapper();
+		}
+		return mapper;
+	}
+}
@@ -1,15 +1,20 @@
 package ca.nrc.datastructure.trie;
 
+import java.io.File;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
+import java.util.Deque;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
+import java.util.NoSuchElementException;
 import java.util.Set;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.TreeMap;
 
 import org.apache.commons.lang3.ArrayUtils;
 import org.apache.log4j.Logger;
@@ -25,15 +30,8 @@ import ca.nrc.json.PrettyPrinter;
 //   very large so it's better to not assume that they all will be in 
 //   memory.
 //
-//   In the case of the _InFileSystem version, create a class 
-//
-//      class FSTrieNodeIterator extends Iterator<TrieNode> {
-//
-//   This class will use FileUtils.iterateFiles() to create a File<Iterator>
-//   and it will use that File<Iterator> to iterate through the files for 
-//   the corresponding TrieNode
-//
-//    http://commons.apache.org/proper/commons-io/javadocs/api-2.5/org/apache/commons/io/FileUtils.html#iterateFiles(java.io.File,%20org.apache.commons.io.filefilter.IOFileFilter,%20org.apache.commons.io.filefilter.IOFileFilter)
+//   terminalsIterator() does this for the terminals. The other methods 
+//   (ex: getTerminals()) still return arrays.
 //
 
 
@@ -61,7 +59,23 @@ public abstract class Trie {
 		
 	public abstract void saveNode(TrieNode node) throws TrieException;
 			
-	protected String allTerminalsJoined = ";";
+	// Index of the segment n-grams of the terminals, used to find the
+	// terminals that contain a sequence of segments (see 
+	// getTerminalsMatchingNgram()). Serialized along with the trie. It is
+	// loaded (see terminalsIndex()) while holding the lock of the trie.
+	private TerminalsNgramIndex terminalsIndex = null;
+	private transient boolean terminalsIndexLoaded = false;
+
+	public static final int DEFAULT_MAX_PENDING_NODES = 10000;
+
+	// Nodes modified since the start of a batch of updates (see beginBatch()),
+	// sorted by their keys so that a parent is always saved before its 
+	// children. The state of the batch is not synchronized: a batch belongs
+	// to the thread that began it.
+	private TreeMap<String,TrieNode> pendingNodes = null;
+	private int maxPendingNodes = DEFAULT_MAX_PENDING_NODES;
+	private int batchDepth = 0;
+	private boolean batchAborted = false;
 
 	public TrieNode add(String[] segments, String expression) 
 			throws TrieException {
@@ -73,15 +87,192 @@ public abstract class Trie {
 		if (segments == null) {
 			segments = new String[] {TrieNode.NULL_SEG};
 		}
-		addToJoinedTerminals(segments);
-		TrieNode node = getNode(segments, NodeOption.TERMINAL);
+		terminalsIndex().add(segments);
+		TrieNode node = nodeToUpdate(segments, NodeOption.TERMINAL);
 		node.updateSurfaceForms(expression, freqIncr);
 		node.frequency += freqIncr;
-		saveNode(node);
+		saveNodeOrDefer(node);
 		updateAncestors(node);
 		
 		return node;		
 	}
+
+	/**
+	 * Starts a batch of updates. Until the batch is committed, the nodes 
+	 * modified by add() (the terminal node and all its ancestors) are kept
+	 * in memory instead of being saved after each addition, so that a node
+	 * modified many times (ex: the root) is saved only once. They are saved
+	 * in one pass, sorted by keys, when the batch is committed or when more
+	 * than maxPending of them have accumulated.
+	 * 
+	 * While the batch is in progress, getNode() returns the modified nodes 
+	 * from memory. Batches can be nested; the nodes are only saved when the
+	 * outermost one is committed.
+	 * 
+	 * A batch is meant to be used by a single thread: the thread that
+	 * begins it must also commit or abort it, and no other thread may read
+	 * or update the trie in the meantime.
+	 */
+	public void beginBatch() {
+		beginBatch(DEFAULT_MAX_PENDING_NODES);
+	}
+
+	public void beginBatch(int maxPending) {
+		if (batchDepth == 0) {
+			pendingNodes = new TreeMap<String,TrieNode>();
+			maxPendingNodes = maxPending;
+			batchAborted = false;
+		}
+		batchDepth++;
+	}
+
+	/**
+	 * Commits a batch of updates (see beginBatch()). Fails if a batch 
+	 * nested in it was aborted.
+	 */
+	public void commitBatch() throws TrieException {
+		if (batchDepth == 0) {
+			throw new TrieException("No batch of updates to commit");
+		}
+		batchDepth--;
+		if (batchDepth == 0) {
+			boolean aborted = batchAborted;
+			batchAborted = false;
+			try {
+				if (aborted) {
+					throw new TrieException("Cannot commit a batch of updates that was aborted");
+				}
+				flushPendingNodes();
+			} finally {
+				pendingNodes = null;
+			}
+		}
+	}
+
+	/**
+	 * Aborts a batch of updates (see beginBatch()): the nodes that it 
+	 * modified and that were not saved yet are discarded. Those that were
+	 * saved because too many nodes were pending stay saved, and so do the 
+	 * additions to the index of the terminals, so the trie may have to be
+	 * rebuilt after an aborted batch. The changes are not undone either for
+	 * a trie whose getNode() returns the very nodes that it holds (ex: 
+	 * Trie_InMemory).
+	 * 
+	 * When the batch is nested in another one, the outer batch can only be
+	 * aborted too.
+	 */
+	public void abortBatch() throws TrieException {
+		if (batchDepth == 0) {
+			throw new TrieException("No batch of updates to abort");
+		}
+		batchDepth--;
+		Collection<TrieNode> discarded = pendingNodes.values();
+		if (batchDepth == 0) {
+			pendingNodes = null;
+			batchAborted = false;
+		} else {
+			pendingNodes = new TreeMap<String,TrieNode>();
+			batchAborted = true;
+		}
+		pendingNodesDiscarded(discarded);
+	}
+
+	/**
+	 * Called when the nodes modified by a batch of updates are discarded 
+	 * (see abortBatch()), for a trie to forget about the changes it may 
+	 * have kept elsewhere (ex: in a cache of nodes).
+	 */
+	protected void pendingNodesDiscarded(Collection<TrieNode> nodes) {
+	}
+
+	public boolean inBatch() {
+		return pendingNodes != null;
+	}
+
+	/**
+	 * Saves a node that was modified, or if a batch of updates is in 
+	 * progress, defers it until the batch is committed.
+	 */
+	public void saveNodeOrDefer(TrieNode node) throws TrieException {
+		if (pendingNodes == null) {
+			saveNode(node);
+		} else {
+			pendingNodes.put(pendingKey(node.keys), node);
+			if (pendingNodes.size() >= maxPendingNodes) {
+				flushPendingNodes();
+			}
+		}
+	}
+
+	protected void flushPendingNodes() throws TrieException {
+		Logger tLogger = Logger.getLogger("ca.nrc.datastructure.trie.Trie.flushPendingNodes");
+		if (pendingNodes == null) {
+			return;
+		}
+		if (tLogger.isTraceEnabled()) {
+			tLogger.trace("Saving "+pendingNodes.size()+" pending nodes");
+		}
+		// Empty the batch first, so that saveNode() does not find the nodes
+		// in it
+		TreeMap<String,TrieNode> toSave = pendingNodes;
+		pendingNodes = new TreeMap<String,TrieNode>();
+		for (TrieNode node: toSave.values()) {
+			saveNode(node);
+		}
+	}
+
+	/**
+	 * Node modified by the batch of updates in progress (if any). 
+	 * Implementations of getNode() and contains() must check it before 
+	 * looking for the node in their storage.
+	 */
+	protected TrieNode pendingNode(String[] keys, NodeOption... options) {
+		TrieNode node = null;
+		if (pendingNodes != null) {
+			if (keys == null) {
+				keys = new String[] {TrieNode.NULL_SEG};
+			}
+			for (NodeOption anOption: options) {
+				if (anOption == NodeOption.TERMINAL) {
+					keys = ensureTerminal(keys);
+				}
+			}
+			node = pendingNodes.get(pendingKey(keys));
+		}
+		return node;
+	}
+
+	/**
+	 * Node that is about to be modified and saved with saveNodeOrDefer().
+	 * During a batch of updates, a node that does not exist yet is created
+	 * in memory only, since it will be saved when the batch is committed.
+	 */
+	protected TrieNode nodeToUpdate(String[] keys, NodeOption... options) 
+			throws TrieException {
+		if (pendingNodes == null) {
+			return getNode(keys, options);
+		}
+		TrieNode node = pendingNode(keys, options);
+		if (node == null) {
+			NodeOption[] noCreate = Arrays.copyOf(options, options.length+1);
+			noCreate[options.length] = NodeOption.NO_CREATE;
+			node = getNode(keys, noCreate);
+			if (node == null) {
+				boolean terminal = Arrays.asList(options).contains(NodeOption.TERMINAL);
+				node = new TrieNode(terminal ? ensureTerminal(keys) : keys);
+			}
+			pendingNodes.put(pendingKey(node.keys), node);
+		}
+		return node;
+	}
+
+	private static String pendingKey(String[] keys) {
+		StringBuilder key = new StringBuilder();
+		for (String aKey: keys) {
+			key.append('\u0001').append(aKey);
+		}
+		return key.toString();
+	}
 		
     public long getSize() throws TrieException {
     	return totalTerminals();
@@ -100,6 +291,75 @@ public abstract class Trie {
 		return allTerminals;
 	}
 
+	public Iterator<TrieNode> terminalsIterator() throws TrieException {
+		return terminalsIterator(getRoot());
+	}
+	
+	/**
+	 * Iterates through the terminals under a node, depth first. Unlike 
+	 * getTerminals(), the terminals are read as they are iterated through,
+	 * so they need not all fit in memory, and iterating through the first 
+	 * few of them does not read the others.
+	 * 
+	 * The trie should not be modified during the iteration. As an Iterator
+	 * cannot throw a TrieException, a TrieException raised while reading a 
+	 * node is thrown wrapped in a RuntimeException.
+	 */
+	public Iterator<TrieNode> terminalsIterator(TrieNode node) {
+		return new TerminalsIterator(node);
+	}
+	
+	// Keeps only the keys of the nodes still to be visited, since for the 
+	// tries whose nodes are in files, the nodes themselves are only read 
+	// when they are visited.
+	private class TerminalsIterator implements Iterator<TrieNode> {
+		private Deque<String[]> toVisit = new ArrayDeque<String[]>();
+		private TrieNode nextTerminal = null;
+		
+		public TerminalsIterator(TrieNode start) {
+			if (start != null) {
+				toVisit.push(start.keys);
+			}
+		}
+		
+		@Override
+		public boolean hasNext() {
+			while (nextTerminal == null && !toVisit.isEmpty()) {
+				TrieNode node = null;
+				try {
+					node = getNode(toVisit.pop(), NodeOption.NO_CREATE);
+				} catch (TrieException e) {
+					throw new RuntimeException(e);
+				}
+				if (node == null) {
+					continue;
+				}
+				if (node.isTerminal()) {
+					nextTerminal = node;
+				} else {
+					// Pushed in reverse so that they are visited in the 
+					// same order as by getTerminals()
+					String[] extensions = node.childrenSegments().toArray(
+						new String[node.childrenSegments().size()]);
+					for (int ii=extensions.length-1; ii >= 0; ii--) {
+						toVisit.push(extendSegments(node.keys, extensions[ii]));
+					}
+				}
+			}
+			return nextTerminal != null;
+		}
+		
+		@Override
+		public TrieNode next() {
+			if (!hasNext()) {
+				throw new NoSuchElementException();
+			}
+			TrieNode terminal = nextTerminal;
+			nextTerminal = null;
+			return terminal;
+		}
+	}
+
 	public TrieNode[] getTerminals(String[] segments) throws TrieException {
 		return getTerminals(segments, null);
 	}
@@ -117,9 +377,9 @@ public abstract class Trie {
 		}
 		
 		if (!matchStart) {
-			getTerminalsMatchingNgram(segments);
+			allTerminals = getTerminalsMatchingNgram(segments);
 		} else {
-			TrieNode node = this.getNode(segments);
+			TrieNode node = this.getNode(segments, NodeOption.NO_CREATE);
 			if (node==null)
 				allTerminals = new TrieNode[0];
 			else
@@ -133,11 +393,11 @@ public abstract class Trie {
 			throws TrieException {
 		
 		List<TrieNode> terminalsLst = new ArrayList<TrieNode>();
-		Matcher matcher = joinedTerminalsMatcher(segments, true);
-		while (matcher.find()) {
-			String terminalStr = matcher.group(1);
-			String[] matchSegs = terminalStr.split(",");
-			terminalsLst.add(getNode(matchSegs));
+		for (String[] matchSegs: terminalsIndex().terminalsContaining(segments)) {
+			TrieNode terminal = getNode(matchSegs, NodeOption.NO_CREATE);
+			if (terminal != null) {
+				terminalsLst.add(terminal);
+			}
 		}
 		
 		return terminalsLst.toArray(new TrieNode[terminalsLst.size()]);	
@@ -186,8 +446,11 @@ public abstract class Trie {
     	}
     	List<TrieNode> children = new ArrayList<TrieNode>();
     	for (String extension: node.childrenSegments()) {
-    		TrieNode childNode = getNode(extendSegments(node.keys, extension ));
-    		children.add(childNode);
+    		TrieNode childNode = getNode(extendSegments(node.keys, extension ), 
+    			NodeOption.NO_CREATE);
+    		if (childNode != null) {
+    			children.add(childNode);
+    		}
     	}
     	
 		return children;
@@ -217,7 +480,10 @@ public abstract class Trie {
 	}
 	
 	public TrieNode getMostFrequentTerminal(String[] segments) throws TrieException {
-		TrieNode node = getNode(segments);
+		TrieNode node = getNode(segments, NodeOption.NO_CREATE);
+		if (node == null) {
+			return null;
+		}
 		return getMostFrequentTerminal(node);
 	}
 	
@@ -230,7 +496,7 @@ public abstract class Trie {
 		if (tLogger.isTraceEnabled()) {
 			tLogger.trace("segments="+String.join(",", segments));
 		}
-		TrieNode node = getNode(segments);
+		TrieNode node = getNode(segments, NodeOption.NO_CREATE);
 		if (tLogger.isTraceEnabled()) {
 			tLogger.trace("node="+node);
 		}
@@ -238,7 +504,7 @@ public abstract class Trie {
 	}
 	
 	public TrieNode[] getMostFrequentTerminals(String[] segments) throws TrieException {
-		TrieNode node = getNode(segments);
+		TrieNode node = getNode(segments, NodeOption.NO_CREATE);
 		return getMostFrequentTerminals(null, node, null);
 	}
 
@@ -255,9 +521,28 @@ public abstract class Trie {
 			Integer n, TrieNode node, 
 			TrieNode[] exclusions) throws TrieException {
 		
+		if (node != null && n != null && 
+				(exclusions == null || exclusions.length == 0)) {
+			String[][] topKeys = node.topTerminalKeys(n);
+			if (topKeys != null) {
+				// The node keeps a summary of its most frequent terminals,
+				// so there is no need to visit all of them
+				List<TrieNode> top = new ArrayList<TrieNode>();
+				for (String[] keys: topKeys) {
+					TrieNode terminal = getNode(keys, NodeOption.NO_CREATE);
+					if (terminal != null) {
+						top.add(terminal);
+					}
+				}
+				return top.toArray(new TrieNode[top.size()]);
+			}
+		}
+		
 		VisitorFindMostFrequentTerminals visitor = 
 			new VisitorFindMostFrequentTerminals(n, exclusions);
-		traverseNodes(node, visitor);
+		if (node != null) {
+			traverseNodes(node, visitor);
+		}
 		
 		return visitor.mostFrequentTerminals();
 	}	
@@ -270,11 +555,12 @@ public abstract class Trie {
 		if (keys.length==0)
 			return null;
 		else
-			return this.getNode(Arrays.copyOfRange(keys, 0, keys.length-1));
+			return this.getNode(Arrays.copyOfRange(keys, 0, keys.length-1), 
+				NodeOption.NO_CREATE);
 	}
 	
 	public long getFrequency(String[] segments) throws TrieException {
-		TrieNode node = this.getNode(segments);
+		TrieNode node = this.getNode(segments, NodeOption.NO_CREATE);
 		if (node != null)
 			return node.getFrequency();
 		else
@@ -367,49 +653,78 @@ public abstract class Trie {
 		return terminal;
 	}
 	
-	protected String getAllTerminalJoined() {
-		return allTerminalsJoined;
-	}
-	
-	protected void addToJoinedTerminals(String[] segments) {
-		if (segments!= null) {
-			Matcher matcher = joinedTerminalsMatcher(segments);
-			if (!matcher.find()) {
-				allTerminalsJoined += ";"+String.join(",", segments)+";";			
+	protected synchronized TerminalsNgramIndex terminalsIndex() 
+			throws TrieException {
+		if (terminalsIndex == null) {
+			terminalsIndex = new TerminalsNgramIndex();
+		}
+		if (!terminalsIndexLoaded) {
+			terminalsIndexLoaded = true;
+			File journal = terminalsIndexFile();
+			if (journal != null) {
+				terminalsIndex.useJournal(journal);
+			}
+			if (terminalsIndex.size() == 0) {
+				// The trie was created before it had an index of its 
+				// terminals
+				TrieNode root = getNode(new String[0], NodeOption.NO_CREATE);
+				if (root != null && root.getFrequency() > 0) {
+					Iterator<TrieNode> iter = terminalsIterator(root);
+					while (iter.hasNext()) {
+						terminalsIndex.add(iter.next().keys);
+					}
+				}
 			}
 		}
+		return terminalsIndex;
 	}
 	
-	protected Matcher joinedTerminalsMatcher(String[] segments) {
-		return joinedTerminalsMatcher(segments, false);
+	/**
+	 * File in which the terminals of the index are journaled, for the 
+	 * tries that are not serialized as a whole. 
+	 */
+	protected File terminalsIndexFile() {
+		return null;
 	}
 	
-	private Matcher joinedTerminalsMatcher(String[] segments, boolean partial) {
-		String[] segmentsRegexQuoted = new String[segments.length];
-		for (int ii=0; ii < segments.length; ii++) {
-			segmentsRegexQuoted[ii] = Pattern.quote(segments[ii]);
-		}
-		String regex = String.join(",", segmentsRegexQuoted);
-		if (partial) {
-			regex = "[^;]*" + regex + "[^;]*";
+	protected synchronized void resetTerminalsIndex() throws TrieException {
+		closeTerminalsIndex();
+		terminalsIndex = null;
+		terminalsIndexLoaded = false;
+	}
+	
+	/**
+	 * Closes the file in which the terminals of the index are journaled 
+	 * (see terminalsIndexFile()), until the next terminal is added.
+	 */
+	protected synchronized void closeTerminalsIndex() throws TrieException {
+		if (terminalsIndex != null) {
+			terminalsIndex.closeJournal();
 		}
-		regex = ";(" + regex + ");";
-		Matcher matcher = Pattern.compile(regex).matcher(getAllTerminalJoined());
-		return matcher;
 	}
 	
 	protected void updateAncestors(TrieNode node) throws TrieException {
-		TrieNode parentNode = getParentNode(node);
+		updateAncestors(node, node);
+	}
+	
+	private void updateAncestors(TrieNode node, TrieNode terminal) 
+			throws TrieException {
+		TrieNode parentNode = null;
+		if (node.keys.length > 0) {
+			parentNode = nodeToUpdate(
+				Arrays.copyOfRange(node.keys, 0, node.keys.length-1));
+		}
 		if (parentNode != null) {
 			String[] nodeSegments = node.keys;
+			parentNode.updateTopTerminals(terminal.keys, terminal.frequency);
 			parentNode.frequency++;
 			
 			String childSegment = nodeSegments[nodeSegments.length-1];
 			parentNode.addChild(childSegment, node);
 			
-			saveNode(parentNode);
+			saveNodeOrDefer(parentNode);
 			
-			updateAncestors(parentNode);
+			updateAncestors(parentNode, terminal);
 		}
 	}
 
@@ -469,7 +784,9 @@ public abstract class Trie {
 	public long totalTerminals(String[] segments) throws TrieException {
 		TrieNode node = getNode(segments, NodeOption.NO_CREATE);
 		VisitorNodeCounter visitor = new VisitorNodeCounter();
-		traverseNodes(node, visitor, true);
+		if (node != null) {
+			traverseNodes(node, visitor, true);
+		}
 		return visitor.nodesCount;
 	}
 
@@ -480,7 +797,9 @@ public abstract class Trie {
 	public long totalTerminalOccurences(String[] segments) throws TrieException {
 		TrieNode node = getNode(segments, NodeOption.NO_CREATE);
 		VisitorNodeCounter visitor = new VisitorNodeCounter();
-		traverseNodes(node, visitor, true);
+		if (node != null) {
+			traverseNodes(node, visitor, true);
+		}
 		return visitor.occurencesCount;
 	}
 	
@@ -17,6 +17,8 @@ public class TrieNode {
 	public static final String TERMINAL_SEG = "_$";
 	public static final String NULL_SEG = "_NULL";
 	
+	public static final int MAX_TOP_TERMINALS = 10;
+	
 	// TODO: Rename to keySequence???
 	//
     public String[] keys = new String[] {};
@@ -78,6 +80,19 @@ public class TrieNode {
     //   uses the name .surfaceForms.
     protected HashMap<String,Long> surfaceForms = new HashMap<String,Long>();
     
+    // Keys and frequencies of the (at most MAX_TOP_TERMINALS) most frequent 
+    // terminals under the node, by decreasing frequency. They are kept up 
+    // to date by Trie.add() so that the most frequent terminals of a node 
+    // can be found without traversing all of them.
+    //
+    // They are null for the nodes that already had terminals before the 
+    // summary was introduced, since it would be incomplete for them.
+    //
+    @JsonProperty
+    protected String[][] topTerminalKeys = null;
+    @JsonProperty
+    protected long[] topTerminalFreqs = null;
+    
     public TrieNode() {
     	init_TrieNode(null, null, null);
     }
@@ -326,6 +341,69 @@ public class TrieNode {
 		return value;
 	}
 
+	/**
+	 * Keys of the n most frequent terminals under the node, or null if 
+	 * the node does not keep a summary of its most frequent terminals, or 
+	 * keeps fewer than n of them while more could exist.
+	 */
+	@JsonIgnore
+	public String[][] topTerminalKeys(int n) {
+		String[][] top = null;
+		if (topTerminalKeys != null && 
+				(n <= topTerminalKeys.length || 
+				 topTerminalKeys.length < MAX_TOP_TERMINALS)) {
+			top = Arrays.copyOf(topTerminalKeys, 
+				Math.min(n, topTerminalKeys.length));
+		}
+		return top;
+	}
+	
+	/**
+	 * Updates the summary of the most frequent terminals under the node
+	 * after the frequency of one of them has increased. Must be called 
+	 * before the frequency of the node itself is incremented.
+	 */
+	protected void updateTopTerminals(String[] terminalKeys, long terminalFreq) {
+		if (topTerminalKeys == null) {
+			if (frequency > 0) {
+				// Terminals were added under the node before it kept a 
+				// summary of them
+				return;
+			}
+			topTerminalKeys = new String[0][];
+			topTerminalFreqs = new long[0];
+		}
+		
+		int pos = -1;
+		for (int ii=0; ii < topTerminalKeys.length && pos < 0; ii++) {
+			if (Arrays.equals(topTerminalKeys[ii], terminalKeys)) {
+				pos = ii;
+			}
+		}
+		if (pos < 0) {
+			if (topTerminalKeys.length < MAX_TOP_TERMINALS) {
+				pos = topTerminalKeys.length;
+				topTerminalKeys = Arrays.copyOf(topTerminalKeys, pos+1);
+				topTerminalFreqs = Arrays.copyOf(topTerminalFreqs, pos+1);
+			} else if (terminalFreq > topTerminalFreqs[topTerminalFreqs.length-1]) {
+				pos = topTerminalKeys.length - 1;
+			} else {
+				return;
+			}
+			topTerminalKeys[pos] = terminalKeys;
+		}
+		topTerminalFreqs[pos] = terminalFreq;
+		
+		// Move the terminal up to its rank
+		while (pos > 0 && topTerminalFreqs[pos-1] < terminalFreq) {
+			topTerminalKeys[pos] = topTerminalKeys[pos-1];
+			topTerminalFreqs[pos] = topTerminalFreqs[pos-1];
+			topTerminalKeys[pos-1] = terminalKeys;
+			topTerminalFreqs[pos-1] = terminalFreq;
+			pos--;
+		}
+	}
+
 	public String[] keysNoTerminal() {
 		String[] keysNoTerm = keys;
 		if (keys != null && keys.length > 0 &&
@@ -0,0 +1,285 @@
+package ca.nrc.datastructure.trie;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Trie whose nodes are kept in memory in a compact form, for tries that
+ * are too large to hold as a graph of TrieNode objects (as Trie_InMemory
+ * does).
+ *
+ * Nodes are identified by an int and their attributes are stored in
+ * parallel arrays indexed by that id:
+ * - a node knows its parent and the id of its last segment, instead of
+ *   holding the full sequence of keys that leads to it
+ * - segments are interned, so each distinct segment is stored only once
+ * - the children of a node are an array of node ids sorted by segment id,
+ *   which is searched by bisection
+ * - the frequency is a primitive long
+ * - the summary of the most frequent terminals is an array of terminal
+ *   ids (the frequencies are those of the terminals)
+ * - surface forms, stats and data are stored only for the nodes that
+ *   have some (mostly the terminals)
+ *
+ * Like for the tries whose nodes are in files, getNode() returns a
+ * TrieNode built from the compact form, and changes to that TrieNode are
+ * only kept once it is passed to saveNode(). The children of the returned
+ * TrieNode have their segments, but no TrieNode.
+ */
+public class Trie_InCompactMemory extends Trie {
+
+	private static final int ROOT_ID = 0;
+	private static final int INITIAL_CAPACITY = 1024;
+
+	private Map<String,Integer> segmentIds = new HashMap<String,Integer>();
+	private List<String> segments = new ArrayList<String>();
+
+	private int totalNodes = 0;
+	private int[] parentIds = new int[INITIAL_CAPACITY];
+	private int[] segmentOfNode = new int[INITIAL_CAPACITY];
+	private long[] frequencies = new long[INITIAL_CAPACITY];
+	private int[][] childIds = new int[INITIAL_CAPACITY][];
+	private int[][] topTerminalIds = new int[INITIAL_CAPACITY][];
+	private NodeExtras[] extras = new NodeExtras[INITIAL_CAPACITY];
+
+	// Attributes that most nodes do not have
+	private static class NodeExtras {
+		String surfaceForm = null;
+		String[] forms = null;
+		long[] formFreqs = null;
+		Map<String,Object> stats = null;
+		Map<String,Object> data = null;
+	}
+
+	public Trie_InCompactMemory() {
+		newNode(-1, -1);
+	}
+
+	public long totalNodes() {
+		return totalNodes;
+	}
+
+	public long totalSegments() {
+		return segments.size();
+	}
+
+	@Override
+	public TrieNode getRoot() throws TrieException {
+		return getNode(new String[0]);
+	}
+
+	@Override
+	public TrieNode getNode(String[] keys, NodeOption... options)
+			throws TrieException {
+		TrieNode node = pendingNode(keys, options);
+		if (node != null) {
+			return node;
+		}
+		if (keys == null) {
+			keys = new String[] {TrieNode.NULL_SEG};
+		}
+		boolean createIfNotExist = true;
+		for (NodeOption anOption: options) {
+			if (anOption == NodeOption.NO_CREATE) {
+				createIfNotExist = false;
+			} else if (anOption == NodeOption.TERMINAL) {
+				keys = ensureTerminal(keys);
+			}
+		}
+
+		int nodeId = nodeId(keys, createIfNotExist);
+		if (nodeId >= 0) {
+			node = toTrieNode(nodeId, keys.clone());
+		}
+		return node;
+	}
+
+	@Override
+	public boolean contains(String[] segments) throws TrieException {
+		return pendingNode(segments) != null || nodeId(segments, false) >= 0;
+	}
+
+	@Override
+	public void saveNode(TrieNode node) throws TrieException {
+		int nodeId = nodeId(node.keys, true);
+		frequencies[nodeId] = node.frequency;
+		for (String childSeg: node.childrenSegments()) {
+			childId(nodeId, childSeg, true);
+		}
+
+		int[] topIds = null;
+		if (node.topTerminalKeys != null) {
+			topIds = new int[node.topTerminalKeys.length];
+			for (int ii=0; ii < topIds.length; ii++) {
+				topIds[ii] = nodeId(node.topTerminalKeys[ii], true);
+			}
+		}
+		topTerminalIds[nodeId] = topIds;
+
+		extras[nodeId] = toExtras(node);
+	}
+
+	/**
+	 * Id of the node with the given keys, or -1 if there is no such node
+	 * and it is not to be created.
+	 */
+	private int nodeId(String[] keys, boolean create) {
+		int nodeId = ROOT_ID;
+		for (int ii=0; ii < keys.length && nodeId >= 0; ii++) {
+			nodeId = childId(nodeId, keys[ii], create);
+		}
+		return nodeId;
+	}
+
+	private int childId(int parentId, String segment, boolean create) {
+		Integer segId = segmentIds.get(segment);
+		if (segId == null) {
+			if (!create) {
+				return -1;
+			}
+			segId = segments.size();
+			segments.add(segment);
+			segmentIds.put(segment, segId);
+		}
+
+		int[] children = childIds[parentId];
+		int pos = -1;
+		if (children != null) {
+			pos = findChild(children, segId);
+			if (pos >= 0) {
+				return children[pos];
+			}
+		}
+		if (!create) {
+			return -1;
+		}
+
+		int newId = newNode(parentId, segId);
+		if (children == null) {
+			childIds[parentId] = new int[] {newId};
+		} else {
+			int insertAt = -(pos + 1);
+			int[] extended = new int[children.length+1];
+			System.arraycopy(children, 0, extended, 0, insertAt);
+			extended[insertAt] = newId;
+			System.arraycopy(children, insertAt, extended, insertAt+1,
+				children.length-insertAt);
+			childIds[parentId] = extended;
+		}
+		return newId;
+	}
+
+	// Same contract as Arrays.binarySearch(), on the segment ids of the
+	// children
+	private int findChild(int[] children, int segId) {
+		int low = 0;
+		int high = children.length - 1;
+		while (low <= high) {
+			int mid = (low + high) >>> 1;
+			int midSeg = segmentOfNode[children[mid]];
+			if (midSeg < segId) {
+				low = mid + 1;
+			} else if (midSeg > segId) {
+				high = mid - 1;
+			} else {
+				return mid;
+			}
+		}
+		return -(low + 1);
+	}
+
+	private int newNode(int parentId, int segId) {
+		if (totalNodes == parentIds.length) {
+			int capacity = 2 * parentIds.length;
+			parentIds = Arrays.copyOf(parentIds, capacity);
+			segmentOfNode = Arrays.copyOf(segmentOfNode, capacity);
+			frequencies = Arrays.copyOf(frequencies, capacity);
+			childIds = Arrays.copyOf(childIds, capacity);
+			topTerminalIds = Arrays.copyOf(topTerminalIds, capacity);
+			extras = Arrays.copyOf(extras, capacity);
+		}
+		int nodeId = totalNodes++;
+		parentIds[nodeId] = parentId;
+		segmentOfNode[nodeId] = segId;
+		return nodeId;
+	}
+
+	private String[] keysOf(int nodeId) {
+		int depth = 0;
+		for (int id = nodeId; id != ROOT_ID; id = parentIds[id]) {
+			depth++;
+		}
+		String[] keys = new String[depth];
+		for (int id = nodeId; id != ROOT_ID; id = parentIds[id]) {
+			keys[--depth] = segments.get(segmentOfNode[id]);
+		}
+		return keys;
+	}
+
+	private TrieNode toTrieNode(int nodeId, String[] keys) {
+		TrieNode node = new TrieNode(keys);
+		node.frequency = frequencies[nodeId];
+		if (childIds[nodeId] != null) {
+			for (int childId: childIds[nodeId]) {
+				node.children.put(segments.get(segmentOfNode[childId]), null);
+			}
+		}
+
+		int[] topIds = topTerminalIds[nodeId];
+		if (topIds != null) {
+			node.topTerminalKeys = new String[topIds.length][];
+			node.topTerminalFreqs = new long[topIds.length];
+			for (int ii=0; ii < topIds.length; ii++) {
+				node.topTerminalKeys[ii] = keysOf(topIds[ii]);
+				node.topTerminalFreqs[ii] = frequencies[topIds[ii]];
+			}
+		}
+
+		NodeExtras nodeExtras = extras[nodeId];
+		if (nodeExtras != null) {
+			node.surfaceForm = nodeExtras.surfaceForm;
+			if (nodeExtras.forms != null) {
+				for (int ii=0; ii < nodeExtras.forms.length; ii++) {
+					node.surfaceForms.put(
+						nodeExtras.forms[ii], nodeExtras.formFreqs[ii]);
+				}
+			}
+			if (nodeExtras.stats != null) {
+				node.stats.putAll(nodeExtras.stats);
+			}
+			if (nodeExtras.data != null) {
+				node.data.putAll(nodeExtras.data);
+			}
+		}
+		return node;
+	}
+
+	private NodeExtras toExtras(TrieNode node) {
+		if (node.surfaceForm == null && node.surfaceForms.isEmpty() &&
+				node.stats.isEmpty() && node.data.isEmpty()) {
+			return null;
+		}
+		NodeExtras nodeExtras = new NodeExtras();
+		nodeExtras.surfaceForm = node.surfaceForm;
+		if (!node.surfaceForms.isEmpty()) {
+			nodeExtras.forms = new String[node.surfaceForms.size()];
+			nodeExtras.formFreqs = new long[node.surfaceForms.size()];
+			int ii = 0;
+			for (Map.Entry<String,Long> form: node.surfaceForms.entrySet()) {
+				nodeExtras.forms[ii] = form.getKey();
+				nodeExtras.formFreqs[ii] = form.getValue();
+				ii++;
+			}
+		}
+		if (!node.stats.isEmpty()) {
+			nodeExtras.stats = new HashMap<String,Object>(node.stats);
+		}
+		if (!node.data.isEmpty()) {
+			nodeExtras.data = new HashMap<String,Object>(node.data);
+		}
+		return nodeExtras;
+	}
+}
@@ -6,17 +6,23 @@ import java.io.UnsupportedEncodingException;
 import java.net.URLDecoder;
 import java.net.URLEncoder;
 import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.List;
 
 import org.apache.commons.io.FileUtils;
 import org.apache.log4j.Logger;
 
 import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
 
 import ca.inuktitutcomputing.utilities.StopWatch;
 
 public class Trie_InFileSystem extends Trie {
 	
+	public static final int DEFAULT_MAX_CACHED_NODES = 10000;
+	
 	File rootDir = null;
 	public File getRootDir() {
 		return rootDir;
@@ -24,8 +30,26 @@ public class Trie_InFileSystem extends Trie {
  	
 	private RW_TrieNode nodeMapper = null;
 	
+	// Nodes read recently, with their children, so that the nodes that are
+	// looked up often (ex: those of frequent morphemes) are not read and 
+	// parsed from their file, nor their children directories listed, every 
+	// time. 
+	//
+	// The nodes in the cache are the ones returned by getNode(). A node 
+	// is removed from it when it is saved, or when a child directory is 
+	// created for it.
+	//
+	private Cache<String,TrieNode> nodesCache = null;
+	
 	public Trie_InFileSystem(File _rootDir) {
+		this(_rootDir, DEFAULT_MAX_CACHED_NODES);
+	}
+	
+	public Trie_InFileSystem(File _rootDir, int maxCachedNodes) {
 		this.rootDir = _rootDir;
+		this.nodesCache = Caffeine.newBuilder()
+			.maximumSize(maxCachedNodes)
+			.build();
 	}
 	
 	@Override
@@ -45,7 +69,16 @@ public class Trie_InFileSystem extends Trie {
 			keys = new String[] {TrieNode.NULL_SEG};
 		}
 		
-		TrieNode node = null;
+		TrieNode node = pendingNode(keys, options);
+		if (node != null) {
+			return node;
+		}
+		String cacheKey = cacheKey(keys, 
+			Arrays.asList(options).contains(NodeOption.TERMINAL));
+		node = nodesCache.getIfPresent(cacheKey);
+		if (node != null) {
+			return node;
+		}
 		if (tLogger.isTraceEnabled()) {
 			tLogger.trace("looking for keys="+String.join(",", keys));
 		}
@@ -60,6 +93,7 @@ public class Trie_InFileSystem extends Trie {
 				child = unescapeKey(child);
 				node.children.put(child, null);
 			}
+			nodesCache.put(cacheKey, node);
 		}
 		
 		if (tLogger.isTraceEnabled()) {
@@ -81,8 +115,60 @@ public class Trie_InFileSystem extends Trie {
 	}
 
 	public void saveNode(TrieNode node) throws TrieException {
-		File nodeFile = file4node(node);
+		// No need to create the node's file with an empty node (as 
+		// file4node() does) since it's about to be written
+		File nodeFile = nodeFilePath(node.keys);
+		if (nodeFile.getParentFile().mkdirs()) {
+			uncacheAncestors(node.keys);
+		}
 		writeNodeFile(node, nodeFile);
+		nodesCache.invalidate(cacheKey(node.keys, false));
+	}
+	
+	/**
+	 * Number of nodes currently held in memory by the cache of nodes.
+	 */
+	public long totalCachedNodes() {
+		nodesCache.cleanUp();
+		return nodesCache.estimatedSize();
+	}
+	
+	private String cacheKey(String[] keys, boolean terminal) {
+		if (terminal) {
+			keys = ensureTerminal(keys);
+		}
+		StringBuilder key = new StringBuilder();
+		for (int ii=0; ii < keys.length; ii++) {
+			String aKey = keys[ii];
+			if (ii == keys.length-1 && aKey.equals("\\")) {
+				// Same node (and file) as for the TERMINAL_SEG key
+				aKey = TrieNode.TERMINAL_SEG;
+			}
+			key.append('\u0001').append(aKey);
+		}
+		return key.toString();
+	}
+	
+	/**
+	 * The cached nodes may have been modified by the aborted batch, so they
+	 * will be read again from their files.
+	 */
+	@Override
+	protected void pendingNodesDiscarded(Collection<TrieNode> nodes) {
+		for (TrieNode node: nodes) {
+			nodesCache.invalidate(cacheKey(node.keys, false));
+		}
+	}
+	
+	/**
+	 * Removes from the cache the ancestors of a node whose directory was just
+	 * created, since their list of children has changed.
+	 */
+	private void uncacheAncestors(String[] keys) {
+		for (int len = 0; len < keys.length; len++) {
+			nodesCache.invalidate(
+				cacheKey(Arrays.copyOfRange(keys, 0, len), false));
+		}
 	}
 
 	protected void writeNodeFile(TrieNode node, File nodeFile) throws TrieException {
@@ -102,11 +188,6 @@ public class Trie_InFileSystem extends Trie {
 		}
 	}
 
-	private File file4node(TrieNode node) throws TrieException {
-		String[] keys = node.keys;
-		return file4node(keys);
-	}
-	
 	private File file4node(String[] keys) throws TrieException {
 		return file4node(keys, new NodeOption[0]);
 	}
@@ -125,18 +206,15 @@ public class Trie_InFileSystem extends Trie {
 		if (terminal) {
 			keys = ensureTerminal(keys);
 		}
-		String[] escapedKeys = escapeKeys(keys);
-		
-		File nodeFile = 
-			new File(rootDir, 
-					 String.join(File.separator, escapedKeys)+
-					 File.separator+"node.json");
+		File nodeFile = nodeFilePath(keys);
 		
 		if (!nodeFile.exists()) {
 			if (!createIfNotExist) {
 				nodeFile = null;
 			} else {
-				nodeFile.getParentFile().mkdirs();
+				if (nodeFile.getParentFile().mkdirs()) {
+					uncacheAncestors(keys);
+				}
 				TrieNode node = new TrieNode(keys);
 				writeNodeFile(node, nodeFile);
 			}
@@ -145,13 +223,26 @@ public class Trie_InFileSystem extends Trie {
 		return nodeFile;
 	}
 	
+	private File nodeFilePath(String[] keys) throws TrieException {
+		String[] escapedKeys = escapeKeys(keys);
+		File nodeFile = 
+			new File(rootDir, 
+					 String.join(File.separator, escapedKeys)+
+					 File.separator+"node.json");
+		return nodeFile;
+	}
+	
 	private File file4node(List<String> ancestorKeys) throws TrieException {
 		return file4node(ancestorKeys.toArray(new String[ancestorKeys.size()]));
 	}
 	
 	@Override
 	public long getFrequency(String[] segments) throws TrieException {
-		long freq = getNode(segments).frequency;
+		long freq = 0;
+		TrieNode node = getNode(segments, NodeOption.NO_CREATE);
+		if (node != null) {
+			freq = node.frequency;
+		}
 		return freq;
 	}
 
@@ -213,12 +304,22 @@ public class Trie_InFileSystem extends Trie {
 
 	@Override
 	public boolean contains(String[] segments) throws TrieException {
+		if (pendingNode(segments) != null) {
+			return true;
+		}
 		File nodeFile = file4node(segments, NodeOption.NO_CREATE);
 		boolean answer = (nodeFile != null && nodeFile.exists());
 		return answer;
 	}
 
+	@Override
+	protected File terminalsIndexFile() {
+		return new File(rootDir, "terminals.jsonl");
+	}
+
 	public void reset() throws TrieException {
+		nodesCache.invalidateAll();
+		resetTerminalsIndex();
 		try {
 			FileUtils.deleteDirectory(getRootDir());
 		} catch (IOException e) {
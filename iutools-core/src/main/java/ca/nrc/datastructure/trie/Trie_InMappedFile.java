@@ -0,0 +1,933 @@
+package ca.nrc.datastructure.trie;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.CRC32;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.log4j.Logger;
+
+/**
+ * Trie whose nodes are stored as records appended to a few memory-mapped
+ * segment files (trie-000.dat, trie-001.dat, ...) in a single directory,
+ * instead of one directory and node.json file per node like
+ * Trie_InFileSystem.
+ *
+ * Each record holds a node and the addresses (segment and offset) of the
+ * records of its children, so a node is found by following the addresses
+ * from the record of the root, and nothing has to be read or indexed in
+ * memory when the trie is opened. A record is written as:
+ *
+ *    [int length][int numChildren][int entryOffset]*
+ *       ([int segLength][segment][long address])*[node JSON]
+ *
+ * where the child entries are sorted by the UTF-8 bytes of their segment,
+ * so that a child is found by a binary search on the offsets of the
+ * entries, and the JSON is empty for a node that only exists as the
+ * ancestor of other ones.
+ *
+ * Records are never modified. The nodes saved since the last checkpoint
+ * are kept in memory, and a checkpoint appends new records for them and
+ * for all of their ancestors, children first, ending with the root. The
+ * segments are then forced to disk, and only after that is the address
+ * of the new root written to a small header file (trie.hdr), in the one
+ * of its two slots that does not hold the previous checkpoint, with a CRC.
+ * So the header never points to records that are not on disk. If the
+ * process or the system dies in the middle of a checkpoint, the trie is
+ * reopened as it was at the previous one (or, if the header slot was
+ * written but had not reached the disk yet, at the one before), and the
+ * records appended since then are overwritten. Only the checkpoints
+ * before the last call to flush(), which also forces the header, are
+ * guaranteed to survive a crash of the system.
+ *
+ * A checkpoint is made after each add(), or, during a batch of updates
+ * (see beginBatch()), each time the pending nodes are saved; also after a
+ * node is saved or created outside of add(). Since every checkpoint
+ * rewrites the records of the root and of the other ancestors of the
+ * changed nodes, and forces them to disk, bulk loads must go through
+ * beginBatch()/commitBatch(), so that a whole batch of words costs a
+ * single checkpoint.
+ *
+ * The records replaced by a checkpoint are superseded. When they make up
+ * more than a given ratio of the records (see setAutoCompaction()), the
+ * trie is compacted: the current records are copied to new segments,
+ * following the addresses from the root.
+ *
+ * A segment cannot exceed 2GB, the largest region that can be mapped at
+ * once; a new segment is started when the current one is full.
+ */
+public class Trie_InMappedFile extends Trie {
+
+	public static final long DEFAULT_SEGMENT_CAPACITY = 1L << 30;
+
+	public static final double DEFAULT_COMPACTION_RATIO = 0.5;
+	public static final long DEFAULT_COMPACTION_MIN_BYTES = 1L << 24;
+
+	private static final int INITIAL_MAPPED_SIZE = 1 << 20;
+
+	private static final String HEADER_FILE = "trie.hdr";
+	private static final int HEADER_SLOT_SIZE = 64;
+	private static final int HEADER_DATA_SIZE = 6 * 8;
+
+	private static final long NO_ADDRESS = -1;
+
+	// Separates the segments of a node's keys in the keys of the nodes kept
+	// in memory. Every segment is preceded by it, so that the root is "" and
+	// the parent of a node is always the prefix before the last separator.
+	private static final char KEY_SEP = '\u0001';
+
+	private File rootDir = null;
+	public File getRootDir() {
+		return rootDir;
+	}
+
+	private int segmentCapacity;
+
+	private double compactionRatio = DEFAULT_COMPACTION_RATIO;
+	private long compactionMinBytes = DEFAULT_COMPACTION_MIN_BYTES;
+
+	private List<Segment> segments = null;
+	private FileChannel headerChannel = null;
+
+	// State of the last checkpoint, as written in the header
+	private long checkpointNum = 0;
+	private long rootAddress = NO_ADDRESS;
+	private long totalBytes = 0;
+	private long supersededBytes = 0;
+	private long numNodes = 0;
+
+	// Segments that records were appended to since the last checkpoint,
+	// and that must be forced to disk before the header points to them
+	private Set<Segment> unforcedSegments = new HashSet<Segment>();
+
+	// Nodes saved since the last checkpoint (as JSON), and the children
+	// of the nodes that may have changed since then
+	private Map<String,byte[]> changedNodes = new HashMap<String,byte[]>();
+	private Map<String,Set<String>> changedChildren =
+		new HashMap<String,Set<String>>();
+
+	// Set while add() is in progress, since it checkpoints its changes once
+	// they are all made
+	private boolean adding = false;
+
+	private RW_TrieNode nodeMapper = null;
+
+	private static class Segment {
+		File file;
+		RandomAccessFile raf;
+		FileChannel channel;
+		MappedByteBuffer buffer;
+		int end = 0;
+		// The file was created or grown since it was last forced
+		boolean resized = false;
+	}
+
+	/* A record, as read from a segment */
+	private static class Record {
+		int size;
+		LinkedHashMap<String,Long> children = new LinkedHashMap<String,Long>();
+		byte[] payload;
+	}
+
+	public Trie_InMappedFile(File _rootDir) {
+		this(_rootDir, DEFAULT_SEGMENT_CAPACITY);
+	}
+
+	public Trie_InMappedFile(File _rootDir, long _segmentCapacity) {
+		this.rootDir = _rootDir;
+		this.segmentCapacity = (int) Math.min(_segmentCapacity, Integer.MAX_VALUE);
+	}
+
+	/**
+	 * Compact the trie automatically once the superseded records make up
+	 * more than supersededRatio of the records, and the records take more
+	 * than minBytes. A ratio of 1 or more turns automatic compaction off.
+	 */
+	public synchronized void setAutoCompaction(double supersededRatio, long minBytes) {
+		this.compactionRatio = supersededRatio;
+		this.compactionMinBytes = minBytes;
+	}
+
+	@Override
+	public TrieNode getRoot() throws TrieException {
+		return getNode(new String[0]);
+	}
+
+	@Override
+	public synchronized TrieNode add(String[] segments, String expression,
+			long freqIncr) throws TrieException {
+		TrieNode node = null;
+		adding = true;
+		try {
+			node = super.add(segments, expression, freqIncr);
+		} finally {
+			adding = false;
+		}
+		checkpointIfDone();
+		return node;
+	}
+
+	@Override
+	public synchronized TrieNode getNode(String[] keys, NodeOption... options)
+			throws TrieException {
+		ensureOpen();
+		TrieNode node = pendingNode(keys, options);
+		if (node != null) {
+			return node;
+		}
+		if (keys == null) {
+			keys = new String[] {TrieNode.NULL_SEG};
+		}
+		boolean createIfNotExist = true;
+		for (NodeOption anOption: options) {
+			if (anOption == NodeOption.NO_CREATE) {
+				createIfNotExist = false;
+			} else if (anOption == NodeOption.TERMINAL) {
+				keys = ensureTerminal(keys);
+			}
+		}
+
+		String nodeKey = nodeKey(keys);
+		Record record = readRecord(checkpointedAddress(keys));
+		byte[] payload = changedNodes.get(nodeKey);
+		if (payload == null && record != null && record.payload.length > 0) {
+			payload = record.payload;
+		}
+		if (payload != null) {
+			node = readNode(nodeKey, payload);
+		} else if (createIfNotExist) {
+			node = new TrieNode(keys);
+			nodeChanged(nodeKey, node);
+			checkpointIfDone();
+		}
+
+		if (node != null) {
+			if (record != null) {
+				for (String child: record.children.keySet()) {
+					node.children.put(child, null);
+				}
+			}
+			Set<String> children = changedChildren.get(nodeKey);
+			if (children != null) {
+				for (String child: children) {
+					node.children.put(child, null);
+				}
+			}
+		}
+
+		return node;
+	}
+
+	@Override
+	public synchronized void saveNode(TrieNode node) throws TrieException {
+		ensureOpen();
+		nodeChanged(nodeKey(node.keys), node);
+		checkpointIfDone();
+	}
+
+	@Override
+	public synchronized boolean contains(String[] segments) throws TrieException {
+		ensureOpen();
+		if (pendingNode(segments) != null ||
+				changedNodes.containsKey(nodeKey(segments))) {
+			return true;
+		}
+		Record record = readRecord(checkpointedAddress(segments));
+		return record != null && record.payload.length > 0;
+	}
+
+	@Override
+	protected synchronized void flushPendingNodes() throws TrieException {
+		super.flushPendingNodes();
+		checkpoint();
+	}
+
+	/**
+	 * Number of nodes in the trie (not the number of records in the
+	 * segments, which also includes the superseded ones).
+	 */
+	public synchronized long totalNodes() throws TrieException {
+		ensureOpen();
+		checkpoint();
+		return numNodes;
+	}
+
+	/**
+	 * Forces the records appended so far to disk, then the header that
+	 * points to them.
+	 */
+	public synchronized void flush() throws TrieException {
+		if (segments != null) {
+			checkpoint();
+		}
+		// The checkpoint may have compacted the trie, which closes it
+		if (segments != null) {
+			for (Segment seg: segments) {
+				seg.buffer.force();
+			}
+			try {
+				headerChannel.force(true);
+			} catch (IOException e) {
+				throw new TrieException("Could not flush header of trie "+rootDir, e);
+			}
+		}
+	}
+
+	/**
+	 * Flushes the trie and releases its files. The trie is reopened the next
+	 * time it is used.
+	 */
+	public synchronized void close() throws TrieException {
+		flush();
+		release();
+	}
+
+	@Override
+	protected File terminalsIndexFile() {
+		return new File(rootDir, "terminals.jsonl");
+	}
+
+	public synchronized void reset() throws TrieException {
+		release();
+		resetTerminalsIndex();
+		try {
+			FileUtils.deleteDirectory(getRootDir());
+		} catch (IOException e) {
+			throw new TrieException(e);
+		}
+	}
+
+	/**
+	 * Copies the current record of every node to new segments, leaving out
+	 * the records that were superseded by later ones.
+	 *
+	 * The new segments are written in a sibling directory and swapped with
+	 * the old ones only once they have been forced to disk, so that if the
+	 * process dies in the middle of it, the trie is reopened either as it was
+	 * before or as it is after the compaction.
+	 */
+	public synchronized void compact() throws TrieException {
+		ensureOpen();
+		checkpoint();
+		File compactingDir = siblingDir("compacting");
+		File oldDir = siblingDir("old");
+		try {
+			FileUtils.deleteDirectory(compactingDir);
+			Trie_InMappedFile compacted =
+				new Trie_InMappedFile(compactingDir, segmentCapacity);
+			compacted.ensureOpen();
+			long newRoot = NO_ADDRESS;
+			if (rootAddress != NO_ADDRESS) {
+				newRoot = copyRecord(rootAddress, compacted);
+			}
+			compacted.numNodes = numNodes;
+			compacted.writeHeader(newRoot);
+			compacted.close();
+			if (terminalsIndexFile().exists()) {
+				FileUtils.copyFileToDirectory(terminalsIndexFile(), compactingDir);
+			}
+			syncDir(compactingDir);
+
+			// The files of the trie must be unmapped and closed before they
+			// can be moved (on some platforms) or deleted
+			close();
+			move(rootDir, oldDir);
+			move(compactingDir, rootDir);
+			syncDir(rootDir.getAbsoluteFile().getParentFile());
+			FileUtils.deleteDirectory(oldDir);
+		} catch (IOException e) {
+			throw new TrieException("Could not compact trie "+rootDir, e);
+		}
+	}
+
+	/*
+	 * Appends to the compacted trie a copy of the record at the given
+	 * address and of the records of its descendants, and returns the
+	 * address of the copy.
+	 */
+	private long copyRecord(long address, Trie_InMappedFile compacted)
+			throws TrieException {
+		Record record = readRecord(address);
+		LinkedHashMap<String,Long> children = new LinkedHashMap<String,Long>();
+		for (Map.Entry<String,Long> child: record.children.entrySet()) {
+			children.put(child.getKey(), copyRecord(child.getValue(), compacted));
+		}
+		return compacted.appendRecord(children, record.payload);
+	}
+
+	private void ensureOpen() throws TrieException {
+		if (segments != null) {
+			return;
+		}
+		Logger tLogger = Logger.getLogger("ca.nrc.datastructure.trie.Trie_InMappedFile.ensureOpen");
+		try {
+			recoverFromInterruptedCompaction();
+			rootDir.mkdirs();
+			headerChannel = FileChannel.open(new File(rootDir, HEADER_FILE).toPath(),
+				StandardOpenOption.CREATE, StandardOpenOption.READ,
+				StandardOpenOption.WRITE);
+			long endAddress = readHeader();
+			int lastSegNum = (int) (endAddress >>> 32);
+			segments = new ArrayList<Segment>();
+			for (int segNum = 0; segmentFile(segNum).exists(); segNum++) {
+				if (segNum > lastSegNum) {
+					// Started after the last checkpoint
+					segmentFile(segNum).delete();
+					continue;
+				}
+				Segment seg = openSegment(segmentFile(segNum));
+				if (segNum == lastSegNum) {
+					seg.end = (int) endAddress;
+				}
+				segments.add(seg);
+			}
+		} catch (IOException e) {
+			release();
+			throw new TrieException("Could not open trie "+rootDir, e);
+		}
+		if (tLogger.isTraceEnabled()) {
+			tLogger.trace("Opened "+rootDir+": "+segments.size()+
+				" segments, "+numNodes+" nodes");
+		}
+	}
+
+	/*
+	 * Unmaps and closes the files of the trie, and forgets the nodes saved
+	 * since the last checkpoint.
+	 */
+	private void release() throws TrieException {
+		IOException failure = null;
+		if (segments != null) {
+			for (Segment seg: segments) {
+				unmap(seg.buffer);
+				try {
+					seg.raf.close();
+				} catch (IOException e) {
+					failure = e;
+				}
+			}
+		}
+		if (headerChannel != null) {
+			try {
+				headerChannel.close();
+			} catch (IOException e) {
+				failure = e;
+			}
+		}
+		segments = null;
+		headerChannel = null;
+		unforcedSegments.clear();
+		changedNodes.clear();
+		changedChildren.clear();
+		// The journal of the terminals is in the directory of the trie too
+		closeTerminalsIndex();
+		if (failure != null) {
+			throw new TrieException("Could not close trie "+rootDir, failure);
+		}
+	}
+
+	private void recoverFromInterruptedCompaction() throws IOException {
+		File compactingDir = siblingDir("compacting");
+		File oldDir = siblingDir("old");
+		if (!rootDir.exists() && oldDir.exists() && compactingDir.exists()) {
+			// Died between the two renames; the compacted segments are complete
+			move(compactingDir, rootDir);
+			syncDir(rootDir.getAbsoluteFile().getParentFile());
+		}
+		FileUtils.deleteDirectory(compactingDir);
+		FileUtils.deleteDirectory(oldDir);
+	}
+
+	/*
+	 * Reads the state of the last checkpoint from the valid slot of the
+	 * header with the highest checkpoint number, and returns the address of
+	 * the end of its records.
+	 */
+	private long readHeader() throws IOException {
+		long endAddress = 0;
+		checkpointNum = 0;
+		rootAddress = NO_ADDRESS;
+		totalBytes = 0;
+		supersededBytes = 0;
+		numNodes = 0;
+		for (int slot = 0; slot < 2; slot++) {
+			ByteBuffer buffer = ByteBuffer.allocate(HEADER_SLOT_SIZE);
+			headerChannel.read(buffer, slot * HEADER_SLOT_SIZE);
+			long num = buffer.getLong(0);
+			if (num <= checkpointNum ||
+					buffer.getInt(HEADER_DATA_SIZE) != crc(buffer, 0, HEADER_DATA_SIZE)) {
+				continue;
+			}
+			checkpointNum = num;
+			rootAddress = buffer.getLong(8);
+			endAddress = buffer.getLong(16);
+			totalBytes = buffer.getLong(24);
+			supersededBytes = buffer.getLong(32);
+			numNodes = buffer.getLong(40);
+		}
+		return endAddress;
+	}
+
+	/*
+	 * Forces the records appended since the last checkpoint to disk, then
+	 * points the header to the given root.
+	 */
+	private void writeHeader(long newRootAddress) throws TrieException {
+		forceAppendedRecords();
+		long num = checkpointNum + 1;
+		int lastSegNum = segments.size() - 1;
+		long endAddress =
+			(lastSegNum < 0 ? 0 : address(lastSegNum, segments.get(lastSegNum).end));
+		ByteBuffer buffer = ByteBuffer.allocate(HEADER_SLOT_SIZE);
+		buffer.putLong(0, num);
+		buffer.putLong(8, newRootAddress);
+		buffer.putLong(16, endAddress);
+		buffer.putLong(24, totalBytes);
+		buffer.putLong(32, supersededBytes);
+		buffer.putLong(40, numNodes);
+		buffer.putInt(HEADER_DATA_SIZE, crc(buffer, 0, HEADER_DATA_SIZE));
+		try {
+			headerChannel.write(buffer, (num % 2) * HEADER_SLOT_SIZE);
+		} catch (IOException e) {
+			throw new TrieException("Could not write header of trie "+rootDir, e);
+		}
+		checkpointNum = num;
+		rootAddress = newRootAddress;
+	}
+
+	private void forceAppendedRecords() throws TrieException {
+		boolean newFiles = false;
+		try {
+			for (Segment seg: unforcedSegments) {
+				seg.buffer.force();
+				if (seg.resized) {
+					// The length of the file is metadata
+					seg.channel.force(true);
+					seg.resized = false;
+					newFiles = true;
+				}
+			}
+		} catch (IOException e) {
+			throw new TrieException("Could not flush segments of trie "+rootDir, e);
+		}
+		if (newFiles) {
+			syncDir(rootDir);
+		}
+		unforcedSegments.clear();
+	}
+
+	private void nodeChanged(String nodeKey, TrieNode node) throws TrieException {
+		try {
+			changedNodes.put(nodeKey, getNodeMapper().writeValueAsBytes(node));
+		} catch (RW_TrieNodeException e) {
+			throw new TrieException("Could not write node "+nodeKey, e);
+		}
+		// Register the node as a child of its parent, and so on up to the
+		// first ancestor that already knew about it
+		String key = nodeKey;
+		while (!key.isEmpty()) {
+			int sepPos = key.lastIndexOf(KEY_SEP);
+			String parentKey = key.substring(0, sepPos);
+			Set<String> children = changedChildren.get(parentKey);
+			if (children == null) {
+				children = new HashSet<String>();
+				changedChildren.put(parentKey, children);
+			}
+			if (!children.add(key.substring(sepPos+1))) {
+				break;
+			}
+			key = parentKey;
+		}
+	}
+
+	private void checkpointIfDone() throws TrieException {
+		if (!adding && !inBatch()) {
+			checkpoint();
+		}
+	}
+
+	/*
+	 * Appends the records of the nodes saved since the last checkpoint and
+	 * of their ancestors, deepest first so that the address of every child
+	 * is known when its parent is written, and points the header to the new
+	 * root.
+	 */
+	private void checkpoint() throws TrieException {
+		if (changedNodes.isEmpty() && changedChildren.isEmpty()) {
+			return;
+		}
+		List<String> nodeKeys = new ArrayList<String>(changedChildren.keySet());
+		for (String nodeKey: changedNodes.keySet()) {
+			if (!changedChildren.containsKey(nodeKey)) {
+				nodeKeys.add(nodeKey);
+			}
+		}
+		sortByDepth(nodeKeys);
+
+		// Addresses of the nodes as of the last checkpoint, parents first
+		Map<String,Long> oldAddresses = new HashMap<String,Long>();
+		for (String nodeKey: nodeKeys) {
+			long address = rootAddress;
+			if (!nodeKey.isEmpty()) {
+				int sepPos = nodeKey.lastIndexOf(KEY_SEP);
+				Long parentAddress = oldAddresses.get(nodeKey.substring(0, sepPos));
+				address = childAddress(parentAddress, nodeKey.substring(sepPos+1));
+			}
+			oldAddresses.put(nodeKey, address);
+		}
+
+		Map<String,Long> newAddresses = new HashMap<String,Long>();
+		for (int ii = nodeKeys.size() - 1; ii >= 0; ii--) {
+			String nodeKey = nodeKeys.get(ii);
+			Record old = readRecord(oldAddresses.get(nodeKey));
+			LinkedHashMap<String,Long> children = new LinkedHashMap<String,Long>();
+			if (old != null) {
+				children.putAll(old.children);
+			}
+			Set<String> changed = changedChildren.get(nodeKey);
+			if (changed != null) {
+				for (String child: changed) {
+					children.put(child, newAddresses.get(nodeKey+KEY_SEP+child));
+				}
+			}
+			byte[] payload = changedNodes.get(nodeKey);
+			if (payload == null) {
+				payload = (old == null ? new byte[0] : old.payload);
+			}
+			if (old != null) {
+				supersededBytes += old.size;
+			}
+			if (payload.length > 0 && (old == null || old.payload.length == 0)) {
+				numNodes++;
+			}
+			newAddresses.put(nodeKey, appendRecord(children, payload));
+		}
+		writeHeader(newAddresses.get(""));
+		changedNodes.clear();
+		changedChildren.clear();
+
+		compactIfNeeded();
+	}
+
+	private static void sortByDepth(List<String> nodeKeys) {
+		nodeKeys.sort(new Comparator<String>() {
+			@Override
+			public int compare(String key1, String key2) {
+				return Integer.compare(depth(key1), depth(key2));
+			}
+		});
+	}
+
+	private static int depth(String nodeKey) {
+		int depth = 0;
+		for (int ii = 0; ii < nodeKey.length(); ii++) {
+			if (nodeKey.charAt(ii) == KEY_SEP) {
+				depth++;
+			}
+		}
+		return depth;
+	}
+
+	private void compactIfNeeded() throws TrieException {
+		if (compactionRatio < 1 && totalBytes > compactionMinBytes &&
+				supersededBytes > compactionRatio * totalBytes) {
+			compact();
+		}
+	}
+
+	/*
+	 * Address of the record of a node as of the last checkpoint, found by
+	 * following the addresses of the children from the root.
+	 */
+	private long checkpointedAddress(String[] keys) throws TrieException {
+		if (keys == null) {
+			keys = new String[] {TrieNode.NULL_SEG};
+		}
+		long address = rootAddress;
+		for (int ii = 0; ii < keys.length && address != NO_ADDRESS; ii++) {
+			address = childAddress(address, keys[ii]);
+		}
+		return address;
+	}
+
+	private long childAddress(Long address, String child) {
+		if (address == null || address == NO_ADDRESS) {
+			return NO_ADDRESS;
+		}
+		byte[] childBytes = child.getBytes(StandardCharsets.UTF_8);
+		Segment seg = segments.get((int) (address >>> 32));
+		ByteBuffer buffer = seg.buffer.duplicate();
+		int recordPos = (int) (long) address;
+		int numChildren = buffer.getInt(recordPos + 4);
+		int low = 0;
+		int high = numChildren - 1;
+		while (low <= high) {
+			int mid = (low + high) >>> 1;
+			int entryPos = recordPos + buffer.getInt(recordPos + 8 + 4 * mid);
+			int segLength = buffer.getInt(entryPos);
+			int cmp = compareBytes(buffer, entryPos + 4, segLength, childBytes);
+			if (cmp == 0) {
+				return buffer.getLong(entryPos + 4 + segLength);
+			} else if (cmp < 0) {
+				low = mid + 1;
+			} else {
+				high = mid - 1;
+			}
+		}
+		return NO_ADDRESS;
+	}
+
+	/*
+	 * Compares the length bytes at the given position of a buffer with the
+	 * given bytes, as unsigned bytes.
+	 */
+	private static int compareBytes(ByteBuffer buffer, int pos, int length,
+			byte[] bytes) {
+		int common = Math.min(length, bytes.length);
+		for (int ii = 0; ii < common; ii++) {
+			int cmp = Integer.compare(buffer.get(pos+ii) & 0xff, bytes[ii] & 0xff);
+			if (cmp != 0) {
+				return cmp;
+			}
+		}
+		return Integer.compare(length, bytes.length);
+	}
+
+	private static int compareBytes(byte[] bytes1, byte[] bytes2) {
+		return compareBytes(ByteBuffer.wrap(bytes1), 0, bytes1.length, bytes2);
+	}
+
+	private Record readRecord(Long address) {
+		if (address == null || address == NO_ADDRESS) {
+			return null;
+		}
+		Record record = new Record();
+		Segment seg = segments.get((int) (address >>> 32));
+		ByteBuffer buffer = seg.buffer.duplicate();
+		int pos = (int) (long) address;
+		int length = buffer.getInt(pos);
+		int end = pos + 4 + length;
+		record.size = 4 + length;
+		buffer.position(pos + 4);
+		int numChildren = buffer.getInt();
+		// Skip the offsets of the entries; they are read in order
+		buffer.position(buffer.position() + 4 * numChildren);
+		for (int ic = 0; ic < numChildren; ic++) {
+			byte[] childBytes = new byte[buffer.getInt()];
+			buffer.get(childBytes);
+			record.children.put(new String(childBytes, StandardCharsets.UTF_8),
+				buffer.getLong());
+		}
+		record.payload = new byte[end - buffer.position()];
+		buffer.get(record.payload);
+		return record;
+	}
+
+	private long appendRecord(Map<String,Long> children, byte[] payload)
+			throws TrieException {
+		int length = 4 + 4 * children.size() + payload.length;
+		List<Map.Entry<byte[],Long>> entries =
+			new ArrayList<Map.Entry<byte[],Long>>();
+		for (Map.Entry<String,Long> child: children.entrySet()) {
+			byte[] childBytes = child.getKey().getBytes(StandardCharsets.UTF_8);
+			entries.add(new AbstractMap.SimpleEntry<byte[],Long>(
+				childBytes, child.getValue()));
+			length += 4 + childBytes.length + 8;
+		}
+		entries.sort(new Comparator<Map.Entry<byte[],Long>>() {
+			@Override
+			public int compare(Map.Entry<byte[],Long> entry1,
+					Map.Entry<byte[],Long> entry2) {
+				return compareBytes(entry1.getKey(), entry2.getKey());
+			}
+		});
+		int recordSize = 4 + length;
+		if (recordSize > segmentCapacity) {
+			throw new TrieException("Node is too large ("+recordSize+
+				" bytes) for segments of "+segmentCapacity+" bytes");
+		}
+
+		int segNum = segmentWithRoomFor(recordSize);
+		Segment seg = segments.get(segNum);
+		int pos = seg.end;
+		ByteBuffer buffer = seg.buffer.duplicate();
+		buffer.position(pos);
+		buffer.putInt(length);
+		buffer.putInt(entries.size());
+		// Offsets of the entries from the start of the record
+		int entryOffset = 8 + 4 * entries.size();
+		for (Map.Entry<byte[],Long> entry: entries) {
+			buffer.putInt(entryOffset);
+			entryOffset += 4 + entry.getKey().length + 8;
+		}
+		for (Map.Entry<byte[],Long> entry: entries) {
+			buffer.putInt(entry.getKey().length);
+			buffer.put(entry.getKey());
+			buffer.putLong(entry.getValue());
+		}
+		buffer.put(payload);
+		seg.end = pos + recordSize;
+		totalBytes += recordSize;
+		unforcedSegments.add(seg);
+
+		return address(segNum, pos);
+	}
+
+	private int segmentWithRoomFor(int recordSize) throws TrieException {
+		try {
+			int segNum = segments.size() - 1;
+			Segment seg = (segNum < 0 ? null : segments.get(segNum));
+			if (seg == null || (long) seg.end + recordSize > segmentCapacity) {
+				segNum++;
+				seg = openSegment(segmentFile(segNum));
+				seg.resized = true;
+				segments.add(seg);
+			}
+			if (seg.end + recordSize > seg.buffer.capacity()) {
+				long newSize = Math.max(2L * seg.buffer.capacity(),
+					(long) seg.end + recordSize);
+				newSize = Math.min(newSize, segmentCapacity);
+				MappedByteBuffer oldBuffer = seg.buffer;
+				seg.buffer = seg.channel.map(FileChannel.MapMode.READ_WRITE, 0, newSize);
+				seg.resized = true;
+				unmap(oldBuffer);
+			}
+			return segNum;
+		} catch (IOException e) {
+			throw new TrieException("Could not extend trie "+rootDir, e);
+		}
+	}
+
+	private Segment openSegment(File file) throws IOException {
+		Segment seg = new Segment();
+		seg.file = file;
+		seg.raf = new RandomAccessFile(file, "rw");
+		seg.channel = seg.raf.getChannel();
+		long size = seg.channel.size();
+		if (size == 0) {
+			size = Math.min(INITIAL_MAPPED_SIZE, segmentCapacity);
+		}
+		seg.buffer = seg.channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+		return seg;
+	}
+
+	/*
+	 * Releases the memory mapped by a buffer right away, instead of when it
+	 * is garbage collected, so that its file can be moved or deleted. The
+	 * buffer must not be used afterwards.
+	 */
+	private static void unmap(MappedByteBuffer buffer) {
+		Logger tLogger = Logger.getLogger("ca.nrc.datastructure.trie.Trie_InMappedFile.unmap");
+		try {
+			try {
+				// Java 9 and later
+				Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+				Method invokeCleaner =
+					unsafeClass.getMethod("invokeCleaner", ByteBuffer.class);
+				Field theUnsafe = unsafeClass.getDeclaredField("theUnsafe");
+				theUnsafe.setAccessible(true);
+				invokeCleaner.invoke(theUnsafe.get(null), buffer);
+			} catch (NoSuchMethodException e) {
+				// Java 8
+				Method cleanerMethod = buffer.getClass().getMethod("cleaner");
+				cleanerMethod.setAccessible(true);
+				Object cleaner = cleanerMethod.invoke(buffer);
+				if (cleaner != null) {
+					cleaner.getClass().getMethod("clean").invoke(cleaner);
+				}
+			}
+		} catch (ReflectiveOperationException | RuntimeException e) {
+			// The buffer will be unmapped when it is garbage collected
+			tLogger.warn("Could not unmap buffer: "+e);
+		}
+	}
+
+	private TrieNode readNode(String nodeKey, byte[] payload) throws TrieException {
+		try {
+			return getNodeMapper().readValue(payload);
+		} catch (RW_TrieNodeException e) {
+			throw new TrieException("Could not read node "+nodeKey+
+				" of trie "+rootDir, e);
+		}
+	}
+
+	private static int crc(ByteBuffer buffer, int from, int length) {
+		ByteBuffer region = buffer.duplicate();
+		region.position(from);
+		region.limit(from+length);
+		byte[] bytes = new byte[length];
+		region.get(bytes);
+		CRC32 crc = new CRC32();
+		crc.update(bytes);
+		return (int) crc.getValue();
+	}
+
+	private static long address(int segNum, int pos) {
+		return ((long) segNum << 32) | pos;
+	}
+
+	protected static String nodeKey(String[] keys) {
+		StringBuilder key = new StringBuilder();
+		for (String aKey: keys) {
+			key.append(KEY_SEP).append(aKey);
+		}
+		return key.toString();
+	}
+
+	private static void move(File from, File to) throws IOException {
+		try {
+			Files.move(from.toPath(), to.toPath(), StandardCopyOption.ATOMIC_MOVE);
+		} catch (AtomicMoveNotSupportedException e) {
+			Files.move(from.toPath(), to.toPath());
+		}
+	}
+
+	/*
+	 * Forces the entries of a directory (ex: the files that were just moved
+	 * into it) to disk. Not all platforms can open a directory for that
+	 * (ex: Windows), in which case there is nothing more that can be done.
+	 */
+	private static void syncDir(File dir) {
+		try (FileChannel channel = FileChannel.open(dir.toPath(), StandardOpenOption.READ)) {
+			channel.force(true);
+		} catch (IOException e) {
+			Logger.getLogger("ca.nrc.datastructure.trie.Trie_InMappedFile.syncDir")
+				.debug("Could not sync directory "+dir+": "+e);
+		}
+	}
+
+	private File segmentFile(int segNum) {
+		return new File(rootDir, String.format("trie-%03d.dat", segNum));
+	}
+
+	private File siblingDir(String suffix) {
+		return new File(rootDir.getPath()+"."+suffix);
+	}
+
+	private RW_TrieNode getNodeMapper() {
+		if (nodeMapper == null) {
+			nodeMapper = new RW_TrieNode();
+		}
+		return nodeMapper;
+	}
+}
@@ -6,8 +6,12 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Comparator;
 
+import java.util.ArrayDeque;
+import java.util.Deque;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.Map;
+import java.util.NoSuchElementException;
 
 import org.apache.log4j.Logger;
 
@@ -38,9 +42,41 @@ public class Trie_InMemory extends Trie {
 		return trie;
     }
     
+	/**
+	 * Same as Trie.terminalsIterator(), except that the nodes are all in
+	 * memory, so the nodes to be visited are kept rather than their keys.
+	 */
+	@Override
+	public Iterator<TrieNode> terminalsIterator(TrieNode node) {
+		final Deque<TrieNode> toVisit = new ArrayDeque<TrieNode>();
+		if (node != null) {
+			toVisit.push(node);
+		}
+		return new Iterator<TrieNode>() {
+			@Override
+			public boolean hasNext() {
+				while (!toVisit.isEmpty() && !toVisit.peek().isTerminal()) {
+					TrieNode[] children = toVisit.pop().childrenNodes();
+					for (int ii=children.length-1; ii >= 0; ii--) {
+						toVisit.push(children[ii]);
+					}
+				}
+				return !toVisit.isEmpty();
+			}
+
+			@Override
+			public TrieNode next() {
+				if (!hasNext()) {
+					throw new NoSuchElementException();
+				}
+				return toVisit.pop();
+			}
+		};
+	}
+
 	@Override
 	public boolean contains(String[] segments) throws TrieException {
-		boolean answer = null != getNode(segments);
+		boolean answer = null != getNode(segments, NodeOption.NO_CREATE);
 		return answer;
 	}
     
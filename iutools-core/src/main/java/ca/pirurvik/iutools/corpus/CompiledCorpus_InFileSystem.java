@@ -65,7 +65,17 @@ public class CompiledCorpus_InFileSystem extends CompiledCorpus
 			tLogger.trace("Adding word="+word);
 		}
 
-		updateWordIndex(word, sampleDecomps, totalDecomps);
+		// The terminal node of the word is modified twice (frequency, then 
+		// decompositions); the batch saves it, and each of its ancestors, only
+		// once
+		wordCharTrie.beginBatch();
+		try {
+			updateWordIndex(word, sampleDecomps, totalDecomps);
+		} catch (Throwable e) {
+			abortBatch(wordCharTrie, e);
+			throw e;
+		}
+		commitBatch(wordCharTrie);
 		
 		if (tLogger.isTraceEnabled()) {
 			try {
@@ -79,6 +89,42 @@ public class CompiledCorpus_InFileSystem extends CompiledCorpus
 		return;
 	}
 	
+	@Override
+	public void addWordOccurences(String[] words) 
+			throws CompiledCorpusException {
+		// Nodes shared by many of the words (ex: the root and the nodes for
+		// their first characters) are saved once for all of them
+		wordCharTrie.beginBatch();
+		try {
+			super.addWordOccurences(words);
+		} catch (Throwable e) {
+			abortBatch(wordCharTrie, e);
+			throw e;
+		}
+		commitBatch(wordCharTrie);
+	}
+	
+	private void commitBatch(Trie trie) throws CompiledCorpusException {
+		try {
+			trie.commitBatch();
+		} catch (TrieException e) {
+			throw new CompiledCorpusException(e);
+		}
+	}
+	
+	/*
+	 * Aborts a batch of updates that failed with exception 'cause', without
+	 * masking it: if the batch cannot be aborted, the reason is only added 
+	 * to 'cause' as a suppressed exception.
+	 */
+	private void abortBatch(Trie trie, Throwable cause) {
+		try {
+			trie.abortBatch();
+		} catch (TrieException | RuntimeException e) {
+			cause.addSuppressed(e);
+		}
+	}
+	
 	public void makeStale(Trie_InFileSystem trie) throws CompiledCorpusException {
 		try {
 			File file = stalenessFile(trie);
@@ -168,18 +214,29 @@ public class CompiledCorpus_InFileSystem extends CompiledCorpus
 		return inCorpus;
 	}
 
+	/**
+	 * Iterates through the words as their nodes are read from the 
+	 * wordCharTrie, so the vocabulary is never all in memory.
+	 */
 	@Override
 	public Iterator<String> allWords() throws CompiledCorpusException {
-		HashSet<String> allWordsSet = new HashSet<String>();
+		final Iterator<TrieNode> terminals;
 		try {
-			TrieNode[] terminalNodes = wordCharTrie.getTerminals();
-			for (TrieNode aTerminal: terminalNodes) {
-				allWordsSet.add(aTerminal.getTerminalSurfaceForm());
-			}
+			terminals = wordCharTrie.terminalsIterator();
 		} catch (TrieException e) {
 			throw new CompiledCorpusException(e);
 		}
-		return allWordsSet.iterator();
+		return new Iterator<String>() {
+			@Override
+			public boolean hasNext() {
+				return terminals.hasNext();
+			}
+
+			@Override
+			public String next() {
+				return terminals.next().getTerminalSurfaceForm();
+			}
+		};
 	}
 
 	@Override
@@ -187,7 +244,8 @@ public class CompiledCorpus_InFileSystem extends CompiledCorpus
 			throws CompiledCorpusException {
 		List<String> words = new ArrayList<String>();
 		try {
-			TrieNode node = getCharNgramsTrie().getNode(getCharNgramsTrie().wordChars(ngram));
+			TrieNode node = getCharNgramsTrie().getNode(
+				Trie.wordChars(ngram), NodeOption.NO_CREATE);
 			if (node != null) {
 				words = node.getField("words", words);
 			}
@@ -242,11 +300,15 @@ public class CompiledCorpus_InFileSystem extends CompiledCorpus
 		
 		TrieNode wordNode;
 		try {
-			wordNode = this.wordCharTrie.getNode(wordChars);
+			wordNode = this.wordCharTrie.getNode(wordChars, NodeOption.NO_CREATE);
 		} catch (TrieException e) {
 			throw new CompiledCorpusException(e);
 		}
-		return wordNode.getFrequency();
+		long freq = 0;
+		if (wordNode != null) {
+			freq = wordNode.getFrequency();
+		}
+		return freq;
 	}
 
 	@Override
@@ -259,7 +321,11 @@ public class CompiledCorpus_InFileSystem extends CompiledCorpus
 			try {
 				TrieNode node = 
 					getMorphNgramsTrie().getNode(
-						new String[] {morphID}, NodeOption.TERMINAL);
+						new String[] {morphID}, NodeOption.TERMINAL, 
+						NodeOption.NO_CREATE);
+				if (node == null) {
+					continue;
+				}
 				List<String> matchingWords = node.getField("words", new ArrayList<String>());
 				for (String aWord: matchingWords) {
 					WordInfo aWordInfo = info4word(aWord);
@@ -304,7 +370,7 @@ public class CompiledCorpus_InFileSystem extends CompiledCorpus
 			TrieNode node = wordCharTrie.add(chars, word);
 			node.setField("sampleDecompositions", sampleDecomps);
 			node.setField("totalDecompositions", totalDecomps);
-			wordCharTrie.saveNode(node);
+			wordCharTrie.saveNodeOrDefer(node);
 			if (tLogger.isTraceEnabled()) {
 				tLogger.trace("Completed in  "+StopWatch.elapsedSince(start, unit)+" "+unit);
 				start = StopWatch.now(unit);
@@ -360,7 +426,7 @@ public class CompiledCorpus_InFileSystem extends CompiledCorpus
 		words = ngramNode.getField("words", words);
 		words.add(word);
 		try {
-			morphNgramsTrie.saveNode(ngramNode);
+			morphNgramsTrie.saveNodeOrDefer(ngramNode);
 		} catch (TrieException e) {
 			throw new CompiledCorpusException(e);
 		}
@@ -405,7 +471,7 @@ public class CompiledCorpus_InFileSystem extends CompiledCorpus
 					start = StopWatch.now(unit);
 				}				
 				ngramWords.add(word);
-				getCharNgramsTrie().saveNode(node);
+				getCharNgramsTrie().saveNodeOrDefer(node);
 				if (tLogger_TIME.isTraceEnabled()) {
 					tLogger_TIME.trace("saveNode() took "+
 						StopWatch.elapsedSince(start, unit)+" "+unit);
@@ -433,7 +499,8 @@ public class CompiledCorpus_InFileSystem extends CompiledCorpus
 		String[] topDecs = null;
 		TrieNode node;
 		try {
-			node = wordCharTrie.getNode(Trie.ensureTerminal(word.split("")));
+			node = wordCharTrie.getNode(Trie.ensureTerminal(word.split("")), 
+				NodeOption.NO_CREATE);
 			if (node != null) {
 				topDecs = nodeBestDecomp(node);
 			}
@@ -449,7 +516,8 @@ public class CompiledCorpus_InFileSystem extends CompiledCorpus
 		long freq = 0;
 		try {
 			String[] ngramChars = Trie.wordChars(ngram);
-			TrieNode node = getCharNgramsTrie().getNode(ngramChars);
+			TrieNode node = getCharNgramsTrie().getNode(ngramChars, 
+				NodeOption.NO_CREATE);
 			if (node != null) {
 				freq = node.getFrequency();
 			}
@@ -465,7 +533,8 @@ public class CompiledCorpus_InFileSystem extends CompiledCorpus
 		long freq = 0;
 		try {
 			String[] termMorphemes = Trie.ensureTerminal(morphemes);
-			TrieNode node = getMorphNgramsTrie().getNode(termMorphemes);
+			TrieNode node = getMorphNgramsTrie().getNode(termMorphemes, 
+				NodeOption.NO_CREATE);
 			if (node != null) {
 				freq = node.getFrequency();
 			}
@@ -549,11 +618,14 @@ public class CompiledCorpus_InFileSystem extends CompiledCorpus
 //		return mostFrequentLst.toArray(new WordInfo[mostFrequentLst.size()]);
 		
 		try {
-			TrieNode node = getMorphNgramsTrie().getNode(morphemes, NodeOption.TERMINAL);
-			List<String> extensions = node.getField("words", new ArrayList<String>());
-			for (String aWord: extensions) {
-				WordInfo winfo = info4word(aWord);
-				mostFrequentLst.add(winfo);				
+			TrieNode node = getMorphNgramsTrie().getNode(morphemes, 
+				NodeOption.TERMINAL, NodeOption.NO_CREATE);
+			if (node != null) {
+				List<String> extensions = node.getField("words", new ArrayList<String>());
+				for (String aWord: extensions) {
+					WordInfo winfo = info4word(aWord);
+					mostFrequentLst.add(winfo);				
+				}
 			}
 		} catch (TrieException e) {
 			throw new CompiledCorpusException(e);
@@ -605,7 +677,8 @@ public class CompiledCorpus_InFileSystem extends CompiledCorpus
 	public long totalWordsWithNoDecomp() throws CompiledCorpusException {
 		long total = 0;
 		try {
-			TrieNode node = getMorphNgramsTrie().getNode(null, NodeOption.TERMINAL);
+			TrieNode node = getMorphNgramsTrie().getNode(null, 
+				NodeOption.TERMINAL, NodeOption.NO_CREATE);
 			if (node != null) {
 				total = node.getSurfaceForms().size();
 			}
@@ -627,9 +700,12 @@ public class CompiledCorpus_InFileSystem extends CompiledCorpus
 		long total = 0;
 		try {
 			TrieNode node = 
-				getMorphNgramsTrie().getNode(null, NodeOption.TERMINAL);
-			for (Entry<String, Long> entry: node.getSurfaceForms().entrySet()) {
-				total += entry.getValue();
+				getMorphNgramsTrie().getNode(null, 
+					NodeOption.TERMINAL, NodeOption.NO_CREATE);
+			if (node != null) {
+				for (Entry<String, Long> entry: node.getSurfaceForms().entrySet()) {
+					total += entry.getValue();
+				}
 			}
 		} catch (TrieException e) {
 			throw new CompiledCorpusException(e);
@@ -656,13 +732,20 @@ public class CompiledCorpus_InFileSystem extends CompiledCorpus
 		try {
 			makeNotStale(charNgramsTrie);	
 			charNgramsTrie.reset();
-			Iterator<String> iter = allWords();
-			while (iter.hasNext()) {
-				String word = iter.next();
-				WordInfo winfo = info4word(word);
-				long freq = winfo.frequency;
-				updateCharNgramIndex(word, freq);
-			}			
+			charNgramsTrie.beginBatch();
+			try {
+				Iterator<String> iter = allWords();
+				while (iter.hasNext()) {
+					String word = iter.next();
+					WordInfo winfo = info4word(word);
+					long freq = winfo.frequency;
+					updateCharNgramIndex(word, freq);
+				}
+			} catch (Throwable e) {
+				abortBatch(charNgramsTrie, e);
+				throw e;
+			}
+			commitBatch(charNgramsTrie);
 		} catch (TrieException e) {
 			// If an exception is raised before regeneration is complete, 
 			// re-flag the charNgramsTrie as beingstale
@@ -686,15 +769,22 @@ public class CompiledCorpus_InFileSystem extends CompiledCorpus
 		try {
 			makeNotStale(morphNgramsTrie);	
 			morphNgramsTrie.reset();
-			Iterator<String> iter = allWords();
-			while (iter.hasNext()) {
-				String word = iter.next();
-				WordInfo winfo = info4word(word);
-//				long freq = winfo.frequency;
-//				String[][] sampleDecomps = winfo.decompositionsSample;
-//				int totalDecomps = winfo.totalDecompositions;
-				updateDecompositionsIndex(word, winfo);
-			}			
+			morphNgramsTrie.beginBatch();
+			try {
+				Iterator<String> iter = allWords();
+				while (iter.hasNext()) {
+					String word = iter.next();
+					WordInfo winfo = info4word(word);
+//					long freq = winfo.frequency;
+//					String[][] sampleDecomps = winfo.decompositionsSample;
+//					int totalDecomps = winfo.totalDecompositions;
+					updateDecompositionsIndex(word, winfo);
+				}
+			} catch (Throwable e) {
+				abortBatch(morphNgramsTrie, e);
+				throw e;
+			}
+			commitBatch(morphNgramsTrie);
 		} catch (TrieException e) {
 			// If an exception is raised before regeneration is complete, 
 			// re-flag the charNgramsTrie as being stale
@@ -190,7 +190,16 @@ public class CompiledCorpus_InMemory extends CompiledCorpus
 		super(segmenterClassName);
 	}
 	
+	/**
+	 * Iterates directly through the words of wordDecomps, to which every 
+	 * word is added, instead of copying them. For a corpus that was saved
+	 * without its wordDecomps, the words are gathered from 
+	 * decomposedWordsSuite.
+	 */
 	public Iterator<String> allWords() throws CompiledCorpusException {
+		if (!wordDecomps.isEmpty()) {
+			return Collections.unmodifiableSet(wordDecomps.keySet()).iterator();
+		}
 		Set<String> allWordsSet = new HashSet<String>();
 		allWordsSet.addAll(wordsFailedSegmentationWithFreqs.keySet());
 		Collections.addAll(allWordsSet, decomposedWordsSuite.split(",,"));
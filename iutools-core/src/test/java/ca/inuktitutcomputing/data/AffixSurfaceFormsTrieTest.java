@@ -0,0 +1,77 @@
+package ca.inuktitutcomputing.data;
+
+import static org.junit.Assert.*;
+
+import java.util.Vector;
+
+import org.junit.Test;
+
+import ca.inuktitutcomputing.script.Orthography;
+
+public class AffixSurfaceFormsTrieTest {
+
+	@Test
+	public void test_formsEndingTerm__SameAsLookingUpEverySubstring() throws Exception {
+		String[] words = new String[] {
+			"inuksuk", "takujuq", "inuktitut", "nunavummi", "pijitsirniarniarvik"};
+		for (String word: words) {
+			String term = Orthography.simplifiedOrthographyLat(word);
+			Vector<SurfaceFormOfAffix>[] gotForms =
+				Lexicon.lookForFormsAtEveryPosition(term);
+			assertEquals("Wrong number of cut points for term "+term,
+				term.length(), gotForms.length);
+			for (int pos=0; pos < term.length(); pos++) {
+				Vector<SurfaceFormOfAffix> expForms =
+					Lexicon.lookForForms(term.substring(pos), false);
+				assertEquals("Wrong affix forms for term "+term+" at position "+pos,
+					expForms, gotForms[pos]);
+			}
+		}
+	}
+
+	@Test
+	public void test_formsEndingTerm__TermEndsWithWildcard() throws Exception {
+		String term = "takuju*";
+		Vector<SurfaceFormOfAffix>[] gotForms =
+			Lexicon.lookForFormsAtEveryPosition(term);
+		for (int pos=0; pos < term.length(); pos++) {
+			String stemNoStar = term.substring(pos, term.length()-1);
+			Vector<SurfaceFormOfAffix> expForms = new Vector<SurfaceFormOfAffix>();
+			for (String cons: Lexicon.consonants) {
+				Vector<SurfaceFormOfAffix> formsForCons =
+					Lexicon.lookForForms(stemNoStar+cons, false);
+				if (formsForCons != null) {
+					expForms.addAll(formsForCons);
+				}
+			}
+			if (expForms.size() == 0) {
+				expForms = null;
+			}
+			assertEquals("Wrong affix forms for term "+term+" at position "+pos,
+				expForms, gotForms[pos]);
+		}
+	}
+
+	@Test
+	public void test_formsWithAnyEnding__SameAsLookingUpEveryEnding() throws Exception {
+		AffixSurfaceFormsTrie trie = 
+			LinguisticData.getInstance().getAffixSurfaceFormsTrie();
+		String[] endings = new String[] {"k", "q", "juq", "tut", "mi"};
+		String[] terms = new String[] {"", "ju", "ta", "lau", "gi", "xyz"};
+		for (String term: terms) {
+			Vector<SurfaceFormOfAffix> expForms = new Vector<SurfaceFormOfAffix>();
+			for (String ending: endings) {
+				Vector<SurfaceFormOfAffix> formsForEnding =
+					Lexicon.lookForForms(term+ending, false);
+				if (formsForEnding != null) {
+					expForms.addAll(formsForEnding);
+				}
+			}
+			if (expForms.size() == 0) {
+				expForms = null;
+			}
+			assertEquals("Wrong affix forms for term "+term,
+				expForms, trie.formsWithAnyEnding(term, endings));
+		}
+	}
+}
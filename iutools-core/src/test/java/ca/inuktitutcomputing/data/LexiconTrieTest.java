@@ -0,0 +1,103 @@
+package ca.inuktitutcomputing.data;
+
+import static org.junit.Assert.*;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Vector;
+
+import org.junit.Test;
+
+public class LexiconTrieTest {
+
+	@Test
+	public void test__LexiconTrie__Synopsis() throws Exception {
+		// The trie is built from a table of forms to entries
+		Map<String,Vector<String>> table = new HashMap<String,Vector<String>>();
+		table.put("nunak", entries("nunak/1n"));
+		table.put("nunat", entries("nunat/1n"));
+		table.put("nunaq", entries("nunaq/1n", "nunaq/2n"));
+		table.put("nuna", entries("nuna/1n"));
+		LexiconTrie<String> trie = new LexiconTrie<String>(table);
+
+		// Entries can be looked up by their exact form...
+		assertEquals(entries("nuna/1n"), trie.get("nuna"));
+		assertNull(trie.get("nun"));
+
+		// ... or as a prefix followed by any one of several endings (ex:
+		// a missing final consonant). The entries are returned in the order
+		// of the endings.
+		assertEquals(entries("nunak/1n", "nunaq/1n", "nunaq/2n", "nunat/1n"),
+			trie.getWithAnyEnding("nuna", new String[] {"k", "p", "q", "t"}));
+		assertNull(trie.getWithAnyEnding("iglu", new String[] {"k", "p", "q", "t"}));
+	}
+
+	@Test
+	public void test__lookForBaseWithAnyFinalConsonant__SameAsLookingUpEveryConsonant() throws Exception {
+		String[] terms = new String[] {"nuna", "iglu", "inuksu", "taku", "umia", "xyz", ""};
+		for (String term: terms) {
+			Vector<Morpheme> expBases = new Vector<Morpheme>();
+			for (String cons: Lexicon.consonants) {
+				Vector<Morpheme> basesForCons = Lexicon.lookForBase(term+cons, false);
+				if (basesForCons != null) {
+					expBases.addAll(basesForCons);
+				}
+			}
+			if (expBases.size() == 0) {
+				expBases = null;
+			}
+			assertEquals("Wrong bases for term "+term+"*",
+				expBases, Lexicon.lookForBaseWithAnyFinalConsonant(term, false));
+		}
+	}
+
+	@Test
+	public void test__lookForFormsWithAnyFinalConsonant__SameAsLookingUpEveryConsonant() throws Exception {
+		String[] terms = new String[] {"ju", "ngu", "nngu", "tu", "mi", "lau", "xyz", ""};
+		for (String term: terms) {
+			Vector<SurfaceFormOfAffix> expForms = new Vector<SurfaceFormOfAffix>();
+			for (String cons: Lexicon.consonants) {
+				Vector<SurfaceFormOfAffix> formsForCons = Lexicon.lookForForms(term+cons, false);
+				if (formsForCons != null) {
+					expForms.addAll(formsForCons);
+				}
+			}
+			if (expForms.size() == 0) {
+				expForms = null;
+			}
+			assertEquals("Wrong affix forms for term "+term+"*",
+				expForms, Lexicon.lookForFormsWithAnyFinalConsonant(term, false));
+		}
+	}
+
+	@Test
+	public void test__getForEveryPrefix__HappyPath() throws Exception {
+		Map<String,Vector<String>> table = new HashMap<String,Vector<String>>();
+		table.put("nuna", entries("nuna/1n"));
+		table.put("nunat", entries("nunat/1n"));
+		table.put("mi", entries("mi/tn-loc-s"));
+		LexiconTrie<String> trie = new LexiconTrie<String>(table);
+
+		// The entries whose form starts at position 2 of the term, indexed
+		// by the length of the form
+		Vector<String>[] found = trie.getForEveryPrefix("ainunatmi", 2);
+		assertEquals(8, found.length);
+		for (int len = 0; len < found.length; len++) {
+			if (len == 4) {
+				assertEquals(entries("nuna/1n"), found[len]);
+			} else if (len == 5) {
+				assertEquals(entries("nunat/1n"), found[len]);
+			} else {
+				assertNull("Nothing should have been found for length "+len, found[len]);
+			}
+		}
+	}
+
+	private static Vector<String> entries(String... ids) {
+		Vector<String> entries = new Vector<String>();
+		for (String id: ids) {
+			entries.add(id);
+		}
+		return entries;
+	}
+}
@@ -0,0 +1,140 @@
+package ca.inuktitutcomputing.data;
+
+import static org.junit.Assert.*;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.InputStream;
+import java.io.ObjectOutputStream;
+import java.util.Vector;
+
+import org.junit.Test;
+
+public class LinguisticDataSnapshotTest {
+
+	@Test
+	public void test_writeThenRead__DataIsTheSame() throws Exception {
+		LinguisticData origData = LinguisticData.getInstance();
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		LinguisticDataSnapshot.write(origData, out);
+
+		LinguisticData gotData = new LinguisticData();
+		boolean loaded = LinguisticDataSnapshot.read(gotData,
+			new ByteArrayInputStream(out.toByteArray()));
+		assertTrue("Snapshot should have been loaded", loaded);
+
+		assertEquals("Wrong number of bases",
+			origData.getIdToBaseTable().size(), gotData.getIdToBaseTable().size());
+		assertEquals("Wrong number of affixes",
+			origData.getIdToAffixTable().size(), gotData.getIdToAffixTable().size());
+		assertEquals("Wrong number of affix surface forms",
+			origData.getFormToSurfaceFormsOfAffixesTable().size(),
+			gotData.getFormToSurfaceFormsOfAffixesTable().size());
+		assertEquals("Wrong groups of consonants",
+			origData.getGroupsOfConsonants(), gotData.getGroupsOfConsonants());
+
+		Base gotBase = gotData.getBaseWithId("iglu/1n");
+		assertEquals("Wrong morpheme for base iglu/1n", "iglu", gotBase.morpheme);
+		assertEquals("Wrong attribute value for base iglu/1n",
+			origData.getBaseWithId("iglu/1n").getAttr("nature"),
+			gotBase.getAttr("nature"));
+		assertSame("Base from the id table and from the canonical forms table "+
+				"should be the same object",
+			gotBase, gotData.getBasesForCanonicalForm("iglu").get(0));
+
+		Affix origAffix = origData.getAffixWithId("juq/1vn");
+		Affix gotAffix = gotData.getAffixWithId("juq/1vn");
+		assertEquals("Wrong morpheme for affix juq/1vn",
+			origAffix.morpheme, gotAffix.morpheme);
+		assertEquals("Wrong surface forms for affix juq/1vn",
+			origData.getSurfaceForms("juq").size(),
+			gotData.getSurfaceForms("juq").size());
+
+		assertEquals("Wrong int id for affix juq/1vn",
+			origAffix.intId, gotAffix.intId);
+		assertSame("Wrong morpheme for the int id of affix juq/1vn",
+			gotAffix, gotData.getMorphemeWithIntId(gotAffix.intId));
+		assertSame("Wrong morpheme for the int id of base iglu/1n",
+			gotBase, gotData.getMorphemeWithIntId(gotData.intIdOf("iglu/1n")));
+	}
+
+	@Test
+	public void test_writeThenRead__SnapshotFile__ReadWithTheRestrictedStream() throws Exception {
+		// The tables hold Vectors, whose elements are serialized as an
+		// array of Object
+		File file = File.createTempFile("LinguisticData", ".snapshot");
+		file.deleteOnExit();
+		LinguisticDataSnapshot.write(LinguisticData.getInstance(), file);
+
+		LinguisticData gotData = new LinguisticData();
+		try (InputStream in = new BufferedInputStream(new FileInputStream(file))) {
+			assertTrue("Snapshot should have been loaded",
+				LinguisticDataSnapshot.read(gotData, in));
+		}
+		assertEquals("Wrong number of bases for canonical form iglu",
+			LinguisticData.getInstance().getBasesForCanonicalForm("iglu").size(),
+			gotData.getBasesForCanonicalForm("iglu").size());
+	}
+
+	@Test(expected=LinguisticDataException.class)
+	public void test_read__ArrayOfObjectWithClassOtherThanDataClasses__RaisesException() throws Exception {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		DataOutputStream header = new DataOutputStream(out);
+		header.writeUTF(LinguisticDataSnapshot.MAGIC);
+		header.writeInt(LinguisticDataSnapshot.FORMAT_VERSION);
+		header.writeLong(LinguisticDataSnapshot.keyOfCSVTables());
+		header.flush();
+		ObjectOutputStream objects = new ObjectOutputStream(out);
+		objects.writeObject(new Object[] {new File("/etc/passwd")});
+		objects.flush();
+
+		LinguisticDataSnapshot.read(new LinguisticData(),
+			new ByteArrayInputStream(out.toByteArray()));
+	}
+
+	@Test
+	public void test_read__SnapshotCompiledFromOtherTables__ReturnsFalse() throws Exception {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		DataOutputStream header = new DataOutputStream(out);
+		header.writeUTF(LinguisticDataSnapshot.MAGIC);
+		header.writeInt(LinguisticDataSnapshot.FORMAT_VERSION);
+		header.writeLong(LinguisticDataSnapshot.keyOfCSVTables() + 1);
+		header.flush();
+
+		LinguisticData data = new LinguisticData();
+		boolean loaded = LinguisticDataSnapshot.read(data,
+			new ByteArrayInputStream(out.toByteArray()));
+		assertFalse("Stale snapshot should not have been loaded", loaded);
+		assertEquals("Data should have been left untouched",
+			0, data.getIdToBaseTable().size());
+	}
+
+	@Test(expected=LinguisticDataException.class)
+	public void test_read__SnapshotWithClassOtherThanDataClasses__RaisesException() throws Exception {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		DataOutputStream header = new DataOutputStream(out);
+		header.writeUTF(LinguisticDataSnapshot.MAGIC);
+		header.writeInt(LinguisticDataSnapshot.FORMAT_VERSION);
+		header.writeLong(LinguisticDataSnapshot.keyOfCSVTables());
+		header.flush();
+		ObjectOutputStream objects = new ObjectOutputStream(out);
+		Vector<Object> table = new Vector<Object>();
+		table.add(new File("/etc/passwd"));
+		objects.writeObject(table);
+		objects.flush();
+
+		LinguisticDataSnapshot.read(new LinguisticData(),
+			new ByteArrayInputStream(out.toByteArray()));
+	}
+
+	@Test
+	public void test_keyOfCSVTables__SameTables__SameKey() throws Exception {
+		assertEquals("Key of the CSV tables should not change while they are not modified",
+			LinguisticDataSnapshot.keyOfCSVTables(),
+			LinguisticDataSnapshot.keyOfCSVTables());
+	}
+}
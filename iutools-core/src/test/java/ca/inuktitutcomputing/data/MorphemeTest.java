@@ -2,6 +2,11 @@ package ca.inuktitutcomputing.data;
 
 import static org.junit.Assert.*;
 
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
 import org.junit.Assert;
 import org.junit.Test;
 
@@ -18,4 +23,33 @@ public class MorphemeTest {
 			Morpheme.hasCanonicalForm(morpheme, "it"));
 	}
 
+	@Test
+	public void test__intId__EveryMorphemeHasADistinctIntId() throws Exception {
+		LinguisticData data = LinguisticData.getInstance();
+		Set<Integer> seen = new HashSet<Integer>();
+		List<Morpheme> morphs = 
+			new ArrayList<Morpheme>(data.getIdToBaseTable().values());
+		morphs.addAll(data.getIdToAffixTable().values());
+		for (Morpheme morph: morphs) {
+			Assert.assertTrue("Morpheme "+morph.id+" has no int id", morph.intId >= 0);
+			Assert.assertTrue("Int id of morpheme "+morph.id+" is not dense", 
+				morph.intId < data.getNbMorphemeIntIds());
+			Assert.assertTrue("Int id of morpheme "+morph.id+" is used by another morpheme", 
+				seen.add(morph.intId));
+			Assert.assertSame("Wrong morpheme for the int id of "+morph.id, 
+				morph, data.getMorphemeWithIntId(morph.intId));
+		}
+	}
+
+	@Test
+	public void test__intId__VariantOfARootHasTheIntIdOfTheRoot() throws Exception {
+		LinguisticData data = LinguisticData.getInstance();
+		for (String canonicalForm: data.getCanonicalFormsForAllBases()) {
+			for (Morpheme base: data.getBasesForCanonicalForm(canonicalForm)) {
+				Assert.assertEquals("Wrong int id for base "+base.id+" with form "+canonicalForm,
+					data.intIdOf(base.id), base.intId);
+			}
+		}
+	}
+
 }
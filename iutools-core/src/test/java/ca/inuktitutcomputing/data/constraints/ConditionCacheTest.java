@@ -0,0 +1,25 @@
+package ca.inuktitutcomputing.data.constraints;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+public class ConditionCacheTest {
+
+	@Test
+	public void test_parse__SameStringParsedOnlyOnce() throws Exception {
+		String condStr = "!type:tn,!(type:n,number:d),!(type:n,number:p)";
+		Condition cond1 = ConditionCache.parse(condStr);
+		Condition cond2 = ConditionCache.parse(new String(condStr));
+		assertSame("The same condition string should yield the same Condition object",
+			cond1, cond2);
+		assertEquals("Cached condition differs from a freshly parsed one",
+			Condition.signature((Conditions)new Imacond(condStr).ParseCondition()),
+			Condition.signature((Conditions)cond1));
+	}
+
+	@Test(expected=ParseException.class)
+	public void test_parse__InvalidCondition__RaisesParseException() throws Exception {
+		ConditionCache.parse("type:");
+	}
+}
@@ -0,0 +1,44 @@
+package ca.inuktitutcomputing.morph;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+public class AffixBoundaryTableTest {
+
+	@Test
+	public void test__AffixBoundaryTable__Synopsis() throws Exception {
+		// The table is derived from the linguistic data and the graph of
+		// morphemes.
+		AffixBoundaryTable table = AffixBoundaryTable.forCurrentData();
+
+		// It tells whether any affix form starting with a given character
+		// can follow a stem ending with a given character, from the states
+		// of the graph that the analysis is in.
+		Graph.State[] states = new Graph.State[] {Graph.verbState};
+		assertTrue(table.isPossible("taku", "juq", states));
+		assertFalse(table.isPossible("inuk", "juq", states));
+		assertFalse(table.isPossible("nunak", "u", states));
+
+		// The table is only built again if the linguistic data changes
+		assertSame(table, AffixBoundaryTable.forCurrentData());
+	}
+
+	@Test
+	public void test__isPossible__FormIsSimplified() throws Exception {
+		AffixBoundaryTable table = AffixBoundaryTable.forCurrentData();
+		Graph.State[] states = new Graph.State[] {Graph.initialState};
+		for (String stem: new String[] {"inuk", "taku", "iglum"}) {
+			assertEquals("'ng' should have been looked up as 'N' after "+stem, 
+				table.isPossible(stem, "Nu", states),
+				table.isPossible(stem, "ngu", states));
+		}
+	}
+
+	@Test
+	public void test__isPossible__MissingFinalConsonant__AlwaysPossible() throws Exception {
+		AffixBoundaryTable table = AffixBoundaryTable.forCurrentData();
+		Graph.State[] states = new Graph.State[] {Graph.verbState};
+		assertTrue(table.isPossible("inuk", "*", states));
+	}
+}
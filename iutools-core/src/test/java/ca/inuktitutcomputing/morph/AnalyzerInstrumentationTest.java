@@ -0,0 +1,83 @@
+package ca.inuktitutcomputing.morph;
+
+import java.lang.management.ManagementFactory;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class AnalyzerInstrumentationTest {
+
+	@After
+	public void tearDown() {
+		AnalyzerInstrumentation.setInstrumentation(false);
+		AnalyzerInstrumentation.resetCounters();
+	}
+
+	@Test
+	public void test__AnalyzerInstrumentation__Synopsis() throws Exception {
+		// The instrumentation is off by default. Turn it on to count what the
+		// analyzer does...
+		AnalyzerInstrumentation.setInstrumentation(true);
+		AnalyzerInstrumentation.resetCounters();
+
+		MorphologicalAnalyzer analyzer = new MorphologicalAnalyzer();
+		MorphologicalAnalyzer.removeFromCache("inuktitut", true);
+		analyzer.decomposeWord("inuktitut");
+		analyzer.decomposeWord("inuktitut");
+
+		// ... and get a snapshot of the counts and timings so far
+		AnalyzerStats stats = AnalyzerInstrumentation.snapshot();
+		Assert.assertEquals("The word should have been decomposed only once", 
+			1, stats.words);
+		Assert.assertEquals(1, stats.cacheMisses);
+		Assert.assertEquals(1, stats.cacheHits);
+		Assert.assertTrue(stats.positionsScanned > 0);
+		Assert.assertTrue(stats.affixCandidatesTried > 0);
+		Assert.assertTrue(stats.decompositionNanos > 0);
+		Assert.assertTrue("The time of a phase cannot exceed the time of the whole word",
+			stats.rootLookupNanos <= stats.decompositionNanos);
+		Assert.assertEquals("inuktitut", stats.slowestWord);
+	}
+
+	@Test
+	public void test__decomposeWord__NothingCountedWhenInstrumentationIsOff() throws Exception {
+		AnalyzerInstrumentation.setInstrumentation(false);
+		AnalyzerInstrumentation.resetCounters();
+
+		MorphologicalAnalyzer analyzer = new MorphologicalAnalyzer();
+		MorphologicalAnalyzer.removeFromCache("iglumik", true);
+		analyzer.decomposeWord("iglumik");
+
+		AnalyzerStats stats = AnalyzerInstrumentation.snapshot();
+		Assert.assertEquals(0, stats.words);
+		Assert.assertEquals(0, stats.cacheMisses);
+		Assert.assertEquals(0, stats.positionsScanned);
+		Assert.assertNull(stats.slowestWord);
+	}
+
+	@Test
+	public void test__registerMBean__CountersReadableThroughJMX() throws Exception {
+		AnalyzerInstrumentation.setInstrumentation(true);
+		AnalyzerInstrumentation.resetCounters();
+		AnalyzerInstrumentation.registerMBean();
+		// Registering twice does nothing
+		AnalyzerInstrumentation.registerMBean();
+
+		MorphologicalAnalyzer analyzer = new MorphologicalAnalyzer();
+		MorphologicalAnalyzer.removeFromCache("iglumik", true);
+		analyzer.decomposeWord("iglumik");
+
+		MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+		ObjectName name = new ObjectName(AnalyzerInstrumentation.MBEAN_NAME);
+		Assert.assertEquals(1L, server.getAttribute(name, "Words"));
+		Assert.assertEquals("iglumik", server.getAttribute(name, "SlowestWord"));
+		Assert.assertEquals(Boolean.TRUE, server.getAttribute(name, "Enabled"));
+		// The statistics of the decompositions cache are always available
+		Assert.assertTrue(server.getAttribute(name, "DecompositionsCacheHitRate") instanceof Double);
+		Assert.assertTrue((Long)server.getAttribute(name, "DecompositionsCacheSize") > 0);
+	}
+}
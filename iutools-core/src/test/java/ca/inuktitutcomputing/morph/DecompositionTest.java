@@ -10,6 +10,7 @@ import org.junit.Test;
 
 import ca.inuktitutcomputing.data.LinguisticDataException;
 import ca.inuktitutcomputing.morph.Decomposition.DecompositionExpression;
+import ca.inuktitutcomputing.morph.Decomposition.DecompositionExpression.DecPart;
 
 public class DecompositionTest {
 
@@ -46,4 +47,58 @@ public class DecompositionTest {
 		Assert.assertEquals("",  "umiar;jua;liuq;ti", surfaceForms);
 	}
 
+	@Test
+	public void test__compact__HappyPath() throws Exception {
+		String word = "makpigaq";
+		MorphologicalAnalyzer analyzer = new MorphologicalAnalyzer();
+		Decomposition[] decompositions = analyzer.decomposeWord(word,false);
+		CompactDecomposition compact = decompositions[0].compact();
+		Assert.assertEquals("Wrong number of morphemes", 2, compact.length());
+		Assert.assertEquals("Wrong root", "makpiq/1v", compact.morphemeId(0));
+		Assert.assertEquals("Wrong root surface form", "makpi", compact.surfaceForm(0));
+		Assert.assertEquals("Wrong suffix", "gaq/1vn", compact.morphemeId(1));
+		Assert.assertEquals("Wrong suffix surface form", "gaq", compact.surfaceForm(1));
+		
+		Assert.assertEquals("The compact forms of the same decomposition should be equal",
+			compact, decompositions[0].compact());
+		for (int ii=1; ii < decompositions.length; ii++) {
+			Assert.assertNotEquals("Distinct decompositions should have distinct compact forms",
+				compact, decompositions[ii].compact());
+		}
+	}
+
+	@Test
+	public void test__parts__SameAsParsedExpression() throws Exception {
+		MorphologicalAnalyzer analyzer = new MorphologicalAnalyzer();
+		for (String word: new String[] {"makpigaq", "umiarjualiuqti", "inuktitut", "takujuq"}) {
+			for (Decomposition dec: analyzer.decomposeWord(word)) {
+				DecPart[] expParts = new DecompositionExpression(dec.toStr2()).parts;
+				DecPart[] gotParts = dec.parts();
+				Assert.assertEquals("Wrong number of parts for "+dec, 
+					expParts.length, gotParts.length);
+				for (int ip=0; ip < expParts.length; ip++) {
+					Assert.assertEquals("Wrong surface form for "+dec, 
+						expParts[ip].surface, gotParts[ip].surface);
+					Assert.assertEquals("Wrong morpheme id for "+dec, 
+						expParts[ip].morphid, gotParts[ip].morphid);
+				}
+				Assert.assertEquals(dec.toStr2(), dec.toExpression().decstr);
+			}
+		}
+	}
+
+	@Test
+	public void test__removeMultiples__HappyPath() throws Exception {
+		MorphologicalAnalyzer analyzer = new MorphologicalAnalyzer();
+		Decomposition[] decompositions = analyzer.decomposeWord("iglumik",false);
+		Decomposition[] withDuplicates = new Decomposition[2*decompositions.length];
+		for (int ii=0; ii < decompositions.length; ii++) {
+			withDuplicates[2*ii] = decompositions[ii];
+			withDuplicates[2*ii+1] = decompositions[ii];
+		}
+		Assert.assertEquals("Duplicate decompositions should have been removed",
+			Decomposition.toString(decompositions),
+			Decomposition.toString(Decomposition.removeMultiples(withDuplicates)));
+	}
+
 }
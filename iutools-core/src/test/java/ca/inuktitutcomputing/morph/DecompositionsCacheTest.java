@@ -0,0 +1,77 @@
+package ca.inuktitutcomputing.morph;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+
+public class DecompositionsCacheTest {
+
+	@Test
+	public void test__DecompositionsCache__Synopsis() throws Exception {
+		// The cache can be limited to a number of words...
+		DecompositionsCache cache = new DecompositionsCache(100, null);
+		// ... or to an approximate number of bytes, in which case the number
+		// of words is ignored
+		cache = new DecompositionsCache(100, new Long(1000000));
+
+		Decomposition[] decs = decompositionsOf("inuktitut");
+		// When decompositions are put in the cache, say how long it took to
+		// compute them
+		cache.put("inuktitut", decs, 2000000);
+		Assert.assertSame(decs, cache.get("inuktitut"));
+		Assert.assertNull(cache.get("iglumik"));
+
+		// The cache keeps statistics
+		CacheStats stats = cache.stats();
+		Assert.assertEquals(1, stats.hitCount());
+		Assert.assertEquals(1, stats.missCount());
+		Assert.assertEquals(0.5, stats.hitRate(), 0.0001);
+		Assert.assertEquals(1, stats.loadCount());
+		Assert.assertEquals(2000000.0, stats.averageLoadPenalty(), 0.0001);
+
+		cache.remove("inuktitut");
+		Assert.assertNull(cache.get("inuktitut"));
+	}
+
+	@Test
+	public void test__put__EvictsWhenFull() throws Exception {
+		DecompositionsCache cache = new DecompositionsCache(2, null);
+		Decomposition[] decs = decompositionsOf("inuktitut");
+		for (int ii=0; ii < 10; ii++) {
+			cache.put("word"+ii, decs, 1000);
+		}
+		cache.cleanUp();
+		Assert.assertEquals(2, cache.estimatedSize());
+		Assert.assertEquals(8, cache.stats().evictionCount());
+	}
+
+	@Test
+	public void test__put__EvictsWhenOverMaxBytes() throws Exception {
+		Decomposition[] decs = decompositionsOf("inuktitut");
+		int bytesPerWord = DecompositionsCache.approximateBytes("word0", decs);
+		DecompositionsCache cache = 
+			new DecompositionsCache(1000, new Long(3 * bytesPerWord));
+		for (int ii=0; ii < 10; ii++) {
+			cache.put("word"+ii, decs, 1000);
+		}
+		cache.cleanUp();
+		Assert.assertEquals(3, cache.estimatedSize());
+	}
+
+	@Test
+	public void test__approximateBytes__GrowsWithDecompositions() throws Exception {
+		Decomposition[] decs = decompositionsOf("inuktitut");
+		Decomposition[] fewer = new Decomposition[] {decs[0]};
+		Assert.assertTrue(decs.length > 1);
+		Assert.assertTrue(DecompositionsCache.approximateBytes("inuktitut", decs) >
+			DecompositionsCache.approximateBytes("inuktitut", fewer));
+		Assert.assertTrue(DecompositionsCache.approximateBytes("inuktitut", fewer) >
+			DecompositionsCache.approximateBytes("inuktitut", new Decomposition[0]));
+	}
+
+	private static Decomposition[] decompositionsOf(String word) throws Exception {
+		MorphologicalAnalyzer analyzer = new MorphologicalAnalyzer();
+		return analyzer.decomposeWord(word);
+	}
+}
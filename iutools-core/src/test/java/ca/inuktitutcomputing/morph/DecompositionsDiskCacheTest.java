@@ -0,0 +1,177 @@
+package ca.inuktitutcomputing.morph;
+
+import java.io.File;
+import java.nio.file.Files;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class DecompositionsDiskCacheTest {
+
+	File cacheDir = null;
+
+	@Before
+	public void setUp() throws Exception {
+		cacheDir = Files.createTempDirectory("decompscache").toFile();
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		MorphologicalAnalyzer.setDiskCache(null);
+	}
+
+	@Test
+	public void test__DecompositionsDiskCache__Synopsis() throws Exception {
+		// The disk cache stores the decompositions of words in a directory,
+		// for the current version of the linguistic data.
+		DecompositionsDiskCache cache = new DecompositionsDiskCache(cacheDir);
+
+		String word = "inuksuk";
+		Decomposition[] decomps =
+			new MorphologicalAnalyzer().decomposeWord(word);
+		cache.put(word, true, decomps);
+
+		// The decompositions can then be read back, even by a different
+		// cache object (for example, in a different process)
+		Decomposition[] gotDecomps =
+			new DecompositionsDiskCache(cacheDir).get(word, true);
+		Assert.assertEquals("Decompositions read from disk differ from the original ones",
+			Decomposition.toString(decomps), Decomposition.toString(gotDecomps));
+
+		// The 'extended' flag is part of the key
+		Assert.assertNull(
+			"Non-extended decompositions should not have been in the cache",
+			cache.get(word, false));
+
+		// Entries can be removed
+		cache.remove(word, true);
+		Assert.assertNull(
+			"Word should not have been in the cache after its removal",
+			cache.get(word, true));
+	}
+
+	@Test
+	public void test__get__DifferentLinguisticDataVersion__ReturnsNull() throws Exception {
+		String word = "inuksuk";
+		Decomposition[] decomps =
+			new MorphologicalAnalyzer().decomposeWord(word);
+		new DecompositionsDiskCache(cacheDir, "version1").put(word, true, decomps);
+
+		Assert.assertNotNull(
+			new DecompositionsDiskCache(cacheDir, "version1").get(word, true));
+		Assert.assertNull(
+			"Decompositions computed with another version of the linguistic data should not have been returned",
+			new DecompositionsDiskCache(cacheDir, "version2").get(word, true));
+	}
+
+	@Test
+	public void test__get__DifferentAnalyzerVersion__ReturnsNull() throws Exception {
+		String word = "inuksuk";
+		Decomposition[] decomps =
+			new MorphologicalAnalyzer().decomposeWord(word);
+		new DecompositionsDiskCache(cacheDir, "version1", 1).put(word, true, decomps);
+
+		Assert.assertNotNull(
+			new DecompositionsDiskCache(cacheDir, "version1", 1).get(word, true));
+		Assert.assertNull(
+			"Decompositions computed with another version of the analyzer should not have been returned",
+			new DecompositionsDiskCache(cacheDir, "version1", 2).get(word, true));
+	}
+
+	@Test
+	public void test__put__RootArcNotInTheGraph__FailsWithoutCachingTheWord() throws Exception {
+		DecompositionsDiskCache cache = new DecompositionsDiskCache(cacheDir);
+		String word = "inuksuk";
+		MorphologicalAnalyzer.removeFromCache(word, true);
+		Decomposition[] decomps =
+			new MorphologicalAnalyzer().decomposeWord(word).clone();
+		// A copy of the first decomposition, whose root arc is not one of
+		// the arcs of its start state
+		RootPartOfComposition stem = decomps[0].stem;
+		Graph.Arc strayArc = new Graph.Arc(null, stem.getArc().startState);
+		strayArc.setStartState(stem.getArc().startState);
+		decomps[0] = Decomposition.restore(decomps[0].word,
+			new RootPartOfComposition(stem.term, stem.getRoot(), 
+				stem.transitivity, strayArc), 
+			decomps[0].morphParts);
+
+		try {
+			cache.put(word, true, decomps);
+			Assert.fail("Decompositions with an arc that is not in the graph should not have been cached");
+		} catch (MorphologicalAnalyzerException e) {
+			// Expected
+		}
+		Assert.assertNull("Word should not have been cached", 
+			cache.get(word, true));
+	}
+
+	@Test
+	public void test__decomposeWord__AnalyzerWithDiskCache__WordIsCachedOnDisk() throws Exception {
+		DecompositionsDiskCache cache = new DecompositionsDiskCache(cacheDir);
+		MorphologicalAnalyzer.setDiskCache(cache);
+
+		String word = "iglumik";
+		MorphologicalAnalyzer.removeFromCache(word, true);
+		Decomposition[] decomps =
+			new MorphologicalAnalyzer().decomposeWord(word);
+
+		Decomposition[] gotDecomps = cache.get(word, true);
+		Assert.assertNotNull("Word should have been cached on disk", gotDecomps);
+		Assert.assertEquals(
+			Decomposition.toString(decomps), Decomposition.toString(gotDecomps));
+	}
+
+	@Test
+	public void test__get__SameObjectsAsTheComputedDecompositions() throws Exception {
+		DecompositionsDiskCache cache = new DecompositionsDiskCache(cacheDir);
+		MorphologicalAnalyzer analyzer = new MorphologicalAnalyzer();
+		String[] words = new String[] {
+			"inuksuk", "iglumik", "takujuq", "nunavummi", "qamanittuarmi"};
+		for (String word: words) {
+			MorphologicalAnalyzer.removeFromCache(word, true);
+			Decomposition[] decomps = analyzer.decomposeWord(word);
+			cache.put(word, true, decomps);
+			Decomposition[] gotDecomps = cache.get(word, true);
+			Assert.assertEquals("Wrong number of decompositions for "+word, 
+				decomps.length, gotDecomps.length);
+			for (int id=0; id < decomps.length; id++) {
+				String which = "decomposition #"+id+" of "+word;
+				RootPartOfComposition root = decomps[id].stem;
+				RootPartOfComposition gotRoot = gotDecomps[id].stem;
+				Assert.assertSame("Wrong root (or root variant) for "+which, 
+					root.getRoot(), gotRoot.getRoot());
+				assertSameArc("root of "+which, root.getArc(), gotRoot.getArc());
+				for (int ip=0; ip < decomps[id].morphParts.length; ip++) {
+					AffixPartOfComposition part = decomps[id].morphParts[ip];
+					AffixPartOfComposition gotPart = gotDecomps[id].morphParts[ip];
+					Assert.assertSame("Wrong form for affix #"+ip+" of "+which, 
+						part.getForm(), gotPart.getForm());
+					assertSameArc("affix #"+ip+" of "+which, 
+						part.getArc(), gotPart.getArc());
+					Assert.assertEquals("Wrong number of arcs for affix #"+ip+" of "+which,
+						numArcs(part), numArcs(gotPart));
+				}
+			}
+		}
+	}
+
+	private int numArcs(AffixPartOfComposition part) {
+		return (part.getArcs() == null ? 0 : part.getArcs().length);
+	}
+
+	private void assertSameArc(String what, Graph.Arc expArc, Graph.Arc gotArc) {
+		if (expArc == null) {
+			Assert.assertNull("There should have been no arc for the "+what, gotArc);
+			return;
+		}
+		Assert.assertNotNull("There should have been an arc for the "+what, gotArc);
+		Assert.assertSame("Wrong start state for the arc of the "+what, 
+			expArc.startState, gotArc.startState);
+		Assert.assertSame("Wrong destination state for the arc of the "+what, 
+			expArc.destState, gotArc.destState);
+		Assert.assertSame("Wrong condition for the arc of the "+what, 
+			expArc.cond, gotArc.cond);
+	}
+}
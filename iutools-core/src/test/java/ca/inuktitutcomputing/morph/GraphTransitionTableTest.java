@@ -0,0 +1,97 @@
+package ca.inuktitutcomputing.morph;
+
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+import java.util.Vector;
+
+import org.junit.Test;
+
+import ca.inuktitutcomputing.data.LinguisticData;
+import ca.inuktitutcomputing.data.Morpheme;
+
+public class GraphTransitionTableTest {
+
+	@Test
+	public void test__GraphTransitionTable__Synopsis() throws Exception {
+		// The table is computed once for the current linguistic data
+		GraphTransitionTable table = GraphTransitionTable.forCurrentData();
+		assertSame(table, GraphTransitionTable.forCurrentData());
+
+		// It gives the arcs that can be followed with a morpheme from some
+		// states of the graph, or null if there are none. The graph is
+		// traversed from the end of the word: a word may end with the
+		// suffix 'juq', but not with the root 'taku'.
+		Graph.State[] states = new Graph.State[] {Graph.initialState};
+		assertNotNull(table.arcsFollowed(Morpheme.getMorpheme("juq/1vn"), states));
+		assertNull(table.arcsFollowed(Morpheme.getMorpheme("taku/1v"), states));
+	}
+
+	@Test
+	public void test__arcsFollowed__SameAsVerifyingTheStates() throws Exception {
+		GraphTransitionTable table = GraphTransitionTable.forCurrentData();
+		LinguisticData data = LinguisticData.getInstance();
+		Graph.State[] states = Graph.allStates();
+		for (int intId = 0; intId < data.getNbMorphemeIntIds(); intId += 7) {
+			Morpheme morph = data.getMorphemeWithIntId(intId);
+			if (morph == null) {
+				continue;
+			}
+			for (Graph.State state: states) {
+				if (state.arcs == null) {
+					continue;
+				}
+				Graph.State[] fromStates = new Graph.State[] {(Graph.State)state.clone()};
+				assertArcsEqual("Wrong arcs for "+morph.id+" from state "+state.id,
+					state.verify(morph), table.arcsFollowed(morph, fromStates));
+				assertArcsEqual("Wrong arcs for a copy of "+morph.id+" from state "+state.id,
+					state.verify(morph), table.arcsFollowed(morph.copyOf(), fromStates));
+			}
+		}
+	}
+
+	@Test
+	public void test__arcsFollowed__VariantsOfRoots__SameAsVerifyingTheStates() throws Exception {
+		GraphTransitionTable table = GraphTransitionTable.forCurrentData();
+		LinguisticData data = LinguisticData.getInstance();
+		Graph.State[] states = Graph.allStates();
+		int nbVariants = 0;
+		for (String canonicalForm: data.getCanonicalFormsForAllBases()) {
+			for (Morpheme base: data.getBasesForCanonicalForm(canonicalForm)) {
+				if (data.getMorphemeWithIntId(base.intId).sharesAttributesWith(base)) {
+					continue;
+				}
+				nbVariants++;
+				for (Graph.State state: states) {
+					if (state.arcs == null) {
+						continue;
+					}
+					Graph.State[] fromStates = new Graph.State[] {(Graph.State)state.clone()};
+					assertArcsEqual("Wrong arcs for variant "+base.morpheme+" of "+base.id+" from state "+state.id,
+						state.verify(base), table.arcsFollowed(base.copyOf(), fromStates));
+				}
+			}
+		}
+		assertTrue("The linguistic data should have variants of roots", nbVariants > 0);
+	}
+
+	@Test
+	public void test__arcsFollowed__SeveralStates__ArcsInOrderOfStates() throws Exception {
+		GraphTransitionTable table = GraphTransitionTable.forCurrentData();
+		Morpheme juq = Morpheme.getMorpheme("juq/1vn");
+		Graph.State[] states = new Graph.State[] {Graph.initialState, Graph.verbState};
+		Vector<Graph.Arc> expArcs = new Vector<Graph.Arc>();
+		for (Graph.State state: states) {
+			expArcs.addAll(state.verify(juq));
+		}
+		assertArcsEqual("Wrong arcs from several states",
+			expArcs, table.arcsFollowed(juq, states));
+	}
+
+	private void assertArcsEqual(String message, Vector<Graph.Arc> expArcs,
+			Graph.Arc[] gotArcs) {
+		Graph.Arc[] exp = (expArcs.isEmpty() ? null : expArcs.toArray(new Graph.Arc[0]));
+		assertTrue(message+"\nExpected: "+Arrays.toString(exp)+"\nGot: "+Arrays.toString(gotArcs),
+			Arrays.equals(exp, gotArcs));
+	}
+}
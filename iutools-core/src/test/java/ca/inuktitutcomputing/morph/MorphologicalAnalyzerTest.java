@@ -5,10 +5,30 @@ import org.junit.Assert;
 import org.junit.Before;
 import org.junit.Test;
 
+import ca.inuktitutcomputing.data.Lexicon;
 import ca.inuktitutcomputing.data.LinguisticDataException;
+import ca.inuktitutcomputing.data.Morpheme;
+import ca.inuktitutcomputing.script.Orthography;
+import ca.inuktitutcomputing.morph.MorphologicalAnalyzerAbstract.TimeoutStrategy;
+import ca.inuktitutcomputing.utilities.CancellationToken;
+import ca.inuktitutcomputing.utilities.StopWatch;
+import ca.nrc.file.ResourceGetter;
 import ca.nrc.testing.AssertNumber;
 
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Vector;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.TimeoutException;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
@@ -51,6 +71,120 @@ public class MorphologicalAnalyzerTest {
 		analyzer.decomposeWord(word);
 	}
 
+	@Test
+	public void test__decomposeWord__TimeoutWithPoolOfOneThread__ThreadIsReleasedForNextWord() 
+			throws Exception  {
+		// This analyzer never completes the word "forever", unless it is 
+		// cancelled.
+		MorphologicalAnalyzerAbstract analyzer = new MorphologicalAnalyzerAbstract() {
+			@Override
+			protected Decomposition[] doDecompose(String word, Boolean lenient) {
+				return new Decomposition[0];
+			}
+
+			@Override
+			protected Decomposition[] doDecompose(String word, Boolean lenient, 
+					CancellationToken cancellationToken) throws TimeoutException {
+				StopWatch stpw = new StopWatch(Long.MAX_VALUE)
+					.setCancellationToken(cancellationToken);
+				while (word.equals("forever")) {
+					stpw.check("Looping forever");
+				}
+				return new Decomposition[0];
+			}
+		};
+		analyzer.setTimeout(500);
+		analyzer.setTimeoutStrategy(TimeoutStrategy.EXECUTOR);
+		
+		MorphologicalAnalyzerAbstract.setExecutorPoolSize(1);
+		try {
+			long cancelledBefore = 
+				MorphologicalAnalyzerAbstract.executorPoolStats().cancelledTasks;
+			try {
+				analyzer.decomposeWord("forever");
+				Assert.fail("Decomposition should have timed out");
+			} catch (TimeoutException e) {
+				// Expected
+			}
+			Assert.assertEquals("The word that timed out should have been cancelled", 
+				cancelledBefore+1, 
+				MorphologicalAnalyzerAbstract.executorPoolStats().cancelledTasks);
+			
+			// If the cancelled word was still running, this word would wait 
+			// for the only thread of the pool and time out.
+			analyzer.decomposeWord("iglumik");
+		} finally {
+			MorphologicalAnalyzerAbstract.setExecutorPoolSize(
+				Runtime.getRuntime().availableProcessors());
+		}
+	}
+
+	@Test
+	public void test__decomposeWord__WordQueuedBehindAnother__TimeAllowedStartsWhenItRuns() 
+			throws Exception  {
+		MorphologicalAnalyzerAbstract analyzer = sleepingAnalyzer();
+		analyzer.setTimeout(500);
+		analyzer.setTimeoutStrategy(TimeoutStrategy.EXECUTOR);
+		
+		MorphologicalAnalyzerAbstract.setExecutorPoolSize(1);
+		ExecutorService caller = Executors.newSingleThreadExecutor();
+		try {
+			Future<Decomposition[]> first = 
+				caller.submit(decomposeLater(analyzer, "sleep-400"));
+			Thread.sleep(50);
+			// Waits about 350 msecs for the only thread of the pool, then 
+			// takes 300 msecs: more than the timeout since it was submitted,
+			// but not since it started
+			analyzer.decomposeWord("sleep-300");
+			first.get();
+		} finally {
+			caller.shutdownNow();
+			MorphologicalAnalyzerAbstract.setExecutorPoolSize(
+				Runtime.getRuntime().availableProcessors());
+		}
+	}
+
+	@Test
+	public void test__decomposeWord__QueueIsFull__WordIsRejectedWithoutTimingOut() 
+			throws Exception  {
+		MorphologicalAnalyzerAbstract analyzer = sleepingAnalyzer();
+		analyzer.setTimeout(5000);
+		analyzer.setTimeoutStrategy(TimeoutStrategy.EXECUTOR);
+		
+		MorphologicalAnalyzerAbstract.shutdownExecutorPool();
+		MorphologicalAnalyzerAbstract.setExecutorPoolSize(1);
+		MorphologicalAnalyzerAbstract.setExecutorQueueCapacity(1);
+		ExecutorService callers = Executors.newFixedThreadPool(2);
+		try {
+			// One word running, and one waiting in the queue
+			callers.submit(decomposeLater(analyzer, "sleep-2000"));
+			Thread.sleep(100);
+			callers.submit(decomposeLater(analyzer, "sleep-2000"));
+			Thread.sleep(100);
+			
+			ExecutorPoolStats statsBefore = 
+				MorphologicalAnalyzerAbstract.executorPoolStats();
+			try {
+				analyzer.decomposeWord("sleep-0");
+				Assert.fail("Word should have been rejected");
+			} catch (AnalyzerBusyException e) {
+				// Expected
+			}
+			ExecutorPoolStats statsAfter = 
+				MorphologicalAnalyzerAbstract.executorPoolStats();
+			Assert.assertEquals(statsBefore.rejectedTasks+1, statsAfter.rejectedTasks);
+			Assert.assertEquals("A rejected word should not count as a timeout", 
+				statsBefore.cancelledTasks, statsAfter.cancelledTasks);
+		} finally {
+			callers.shutdownNow();
+			MorphologicalAnalyzerAbstract.shutdownExecutorPool();
+			MorphologicalAnalyzerAbstract.setExecutorQueueCapacity(
+				16 * Runtime.getRuntime().availableProcessors());
+			MorphologicalAnalyzerAbstract.setExecutorPoolSize(
+				Runtime.getRuntime().availableProcessors());
+		}
+	}
+
 	@Test
 	public void test__decomposeWord__maligatigut() throws Exception  {
 		MorphologicalAnalyzer analyzer = new MorphologicalAnalyzer();
@@ -268,7 +402,7 @@ public class MorphologicalAnalyzerTest {
 		// This ensures that the first time we 
 		// decompose the word, it will be done from scratch
 		//
-		MorphologicalAnalyzer.removeFromCache(word);
+		MorphologicalAnalyzer.removeFromCache(word, true);
 		long start = System.nanoTime();
 		Decomposition[] analyses = analyzer.decomposeWord(word);
 		long elapsedFirstTime = System.nanoTime() - start;
@@ -324,6 +458,403 @@ public class MorphologicalAnalyzerTest {
 		}
 	}
 
+	@Test
+	public void test__decomposeWord__DoesNotModifyTheBasesOfTheLexicon() 
+			throws Exception {
+		// analyzeAsRoot used to add the bases found for the dialectal 
+		// variants of a stem to the very vector held by the lexicon, 
+		// so that every analysis changed the linguistic data shared by 
+		// all threads.
+		String[] words = new String[] {
+			"iglumik", "takujuq", "nunavummi", "qamanittuarmi", 
+			"uqaqtiup", "sivuliuqtii", "apiqsuqtaujuksaq", "avunngaqtuq"};
+		MorphologicalAnalyzer analyzer = new MorphologicalAnalyzer();
+		analyzer.disactivateTimeout();
+		
+		Map<String,Integer> expNumBases = numBasesOfPrefixes(words);
+		for (int ii=0; ii < 2; ii++) {
+			for (String word: words) {
+				MorphologicalAnalyzer.removeFromCache(word);
+				analyzer.decomposeWord(word);
+			}
+		}
+		Assert.assertEquals(
+			"Decomposing the words should not have changed the bases of the lexicon",
+			expNumBases, numBasesOfPrefixes(words));
+	}
+	
+	private Map<String,Integer> numBasesOfPrefixes(String[] words) 
+			throws LinguisticDataException {
+		Map<String,Integer> numBases = new HashMap<String,Integer>();
+		for (String word: words) {
+			for (int end=1; end <= word.length(); end++) {
+				String prefix = Orthography.orthographyICILat(word.substring(0, end));
+				Vector<Morpheme> bases = Lexicon.lookForBase(prefix, false);
+				if (bases != null) {
+					numBases.put(prefix, bases.size());
+				}
+			}
+		}
+		return numBases;
+	}
+
+	@Test
+	public void test__decomposeWord__SameWordsInSeveralThreadsAtOnce__SameResultsAsOneThread() 
+			throws Exception {
+		final String[] words = new String[] {
+			"iglumik", "maligatigut", "uqaqtiup", "sivuliuqtii", "ammalu", 
+			"apiqsuqtaujuksaq", "immagaa", "avunngaqtuq", "nunavummi"};
+		final MorphologicalAnalyzer analyzer = new MorphologicalAnalyzer();
+		analyzer.disactivateTimeout();
+		
+		final Map<String,String> expDecomps = new HashMap<String,String>();
+		for (String word: words) {
+			MorphologicalAnalyzer.removeFromCache(word);
+			expDecomps.put(word, decompsToString(analyzer.decomposeWord(word)));
+		}
+		
+		// Every thread decomposes all the words. Each thread capitalizes 
+		// a different letter of the words, so that it does not get the 
+		// decompositions cached by another thread (the cache is keyed on 
+		// the word as given, the analysis is done on its lowercase form).
+		int numThreads = 6;
+		ExecutorService pool = Executors.newFixedThreadPool(numThreads);
+		List<Future<Map<String,String>>> gotDecomps = 
+			new ArrayList<Future<Map<String,String>>>();
+		for (int tt=0; tt < numThreads; tt++) {
+			final int upperCasePos = tt;
+			gotDecomps.add(pool.submit(new Callable<Map<String,String>>() {
+				public Map<String,String> call() throws Exception {
+					Map<String,String> decomps = new HashMap<String,String>();
+					for (String word: words) {
+						int pos = upperCasePos % word.length();
+						String variant = word.substring(0, pos) + 
+							word.substring(pos, pos+1).toUpperCase() + 
+							word.substring(pos+1);
+						MorphologicalAnalyzer.removeFromCache(variant);
+						decomps.put(word, decompsToString(analyzer.decomposeWord(variant)));
+					}
+					return decomps;
+				}
+			}));
+		}
+		pool.shutdown();
+		
+		for (int tt=0; tt < numThreads; tt++) {
+			Map<String,String> threadDecomps = gotDecomps.get(tt).get();
+			for (String word: words) {
+				Assert.assertEquals(
+					"Decompositions of word "+word+" in thread "+tt+" should have been the same as when decomposed in a single thread", 
+					expDecomps.get(word), threadDecomps.get(word));
+			}
+		}
+	}
+
+	@Test
+	public void test__decomposeWord__SameAnalyzerInSeveralThreads__SameResultsAsOneThread() 
+			throws Exception {
+		final String[] words = new String[] {
+			"iglumik", "maligatigut", "uqaqtiup", "sivuliuqtii", "ammalu", 
+			"apiqsuqtaujuksaq", "immagaa", "avunngaqtuq"};
+		final MorphologicalAnalyzer analyzer = new MorphologicalAnalyzer();
+		analyzer.disactivateTimeout();
+		
+		final Map<String,String> expDecomps = new HashMap<String,String>();
+		for (String word: words) {
+			MorphologicalAnalyzer.removeFromCache(word);
+			expDecomps.put(word, decompsToString(analyzer.decomposeWord(word)));
+		}
+		
+		for (String word: words) {
+			MorphologicalAnalyzer.removeFromCache(word);
+		}
+		ExecutorService pool = Executors.newFixedThreadPool(4);
+		Map<String,Future<Decomposition[]>> gotDecomps = 
+			new HashMap<String,Future<Decomposition[]>>();
+		for (final String word: words) {
+			gotDecomps.put(word, pool.submit(new Callable<Decomposition[]>() {
+				public Decomposition[] call() throws Exception {
+					return analyzer.decomposeWord(word);
+				}
+			}));
+		}
+		pool.shutdown();
+		
+		for (String word: words) {
+			Assert.assertEquals(
+				"Decompositions of word "+word+" should have been the same as when decomposed in a single thread", 
+				expDecomps.get(word), decompsToString(gotDecomps.get(word).get()));
+		}
+	}
+	
+	@Test
+	public void test__decomposeWords__HappyPath() throws Exception {
+		List<String> words = Arrays.asList(new String[] {
+			"inuksuk", "iglumik", "takujuq", "iglumik", "nunavummi", "inuksuk"});
+		MorphologicalAnalyzer analyzer = new MorphologicalAnalyzer();
+		
+		final List<Long> progress = new ArrayList<Long>();
+		final List<DecompositionResults> gotResults = 
+			new ArrayList<DecompositionResults>();
+		DecomposeWordsOptions options = 
+			new DecomposeWordsOptions()
+				.setNumThreads(3)
+				.setDedupe(true)
+				.setProgressEvery(2);
+		analyzer.decomposeWords(words, options, new DecompositionResultsHandler() {
+			@Override
+			public void onResults(DecompositionResults results) {
+				gotResults.add(results);
+			}
+			@Override
+			public void onProgress(long numWordsDone) {
+				progress.add(numWordsDone);
+			}
+		});
+		
+		// Repeated words are only decomposed once, and the results come in 
+		// the order of the batch.
+		String[] expWords = new String[] {
+			"inuksuk", "iglumik", "takujuq", "nunavummi"};
+		Assert.assertEquals("Wrong number of results", 
+			expWords.length, gotResults.size());
+		for (int ii=0; ii < expWords.length; ii++) {
+			DecompositionResults results = gotResults.get(ii);
+			Assert.assertEquals("Wrong word for results #"+ii, 
+				expWords[ii], results.word);
+			Assert.assertFalse("Word "+results.word+" should not have timed out", 
+				results.timedOut);
+			Assert.assertEquals(
+				"Decompositions of word "+results.word+" should have been the same as with decomposeWord()", 
+				decompsToString(analyzer.decomposeWord(results.word)), 
+				decompsToString(results.decompositions));
+		}
+		Assert.assertEquals("Wrong progress reports", 
+			Arrays.asList(new Long[] {2L, 4L}), progress);
+	}
+	
+	@Test
+	public void test__decomposeWords__DefaultOptions__OneResultPerWord() throws Exception {
+		List<String> words = Arrays.asList(new String[] {
+			"iglumik", "takujuq", "iglumik"});
+		MorphologicalAnalyzer analyzer = new MorphologicalAnalyzer();
+		List<DecompositionResults> gotResults = 
+			analyzer.decomposeWords(words, new DecomposeWordsOptions());
+		Assert.assertEquals("Wrong number of results", 3, gotResults.size());
+		Assert.assertEquals("Wrong word for last results", 
+			"iglumik", gotResults.get(2).word);
+		Assert.assertEquals("Repeated word should have had the same decompositions", 
+			decompsToString(gotResults.get(0).decompositions), 
+			decompsToString(gotResults.get(2).decompositions));
+	}
+	
+	@Test
+	public void test__decomposeWordBestFirst__SameAsFirstDecompositionsOfDecomposeWord() 
+			throws Exception {
+		MorphologicalAnalyzer analyzer = new MorphologicalAnalyzer();
+		String[] words = new String[] {
+			"inuksuk", "maligaliuqtinik", "nunalittinni", "tukiliuqtausimajuq", 
+			"apiqsuqtaujuksaq", "sivungujuq"};
+		for (int maxDecomps: new int[] {1, 3}) {
+			for (String word: words) {
+				MorphologicalAnalyzer.removeFromCache(word, true);
+				DecompositionResults gotResults = 
+					analyzer.decomposeWordBestFirst(word, maxDecomps);
+				Assert.assertFalse("Best-first decomposition of "+word+" should not have timed out", 
+					gotResults.timedOut);
+				
+				MorphologicalAnalyzer.removeFromCache(word, true);
+				Decomposition[] allDecomps = analyzer.decomposeWord(word);
+				Decomposition[] expDecomps = 
+					Arrays.copyOf(allDecomps, Math.min(maxDecomps, allDecomps.length));
+				Assert.assertEquals(
+					"Best "+maxDecomps+" decomposition(s) of "+word+" differ from the first ones of decomposeWord()", 
+					decompsToString(expDecomps), 
+					decompsToString(gotResults.decompositions));
+			}
+		}
+	}
+	
+	/*
+	 * Only a sample of the gold standard: see the CompareBestFirstSearch 
+	 * command for all of its words.
+	 */
+	@Test
+	public void test__decomposeWordBestFirst__GoldStandardWords__SameAsFirstDecompositionsOfDecomposeWord() 
+			throws Exception {
+		MorphologicalAnalyzer analyzer = new MorphologicalAnalyzer();
+		List<String> words = goldStandardWords(100);
+		for (int maxDecomps: new int[] {1, 3}) {
+			for (String word: words) {
+				MorphologicalAnalyzer.removeFromCache(word, true);
+				Decomposition[] allDecomps = null;
+				try {
+					allDecomps = analyzer.decomposeWord(word);
+				} catch (TimeoutException e) {
+					// Nothing to compare with
+					continue;
+				}
+				Decomposition[] expDecomps = 
+					Arrays.copyOf(allDecomps, Math.min(maxDecomps, allDecomps.length));
+				
+				MorphologicalAnalyzer.removeFromCache(word, true);
+				DecompositionResults gotResults = 
+					analyzer.decomposeWordBestFirst(word, maxDecomps);
+				Assert.assertFalse("Best-first decomposition of "+word+" should not have timed out", 
+					gotResults.timedOut);
+				Assert.assertEquals(
+					"Best "+maxDecomps+" decomposition(s) of "+word+" differ from the first ones of decomposeWord()", 
+					decompsToString(expDecomps), 
+					decompsToString(gotResults.decompositions));
+			}
+		}
+	}
+	
+	@Test
+	public void test__decomposeWordBestFirst__Timeout__ReturnsResultsInsteadOfRaisingException() 
+			throws Exception {
+		MorphologicalAnalyzer analyzer = new MorphologicalAnalyzer();
+		String word = "ilisaqsitittijunnaqsisimannginnama";
+		MorphologicalAnalyzer.removeFromCache(word, true);
+		// The search is stopped at its first check, as it is when it runs 
+		// out of time
+		CancellationToken cancelled = new CancellationToken();
+		cancelled.cancel("test");
+		DecompositionResults gotResults = 
+			analyzer.doDecomposeBestFirst(word, 1, true, cancelled);
+		Assert.assertTrue("Results should have been flagged as timed out", 
+			gotResults.timedOut);
+		Assert.assertTrue("Should have returned at most 1 decomposition", 
+			gotResults.decompositions.length <= 1);
+	}
+
+	@Test
+	public void test__decomposeWord__WithAndWithoutBoundaryPruning__SameDecompositions() 
+			throws Exception {
+		String[] words = new String[] {
+			"inuksuk", "iglumik", "takujuq", "nunavummi", "qamanittuarmi", 
+			"maligaliuqtinik", "immagaa"};
+		MorphologicalAnalyzer analyzer = new MorphologicalAnalyzer();
+		
+		analyzer.setBoundaryPruning(false);
+		Map<String,String> unprunedDecomps = new HashMap<String,String>();
+		for (String word: words) {
+			MorphologicalAnalyzer.removeFromCache(word, true);
+			unprunedDecomps.put(word, decompsToString(analyzer.decomposeWord(word)));
+		}
+		
+		analyzer.setBoundaryPruning(true);
+		BoundaryPruningStats statsBefore = MorphologicalAnalyzer.boundaryPruningStats();
+		for (String word: words) {
+			MorphologicalAnalyzer.removeFromCache(word, true);
+			Assert.assertEquals("Pruning impossible boundaries should not have changed the decompositions of "+word, 
+				unprunedDecomps.get(word), decompsToString(analyzer.decomposeWord(word)));
+		}
+		BoundaryPruningStats statsAfter = MorphologicalAnalyzer.boundaryPruningStats();
+		Assert.assertTrue("Some boundaries should have been pruned", 
+			statsAfter.prunedBoundaries > statsBefore.prunedBoundaries);
+	}
+
+	@Test
+	public void test__decomposeWord__WithAndWithoutStemMemoization__SameDecompositions() 
+			throws Exception {
+		// Words whose stems are reached through several chains of suffixes 
+		// that start with the same morpheme (ex: homonymous endings)
+		String[] words = new String[] {
+			"apiqsuqtaujuksaq", "maligaliuqtinik", "qamanittuarmi", 
+			"sivuliuqtii", "takujumajunnaqtuq", "nunavummi"};
+		MorphologicalAnalyzer analyzer = new MorphologicalAnalyzer();
+		analyzer.disactivateTimeout();
+		
+		analyzer.setStemMemoization(false);
+		Map<String,String> unmemoizedDecomps = new HashMap<String,String>();
+		for (String word: words) {
+			MorphologicalAnalyzer.removeFromCache(word, true);
+			unmemoizedDecomps.put(word, decompsToString(analyzer.decomposeWord(word)));
+		}
+		
+		analyzer.setStemMemoization(true);
+		AnalyzerInstrumentation.setInstrumentation(true);
+		AnalyzerInstrumentation.resetCounters();
+		AnalyzerStats stats = null;
+		try {
+			for (String word: words) {
+				MorphologicalAnalyzer.removeFromCache(word, true);
+				Assert.assertEquals("Reusing the analyses of stems should not have changed the decompositions of "+word, 
+					unmemoizedDecomps.get(word), decompsToString(analyzer.decomposeWord(word)));
+			}
+			stats = AnalyzerInstrumentation.snapshot();
+		} finally {
+			AnalyzerInstrumentation.setInstrumentation(false);
+			AnalyzerInstrumentation.resetCounters();
+		}
+		Assert.assertTrue("The analyses of some stems should have been reused", 
+			stats.stemAnalysesReused > 0);
+	}
+
+	/*
+	 * One in every 'every' words of the gold standard. The word is the
+	 * second token of each line; the first one is the same word, preceded 
+	 * by a '*', '@' or '#' for proper names, misspelled words, etc.
+	 */
+	private List<String> goldStandardWords(int every) throws Exception {
+		List<String> words = new ArrayList<String>();
+		String path = ResourceGetter.getResourcePath("goldstandardHansard.txt");
+		int lineNum = 0;
+		for (String line: Files.readAllLines(Paths.get(path), StandardCharsets.UTF_8)) {
+			String[] fields = line.trim().split("\\s+");
+			if (fields.length < 3) {
+				continue;
+			}
+			if (lineNum++ % every == 0) {
+				words.add(fields[1]);
+			}
+		}
+		return words;
+	}
+	
+	/*
+	 * Analyzer that takes N msecs to decompose the word "sleep-N".
+	 */
+	private MorphologicalAnalyzerAbstract sleepingAnalyzer() throws Exception {
+		return new MorphologicalAnalyzerAbstract() {
+			@Override
+			protected Decomposition[] doDecompose(String word, Boolean lenient) 
+					throws TimeoutException {
+				return doDecompose(word, lenient, null);
+			}
+
+			@Override
+			protected Decomposition[] doDecompose(String word, Boolean lenient, 
+					CancellationToken cancellationToken) throws TimeoutException {
+				try {
+					Thread.sleep(Long.parseLong(word.substring("sleep-".length())));
+				} catch (InterruptedException e) {
+					throw new TimeoutException("Interrupted");
+				}
+				return new Decomposition[0];
+			}
+		};
+	}
+
+	private Callable<Decomposition[]> decomposeLater(
+			final MorphologicalAnalyzerAbstract analyzer, final String word) {
+		return new Callable<Decomposition[]>() {
+			@Override
+			public Decomposition[] call() throws Exception {
+				return analyzer.decomposeWord(word);
+			}
+		};
+	}
+
+	private String decompsToString(Decomposition[] decomps) throws LinguisticDataException {
+		StringBuilder str = new StringBuilder();
+		for (Decomposition dec: decomps) {
+			str.append(dec.toStr2()).append("\n");
+		}
+		return str.toString();
+	}
+
 //	@Test
 //	public void test_validate_neutral_deletion__() {
 //		MorphologicalAnalyzer analyzer = new MorphologicalAnalyzer();
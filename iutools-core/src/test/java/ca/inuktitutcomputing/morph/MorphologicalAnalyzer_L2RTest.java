@@ -0,0 +1,99 @@
+package ca.inuktitutcomputing.morph;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import ca.inuktitutcomputing.data.LinguisticData;
+import ca.inuktitutcomputing.data.Morpheme;
+
+public class MorphologicalAnalyzer_L2RTest {
+
+	@Test
+	public void test__MorphologicalAnalyzer_L2R__Synopsis() throws Exception {
+		// The left-to-right analyzer is used like the MorphologicalAnalyzer
+		MorphologicalAnalyzer_L2R analyzer = new MorphologicalAnalyzer_L2R();
+		analyzer.setTimeout(15000);
+		Decomposition[] analyses = analyzer.decomposeWord("inuktitut");
+		Assert.assertTrue("There should have been at least one decomposition",
+			analyses.length > 0);
+		Assert.assertEquals("{inuk:inuk/1n}{titut:titut/tn-sim-p}", analyses[0].toStr2());
+	}
+
+	@Test
+	public void test__candidateMorphemes__HappyPath() throws Exception {
+		BitSet candidates = SurfaceFormTries.forCurrentData().candidateMorphemes("inuktitut");
+		assertCandidate(candidates, "inuk/1n", true);
+		assertCandidate(candidates, "titut/tn-sim-p", true);
+		// A root that does not start the word
+		assertCandidate(candidates, "iglu/1n", false);
+	}
+
+	@Test
+	public void test__candidateMorphemes__DialectalAndReducedClusters() throws Exception {
+		// iglu, written illu in some dialects
+		assertCandidate(SurfaceFormTries.forCurrentData().candidateMorphemes("illumi"),
+			"iglu/1n", true);
+		// ksaq, whose k is dropped after the cluster of naammak
+		assertCandidate(SurfaceFormTries.forCurrentData().candidateMorphemes("naammasaqtut"),
+			"ksaq/2vv", true);
+	}
+
+	@Test
+	public void test__decomposeWord__SameAsRightToLeftDecompositions() throws Exception {
+		MorphologicalAnalyzer r2l = new MorphologicalAnalyzer();
+		MorphologicalAnalyzer_L2R l2r = new MorphologicalAnalyzer_L2R();
+		for (String word: new String[] {"inuktitut", "illumi", "taimanna", "naammasaqtut"}) {
+			Set<String> l2rDecomps = decompsOf(l2r, word);
+			Assert.assertFalse("No decompositions for "+word, l2rDecomps.isEmpty());
+			Assert.assertEquals("Wrong decompositions for "+word,
+				decompsOf(r2l, word), l2rDecomps);
+		}
+	}
+
+	@Test
+	public void test__decomposeWord__CachedApartFromRightToLeftDecompositions() throws Exception {
+		String word = "inuktitut";
+		MorphologicalAnalyzer.removeFromCache(word, true);
+		Assert.assertTrue("The right-to-left analyzer should have decomposed the word",
+			new MorphologicalAnalyzer().decomposeWord(word).length > 0);
+		// An analyzer that examines none of the morphemes must not get the
+		// decompositions of the other one from the cache
+		MorphologicalAnalyzer noCandidates = new MorphologicalAnalyzer_L2R() {
+			@Override
+			protected BitSet candidateMorphemes(String term) {
+				return new BitSet();
+			}
+			@Override
+			protected String cacheNamespace() {
+				return "none:";
+			}
+		};
+		Assert.assertEquals("Decompositions should not have come from the cache",
+			0, noCandidates.decomposeWord(word).length);
+		MorphologicalAnalyzer.removeFromCache(word, true);
+	}
+
+	private static Set<String> decompsOf(MorphologicalAnalyzer analyzer, String word)
+			throws Exception {
+		MorphologicalAnalyzer.removeFromCache(word, true);
+		Set<String> decomps = new HashSet<String>();
+		for (Decomposition dec: analyzer.decomposeWord(word)) {
+			decomps.add(dec.toStr2());
+		}
+		return decomps;
+	}
+
+	private static void assertCandidate(BitSet candidates, String morphId,
+			boolean expCandidate) throws Exception {
+		Morpheme morph = LinguisticData.getInstance().getMorpheme(morphId);
+		Assert.assertNotNull("Unknown morpheme "+morphId, morph);
+		Assert.assertEquals("Wrong candidacy for morpheme "+morphId+" among "+
+			Arrays.toString(candidates.stream().toArray()),
+			expCandidate, candidates.get(morph.intId));
+	}
+}
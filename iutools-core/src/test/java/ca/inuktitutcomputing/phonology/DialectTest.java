@@ -0,0 +1,55 @@
+package ca.inuktitutcomputing.phonology;
+
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+import java.util.Vector;
+
+import org.junit.Test;
+
+import ca.inuktitutcomputing.utilities.StopWatch;
+
+public class DialectTest {
+
+	StopWatch stpw = new StopWatch(Long.MAX_VALUE);
+
+	@Test
+	public void test__equivalentGroups__HappyPath() throws Exception {
+		assertEquals(Arrays.asList("ss", "ts"),
+			Dialect.equivalentGroups(stpw, 'k', 's'));
+		assertNull("Group 'ai' should have had no equivalents",
+			Dialect.equivalentGroups(stpw, 'a', 'i'));
+	}
+
+	@Test
+	public void test__correspondingTermsEquivalentGroups__SeveralGroups() throws Exception {
+		// Every combination of the equivalents of the groups of the term, the
+		// first group varying the slowest, and each group itself coming last.
+		// 'ts' before a vowel also has the equivalents of 'ts'.
+		Vector<String> gotTerms =
+			Dialect.correspondingTermsEquivalentGroups(stpw, "iksitsi");
+		assertEquals(Arrays.asList(
+				"issipsi", "ississi", "issitti", "issit&i", "issiksi", "issik&i", "issitsi",
+				"itsipsi", "itsissi", "itsitti", "itsit&i", "itsiksi", "itsik&i", "itsitsi",
+				"iksipsi", "iksissi", "iksitti", "iksit&i", "iksiksi", "iksik&i", "iksitsi"),
+			gotTerms);
+	}
+
+	@Test
+	public void test__correspondingTermsEquivalentGroups__NoGroup() throws Exception {
+		assertEquals(Arrays.asList("taku"),
+			Dialect.correspondingTermsEquivalentGroups(stpw, "taku"));
+	}
+
+	@Test
+	public void test__newCandidates__HappyPath() throws Exception {
+		assertEquals(Arrays.asList("lauttuq", "laurtuq", "lauq&uq"),
+			Dialect.newCandidates(stpw, "taku", "lauqtuq", null));
+	}
+
+	@Test
+	public void test__schneiderCandidates__HappyPath() throws Exception {
+		assertEquals(Arrays.asList("lauqtuq"),
+			Dialect._schneiderCandidates(stpw, "taku", "lauqtuq"));
+	}
+}
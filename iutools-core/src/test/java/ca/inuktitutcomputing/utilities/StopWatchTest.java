@@ -137,6 +137,23 @@ public class StopWatchTest {
 		long timeoutAfter = 1*1000;
 		runDirectTask(timeoutAfter, 100);
 	}
+
+	@Test
+	public void test__check__CancelledToken__RaisesTimeoutEvenIfDisactivated() 
+			throws Exception {
+		CancellationToken token = new CancellationToken();
+		StopWatch sw = new StopWatch(60*1000).setCancellationToken(token);
+		sw.disactivate();
+		sw.check("Before cancelling");
+		token.cancel("test");
+		try {
+			sw.check("After cancelling");
+			fail("The StopWatch should have raised a TimeoutException once its token was cancelled");
+		} catch (TimeoutException e) {
+			assertTrue("Exception should have mentioned the cancellation: "+e.getMessage(), 
+				e.getMessage().contains("cancelled (test)"));
+		}
+	}
 	
 	/////////////////////////////////////
 	// TEST HELPERS
@@ -0,0 +1,153 @@
+package ca.nrc.datastructure.trie;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.google.gson.Gson;
+
+public class TerminalsNgramIndexTest {
+
+	/////////////////////////
+	// DOCUMENTATION TESTS
+	/////////////////////////
+
+	@Test
+	public void test__TerminalsNgramIndex__Synopsis() throws Exception {
+		// The index is given the segments of the terminals of a trie
+		TerminalsNgramIndex index = new TerminalsNgramIndex();
+		index.add(new String[] {"{inuk/1n}", "{titut/tn-sim-p}"});
+		index.add(new String[] {"{taku/1v}", "{juq/1vn}"});
+
+		// Adding a terminal that is already there does nothing
+		Assert.assertFalse(index.add(new String[] {"{taku/1v}", "{juq/1vn}"}));
+
+		// It then finds the terminals that contain a sequence of segments
+		List<String[]> found = index.terminalsContaining(
+			new String[] {"{titut/tn-sim-p}"});
+		Assert.assertEquals(1, found.size());
+	}
+
+	/////////////////////////
+	// VERIFICATION TESTS
+	/////////////////////////
+
+	@Test
+	public void test__terminalsContaining__SegmentsAreNotMatchedAcrossBoundaries() throws Exception {
+		TerminalsNgramIndex index = new TerminalsNgramIndex();
+		index.add(new String[] {"ab", "c"});
+		index.add(new String[] {"a", "bc"});
+
+		assertFound(index, new String[] {"a", "bc"}, new String[][] {{"a", "bc"}});
+		assertFound(index, new String[] {"ab"}, new String[][] {{"ab", "c"}});
+		assertFound(index, new String[] {"b"}, new String[0][]);
+	}
+
+	@Test
+	public void test__terminalsContaining__NgramLongerThanTheIndexedOnes() throws Exception {
+		TerminalsNgramIndex index = new TerminalsNgramIndex(2);
+		index.add("abcab".split(""));
+		index.add("abab".split(""));
+		index.add("xabc".split(""));
+
+		// "abab" contains both bigrams of "abc" but not "abc" itself
+		assertFound(index, "abc".split(""),
+			new String[][] {"abcab".split(""), "xabc".split("")});
+		assertFound(index, "bab".split(""), new String[][] {"abab".split("")});
+	}
+
+	@Test
+	public void test__terminalsContaining__IndexDeserializedWithGson() throws Exception {
+		TerminalsNgramIndex index = new TerminalsNgramIndex();
+		index.add("hello".split(""));
+		index.add("shell".split(""));
+		String json = new Gson().toJson(index);
+
+		TerminalsNgramIndex retrieved =
+			new Gson().fromJson(json, TerminalsNgramIndex.class);
+		assertFound(retrieved, "ell".split(""),
+			new String[][] {"hello".split(""), "shell".split("")});
+		Assert.assertFalse(retrieved.add("hello".split("")));
+	}
+
+	@Test
+	public void test__useJournal__TerminalsAreReadBackFromTheJournal() throws Exception {
+		File journal = new File(
+			Files.createTempDirectory("index").toFile(), "terminals.jsonl");
+		TerminalsNgramIndex index = new TerminalsNgramIndex();
+		index.useJournal(journal);
+		index.add("hello".split(""));
+		index.add("shell".split(""));
+
+		TerminalsNgramIndex reread = new TerminalsNgramIndex();
+		reread.useJournal(journal);
+		Assert.assertEquals(2, reread.size());
+		assertFound(reread, "sh".split(""), new String[][] {"shell".split("")});
+	}
+
+	@Test
+	public void test__useJournal__TerminalsAddedAfterTheJournalWasClosed__AreAppended() throws Exception {
+		File journal = new File(
+			Files.createTempDirectory("index").toFile(), "terminals.jsonl");
+		TerminalsNgramIndex index = new TerminalsNgramIndex();
+		index.useJournal(journal);
+		index.add("hello".split(""));
+		index.closeJournal();
+		index.add("shell".split(""));
+		index.closeJournal();
+
+		TerminalsNgramIndex reread = new TerminalsNgramIndex();
+		reread.useJournal(journal);
+		Assert.assertEquals(2, reread.size());
+	}
+
+	@Test
+	public void test__terminalsContaining__LookupsWhileOtherThreadsAdd() throws Exception {
+		final TerminalsNgramIndex index = new TerminalsNgramIndex();
+		final int numThreads = 4;
+		final int perThread = 500;
+		ExecutorService pool = Executors.newFixedThreadPool(numThreads);
+		List<Future<?>> futures = new ArrayList<Future<?>>();
+		for (int it = 0; it < numThreads; it++) {
+			final int threadNum = it;
+			futures.add(pool.submit(new Callable<Void>() {
+				@Override
+				public Void call() throws Exception {
+					for (int ii = 0; ii < perThread; ii++) {
+						index.add(new String[] {"t"+threadNum, "w"+ii, "x"});
+						index.terminalsContaining(new String[] {"w"+ii, "x"});
+					}
+					return null;
+				}
+			}));
+		}
+		for (Future<?> future: futures) {
+			future.get();
+		}
+		pool.shutdown();
+
+		Assert.assertEquals(numThreads * perThread, index.size());
+		Assert.assertEquals(numThreads, 
+			index.terminalsContaining(new String[] {"w7", "x"}).size());
+	}
+
+		/////////////////////////////
+	// TEST HELPERS
+	/////////////////////////////
+
+	private void assertFound(TerminalsNgramIndex index, String[] ngram,
+			String[][] expTerminals) {
+		List<String[]> gotTerminals = index.terminalsContaining(ngram);
+		Assert.assertArrayEquals(
+			"Terminals containing "+String.join(",", ngram)+" not as expected",
+			expTerminals, gotTerminals.toArray(new String[gotTerminals.size()][]));
+	}
+}
@@ -202,4 +202,35 @@ public class TrieNodeTest {
 			"Terminal segment should have been removed", 
 			expKeys, gotKeys);
 	}
-}
\ No newline at end of file
+
+	@Test
+	public void test__updateTopTerminals__KeepsTheMostFrequentInOrder() 
+			throws Exception {
+		TrieNode node = new TrieNode("h".split(""));
+		for (int ii=1; ii <= TrieNode.MAX_TOP_TERMINALS + 2; ii++) {
+			node.updateTopTerminals(new String[] {"h", "w"+ii}, ii);
+			node.incrementFrequency();
+		}
+		// A terminal that becomes more frequent moves up
+		String[] w1 = new String[] {"h", "w1"};
+		node.updateTopTerminals(w1, 100);
+		
+		String[][] top = node.topTerminalKeys(3);
+		Assert.assertEquals(3, top.length);
+		Assert.assertArrayEquals(w1, top[0]);
+		Assert.assertArrayEquals(
+			new String[] {"h", "w"+(TrieNode.MAX_TOP_TERMINALS + 2)}, top[1]);
+		Assert.assertNull(
+			"Summary cannot answer for more terminals than it keeps",
+			node.topTerminalKeys(TrieNode.MAX_TOP_TERMINALS + 1));
+	}
+
+	@Test
+	public void test__updateTopTerminals__NodeHadTerminalsBeforeSummary__NoSummary() 
+			throws Exception {
+		TrieNode node = new TrieNode("h".split(""));
+		node.incrementFrequency();
+		node.updateTopTerminals(new String[] {"h", "i"}, 1);
+		Assert.assertNull(node.topTerminalKeys(1));
+	}
+}
@@ -5,6 +5,9 @@ import static org.junit.Assert.*;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
 
 import org.apache.commons.lang3.tuple.Pair;
 import org.junit.Assert;
@@ -688,6 +691,196 @@ public abstract class TrieTest {
 		
 	}
 	
+	@Test
+	public void test__getMostFrequentTerminals__SameAsVisitingAllTerminals() throws Exception {
+		java.util.Random random = new java.util.Random(1);
+		Trie trie = makeTrieToTest();
+		for (int ii=0; ii < 300; ii++) {
+			StringBuilder word = new StringBuilder();
+			int length = 2 + random.nextInt(3);
+			for (int jj=0; jj < length; jj++) {
+				word.append((char)('a' + random.nextInt(3)));
+			}
+			trie.add(word.toString().split(""), word.toString(), 
+				1 + random.nextInt(5));
+		}
+		
+		for (String prefix: new String[] {"", "a", "ab", "cab"}) {
+			String[] segments = prefix.isEmpty() ? new String[0] : prefix.split("");
+			TrieNode[] all = trie.getTerminals(segments);
+			long[] allFreqs = new long[all.length];
+			for (int ii=0; ii < all.length; ii++) {
+				allFreqs[ii] = -all[ii].getFrequency();
+			}
+			Arrays.sort(allFreqs);
+			for (int n: new int[] {1, 3, TrieNode.MAX_TOP_TERMINALS, 50}) {
+				TrieNode[] got = trie.getMostFrequentTerminals(n, segments);
+				int expSize = Math.min(n, all.length);
+				Assert.assertEquals("Wrong number of terminals for prefix="+
+					prefix+", n="+n, expSize, got.length);
+				for (int ii=0; ii < expSize; ii++) {
+					Assert.assertEquals("Wrong frequency at rank "+ii+
+						" for prefix="+prefix+", n="+n, 
+						-allFreqs[ii], got[ii].getFrequency());
+				}
+			}
+		}
+	}
+	
+	@Test
+	public void test__getTerminalsMatchingNgram__NgramLongerThanTheIndexedOnes() throws Exception {
+		Trie charTrie = makeTrieToTest(
+			new String[] {"hello", "hellish", "shell", "lohel"});
+		
+		TrieNode[] gotTerminals = charTrie.getTerminalsMatchingNgram("hell".split(""));
+		Assert.assertArrayEquals(
+			new String[] {"h e l l o", "h e l l i s h", "s h e l l"}, 
+			nodes2keys(gotTerminals));
+		
+		gotTerminals = charTrie.getTerminalsMatchingNgram("lohe".split(""));
+		Assert.assertArrayEquals(new String[] {"l o h e l"}, 
+			nodes2keys(gotTerminals));
+		
+		gotTerminals = charTrie.getTerminalsMatchingNgram("xyz".split(""));
+		Assert.assertEquals(0, gotTerminals.length);
+	}
+	
+	@Test
+	public void test__getTerminals__NotMatchStart__ReturnsTerminalsContainingTheSegments() throws Exception {
+		Trie charTrie = makeTrieToTest(
+			new String[] {"hello", "hit", "shell"});
+		
+		TrieNode[] gotTerminals = charTrie.getTerminals("el".split(""), false);
+		Assert.assertArrayEquals(new String[] {"h e l l o", "s h e l l"}, 
+			nodes2keys(gotTerminals));
+	}
+	
+	@Test
+	public void test__terminalsIterator__SameTerminalsAsGetTerminals() throws Exception {
+		Trie charTrie = makeTrieToTest(
+			new String[] {"hello", "hit", "help", "shell", "hello", "a"});
+		
+		Iterator<TrieNode> iter = charTrie.terminalsIterator();
+		List<TrieNode> gotTerminals = new ArrayList<TrieNode>();
+		while (iter.hasNext()) {
+			gotTerminals.add(iter.next());
+		}
+		Assert.assertArrayEquals(nodes2keys(charTrie.getTerminals()), 
+			nodes2keys(gotTerminals.toArray(new TrieNode[0])));
+		
+		iter = charTrie.terminalsIterator(charTrie.getNode("he".split("")));
+		gotTerminals.clear();
+		while (iter.hasNext()) {
+			gotTerminals.add(iter.next());
+		}
+		Assert.assertArrayEquals(
+			nodes2keys(charTrie.getTerminals("he".split(""))), 
+			nodes2keys(gotTerminals.toArray(new TrieNode[0])));
+		Assert.assertEquals(2, gotTerminals.size());
+	}
+	
+	@Test
+	public void test__terminalsIterator__EmptyTrie() throws Exception {
+		Trie charTrie = makeTrieToTest();
+		Iterator<TrieNode> iter = charTrie.terminalsIterator();
+		Assert.assertFalse(iter.hasNext());
+		try {
+			iter.next();
+			Assert.fail("next() should have failed at the end of the iteration");
+		} catch (NoSuchElementException e) {
+			// Expected
+		}
+	}
+	
+	@Test
+	public void test__readOnlyLookups__DoNotCreateNodes() throws Exception {
+		Trie trie = makeTrieToTest(new String[] {"hello", "world"});
+		String[] missing = "help".split("");
+		
+		Assert.assertEquals(0, trie.getFrequency(missing));
+		Assert.assertEquals(0, trie.getTerminals(missing).length);
+		Assert.assertEquals(0, trie.getMostFrequentTerminals(3, missing).length);
+		Assert.assertNull(trie.getMostFrequentTerminal(missing));
+		Assert.assertEquals(0, trie.totalTerminals(missing));
+		
+		Assert.assertFalse("Lookups should not have created the node", 
+			trie.contains(missing));
+		Assert.assertFalse("Lookups should not have created the node's parent", 
+			trie.contains("hel".split("")) && 
+				trie.getNode("hel".split("")).hasChild("p"));
+	}
+	
+	@Test
+	public void test__beginBatch__SameNodesAsAddingOutsideOfABatch() throws Exception {
+		String[] words = new String[] {
+			"hello", "hello", "world", "helios", "help", "he"};
+		Trie expTrie = makeTrieToTest(words);
+		
+		Trie trie = makeTrieToTest();
+		// Use a small maximum of pending nodes, so that some of them are 
+		// saved before the batch is committed
+		trie.beginBatch(5);
+		for (String word: words) {
+			trie.add(word.split(""), word);
+		}
+		// Nodes modified by the batch can be read before it is committed
+		Assert.assertEquals(2, 
+			trie.getNode("hello".split(""), NodeOption.TERMINAL).getFrequency());
+		trie.commitBatch();
+		Assert.assertFalse(trie.inBatch());
+		
+		for (String keys: new String[] {"", "h", "he", "hel", "help", "world"}) {
+			String[] segments = keys.isEmpty() ? new String[0] : keys.split("");
+			TrieNode expNode = expTrie.getNode(segments);
+			TrieNode gotNode = trie.getNode(segments);
+			Assert.assertEquals("Frequency not as expected for node "+keys, 
+				expNode.getFrequency(), gotNode.getFrequency());
+			Assert.assertEquals("Children not as expected for node "+keys, 
+				expNode.childrenSegments(), gotNode.childrenSegments());
+		}
+		new AssertTrie(trie, "")
+			.totalTerminalsIs(new String[0], 5)
+			.totalTerminalOccurencesIs(new String[0], 6);
+	}
+	
+	@Test
+	public void test__beginBatch__Nested__NodesSavedByOutermostCommit() throws Exception {
+		Trie trie = makeTrieToTest();
+		trie.beginBatch();
+		trie.beginBatch();
+		trie.add("hi".split(""), "hi");
+		trie.commitBatch();
+		Assert.assertTrue("Outer batch should still be in progress", trie.inBatch());
+		trie.add("hi".split(""), "hi");
+		trie.commitBatch();
+		Assert.assertEquals(2, 
+			trie.getNode("hi".split(""), NodeOption.TERMINAL).getFrequency());
+		Assert.assertEquals(2, trie.getRoot().getFrequency());
+	}
+	
+	@Test
+	public void test__abortBatch__Nested__OutermostCommitFails() throws Exception {
+		Trie trie = makeTrieToTest();
+		trie.beginBatch();
+		trie.beginBatch();
+		trie.add("hi".split(""), "hi");
+		trie.abortBatch();
+		Assert.assertTrue("Outer batch should still be in progress", trie.inBatch());
+		try {
+			trie.commitBatch();
+			Assert.fail("Committing a batch in which a nested one was aborted should have failed");
+		} catch (TrieException e) {
+			// Expected
+		}
+		Assert.assertFalse(trie.inBatch());
+		try {
+			trie.abortBatch();
+			Assert.fail("Aborting when no batch is in progress should have failed");
+		} catch (TrieException e) {
+			// Expected
+		}
+	}
+	
 	////////////////////////////////////////
 	// TEST HELPERS
 	////////////////////////////////////////
@@ -700,4 +893,12 @@ public abstract class TrieTest {
 			count++;
 		}
 	}
+	
+	protected static String[] nodes2keys(TrieNode[] nodes) {
+		String[] keys = new String[nodes.length];
+		for (int ii=0; ii < nodes.length; ii++) {
+			keys[ii] = nodes[ii].keysAsString();
+		}
+		return keys;
+	}
 }
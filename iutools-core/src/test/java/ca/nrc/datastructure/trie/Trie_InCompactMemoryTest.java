@@ -0,0 +1,51 @@
+package ca.nrc.datastructure.trie;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import ca.nrc.datastructure.trie.Trie.NodeOption;
+
+public class Trie_InCompactMemoryTest extends TrieTest {
+
+	@Override
+	public Trie_InCompactMemory makeTrieToTest() {
+		Trie_InCompactMemory trie = new Trie_InCompactMemory();
+		return trie;
+	}
+
+	/////////////////////////
+	// VERIFICATION TESTS
+	/////////////////////////
+
+	@Test
+	public void test__add__SegmentsAreStoredOnlyOnce() throws Exception {
+		Trie_InCompactMemory trie = makeTrieToTest();
+		trie.add("hello".split(""), "hello");
+		trie.add("help".split(""), "help");
+		trie.add("hop".split(""), "hop");
+
+		// h,e,l,o,p and the terminal segment
+		Assert.assertEquals(6, trie.totalSegments());
+		// root + h,e,l,l,o,$ + p,$ + o,p,$
+		Assert.assertEquals(12, trie.totalNodes());
+	}
+
+	@Test
+	public void test__getNode__ChangesAreKeptOnlyOnceSaved() throws Exception {
+		Trie_InCompactMemory trie = makeTrieToTest();
+		trie.add("hello".split(""), "hello");
+
+		TrieNode node = trie.getNode("hello".split(""), NodeOption.TERMINAL);
+		node.updateSurfaceForms("Hello");
+		node.setField("pos", "noun");
+		Assert.assertEquals(1, trie.getNode("hello".split(""), 
+			NodeOption.TERMINAL).getSurfaceForms().size());
+
+		trie.saveNode(node);
+		TrieNode saved = trie.getNode("hello".split(""), NodeOption.TERMINAL);
+		Assert.assertEquals(2, saved.getSurfaceForms().size());
+		Assert.assertEquals(1, saved.getSurfaceForms().get("Hello").longValue());
+		Assert.assertEquals("noun", saved.getField("pos"));
+		Assert.assertNotSame(node, saved);
+	}
+}
@@ -5,6 +5,8 @@ import static org.junit.Assert.fail;
 import java.io.File;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.HashSet;
 
 import org.junit.Assert;
 import org.junit.Ignore;
@@ -13,6 +15,7 @@ import org.junit.Test;
 import com.google.gson.Gson;
 
 import ca.inuktitutcomputing.utilities.StopWatch;
+import ca.nrc.datastructure.trie.Trie.NodeOption;
 import ca.nrc.testing.AssertObject;
 
 public class Trie_InFileSystemTest extends TrieTest {
@@ -107,6 +110,104 @@ public class Trie_InFileSystemTest extends TrieTest {
 				keys, gotUnescaped);
 	}	
 
+	@Test
+	public void test__commitBatch__NodesNotWrittenBeforeCommit() throws Exception {
+		Trie_InFileSystem trie = makeTrieToTest();
+		trie.beginBatch();
+		trie.add("hello".split(""), "hello");
+		trie.add("help".split(""), "help");
+		
+		Trie_InFileSystem sameDir = new Trie_InFileSystem(trie.getRootDir());
+		Assert.assertFalse(
+			"Node should not have been written before the batch is committed",
+			sameDir.contains(Trie.ensureTerminal("hello".split(""))));
+		
+		trie.commitBatch();
+		Assert.assertEquals(1, 
+			sameDir.getNode("hello".split(""), NodeOption.TERMINAL).getFrequency());
+		Assert.assertEquals(2, 
+			sameDir.getNode("hel".split(""), NodeOption.NO_CREATE).getFrequency());
+	}
+
+	@Test
+	public void test__abortBatch__NodesNotWritten() throws Exception {
+		Trie_InFileSystem trie = makeTrieToTest();
+		trie.add("hello".split(""), "hello");
+		// Put the node of 'hel' in the cache, before the batch modifies it
+		trie.getNode("hel".split(""), NodeOption.NO_CREATE);
+		trie.beginBatch();
+		trie.add("help".split(""), "help");
+		trie.abortBatch();
+		Assert.assertFalse(trie.inBatch());
+		
+		Assert.assertFalse("Node of the aborted batch should not have been written",
+			trie.contains(Trie.ensureTerminal("help".split(""))));
+		Assert.assertEquals("Node modified by the aborted batch should be as before",
+			1, trie.getNode("hel".split(""), NodeOption.NO_CREATE).getFrequency());
+		Assert.assertEquals(1, 
+			new Trie_InFileSystem(trie.getRootDir()).getRoot().getFrequency());
+	}
+
+	@Test
+	public void test__getNode__SameNodeTwice__SecondOneComesFromTheCache() throws Exception {
+		Trie_InFileSystem trie = makeTrieToTest();
+		trie.add("hello".split(""), "hello");
+		String[] hel = "hel".split("");
+		
+		TrieNode node = trie.getNode(hel);
+		Assert.assertSame("Node should have been read from the cache", 
+			node, trie.getNode(hel));
+		Assert.assertTrue(trie.totalCachedNodes() > 0);
+		
+		// Saving the node (here, by adding a word under it) removes it from 
+		// the cache
+		trie.add("help".split(""), "help");
+		TrieNode updated = trie.getNode(hel);
+		Assert.assertNotSame("Saved node should have been re-read", 
+			node, updated);
+		Assert.assertEquals(2, updated.getFrequency());
+		Assert.assertEquals(new HashSet<String>(Arrays.asList("l", "p")), 
+			updated.childrenSegments());
+	}
+
+	@Test
+	public void test__getNode__ChildCreatedAfterTheParentWasCached__ParentHasTheNewChild() throws Exception {
+		Trie_InFileSystem trie = makeTrieToTest();
+		trie.add("hello".split(""), "hello");
+		trie.getNode("he".split(""));
+		
+		// Creating a node creates the directories of its missing ancestors
+		trie.getNode("heyo".split(""));
+		Assert.assertEquals(new HashSet<String>(Arrays.asList("l", "y")), 
+			trie.getNode("he".split("")).childrenSegments());
+	}
+
+	@Test
+	public void test__getFrequency__NodeDoesNotExist__NoDirectoryCreated() throws Exception {
+		Trie_InFileSystem trie = makeTrieToTest();
+		trie.add("hello".split(""), "hello");
+		Assert.assertEquals(0, trie.getFrequency("world".split("")));
+		Assert.assertFalse("Lookup should not have created a directory", 
+			new File(trie.getRootDir(), "w").exists());
+	}
+
+	@Test
+	public void test__getTerminalsMatchingNgram__TrieReopened__TerminalsStillIndexed() throws Exception {
+		Trie_InFileSystem trie = makeTrieToTest();
+		trie.add("hello".split(""), "hello");
+		trie.add("shell".split(""), "shell");
+		trie.add("hit".split(""), "hit");
+		
+		Trie_InFileSystem reopened = new Trie_InFileSystem(trie.getRootDir());
+		Assert.assertArrayEquals(new String[] {"h e l l o", "s h e l l"}, 
+			nodes2keys(reopened.getTerminalsMatchingNgram("el".split(""))));
+		
+		reopened.add("yell".split(""), "yell");
+		Assert.assertArrayEquals(
+			new String[] {"h e l l o", "s h e l l", "y e l l"}, 
+			nodes2keys(reopened.getTerminalsMatchingNgram("el".split(""))));
+	}
+
 	/////////////////////////////
 	// TEST HELPERS
 	/////////////////////////////
@@ -0,0 +1,233 @@
+package ca.nrc.datastructure.trie;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.HashSet;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.Assert;
+import org.junit.Test;
+
+import ca.nrc.datastructure.trie.Trie.NodeOption;
+
+public class Trie_InMappedFileTest extends TrieTest {
+
+	@Override
+	public Trie_InMappedFile makeTrieToTest() throws Exception {
+		Path rootDir = Files.createTempDirectory("trie");
+		Trie_InMappedFile trie = new Trie_InMappedFile(rootDir.toFile());
+		return trie;
+	}
+
+	/////////////////////////
+	// VERIFICATION TESTS
+	/////////////////////////
+
+	@Test
+	public void test__reopen__NodesAndFrequenciesArePersisted() throws Exception {
+		Trie_InMappedFile trie = makeTrieToTest();
+		trie.add("hello".split(""), "hello");
+		trie.add("hello".split(""), "hello");
+		trie.add("help".split(""), "help");
+		trie.close();
+
+		Trie_InMappedFile reopened = new Trie_InMappedFile(trie.getRootDir());
+		assertFrequencies(reopened);
+		Assert.assertNull("Node should not have been created",
+			reopened.getNode("hi".split(""), NodeOption.NO_CREATE));
+	}
+
+	@Test
+	public void test__reopen__RecordsAfterTheLastCheckpoint__AreDiscarded() throws Exception {
+		Trie_InMappedFile trie = makeTrieToTest();
+		trie.add("hello".split(""), "hello");
+		trie.add("hello".split(""), "hello");
+		trie.add("help".split(""), "help");
+		long nodesBefore = trie.totalNodes();
+		trie.close();
+
+		// Simulate a crash in the middle of a checkpoint: a record appended
+		// after the last one that the header points to
+		File segFile = new File(trie.getRootDir(), "trie-000.dat");
+		int end = endOfRecords(segFile);
+		try (RandomAccessFile raf = new RandomAccessFile(segFile, "rw")) {
+			raf.seek(end);
+			raf.writeInt(100);
+			raf.writeInt(0);
+			raf.write("{\"keys\":[\"h\",\"i".getBytes("UTF-8"));
+		}
+
+		Trie_InMappedFile reopened = new Trie_InMappedFile(trie.getRootDir());
+		Assert.assertEquals("Record after the last checkpoint should have been discarded",
+			nodesBefore, reopened.totalNodes());
+		assertFrequencies(reopened);
+
+		// New nodes are appended over the torn record
+		reopened.add("hi".split(""), "hi");
+		reopened.close();
+		reopened = new Trie_InMappedFile(trie.getRootDir());
+		assertFrequencies(reopened);
+		Assert.assertEquals(1,
+			reopened.getNode("hi".split(""), NodeOption.TERMINAL).getFrequency());
+	}
+
+	@Test
+	public void test__reopen__LastHeaderSlotTorn__UsesThePreviousCheckpoint() throws Exception {
+		Trie_InMappedFile trie = makeTrieToTest();
+		trie.add("hello".split(""), "hello");
+		trie.add("hello".split(""), "hello");
+		trie.add("help".split(""), "help");
+		trie.add("help".split(""), "help");
+		trie.close();
+
+		// Simulate a crash while the slot of the last checkpoint was being
+		// written: its CRC no longer matches
+		File headerFile = new File(trie.getRootDir(), "trie.hdr");
+		try (RandomAccessFile raf = new RandomAccessFile(headerFile, "rw")) {
+			long lastSlot = (readLong(raf, 0) > readLong(raf, 64) ? 0 : 64);
+			raf.seek(lastSlot + 40);
+			raf.writeLong(123456);
+		}
+
+		Trie_InMappedFile reopened = new Trie_InMappedFile(trie.getRootDir());
+		Assert.assertEquals("Trie should have been reopened at the checkpoint before the last add()",
+			1, reopened.getNode("help".split(""), NodeOption.TERMINAL).getFrequency());
+		assertFrequencies(reopened);
+	}
+
+	@Test
+	public void test__getNode__ManyChildren__AreAllFound() throws Exception {
+		Trie_InMappedFile trie = makeTrieToTest();
+		String[] segments = new String[] {
+			"taku", "ᑕᑯ", "a", "z", "ᐃᓄ", "inuk", "B", "é", "aa", "ab", "ᖃ", "q"};
+		trie.beginBatch();
+		for (String seg: segments) {
+			trie.add(new String[] {seg, "x"}, seg+"x");
+		}
+		trie.commitBatch();
+		trie.close();
+
+		Trie_InMappedFile reopened = new Trie_InMappedFile(trie.getRootDir());
+		for (String seg: segments) {
+			Assert.assertNotNull("Node for segment "+seg+" should have been found",
+				reopened.getNode(new String[] {seg, "x"}, NodeOption.NO_CREATE));
+		}
+		Assert.assertNull(
+			reopened.getNode(new String[] {"ᑕ", "x"}, NodeOption.NO_CREATE));
+		Assert.assertEquals(new HashSet<String>(Arrays.asList(segments)),
+			reopened.getRoot().childrenSegments());
+	}
+
+	@Test
+	public void test__add__SmallSegments__RollsOverToNewSegments() throws Exception {
+		Path rootDir = Files.createTempDirectory("trie");
+		Trie_InMappedFile trie = new Trie_InMappedFile(rootDir.toFile(), 4096);
+		trie.add("hello".split(""), "hello");
+		trie.add("hello".split(""), "hello");
+		trie.add("help".split(""), "help");
+		Assert.assertTrue("Trie should have been split in several segments",
+			new File(rootDir.toFile(), "trie-001.dat").exists());
+		assertFrequencies(trie);
+
+		trie.close();
+		assertFrequencies(new Trie_InMappedFile(rootDir.toFile(), 4096));
+	}
+
+	@Test
+	public void test__compact__KeepsOnlyTheCurrentRecords() throws Exception {
+		Trie_InMappedFile trie = makeTrieToTest();
+		trie.add("hello".split(""), "hello");
+		trie.add("hello".split(""), "hello");
+		trie.add("help".split(""), "help");
+		long nodesBefore = trie.totalNodes();
+		trie.close();
+		File segFile = new File(trie.getRootDir(), "trie-000.dat");
+		int endBefore = endOfRecords(segFile);
+
+		trie.compact();
+		Assert.assertTrue("Compacted segment should have been smaller",
+			endOfRecords(segFile) < endBefore);
+		Assert.assertEquals(nodesBefore, trie.totalNodes());
+		assertFrequencies(trie);
+		assertFrequencies(new Trie_InMappedFile(trie.getRootDir()));
+	}
+
+	@Test
+	public void test__add__ManySupersededRecords__CompactsAutomatically() throws Exception {
+		Trie_InMappedFile trie = makeTrieToTest();
+		Trie_InMappedFile notCompacted = makeTrieToTest();
+		trie.setAutoCompaction(0.5, 0);
+		notCompacted.setAutoCompaction(1.0, 0);
+		for (Trie_InMappedFile aTrie: new Trie_InMappedFile[] {trie, notCompacted}) {
+			for (int ii = 0; ii < 20; ii++) {
+				aTrie.add("hello".split(""), "hello");
+			}
+			aTrie.close();
+		}
+		int endCompacted = endOfRecords(new File(trie.getRootDir(), "trie-000.dat"));
+		int endNotCompacted = endOfRecords(new File(notCompacted.getRootDir(), "trie-000.dat"));
+		Assert.assertTrue("Trie should have been compacted ("+endCompacted+
+				" bytes of records, vs "+endNotCompacted+" without compaction)",
+			2 * endCompacted < endNotCompacted);
+		Assert.assertEquals(20,
+			trie.getNode("hello".split(""), NodeOption.TERMINAL).getFrequency());
+		Assert.assertFalse("No directory should have been left by the compaction",
+			new File(trie.getRootDir().getPath()+".compacting").exists() ||
+			new File(trie.getRootDir().getPath()+".old").exists());
+	}
+
+	@Test
+	public void test__reopen__InterruptedBetweenTheRenamesOfCompact__UsesCompactedTrie() throws Exception {
+		Trie_InMappedFile trie = makeTrieToTest();
+		trie.add("hello".split(""), "hello");
+		trie.add("hello".split(""), "hello");
+		trie.add("help".split(""), "help");
+		trie.close();
+
+		// What compact() leaves if the process dies after moving the trie
+		// away, but before moving the compacted one in its place
+		File rootDir = trie.getRootDir();
+		File compactingDir = new File(rootDir.getPath()+".compacting");
+		FileUtils.copyDirectory(rootDir, compactingDir);
+		Assert.assertTrue(rootDir.renameTo(new File(rootDir.getPath()+".old")));
+
+		assertFrequencies(new Trie_InMappedFile(rootDir));
+		Assert.assertFalse(compactingDir.exists());
+	}
+
+	/////////////////////////////
+	// TEST HELPERS
+	/////////////////////////////
+
+	private void assertFrequencies(Trie_InMappedFile trie) throws Exception {
+		Assert.assertEquals(2,
+			trie.getNode("hello".split(""), NodeOption.TERMINAL).getFrequency());
+		Assert.assertEquals(3,
+			trie.getNode("hel".split(""), NodeOption.NO_CREATE).getFrequency());
+		Assert.assertEquals(new HashSet<String>(Arrays.asList("l", "p")),
+			trie.getNode("hel".split("")).childrenSegments());
+	}
+
+	private long readLong(RandomAccessFile raf, long pos) throws Exception {
+		raf.seek(pos);
+		return raf.readLong();
+	}
+
+		private int endOfRecords(File segFile) throws Exception {
+		int end = 0;
+		try (RandomAccessFile raf = new RandomAccessFile(segFile, "r")) {
+			while (end + 4 <= raf.length()) {
+				raf.seek(end);
+				int length = raf.readInt();
+				if (length == 0) {
+					break;
+				}
+				end += 4 + length;
+			}
+		}
+		return end;
+	}
+}
@@ -32,4 +32,18 @@ public class Trie_InMemoryTest extends TrieTest {
 		new AssertTrieNode(node, "")
 				.hasMostFrequentForm("hit");
 	}	
+
+	@Test
+	public void test_toJSON__TerminalsIndexIsSerializedWithTheTrie() throws Exception {
+		Trie_InMemory charTrie = makeTrieToTest();
+		charTrie.add("hello".split(""),"hello");
+		charTrie.add("hit".split(""),"hit");
+		charTrie.add("shell".split(""),"shell");
+		String json = charTrie.toJSON();
+		Trie retrievedCharTrie = new Gson().fromJson(json, Trie_InMemory.class);
+		TrieNode[] gotTerminals = 
+			retrievedCharTrie.getTerminalsMatchingNgram("el".split(""));
+		Assert.assertArrayEquals(new String[] {"h e l l o", "s h e l l"}, 
+			nodes2keys(gotTerminals));
+	}	
 }